@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fourthline.lemma.benchmarks;
+
+import org.fourthline.lemma.anchor.AnchorAddress;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of citation addresses and their conversion into identifiers.
+ *
+ * @author Christian Bauer
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AnchorAddressBenchmark {
+
+    @Param({
+            "javadoc://com.myorg.MyClass",
+            "javadoc://com.myorg.MyClass.Nested#someMethod(java.util.String[], Integer)",
+            "javacode://com.myorg.MyClass#myMethod",
+            "com/myorg/bar.txt",
+            "file://logs/server.log#L1200-L1260",
+            "jar://lib/foo-sources.jar!/com/myorg/Bar.java"
+    })
+    public String address;
+
+    private AnchorAddress parsed;
+
+    @Setup
+    public void setup() {
+        parsed = AnchorAddress.valueOf(address);
+    }
+
+    @Benchmark
+    public AnchorAddress valueOf() {
+        return AnchorAddress.valueOf(address);
+    }
+
+    @Benchmark
+    public String toIdentifierString() {
+        return parsed.toIdentifierString();
+    }
+}
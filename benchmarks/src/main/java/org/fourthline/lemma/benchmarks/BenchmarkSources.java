@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fourthline.lemma.benchmarks;
+
+import org.fourthline.lemma.Constants;
+import org.fourthline.lemma.anchor.CitationAnchor;
+import org.fourthline.lemma.pipeline.ParserPool;
+import org.seamless.util.io.IO;
+import org.seamless.xhtml.XHTML;
+import org.seamless.xhtml.XHTMLElement;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates source content and citation anchors for benchmarks.
+ * <p>
+ * Java and XML sources are split into fragments of equal size, each fragment is demarcated
+ * with <code>DOC: FRAGMENT&lt;n&gt;</code> labels and starts with a callout comment.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class BenchmarkSources {
+
+    /**
+     * @return Lines of a Java class with one method per fragment.
+     */
+    public static String[] javaSource(int lines, int fragments) {
+        List<String> source = new ArrayList<String>(lines + fragments * 8);
+        source.add("package example.generated;");
+        source.add("");
+        source.add("public class Generated {");
+        source.add("");
+        int linesPerFragment = Math.max(1, lines / fragments);
+        for (int f = 0; f < fragments; f++) {
+            source.add("    // DOC: FRAGMENT" + f);
+            source.add("    public int method" + f + "(int value, String name) {");
+            source.add("        /* DOC:CALLOUT");
+            source.add("           Computes the <code>result</code> of fragment " + f + ". */");
+            source.add("        int result = value;");
+            for (int i = 0; i < linesPerFragment; i++) {
+                source.add("        result = result * 31 + name.length() + " + i + "; // Line " + i);
+            }
+            source.add("        return result;");
+            source.add("    }");
+            source.add("    // DOC: FRAGMENT" + f);
+            source.add("");
+        }
+        source.add("}");
+        return source.toArray(new String[source.size()]);
+    }
+
+    /**
+     * @return Lines of an XML document with one element per fragment.
+     */
+    public static String[] xmlSource(int lines, int fragments) {
+        List<String> source = new ArrayList<String>(lines + fragments * 6);
+        source.add("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        source.add("<orders>");
+        int linesPerFragment = Math.max(1, lines / fragments);
+        for (int f = 0; f < fragments; f++) {
+            source.add("    <!-- DOC: FRAGMENT" + f + " -->");
+            source.add("    <order id=\"" + f + "\">");
+            source.add("        <!-- DOC:CALLOUT The line items of order " + f + ". -->");
+            for (int i = 0; i < linesPerFragment; i++) {
+                source.add("        <lineitem product-id=\"" + i + "\" quantity=\"" + (i % 7 + 1) + "\"/>");
+            }
+            source.add("    </order>");
+            source.add("    <!-- DOC: FRAGMENT" + f + " -->");
+        }
+        source.add("</orders>");
+        return source.toArray(new String[source.size()]);
+    }
+
+    /**
+     * Writes the lines to a new temporary file, deleted when the JVM exits.
+     */
+    public static File writeTempFile(String[] lines, String suffix) throws IOException {
+        File file = File.createTempFile("lemma-benchmark-", suffix);
+        file.deleteOnExit();
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append("\n");
+        }
+        IO.writeUTF8(file, sb.toString());
+        return file;
+    }
+
+    /**
+     * @return A citation anchor with the given address and options (the <code>style</code> attribute).
+     */
+    public static CitationAnchor createCitation(String href, String options) {
+        XHTMLElement parent = createParentElement();
+        XHTMLElement anchor = parent.createChild(XHTML.ELEMENT.a);
+        anchor.setAttribute(XHTML.ATTR.CLASS, Constants.TYPE_CITATION);
+        anchor.setAttribute(XHTML.ATTR.href, href);
+        if (options != null)
+            anchor.getW3CElement().setAttribute("style", options);
+        return new CitationAnchor(ParserPool.getXPath(), anchor.getW3CElement());
+    }
+
+    /**
+     * @return The root element of a new XHTML document.
+     */
+    public static XHTMLElement createParentElement() {
+        XHTML xhtml = ParserPool.getParser().createDocument();
+        return xhtml.createRoot(ParserPool.getXPath(), Constants.WRAPPER_ELEMENT);
+    }
+
+    /**
+     * @return Options including every other of the given number of fragments, e.g. <code>include: FRAGMENT0, FRAGMENT2</code>.
+     */
+    public static String includeEveryOtherFragment(int fragments) {
+        StringBuilder sb = new StringBuilder("include: ");
+        for (int f = 0; f < fragments; f += 2) {
+            if (f > 0) sb.append(", ");
+            sb.append("FRAGMENT").append(f);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fourthline.lemma.benchmarks;
+
+import org.fourthline.lemma.anchor.CitationAnchor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.seamless.xhtml.Option;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Option lookup of citation anchors, every filter and printer looks up several options per citation.
+ *
+ * @author Christian Bauer
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CitationAnchorBenchmark {
+
+    /**
+     * The number of options of the anchor.
+     */
+    @Param({"0", "3", "8"})
+    public int options;
+
+    private CitationAnchor citation;
+
+    @Setup
+    public void setup() {
+        StringBuilder style = new StringBuilder();
+        CitationAnchor.OptionKey[] keys = CitationAnchor.OptionKey.values();
+        for (int i = 0; i < options; i++) {
+            if (i > 0) style.append("; ");
+            style.append(keys[i].getKey()).append(": ").append(i % 2 == 0 ? "true" : "FRAGMENT1, FRAGMENT2");
+        }
+        citation = BenchmarkSources.createCitation("javacode://com.myorg.MyClass", style.toString());
+    }
+
+    /**
+     * Looks up the options checked by the fragment filter and callout printer, present or not.
+     */
+    @Benchmark
+    public int getOptions() {
+        int found = 0;
+        found += count(citation.getOption(CitationAnchor.OptionKey.INCLUDE));
+        found += count(citation.getOption(CitationAnchor.OptionKey.EXCLUDE));
+        found += count(citation.getOption(CitationAnchor.OptionKey.DOTS));
+        found += count(citation.getOption(CitationAnchor.OptionKey.CALLOUTS));
+        return found;
+    }
+
+    protected int count(Option option) {
+        return option != null ? 1 : 0;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fourthline.lemma.benchmarks;
+
+import org.fourthline.lemma.reader.content.LineRange;
+import org.fourthline.lemma.reader.content.handler.ContentCache;
+import org.fourthline.lemma.reader.content.handler.ContentFileHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading content lines of files, with a cold and a warm content cache.
+ * <p>
+ * The largest file exceeds {@link ContentFileHandler#INDEXED_ACCESS_THRESHOLD}, line ranges
+ * of uncached files of that size are read through the line offset index.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ContentFileHandlerBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int lines;
+
+    private File file;
+    private LineRange range;
+    private ContentFileHandler handler;
+    private ContentCache warmCache;
+
+    @Setup
+    public void setup() throws Exception {
+        file = BenchmarkSources.writeTempFile(BenchmarkSources.javaSource(lines, 10), ".java");
+        range = new LineRange(lines / 2, lines / 2 + 20);
+        handler = new ContentFileHandler();
+        warmCache = new ContentCache();
+        handler.getContent(file, null, warmCache);
+    }
+
+    @Benchmark
+    public String[] wholeFileCold() {
+        return handler.getContent(file, null, new ContentCache());
+    }
+
+    @Benchmark
+    public String[] wholeFileWarm() {
+        return handler.getContent(file, null, warmCache);
+    }
+
+    @Benchmark
+    public String[] lineRangeCold() {
+        return handler.getContent(file, range, new ContentCache());
+    }
+
+    @Benchmark
+    public String[] lineRangeWarm() {
+        return handler.getContent(file, range, warmCache);
+    }
+}
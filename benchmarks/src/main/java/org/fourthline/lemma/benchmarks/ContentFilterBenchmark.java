@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fourthline.lemma.benchmarks;
+
+import org.fourthline.lemma.anchor.CitationAnchor;
+import org.fourthline.lemma.reader.content.filter.CleanupFilter;
+import org.fourthline.lemma.reader.content.filter.FragmentFilter;
+import org.fourthline.lemma.reader.javacode.JavacodeReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fragment selection and label cleanup of Java source lines.
+ *
+ * @author Christian Bauer
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ContentFilterBenchmark {
+
+    @Param({"200", "2000", "20000"})
+    public int lines;
+
+    @Param({"1", "10", "100"})
+    public int fragments;
+
+    private String[] source;
+    private CitationAnchor allFragments;
+    private CitationAnchor someFragments;
+    private FragmentFilter fragmentFilter;
+    private CleanupFilter cleanupFilter;
+
+    @Setup
+    public void setup() {
+        source = BenchmarkSources.javaSource(lines, fragments);
+        allFragments = BenchmarkSources.createCitation("javacode://example.generated.Generated", null);
+        someFragments = BenchmarkSources.createCitation(
+                "javacode://example.generated.Generated",
+                BenchmarkSources.includeEveryOtherFragment(fragments) + "; exclude: FRAGMENT1; dots: true"
+        );
+        fragmentFilter = new FragmentFilter(JavacodeReader.PATTERN_FRAGMENT_LABEL);
+        cleanupFilter = new CleanupFilter(JavacodeReader.PATTERN_FRAGMENT_LABEL);
+    }
+
+    @Benchmark
+    public String[] fragmentFilterAll() {
+        return fragmentFilter.filter(source, allFragments);
+    }
+
+    @Benchmark
+    public String[] fragmentFilterIncludeExclude() {
+        return fragmentFilter.filter(source, someFragments);
+    }
+
+    @Benchmark
+    public String[] cleanupFilter() {
+        return cleanupFilter.filter(source, allFragments);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fourthline.lemma.benchmarks;
+
+import org.fourthline.lemma.anchor.CitationAnchor;
+import org.fourthline.lemma.reader.content.printer.JavaContentPrinter;
+import org.fourthline.lemma.reader.content.printer.XMLContentPrinter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.seamless.xhtml.XHTMLElement;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Printing of Java and XML source lines with callout handling, every fragment has one callout.
+ *
+ * @author Christian Bauer
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ContentPrinterBenchmark {
+
+    @Param({"200", "2000", "20000"})
+    public int lines;
+
+    @Param({"1", "10", "100"})
+    public int fragments;
+
+    private String[] javaSource;
+    private String[] xmlSource;
+    private CitationAnchor citation;
+    private JavaContentPrinter javaPrinter;
+    private XMLContentPrinter xmlPrinter;
+
+    // The printers append to the parent, each invocation gets an empty one
+    private XHTMLElement parent;
+
+    @Setup
+    public void setup() {
+        javaSource = BenchmarkSources.javaSource(lines, fragments);
+        xmlSource = BenchmarkSources.xmlSource(lines, fragments);
+        citation = BenchmarkSources.createCitation("file://Generated.java", null);
+        javaPrinter = new JavaContentPrinter();
+        xmlPrinter = new XMLContentPrinter();
+    }
+
+    @Setup(Level.Invocation)
+    public void createParent() {
+        parent = BenchmarkSources.createParentElement();
+    }
+
+    @Benchmark
+    public XHTMLElement javaCallouts() {
+        javaPrinter.print(javaSource, citation, parent, "prettyprint");
+        return parent;
+    }
+
+    @Benchmark
+    public XHTMLElement xmlCallouts() {
+        xmlPrinter.print(xmlSource, citation, parent, "prettyprint");
+        return parent;
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.benchmarks;
+
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+import org.seamless.util.io.IO;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.logging.Logger;
+
+/**
+ * Generates a synthetic source tree and a manual template citing it.
+ * <p>
+ * The source directory contains the packages <code>corpus.p0</code> ... <code>corpus.pN</code>,
+ * each with the given number of classes, an XML and a plaintext file. Classes and methods have
+ * Javadoc comments with <code>{@link}</code> tags to other classes, method bodies are demarcated
+ * with <code>DOC:</code> fragment labels and have callouts. The template has a table of contents,
+ * one chapter per package with nested sections, and cites Javadoc, Java code, XML and plaintext
+ * in turns until the given number of citations is reached. Every Javadoc class citation is
+ * followed by an <code>xref</code> to it.
+ * </p>
+ * <pre>
+ * corpus/src/corpus/p0/Class0.java
+ * corpus/src/corpus/p0/orders.xml
+ * corpus/src/corpus/p0/notes.txt
+ * corpus/manual.xhtml
+ * </pre>
+ *
+ * @author Christian Bauer
+ */
+public class CorpusGenerator {
+
+    final private static Logger log = Logger.getLogger(CorpusGenerator.class.getName());
+
+    final public static String BASE_PACKAGE = "corpus";
+    final public static String SOURCE_DIRECTORY = "src";
+    final public static String TEMPLATE_FILE = "manual.xhtml";
+    final public static String XML_FILE = "orders.xml";
+    final public static String TEXT_FILE = "notes.txt";
+
+    final protected Options options;
+    final protected Random random;
+
+    public CorpusGenerator(Options options) {
+        this.options = options;
+        this.random = new Random(options.seed);
+    }
+
+    public File getSourceDirectory() {
+        return new File(options.directory, SOURCE_DIRECTORY);
+    }
+
+    public File getTemplateFile() {
+        return new File(options.directory, TEMPLATE_FILE);
+    }
+
+    public void generate() throws IOException {
+        log.info("Generating corpus with " + options.packages + " packages, "
+                + (options.packages * options.classes) + " classes, "
+                + options.citations + " citations: " + options.directory.getAbsolutePath());
+
+        for (int p = 0; p < options.packages; p++) {
+            File packageDirectory = new File(getSourceDirectory(), BASE_PACKAGE + "/" + packageName(p));
+            packageDirectory.mkdirs();
+            for (int c = 0; c < options.classes; c++) {
+                IO.writeUTF8(new File(packageDirectory, className(c) + ".java"), generateClass(p, c));
+            }
+            IO.writeUTF8(new File(packageDirectory, XML_FILE), generateXML(p));
+            IO.writeUTF8(new File(packageDirectory, TEXT_FILE), generateText(p));
+        }
+        IO.writeUTF8(getTemplateFile(), generateTemplate());
+    }
+
+    protected String packageName(int p) {
+        return "p" + p;
+    }
+
+    protected String className(int c) {
+        return "Class" + c;
+    }
+
+    protected String qualifiedClassName(int p, int c) {
+        return BASE_PACKAGE + "." + packageName(p) + "." + className(c);
+    }
+
+    protected String methodName(int m) {
+        return "method" + m;
+    }
+
+    protected String generateClass(int p, int c) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(BASE_PACKAGE).append(".").append(packageName(p)).append(";\n\n");
+        sb.append("/**\n");
+        sb.append(" * Generated class ").append(c).append(" of package ").append(p).append(".\n");
+        sb.append(" * <p>\n");
+        sb.append(" * Works together with {@link ").append(randomClass()).append("}, and also with\n");
+        sb.append(" * {@link ").append(randomClass()).append("#").append(methodName(random.nextInt(options.methods)))
+                .append(" this method}.\n");
+        sb.append(" * </p>\n");
+        sb.append(" */\n");
+        sb.append("public class ").append(className(c)).append(" {\n\n");
+        for (int m = 0; m < options.methods; m++) {
+            sb.append("    /**\n");
+            sb.append("     * Computes value ").append(m).append(" of the <code>").append(className(c)).append("</code> class.\n");
+            sb.append("     * <p>\n");
+            sb.append("     * The result depends on {@link #").append(methodName((m + 1) % options.methods)).append("},\n");
+            sb.append("     * see {@link ").append(randomClass()).append("} for details.\n");
+            sb.append("     * </p>\n");
+            sb.append("     */\n");
+            sb.append("    public int ").append(methodName(m)).append("(int value, String name) {\n");
+            sb.append("        // DOC: FRAGMENT").append(m).append("\n");
+            sb.append("        /* DOC:CALLOUT\n");
+            sb.append("           Starts with the given <code>value</code>. */\n");
+            sb.append("        int result = value;\n");
+            for (int i = 0; i < options.lines; i++) {
+                sb.append("        result = result * 31 + name.length() + ").append(i).append(";\n");
+            }
+            sb.append("        // DOC: FRAGMENT").append(m).append("\n");
+            sb.append("        return result;\n");
+            sb.append("    }\n\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    protected String generateXML(int p) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        sb.append("<orders package=\"").append(p).append("\">\n");
+        for (int o = 0; o < options.methods; o++) {
+            sb.append("    <!-- DOC: ORDER").append(o).append(" -->\n");
+            sb.append("    <order id=\"").append(o).append("\">\n");
+            sb.append("        <!-- DOC:CALLOUT Line items of order ").append(o).append(". -->\n");
+            for (int i = 0; i < options.lines; i++) {
+                sb.append("        <lineitem product-id=\"").append(i).append("\" quantity=\"").append(i % 7 + 1).append("\"/>\n");
+            }
+            sb.append("    </order>\n");
+            sb.append("    <!-- DOC: ORDER").append(o).append(" -->\n");
+        }
+        sb.append("</orders>\n");
+        return sb.toString();
+    }
+
+    protected String generateText(int p) {
+        StringBuilder sb = new StringBuilder();
+        for (int n = 0; n < options.methods; n++) {
+            sb.append("DOC: NOTE").append(n).append("\n");
+            for (int i = 0; i < options.lines; i++) {
+                sb.append("Note ").append(n).append(" of package ").append(p).append(", line ").append(i).append(".\n");
+            }
+            sb.append("DOC: NOTE").append(n).append("\n");
+        }
+        return sb.toString();
+    }
+
+    protected String generateTemplate() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<html xmlns=\"http://www.w3.org/1999/xhtml\">\n");
+        sb.append("<head>\n    <title>Synthetic Manual</title>\n</head>\n");
+        sb.append("<body>\n");
+        sb.append("<a class=\"toc\"/>\n");
+
+        int citationsPerPackage = Math.max(1, (options.citations + options.packages - 1) / options.packages);
+        int citation = 0;
+        for (int p = 0; p < options.packages && citation < options.citations; p++) {
+            sb.append("<div class=\"chapter\" id=\"").append(packageName(p)).append("\">\n");
+            sb.append("    <div class=\"title\">Package ").append(p).append("</div>\n");
+            sb.append("    <a class=\"citation\" href=\"javadoc://").append(BASE_PACKAGE).append(".")
+                    .append(packageName(p)).append("\"/>\n");
+            int section = 0;
+            for (int i = 0; i < citationsPerPackage && citation < options.citations; i++, citation++) {
+                if (i % options.sectionCitations == 0) {
+                    if (i > 0) sb.append("    </div>\n");
+                    sb.append("    <div class=\"section\" id=\"").append(packageName(p)).append("-").append(section).append("\">\n");
+                    sb.append("        <div class=\"title\">Section ").append(p).append(".").append(section++).append("</div>\n");
+                }
+                sb.append("        ").append(generateCitation(p, citation)).append("\n");
+            }
+            if (section > 0) sb.append("    </div>\n");
+            sb.append("</div>\n");
+        }
+
+        sb.append("</body>\n</html>\n");
+        return sb.toString();
+    }
+
+    protected String generateCitation(int p, int citation) {
+        int c = random.nextInt(options.classes);
+        int m = random.nextInt(options.methods);
+        String className = qualifiedClassName(p, c);
+        String packagePath = BASE_PACKAGE + "/" + packageName(p) + "/";
+        switch (citation % 5) {
+            case 0:
+                return "<a class=\"citation\" href=\"javadoc://" + className + "\"/>"
+                        + "<p>See <a class=\"xref\" href=\"#javadoc." + className + "\">the class</a>.</p>";
+            case 1:
+                return "<a class=\"citation\" href=\"javadoc://" + className + "#" + methodName(m) + "(int, String)\"/>";
+            case 2:
+                return "<a class=\"citation\" href=\"javacode://" + className + "#" + methodName(m) + "(int, String)\""
+                        + " style=\"include: FRAGMENT" + m + "\"/>";
+            case 3:
+                return "<a class=\"citation\" href=\"file://" + packagePath + XML_FILE + "\""
+                        + " style=\"include: ORDER" + m + "\"/>";
+            default:
+                return "<a class=\"citation\" href=\"file://" + packagePath + TEXT_FILE + "\""
+                        + " style=\"include: NOTE" + m + "\"/>";
+        }
+    }
+
+    protected String randomClass() {
+        return qualifiedClassName(random.nextInt(options.packages), random.nextInt(options.classes));
+    }
+
+    public static void main(String[] args) throws Exception {
+        new CorpusGenerator(new Options(args)).generate();
+    }
+
+    public static class Options {
+
+        @Option(required = true, name = "-o", metaVar = "<directory>",
+                usage = "Output directory of the corpus.")
+        public File directory;
+
+        @Option(name = "-packages", metaVar = "<count>", usage = "Number of packages.")
+        public int packages = 10;
+
+        @Option(name = "-classes", metaVar = "<count>", usage = "Number of classes per package.")
+        public int classes = 10;
+
+        @Option(name = "-methods", metaVar = "<count>",
+                usage = "Number of methods per class, and of fragments in XML and plaintext files.")
+        public int methods = 5;
+
+        @Option(name = "-lines", metaVar = "<count>", usage = "Number of lines per method body or fragment.")
+        public int lines = 10;
+
+        @Option(name = "-citations", metaVar = "<count>", usage = "Number of citations in the template.")
+        public int citations = 100;
+
+        @Option(name = "-sectionCitations", metaVar = "<count>", usage = "Number of citations per section.")
+        public int sectionCitations = 5;
+
+        @Option(name = "-seed", metaVar = "<number>", usage = "Seed of the random cross-references.")
+        public long seed = 42;
+
+        public Options() {
+        }
+
+        public Options(String[] args) {
+            parse(args);
+        }
+
+        /**
+         * Parses the arguments into this instance, subclasses call it after their fields have been initialized.
+         */
+        protected void parse(String[] args) {
+            CmdLineParser cmdLineParser = new CmdLineParser(this);
+            try {
+                cmdLineParser.parseArgument(args);
+            } catch (CmdLineException e) {
+                System.err.println(e.getMessage());
+                System.err.println("USAGE: java -cp <JARFILE> " + getClass().getEnclosingClass().getName() + " [options]");
+                cmdLineParser.printUsage(System.err);
+                System.exit(1);
+            }
+
+            if (!prepare()) {
+                System.exit(1);
+            }
+        }
+
+        /**
+         * @return true if validation was successful.
+         */
+        public boolean prepare() {
+            if (packages < 1 || classes < 1 || methods < 1 || sectionCitations < 1) {
+                System.err.println("Numbers of packages, classes, methods, and citations per section must be positive");
+                return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.benchmarks;
+
+import org.fourthline.lemma.model.SourceModel;
+import org.fourthline.lemma.pipeline.javadoc.XHTMLTemplateJavadocPipeline;
+import org.kohsuke.args4j.Option;
+import org.seamless.xhtml.XHTML;
+import com.sun.management.GcInfo;
+
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the {@link XHTMLTemplateJavadocPipeline} end to end on a generated corpus.
+ * <p>
+ * Generates the corpus with {@link CorpusGenerator} if its template doesn't exist, then
+ * measures a cold start (building the source model and the first execution) and the average
+ * of several warm executions of the same pipeline. For both the elapsed time, the bytes
+ * allocated by all threads, and the peak heap usage are printed.
+ * </p>
+ * <p>
+ * For the scale of a large production manual, run in a fresh JVM with e.g.:
+ * </p>
+ * <pre>
+ * java -Xmx4g -cp benchmarks/target/benchmarks.jar org.fourthline.lemma.benchmarks.PipelineBenchmark \
+ *      -o target/corpus -packages 100 -classes 100 -citations 5000
+ * </pre>
+ *
+ * @author Christian Bauer
+ */
+public class PipelineBenchmark {
+
+    final private static Logger log = Logger.getLogger(PipelineBenchmark.class.getName());
+
+    final protected Options options;
+    final protected CorpusGenerator generator;
+
+    public PipelineBenchmark(Options options) {
+        this.options = options;
+        this.generator = new CorpusGenerator(options);
+    }
+
+    public void run() throws Exception {
+        if (options.regenerate || !generator.getTemplateFile().exists()) {
+            generator.generate();
+        } else {
+            log.info("Using existing corpus: " + options.directory.getAbsolutePath());
+        }
+
+        // The pipeline logs every citation on INFO, that would dominate the measurement
+        Logger.getLogger("org.fourthline.lemma").setLevel(Level.WARNING);
+
+        Measurement cold = new Measurement("cold");
+        cold.begin();
+        XHTMLTemplateJavadocPipeline pipeline = new XHTMLTemplateJavadocPipeline(
+                Arrays.asList(generator.getSourceDirectory()),
+                new ArrayList<File>(),
+                XHTMLTemplateJavadocPipeline.createSourceModel(
+                        options.sourceModel,
+                        Arrays.asList(generator.getSourceDirectory()),
+                        new ArrayList<String>(Arrays.asList(CorpusGenerator.BASE_PACKAGE)),
+                        null,
+                        options.modelShards
+                ),
+                false,
+                true
+        );
+        long modelNanos = System.nanoTime() - cold.startNanos;
+        XHTML result = pipeline.execute(generator.getTemplateFile());
+        cold.end();
+        System.out.println(cold);
+        System.out.println(String.format("  of which " + options.sourceModel + " model: %.1f ms", modelNanos / 1000000d));
+        System.out.println("  output elements: " + result.getW3CDocument().getElementsByTagName("*").getLength());
+
+        Measurement warm = new Measurement("warm");
+        for (int i = 0; i < options.warmups; i++) {
+            pipeline.execute(generator.getTemplateFile());
+        }
+        warm.begin();
+        for (int i = 0; i < options.iterations; i++) {
+            pipeline.execute(generator.getTemplateFile());
+        }
+        warm.end();
+        warm.divide(options.iterations);
+        System.out.println(warm);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new PipelineBenchmark(new Options(args)).run();
+    }
+
+    /**
+     * Elapsed time, bytes allocated by all threads, and peak heap usage between
+     * {@link #begin()} and {@link #end()}.
+     * <p>
+     * The pipeline allocates on several threads, e.g. when it builds the model in shards or parses
+     * the sources in parallel. A sampler thread reads the allocated bytes of all threads every
+     * {@link #SAMPLE_INTERVAL_MILLIS}, so threads which end during the measurement are included,
+     * without what they allocated after their last sample. The threads still alive are read again
+     * when the measurement ends.
+     * </p>
+     * <p>
+     * The peak heap is the highest total heap usage seen by the sampler, or reported by a garbage
+     * collection as the usage before it collected. The peaks of the individual memory pools are not
+     * added up, they are reached at different times.
+     * </p>
+     */
+    public static class Measurement {
+
+        final public static long SAMPLE_INTERVAL_MILLIS = 5;
+
+        final protected String name;
+        final protected Map<Long, Long> startAllocatedBytes = new HashMap<Long, Long>();
+        final protected Map<Long, Long> allocatedBytes = new HashMap<Long, Long>();
+        final protected Map<String, Long> collectionCounts = new HashMap<String, Long>();
+        protected boolean allocationSupported;
+        protected Thread sampler;
+        protected long startNanos;
+        protected double nanos;
+        protected double allocated = -1;
+        protected long peakHeap;
+
+        public Measurement(String name) {
+            this.name = name;
+        }
+
+        public void begin() {
+            System.gc();
+            synchronized (this) {
+                startAllocatedBytes.clear();
+                allocatedBytes.clear();
+                Map<Long, Long> threadAllocatedBytes = getAllocatedBytes();
+                allocationSupported = threadAllocatedBytes != null;
+                if (allocationSupported)
+                    startAllocatedBytes.putAll(threadAllocatedBytes);
+                collectionCounts.clear();
+                for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                    collectionCounts.put(collector.getName(), collector.getCollectionCount());
+                }
+                peakHeap = getHeapUsed();
+            }
+            sampler = new Thread(new Runnable() {
+                public void run() {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        sample();
+                        try {
+                            Thread.sleep(SAMPLE_INTERVAL_MILLIS);
+                        } catch (InterruptedException ex) {
+                            return;
+                        }
+                    }
+                }
+            }, "Measurement sampler");
+            sampler.setDaemon(true);
+            sampler.start();
+            startNanos = System.nanoTime();
+        }
+
+        public void end() throws InterruptedException {
+            nanos = System.nanoTime() - startNanos;
+            sampler.interrupt();
+            sampler.join();
+            sample();
+            synchronized (this) {
+                if (allocationSupported) {
+                    long total = 0;
+                    for (Map.Entry<Long, Long> entry : allocatedBytes.entrySet()) {
+                        // Threads started during the measurement have allocated all their bytes in it
+                        Long startBytes = startAllocatedBytes.get(entry.getKey());
+                        total += entry.getValue() - (startBytes != null ? startBytes : 0);
+                    }
+                    allocated = total;
+                }
+            }
+        }
+
+        /**
+         * Averages time and allocation over the given number of iterations, the peak heap is not averaged.
+         */
+        public void divide(int iterations) {
+            nanos = nanos / iterations;
+            if (allocated >= 0)
+                allocated = allocated / iterations;
+        }
+
+        /**
+         * Records the allocated bytes of all threads but the sampler, and the heap usage.
+         */
+        protected synchronized void sample() {
+            if (allocationSupported) {
+                Map<Long, Long> threadAllocatedBytes = getAllocatedBytes();
+                if (threadAllocatedBytes != null) {
+                    threadAllocatedBytes.remove(sampler.getId());
+                    allocatedBytes.putAll(threadAllocatedBytes);
+                }
+            }
+            peakHeap = Math.max(peakHeap, getHeapUsed());
+            peakHeap = Math.max(peakHeap, getHeapUsedBeforeCollections());
+        }
+
+        /**
+         * @return The allocated bytes of all live threads by thread identifier, or <code>null</code> if
+         *         the JVM doesn't support it.
+         */
+        protected Map<Long, Long> getAllocatedBytes() {
+            ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+            if (!(threadBean instanceof com.sun.management.ThreadMXBean))
+                return null;
+            com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+            if (!sunThreadBean.isThreadAllocatedMemorySupported() || !sunThreadBean.isThreadAllocatedMemoryEnabled())
+                return null;
+            long[] ids = threadBean.getAllThreadIds();
+            long[] bytes = sunThreadBean.getThreadAllocatedBytes(ids);
+            Map<Long, Long> result = new HashMap<Long, Long>();
+            for (int i = 0; i < ids.length; i++) {
+                // -1 if the thread ended after its identifier was read
+                if (bytes[i] >= 0)
+                    result.put(ids[i], bytes[i]);
+            }
+            return result;
+        }
+
+        protected long getHeapUsed() {
+            return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        }
+
+        /**
+         * @return The highest heap usage before the last collection of any collector which ran since
+         *         the previous call, or <code>0</code>.
+         */
+        protected long getHeapUsedBeforeCollections() {
+            Set<String> heapPools = new HashSet<String>();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP)
+                    heapPools.add(pool.getName());
+            }
+            long peak = 0;
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                long count = collector.getCollectionCount();
+                Long previousCount = collectionCounts.put(collector.getName(), count);
+                if (previousCount != null && previousCount == count)
+                    continue;
+                if (!(collector instanceof com.sun.management.GarbageCollectorMXBean))
+                    continue;
+                GcInfo gcInfo = ((com.sun.management.GarbageCollectorMXBean) collector).getLastGcInfo();
+                if (gcInfo == null)
+                    continue;
+                long used = 0;
+                for (Map.Entry<String, MemoryUsage> entry : gcInfo.getMemoryUsageBeforeGc().entrySet()) {
+                    if (heapPools.contains(entry.getKey()))
+                        used += entry.getValue().getUsed();
+                }
+                peak = Math.max(peak, used);
+            }
+            return peak;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%s: %.1f ms, allocated (all threads): %s, peak heap: %.1f MB",
+                    name,
+                    nanos / 1000000d,
+                    allocated >= 0 ? String.format("%.1f MB", allocated / 1024d / 1024d) : "n/a",
+                    peakHeap / 1024d / 1024d
+            );
+        }
+    }
+
+    public static class Options extends CorpusGenerator.Options {
+
+        @Option(name = "-warmups", metaVar = "<count>", usage = "Number of warm executions before measuring.")
+        public int warmups = 2;
+
+        @Option(name = "-iterations", metaVar = "<count>", usage = "Number of measured warm executions.")
+        public int iterations = 5;
+
+        @Option(name = "-regenerate", usage = "Generate the corpus even if it exists.")
+        public boolean regenerate = false;
+
+        @Option(name = "-model", metaVar = "JAVADOC|SOURCE", usage = "The backend of the source model.")
+        public SourceModel.Backend sourceModel = SourceModel.Backend.JAVADOC;
+
+        @Option(name = "-modelShards", metaVar = "<count>", usage = "Parallel Javadoc runs building the model.")
+        public int modelShards = 1;
+
+        public Options() {
+        }
+
+        public Options(String[] args) {
+            parse(args);
+        }
+
+        @Override
+        public boolean prepare() {
+            if (!super.prepare()) return false;
+            if (warmups < 0 || iterations < 1 || modelShards < 1) {
+                System.err.println("Number of warmups can't be negative, iterations and model shards must be positive");
+                return false;
+            }
+            return true;
+        }
+    }
+}
@@ -37,5 +37,6 @@ public interface Constants {
     public static final String TYPE_CONTENT = "content";
     public static final String TYPE_CALLOUT = "callout";
     public static final String TYPE_UNRESOLVED = "unresolved";
+    public static final String TYPE_STUB = "stub";
 
 }
@@ -17,10 +17,9 @@
 
 package org.fourthline.lemma.anchor;
 
-import com.sun.javadoc.ClassDoc;
-import com.sun.javadoc.MethodDoc;
-import com.sun.javadoc.PackageDoc;
-import com.sun.javadoc.SeeTag;
+import org.fourthline.lemma.model.ModelDoc;
+import org.fourthline.lemma.model.ModelTag;
+import org.fourthline.lemma.reader.content.LineRange;
 
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -40,13 +39,18 @@ public class AnchorAddress {
 
     protected static final String PATTERN_SCHEME =  "([a-zA-Z]+?)";
 
-    protected static final String PATTERN_PATH = "([ \\p{Alnum}\\./_-]+?)";
+    protected static final String PATTERN_PATH = "([ \\p{Alnum}\\./_!-]+?)";
 
-    protected static final String PATTERN_FRAGMENT = "([\\p{Alnum}]+?(?:\\([\\p{Alnum},\\.\\[\\]<>\\s]*?\\))??)";
+    protected static final String PATTERN_LINE_RANGE_FRAGMENT = "L[0-9]+(?:-L?[0-9]+)?";
+
+    protected static final String PATTERN_FRAGMENT =
+            "(" + PATTERN_LINE_RANGE_FRAGMENT + "|[\\p{Alnum}]+?(?:\\([\\p{Alnum},\\.\\[\\]<>\\s]*?\\))??)";
 
     public static final Pattern PATTERN =
             Pattern.compile("^"+PATTERN_SCHEME+Scheme.SEPARATOR+PATTERN_PATH+"(?:#"+PATTERN_FRAGMENT+")??$");
 
+    public static final Pattern PATTERN_LINE_RANGE = Pattern.compile("^L([0-9]+)(?:-L?([0-9]+))?$");
+
     public static final String PATH_THIS = "this";
 
     final private Scheme scheme;
@@ -59,7 +63,8 @@ public class AnchorAddress {
         }
         this.scheme = scheme;
         this.path = path;
-        if (fragment != null && !fragment.endsWith(")")) fragment = fragment + "()"; // normalize
+        if (fragment != null && !fragment.endsWith(")") && !isLineRangeFragment(scheme, fragment))
+            fragment = fragment + "()"; // normalize
         this.fragment = fragment;
     }
 
@@ -75,6 +80,28 @@ public class AnchorAddress {
         return fragment;
     }
 
+    /**
+     * @return The lines addressed with a <code>#L12-L34</code> (or <code>#L12</code>) fragment of a
+     *         file address, or <code>null</code> if this address has no line range.
+     */
+    public LineRange getLineRange() {
+        if (!isLineRangeFragment(scheme, fragment)) return null;
+        Matcher m = PATTERN_LINE_RANGE.matcher(fragment);
+        m.matches();
+        int begin = Integer.valueOf(m.group(1));
+        int end = m.group(2) != null ? Integer.valueOf(m.group(2)) : begin;
+        if (begin < 1 || end < begin) {
+            throw new IllegalArgumentException("Invalid line range in address: " + this);
+        }
+        return new LineRange(begin, end);
+    }
+
+    protected static boolean isLineRangeFragment(Scheme scheme, String fragment) {
+        return fragment != null
+                && (Scheme.FILE.equals(scheme) || Scheme.JAR.equals(scheme))
+                && PATTERN_LINE_RANGE.matcher(fragment).matches();
+    }
+
     public static AnchorAddress valueOf(String string) {
         if (string == null || string.length() == 0) return null;
 
@@ -91,16 +118,16 @@ public class AnchorAddress {
         return new AnchorAddress(Scheme.valueOf(m.group(1).toUpperCase()), m.group(2), m.group(3));
     }
 
-    public static AnchorAddress valueOf(Scheme scheme, SeeTag tag) {
+    public static AnchorAddress valueOf(Scheme scheme, ModelTag tag) {
         String reference = null;
-        if (tag.referencedMember() != null && tag.referencedMember().isMethod()) {
-            reference = tag.referencedClassName() + "#" +
-                    tag.referencedMember().name() +
-                    ((MethodDoc) tag.referencedMember()).flatSignature();
-        } else if (tag.referencedClass() != null) {
-            reference = tag.referencedClassName();
-        } else if (tag.referencedPackage() != null) {
-            reference = tag.referencedPackage().name();
+        if (tag.getReferencedClass() != null && tag.getReferencedMethodSignature() != null) {
+            reference = tag.getReferencedClass() + "#" +
+                    tag.getReferencedMemberName() +
+                    tag.getReferencedMethodSignature();
+        } else if (tag.getReferencedClass() != null) {
+            reference = tag.getReferencedClass();
+        } else if (tag.getReferencedPackage() != null) {
+            reference = tag.getReferencedPackage();
         }
 
         return reference != null
@@ -108,28 +135,27 @@ public class AnchorAddress {
                 : null;
     }
 
-    public static AnchorAddress valueOf(Scheme scheme, PackageDoc packageDoc) {
-        return new AnchorAddress(
-                scheme,
-                packageDoc.name(),
-                null
-        );
-    }
-
-    public static AnchorAddress valueOf(Scheme scheme, ClassDoc classDoc, String fragment) {
-        return new AnchorAddress(
-                scheme,
-                classDoc.qualifiedTypeName(),
-                fragment
-        );
-    }
-
-    public static AnchorAddress valueOf(Scheme scheme, MethodDoc methodDoc) {
-        return new AnchorAddress(
-                scheme,
-                methodDoc.containingClass().qualifiedTypeName(),
-                methodDoc.name() + methodDoc.flatSignature()
-        );
+    public static AnchorAddress valueOf(Scheme scheme, ModelDoc doc, String fragment) {
+        switch (doc.getKind()) {
+            case PACKAGE:
+                return new AnchorAddress(
+                        scheme,
+                        doc.getName(),
+                        null
+                );
+            case CLASS:
+                return new AnchorAddress(
+                        scheme,
+                        doc.getQualifiedName(),
+                        fragment
+                );
+            default:
+                return new AnchorAddress(
+                        scheme,
+                        doc.getContainingClass().getQualifiedName(),
+                        doc.getName() + doc.getFlatSignature()
+                );
+        }
     }
 
     /**
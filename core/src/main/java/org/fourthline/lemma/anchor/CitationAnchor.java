@@ -47,7 +47,11 @@ public class CitationAnchor extends Anchor {
         FILEPATH("filepath"),
         READER("reader"),
         PRETTY("pretty"),
-        CALLOUTS("callouts");
+        CALLOUTS("callouts"),
+        SELECT("select"),
+        ROWS("rows"),
+        COLUMNS("columns"),
+        HEADER("header");
 
 
         private String key;
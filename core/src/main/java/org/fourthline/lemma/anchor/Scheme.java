@@ -26,7 +26,8 @@ public enum Scheme {
 
     JAVADOC,
     JAVACODE,
-    FILE;
+    FILE,
+    JAR;
 
     public static final String SEPARATOR = "://";
 
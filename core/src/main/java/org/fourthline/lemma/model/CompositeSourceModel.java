@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One source model of several shards, each documenting a part of the packages.
+ * <p>
+ * Lookups first ask the shard which documents the package of the name, then all other shards.
+ * The shards must have been built with access to the sources of all packages, so their
+ * links to classes of other shards are resolved.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class CompositeSourceModel implements SourceModel {
+
+    final private List<SourceModel> shards;
+    final private List<List<String>> shardPackageNames;
+
+    /**
+     * @param shards            The models, each built for the package names at the same index.
+     * @param shardPackageNames The package names of each shard, including their sub-packages.
+     */
+    public CompositeSourceModel(List<SourceModel> shards, List<List<String>> shardPackageNames) {
+        if (shards.size() != shardPackageNames.size())
+            throw new IllegalArgumentException("Expected package names for each of the " + shards.size() + " shards");
+        this.shards = shards;
+        this.shardPackageNames = shardPackageNames;
+    }
+
+    public List<SourceModel> getShards() {
+        return shards;
+    }
+
+    public ModelDoc findPackage(String name) {
+        for (SourceModel shard : getShardsFor(name)) {
+            ModelDoc doc = shard.findPackage(name);
+            if (doc != null) return doc;
+        }
+        return null;
+    }
+
+    public ModelDoc findClass(String qualifiedName) {
+        for (SourceModel shard : getShardsFor(qualifiedName)) {
+            ModelDoc doc = shard.findClass(qualifiedName);
+            if (doc != null) return doc;
+        }
+        return null;
+    }
+
+    public List<ModelDoc> getClasses() {
+        List<ModelDoc> classes = new ArrayList<ModelDoc>();
+        for (SourceModel shard : shards) {
+            classes.addAll(shard.getClasses());
+        }
+        return classes;
+    }
+
+    /**
+     * @return All shards, the shard documenting the longest package prefix of the name first.
+     */
+    protected List<SourceModel> getShardsFor(String name) {
+        int owner = -1;
+        int ownerPrefixLength = -1;
+        for (int i = 0; i < shardPackageNames.size(); i++) {
+            for (String packageName : shardPackageNames.get(i)) {
+                if ((name.equals(packageName) || name.startsWith(packageName + "."))
+                        && packageName.length() > ownerPrefixLength) {
+                    owner = i;
+                    ownerPrefixLength = packageName.length();
+                }
+            }
+        }
+        if (owner == -1) return shards;
+        List<SourceModel> ordered = new ArrayList<SourceModel>(shards.size());
+        ordered.add(shards.get(owner));
+        for (int i = 0; i < shards.size(); i++) {
+            if (i != owner) ordered.add(shards.get(i));
+        }
+        return ordered;
+    }
+}
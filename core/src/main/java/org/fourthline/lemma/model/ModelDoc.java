@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.model;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * A documented package, class, or method of a {@link SourceModel}.
+ *
+ * @author Christian Bauer
+ */
+public interface ModelDoc {
+
+    public enum Kind {
+        PACKAGE, CLASS, METHOD
+    }
+
+    public Kind getKind();
+
+    /**
+     * @return The package name, the class name including its enclosing classes (<code>Outer.Inner</code>),
+     *         or the method name.
+     */
+    public String getName();
+
+    /**
+     * @return The innermost identifier of a class, otherwise the same as {@link #getName()}.
+     */
+    public String getSimpleName();
+
+    /**
+     * @return The package name, the qualified class name, or the qualified class name and method name.
+     */
+    public String getQualifiedName();
+
+    /**
+     * @return The class declaring this method or nested class, <code>null</code> for packages and top-level classes.
+     */
+    public ModelDoc getContainingClass();
+
+    /**
+     * @return The source file, for a package its <code>package.html</code> or <code>package-info.java</code>.
+     */
+    public File getFile();
+
+    /**
+     * @return The line of the declaration in the source file, or <code>0</code> if unknown.
+     */
+    public int getLine();
+
+    /**
+     * @return The methods of a class, an empty list for packages and methods.
+     */
+    public List<ModelDoc> getMethods();
+
+    /**
+     * @return The parameter types of a method, e.g. <code>(java.lang.String, int)</code>, <code>null</code> otherwise.
+     */
+    public String getSignature();
+
+    /**
+     * @return The unqualified parameter types of a method, e.g. <code>(String, int)</code>, <code>null</code> otherwise.
+     */
+    public String getFlatSignature();
+
+    /**
+     * @return The simple names of the parameter types of a method including their array dimension,
+     *         e.g. <code>String[]</code>, an empty list otherwise.
+     */
+    public List<String> getParameterTypes();
+
+    /**
+     * @return The tags of the first sentence of the documentation comment.
+     */
+    public List<ModelTag> getFirstSentenceTags();
+
+    /**
+     * @return The tags of the main description of the documentation comment, without block tags.
+     */
+    public List<ModelTag> getInlineTags();
+
+}
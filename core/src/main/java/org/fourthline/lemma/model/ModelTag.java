@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.model;
+
+/**
+ * A part of a documentation comment: text, an inline link, or inline code.
+ * <p>
+ * The kinds are the same as the kinds of Javadoc tool tags. Inline <code>@link</code> and
+ * <code>@linkplain</code> tags are of kind {@link #KIND_SEE}, their reference is resolved
+ * to a package, class, or method of the model, or it's unresolved.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class ModelTag {
+
+    final public static String KIND_TEXT = "Text";
+    final public static String KIND_SEE = "@see";
+    final public static String KIND_CODE = "@code";
+    final public static String KIND_LITERAL = "@literal";
+
+    final private String kind;
+    final private String text;
+    final private String position;
+
+    private String label;
+    private String referencedPackage;
+    private String referencedClass;
+    private String referencedMemberName;
+    private String referencedMethodSignature;
+
+    public ModelTag(String kind, String text, String position) {
+        this.kind = kind;
+        this.text = text;
+        this.position = position;
+    }
+
+    /**
+     * Creates a link tag.
+     *
+     * @param referencedPackage         The resolved package name, or <code>null</code>.
+     * @param referencedClass           The resolved qualified class name, or <code>null</code>.
+     * @param referencedMemberName      The name of the referenced member, or <code>null</code>.
+     * @param referencedMethodSignature The flat signature if the member is a method, or <code>null</code>.
+     */
+    public ModelTag(String text, String position, String label,
+                    String referencedPackage, String referencedClass,
+                    String referencedMemberName, String referencedMethodSignature) {
+        this(KIND_SEE, text, position);
+        this.label = label;
+        this.referencedPackage = referencedPackage;
+        this.referencedClass = referencedClass;
+        this.referencedMemberName = referencedMemberName;
+        this.referencedMethodSignature = referencedMethodSignature;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return The source file and line of the comment, for error messages.
+     */
+    public String getPosition() {
+        return position;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getReferencedPackage() {
+        return referencedPackage;
+    }
+
+    public String getReferencedClass() {
+        return referencedClass;
+    }
+
+    public String getReferencedMemberName() {
+        return referencedMemberName;
+    }
+
+    public String getReferencedMethodSignature() {
+        return referencedMethodSignature;
+    }
+
+    @Override
+    public String toString() {
+        return kind + ":" + text;
+    }
+}
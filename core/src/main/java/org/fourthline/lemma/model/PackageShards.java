@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits the documented packages into shards of similar size, built independently.
+ * <p>
+ * A package name always includes its sub-packages, so a package is only split into its
+ * sub-packages if its directories don't contain any source files. The resulting packages are
+ * distributed over the shards by their number of source files, largest first.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class PackageShards {
+
+    /**
+     * @param shards The maximum number of shards.
+     * @return The package names of each shard, fewer shards if there are not enough packages.
+     */
+    public static List<List<String>> split(List<File> sourceDirectories, List<String> packageNames, int shards) {
+        Map<String, Integer> weights = new LinkedHashMap<String, Integer>();
+        for (String packageName : packageNames) {
+            if (!isSubPackage(packageName, packageNames))
+                expand(sourceDirectories, packageName, shards, weights);
+        }
+
+        List<String> sorted = new ArrayList<String>(weights.keySet());
+        final Map<String, Integer> sortWeights = weights;
+        Collections.sort(sorted, new Comparator<String>() {
+            public int compare(String a, String b) {
+                return sortWeights.get(b).compareTo(sortWeights.get(a));
+            }
+        });
+
+        int shardCount = Math.max(1, Math.min(shards, sorted.size()));
+        List<List<String>> result = new ArrayList<List<String>>(shardCount);
+        int[] shardWeights = new int[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            result.add(new ArrayList<String>());
+        }
+        for (String packageName : sorted) {
+            int lightest = 0;
+            for (int i = 1; i < shardCount; i++) {
+                if (shardWeights[i] < shardWeights[lightest]) lightest = i;
+            }
+            result.get(lightest).add(packageName);
+            shardWeights[lightest] += weights.get(packageName);
+        }
+        return result;
+    }
+
+    protected static void expand(List<File> sourceDirectories, String packageName, int shards,
+                                 Map<String, Integer> weights) {
+        List<String> subPackages = new ArrayList<String>();
+        boolean hasSourceFiles = false;
+        for (File sourceDirectory : sourceDirectories) {
+            File[] files = new File(sourceDirectory, packageName.replace('.', File.separatorChar)).listFiles();
+            if (files == null) continue;
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    // Skip e.g. doc-files directories
+                    if (isIdentifier(file.getName()) && !subPackages.contains(file.getName()))
+                        subPackages.add(file.getName());
+                } else if (file.getName().endsWith(".java")) {
+                    hasSourceFiles = true;
+                }
+            }
+        }
+
+        if (hasSourceFiles || subPackages.isEmpty() || shards < 2) {
+            int count = 0;
+            for (File sourceDirectory : sourceDirectories) {
+                count += countSourceFiles(new File(sourceDirectory, packageName.replace('.', File.separatorChar)));
+            }
+            if (!weights.containsKey(packageName)) weights.put(packageName, count);
+        } else {
+            for (String subPackage : subPackages) {
+                expand(sourceDirectories, packageName + "." + subPackage, shards, weights);
+            }
+        }
+    }
+
+    protected static boolean isSubPackage(String packageName, List<String> packageNames) {
+        for (String other : packageNames) {
+            if (packageName.startsWith(other + ".")) return true;
+        }
+        return false;
+    }
+
+    protected static boolean isIdentifier(String name) {
+        if (name.length() == 0 || !Character.isJavaIdentifierStart(name.charAt(0))) return false;
+        for (char c : name.toCharArray()) {
+            if (!Character.isJavaIdentifierPart(c)) return false;
+        }
+        return true;
+    }
+
+    protected static int countSourceFiles(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) return 0;
+        int count = 0;
+        for (File file : files) {
+            if (file.isDirectory()) {
+                count += countSourceFiles(file);
+            } else if (file.getName().endsWith(".java")) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
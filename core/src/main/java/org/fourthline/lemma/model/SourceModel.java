@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.model;
+
+import java.util.List;
+
+/**
+ * The documented packages, classes, and methods of the source directories.
+ * <p>
+ * Readers find the target of <code>javadoc://</code> and <code>javacode://</code> citations
+ * in this model. It is either built by the Javadoc tool, see
+ * {@link org.fourthline.lemma.model.javadoc.JavadocSourceModel}, or parsed directly from
+ * the source files, see {@link org.fourthline.lemma.model.source.ParsedSourceModel}.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public interface SourceModel {
+
+    /**
+     * The implementations of this interface, selected with the <code>-model</code> option.
+     */
+    public enum Backend {
+        JAVADOC, SOURCE
+    }
+
+    /**
+     * Builds a source model, again if a released model is needed again.
+     */
+    public interface Factory {
+
+        public SourceModel createSourceModel();
+
+    }
+
+    /**
+     * @return The package, or <code>null</code> if it is not in the model.
+     */
+    public ModelDoc findPackage(String name);
+
+    /**
+     * @param qualifiedName The qualified name, nested classes are separated with a dot, e.g. <code>foo.Outer.Inner</code>.
+     * @return The class, or <code>null</code> if it is not in the model.
+     */
+    public ModelDoc findClass(String qualifiedName);
+
+    /**
+     * @return All classes of the model, including nested classes.
+     */
+    public List<ModelDoc> getClasses();
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.model.javadoc;
+
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.Doc;
+import com.sun.javadoc.MethodDoc;
+import com.sun.javadoc.PackageDoc;
+import com.sun.javadoc.Parameter;
+import com.sun.javadoc.SeeTag;
+import com.sun.javadoc.Tag;
+import org.fourthline.lemma.model.ModelDoc;
+import org.fourthline.lemma.model.ModelTag;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Adapts a package, class, or method <code>Doc</code> of the Javadoc tool.
+ *
+ * @author Christian Bauer
+ */
+public class JavadocModelDoc implements ModelDoc {
+
+    final private Doc doc;
+
+    public JavadocModelDoc(Doc doc) {
+        this.doc = doc;
+    }
+
+    public Doc getDoc() {
+        return doc;
+    }
+
+    public Kind getKind() {
+        if (doc instanceof PackageDoc) return Kind.PACKAGE;
+        if (doc instanceof ClassDoc) return Kind.CLASS;
+        if (doc instanceof MethodDoc) return Kind.METHOD;
+        throw new IllegalStateException("Unsupported doc type: " + doc);
+    }
+
+    public String getName() {
+        return doc.name();
+    }
+
+    public String getSimpleName() {
+        return doc instanceof ClassDoc ? ((ClassDoc) doc).simpleTypeName() : doc.name();
+    }
+
+    public String getQualifiedName() {
+        if (doc instanceof ClassDoc) return ((ClassDoc) doc).qualifiedTypeName();
+        if (doc instanceof MethodDoc) return ((MethodDoc) doc).qualifiedName();
+        return doc.name();
+    }
+
+    public ModelDoc getContainingClass() {
+        ClassDoc containingClass = null;
+        if (doc instanceof ClassDoc) containingClass = ((ClassDoc) doc).containingClass();
+        if (doc instanceof MethodDoc) containingClass = ((MethodDoc) doc).containingClass();
+        return containingClass != null ? new JavadocModelDoc(containingClass) : null;
+    }
+
+    public File getFile() {
+        return doc.position() != null ? doc.position().file() : null;
+    }
+
+    public int getLine() {
+        return doc.position() != null ? doc.position().line() : 0;
+    }
+
+    public List<ModelDoc> getMethods() {
+        if (!(doc instanceof ClassDoc)) return Collections.emptyList();
+        List<ModelDoc> methods = new ArrayList<ModelDoc>();
+        for (MethodDoc methodDoc : ((ClassDoc) doc).methods()) {
+            methods.add(new JavadocModelDoc(methodDoc));
+        }
+        return methods;
+    }
+
+    public String getSignature() {
+        return doc instanceof MethodDoc ? ((MethodDoc) doc).signature() : null;
+    }
+
+    public String getFlatSignature() {
+        return doc instanceof MethodDoc ? ((MethodDoc) doc).flatSignature() : null;
+    }
+
+    public List<String> getParameterTypes() {
+        if (!(doc instanceof MethodDoc)) return Collections.emptyList();
+        List<String> types = new ArrayList<String>();
+        for (Parameter parameter : ((MethodDoc) doc).parameters()) {
+            types.add(parameter.type().simpleTypeName() + parameter.type().dimension());
+        }
+        return types;
+    }
+
+    public List<ModelTag> getFirstSentenceTags() {
+        return toModelTags(doc.firstSentenceTags());
+    }
+
+    public List<ModelTag> getInlineTags() {
+        return toModelTags(doc.inlineTags());
+    }
+
+    protected List<ModelTag> toModelTags(Tag[] tags) {
+        List<ModelTag> modelTags = new ArrayList<ModelTag>(tags.length);
+        for (Tag tag : tags) {
+            String position = tag.position() != null ? tag.position().toString() : null;
+            if (tag instanceof SeeTag) {
+                SeeTag seeTag = (SeeTag) tag;
+                String memberName = null;
+                String methodSignature = null;
+                if (seeTag.referencedMember() != null) {
+                    memberName = seeTag.referencedMember().name();
+                    if (seeTag.referencedMember().isMethod())
+                        methodSignature = ((MethodDoc) seeTag.referencedMember()).flatSignature();
+                }
+                modelTags.add(new ModelTag(
+                        tag.text(),
+                        position,
+                        seeTag.label(),
+                        seeTag.referencedPackage() != null ? seeTag.referencedPackage().name() : null,
+                        seeTag.referencedClass() != null ? seeTag.referencedClassName() : null,
+                        memberName,
+                        methodSignature
+                ));
+            } else {
+                modelTags.add(new ModelTag(tag.kind(), tag.text(), position));
+            }
+        }
+        return modelTags;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof JavadocModelDoc && doc.equals(((JavadocModelDoc) o).doc);
+    }
+
+    @Override
+    public int hashCode() {
+        return doc.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return getKind() + " " + getQualifiedName();
+    }
+}
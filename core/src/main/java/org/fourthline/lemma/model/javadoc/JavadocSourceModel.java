@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.model.javadoc;
+
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.PackageDoc;
+import com.sun.javadoc.RootDoc;
+import org.fourthline.lemma.model.ModelDoc;
+import org.fourthline.lemma.model.SourceModel;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A source model built by the Javadoc tool.
+ *
+ * @author Christian Bauer
+ */
+public class JavadocSourceModel implements SourceModel {
+
+    final private RootDoc rootDoc;
+
+    public JavadocSourceModel(RootDoc rootDoc) {
+        this.rootDoc = rootDoc;
+    }
+
+    public RootDoc getRootDoc() {
+        return rootDoc;
+    }
+
+    public ModelDoc findPackage(String name) {
+        PackageDoc packageDoc = rootDoc.packageNamed(name);
+        return packageDoc != null ? new JavadocModelDoc(packageDoc) : null;
+    }
+
+    public ModelDoc findClass(String qualifiedName) {
+        ClassDoc classDoc = rootDoc.classNamed(qualifiedName);
+        return classDoc != null ? new JavadocModelDoc(classDoc) : null;
+    }
+
+    public List<ModelDoc> getClasses() {
+        List<ModelDoc> classes = new ArrayList<ModelDoc>();
+        for (ClassDoc classDoc : rootDoc.classes()) {
+            classes.add(new JavadocModelDoc(classDoc));
+        }
+        return classes;
+    }
+}
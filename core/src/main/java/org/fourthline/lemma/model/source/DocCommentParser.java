@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.model.source;
+
+import org.fourthline.lemma.model.ModelTag;
+
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits a documentation comment into text, link, and code tags like the Javadoc tool.
+ * <p>
+ * Leading whitespace and asterisks of each line are removed, the main description ends
+ * with the first block tag (a line starting with <code>@</code>). The first sentence ends
+ * at a sentence boundary of the <code>en_US</code> locale, or before the first HTML block
+ * element, whichever comes first.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class DocCommentParser {
+
+    final public static Pattern PATTERN_HTML_BLOCK =
+            Pattern.compile("<(p|/p|pre|h[1-6]|hr|table|ul|ol|dl|div|blockquote)(\\s|>|/)", Pattern.CASE_INSENSITIVE);
+
+    final public static Pattern PATTERN_BLOCK_TAG = Pattern.compile("(?m)^\\s*@\\w");
+
+    /**
+     * Resolves the reference of a link tag.
+     */
+    public interface LinkResolver {
+
+        /**
+         * @param text     The text of the tag, the reference and the optional label.
+         * @param position The source position, for error messages.
+         * @return The resolved, or unresolved, link tag.
+         */
+        public ModelTag resolve(String text, String reference, String label, String position);
+    }
+
+    /**
+     * @param comment The raw comment, with or without the <code>/**</code> and <code>*&#47;</code> delimiters.
+     * @return The main description, without the leading whitespace and asterisks of each line and without block tags.
+     */
+    public String getMainDescription(String comment) {
+        if (comment == null) return "";
+        String content = comment;
+        if (content.startsWith("/**")) content = content.substring(3);
+        if (content.endsWith("*/")) content = content.substring(0, content.length() - 2);
+
+        StringBuilder sb = new StringBuilder();
+        String[] lines = content.split("\r\n|\r|\n", -1);
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i];
+            int pos = 0;
+            while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) pos++;
+            while (pos < line.length() && line.charAt(pos) == '*') pos++;
+            if (i > 0) sb.append("\n");
+            sb.append(line.substring(pos));
+        }
+
+        String text = sb.toString();
+        Matcher blockTag = PATTERN_BLOCK_TAG.matcher(text);
+        if (blockTag.find())
+            text = text.substring(0, blockTag.start());
+        return text.trim();
+    }
+
+    /**
+     * @return The text, link, code, and other inline tags of the main description.
+     */
+    public List<ModelTag> getInlineTags(String comment, LinkResolver resolver, String position) {
+        String text = getMainDescription(comment);
+        List<ModelTag> tags = new ArrayList<ModelTag>();
+        int textStart = 0;
+        int pos = 0;
+        while ((pos = text.indexOf("{@", pos)) != -1) {
+            int nameEnd = pos + 2;
+            while (nameEnd < text.length()
+                    && !Character.isWhitespace(text.charAt(nameEnd)) && text.charAt(nameEnd) != '}') nameEnd++;
+            int tagEnd = findClosingBrace(text, nameEnd);
+            if (tagEnd == -1) break; // Unterminated tag is text
+
+            if (pos > textStart)
+                tags.add(new ModelTag(ModelTag.KIND_TEXT, text.substring(textStart, pos), position));
+
+            String name = text.substring(pos + 2, nameEnd);
+            int tagTextStart = nameEnd;
+            while (tagTextStart < tagEnd && Character.isWhitespace(text.charAt(tagTextStart))) tagTextStart++;
+            String tagText = text.substring(tagTextStart, tagEnd);
+
+            if (name.equals("link") || name.equals("linkplain")) {
+                tags.add(createLinkTag(tagText, resolver, position));
+            } else {
+                tags.add(new ModelTag("@" + name, tagText, position));
+            }
+
+            pos = textStart = tagEnd + 1;
+        }
+        if (textStart < text.length())
+            tags.add(new ModelTag(ModelTag.KIND_TEXT, text.substring(textStart), position));
+        return tags;
+    }
+
+    /**
+     * @return The tags up to the end of the first sentence, the last text tag is cut at the end of the sentence.
+     */
+    public List<ModelTag> getFirstSentenceTags(List<ModelTag> inlineTags) {
+        List<ModelTag> tags = new ArrayList<ModelTag>();
+        for (ModelTag tag : inlineTags) {
+            if (!tag.getKind().equals(ModelTag.KIND_TEXT)) {
+                tags.add(tag);
+                continue;
+            }
+            int end = getFirstSentenceEnd(tag.getText());
+            if (end == -1) {
+                tags.add(tag);
+                continue;
+            }
+            String sentence = rtrim(tag.getText().substring(0, end));
+            if (sentence.length() > 0)
+                tags.add(new ModelTag(ModelTag.KIND_TEXT, sentence, tag.getPosition()));
+            return tags;
+        }
+        return tags;
+    }
+
+    /**
+     * @return The index after the first sentence, or <code>-1</code> if the sentence doesn't end in this text.
+     */
+    protected int getFirstSentenceEnd(String text) {
+        int end = -1;
+
+        Matcher htmlBlock = PATTERN_HTML_BLOCK.matcher(text);
+        if (htmlBlock.find())
+            end = htmlBlock.start();
+
+        BreakIterator sentences = BreakIterator.getSentenceInstance(Locale.US);
+        sentences.setText(text.replace('\n', ' '));
+        sentences.first();
+        int boundary = sentences.next();
+        if (boundary != BreakIterator.DONE
+                && (boundary < text.length() || rtrim(text).endsWith("."))
+                && (end == -1 || boundary < end)) {
+            end = boundary;
+        }
+        return end;
+    }
+
+    protected ModelTag createLinkTag(String text, LinkResolver resolver, String position) {
+        // The reference ends with the first whitespace outside of the parameter list
+        int depth = 0;
+        int referenceEnd = 0;
+        while (referenceEnd < text.length()) {
+            char c = text.charAt(referenceEnd);
+            if (c == '(') depth++;
+            if (c == ')') depth--;
+            if (Character.isWhitespace(c) && depth <= 0) break;
+            referenceEnd++;
+        }
+        String reference = text.substring(0, referenceEnd);
+        String label = text.substring(referenceEnd).trim();
+        return resolver.resolve(text, reference, label, position);
+    }
+
+    protected int findClosingBrace(String text, int start) {
+        int depth = 1;
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '{') depth++;
+            if (c == '}' && --depth == 0) return i;
+        }
+        return -1;
+    }
+
+    protected String rtrim(String s) {
+        int end = s.length();
+        while (end > 0 && Character.isWhitespace(s.charAt(end - 1))) end--;
+        return s.substring(0, end);
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.model.source;
+
+import org.fourthline.lemma.model.ModelDoc;
+import org.fourthline.lemma.model.ModelTag;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A package, class, or method parsed from a source file.
+ * <p>
+ * Only declarations and the raw documentation comment are kept, the comment is split into
+ * tags, and its links are resolved, when the tags are first accessed.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class ParsedDoc implements ModelDoc {
+
+    final private ParsedSourceModel model;
+    final private Kind kind;
+    final private String name;
+    final private String simpleName;
+    final private String qualifiedName;
+    final private ParsedDoc containingClass;
+    final private ParsedSourceModel.Imports imports;
+    final private File file;
+    final private int line;
+    final private String comment;
+    final private List<ModelDoc> methods = new ArrayList<ModelDoc>();
+    final private List<String> declaredParameterTypes;
+    final private boolean varArgs;
+
+    private List<ModelTag> inlineTags;
+    private List<ModelTag> firstSentenceTags;
+
+    public ParsedDoc(ParsedSourceModel model, Kind kind,
+                     String name, String simpleName, String qualifiedName,
+                     ParsedDoc containingClass, ParsedSourceModel.Imports imports,
+                     File file, int line, String comment,
+                     List<String> declaredParameterTypes, boolean varArgs) {
+        this.model = model;
+        this.kind = kind;
+        this.name = name;
+        this.simpleName = simpleName;
+        this.qualifiedName = qualifiedName;
+        this.containingClass = containingClass;
+        this.imports = imports;
+        this.file = file;
+        this.line = line;
+        this.comment = comment;
+        this.declaredParameterTypes = declaredParameterTypes;
+        this.varArgs = varArgs;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSimpleName() {
+        return simpleName;
+    }
+
+    public String getQualifiedName() {
+        return qualifiedName;
+    }
+
+    public ParsedDoc getContainingClass() {
+        return containingClass;
+    }
+
+    public ParsedSourceModel.Imports getImports() {
+        return imports;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public String getComment() {
+        return comment;
+    }
+
+    public List<ModelDoc> getMethods() {
+        return Collections.unmodifiableList(methods);
+    }
+
+    protected void addMethod(ParsedDoc method) {
+        methods.add(method);
+    }
+
+    public String getSignature() {
+        if (kind != Kind.METHOD) return null;
+        StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < declaredParameterTypes.size(); i++) {
+            if (i > 0) sb.append(", ");
+            String type = declaredParameterTypes.get(i);
+            sb.append(model.qualifyTypeName(getBaseTypeName(type), this));
+            sb.append(getDimension(type, isVarArgs(i) ? "..." : ""));
+        }
+        return sb.append(")").toString();
+    }
+
+    public String getFlatSignature() {
+        if (kind != Kind.METHOD) return null;
+        StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < declaredParameterTypes.size(); i++) {
+            if (i > 0) sb.append(", ");
+            String type = declaredParameterTypes.get(i);
+            sb.append(getSimpleTypeName(type));
+            sb.append(getDimension(type, isVarArgs(i) ? "..." : ""));
+        }
+        return sb.append(")").toString();
+    }
+
+    public List<String> getParameterTypes() {
+        if (kind != Kind.METHOD) return Collections.emptyList();
+        List<String> types = new ArrayList<String>(declaredParameterTypes.size());
+        for (int i = 0; i < declaredParameterTypes.size(); i++) {
+            String type = declaredParameterTypes.get(i);
+            types.add(getSimpleTypeName(type) + getDimension(type, isVarArgs(i) ? "[]" : ""));
+        }
+        return types;
+    }
+
+    synchronized public List<ModelTag> getFirstSentenceTags() {
+        if (firstSentenceTags == null)
+            firstSentenceTags = model.getCommentParser().getFirstSentenceTags(getInlineTags());
+        return firstSentenceTags;
+    }
+
+    synchronized public List<ModelTag> getInlineTags() {
+        if (inlineTags == null)
+            inlineTags = model.createInlineTags(this);
+        return inlineTags;
+    }
+
+    public String getPosition() {
+        return file + ":" + line;
+    }
+
+    protected boolean isVarArgs(int parameterIndex) {
+        return varArgs && parameterIndex == declaredParameterTypes.size() - 1;
+    }
+
+    /**
+     * @return The declared type without type arguments and array dimension, e.g. <code>java.util.List</code>.
+     */
+    public static String getBaseTypeName(String declaredType) {
+        StringBuilder sb = new StringBuilder();
+        int depth = 0;
+        for (char c : declaredType.toCharArray()) {
+            if (c == '<') depth++;
+            else if (c == '>') depth--;
+            else if (depth == 0 && c != '[' && c != ']' && !Character.isWhitespace(c)) sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return The innermost identifier of the declared type, e.g. <code>List</code>.
+     */
+    public static String getSimpleTypeName(String declaredType) {
+        String base = getBaseTypeName(declaredType);
+        return base.substring(base.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * @return The array dimension of the declared type, e.g. <code>[][]</code>, followed by the given suffix.
+     */
+    public static String getDimension(String declaredType, String suffix) {
+        StringBuilder sb = new StringBuilder();
+        int depth = 0;
+        for (char c : declaredType.toCharArray()) {
+            if (c == '<') depth++;
+            else if (c == '>') depth--;
+            else if (depth == 0 && c == '[') sb.append("[]");
+        }
+        return sb.append(suffix).toString();
+    }
+
+    @Override
+    public String toString() {
+        return kind + " " + qualifiedName;
+    }
+}
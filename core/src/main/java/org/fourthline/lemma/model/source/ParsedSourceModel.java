@@ -0,0 +1,506 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.model.source;
+
+import japa.parser.ASTParser;
+import japa.parser.ast.CompilationUnit;
+import japa.parser.ast.ImportDeclaration;
+import japa.parser.ast.body.BodyDeclaration;
+import japa.parser.ast.body.MethodDeclaration;
+import japa.parser.ast.body.Parameter;
+import japa.parser.ast.body.TypeDeclaration;
+import org.fourthline.lemma.model.ModelDoc;
+import org.fourthline.lemma.model.ModelTag;
+import org.fourthline.lemma.model.SourceModel;
+import org.seamless.util.io.IO;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A source model parsed directly from the source files, without the Javadoc tool.
+ * <p>
+ * All Java files of the given packages and their sub-packages are parsed in parallel, only
+ * the declarations of classes and methods and their documentation comments are kept. Names
+ * are not resolved against a classpath: the links of documentation comments are resolved
+ * against the classes of the model, and classes which can be loaded by the context class loader
+ * of the calling thread (e.g. the project classpath in the Maven plugin).
+ * A link to a member of a class outside of the model references the class. Package comments
+ * are read from <code>package-info.java</code> or <code>package.html</code>.
+ * </p>
+ * <p>
+ * The parser (javaparser 1.0.11) supports the Java 5 language level: generics, annotations, enums,
+ * varargs, and static imports. Later syntax, e.g. the diamond operator, try-with-resources, or lambdas,
+ * can't be parsed. Building the model fails if any source file can't be parsed, the error lists all
+ * such files; use the {@link SourceModel.Backend#JAVADOC} backend for these sources.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class ParsedSourceModel implements SourceModel {
+
+    final private static Logger log = Logger.getLogger(ParsedSourceModel.class.getName());
+
+    final public static String PACKAGE_INFO_FILE = "package-info.java";
+    final public static String PACKAGE_HTML_FILE = "package.html";
+    final public static String ENCODING = "UTF-8";
+
+    final public static Pattern PATTERN_HTML_BODY =
+            Pattern.compile("<body[^>]*>(.*)</body>", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    final public static Pattern PATTERN_PACKAGE_INFO_COMMENT =
+            Pattern.compile("(/\\*\\*.*?\\*/)\\s*(@[\\w.]+(\\([^)]*\\))?\\s*)*package\\s", Pattern.DOTALL);
+
+    final private DocCommentParser commentParser = new DocCommentParser();
+    final private Map<String, ParsedDoc> packages = new LinkedHashMap<String, ParsedDoc>();
+    final private Map<String, ParsedDoc> classes = new LinkedHashMap<String, ParsedDoc>();
+    final private Map<String, Boolean> loadableClasses = new ConcurrentHashMap<String, Boolean>();
+
+    public ParsedSourceModel(List<File> sourceDirectories, List<String> packageNames) {
+        this(sourceDirectories, packageNames, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threads The number of threads parsing source files.
+     */
+    public ParsedSourceModel(List<File> sourceDirectories, List<String> packageNames, int threads) {
+        long start = System.nanoTime();
+
+        List<File> sourceFiles = new ArrayList<File>();
+        for (File sourceDirectory : sourceDirectories) {
+            for (String packageName : packageNames) {
+                collectSourceFiles(new File(sourceDirectory, packageName.replace('.', File.separatorChar)), sourceFiles);
+            }
+        }
+
+        for (ParsedUnit unit : parse(sourceFiles, Math.max(1, threads))) {
+            if (!packages.containsKey(unit.imports.packageName))
+                packages.put(unit.imports.packageName, createPackageDoc(unit.imports, unit.file.getParentFile()));
+            for (ParsedDoc classDoc : unit.classes) {
+                if (!classes.containsKey(classDoc.getQualifiedName()))
+                    classes.put(classDoc.getQualifiedName(), classDoc);
+            }
+        }
+
+        log.info(
+                "Parsed source model of " + classes.size() + " classes in " + packages.size() + " packages from "
+                        + sourceFiles.size() + " files in " + ((System.nanoTime() - start) / 1000000) + " ms"
+        );
+    }
+
+    public ModelDoc findPackage(String name) {
+        return packages.get(name);
+    }
+
+    public ModelDoc findClass(String qualifiedName) {
+        return classes.get(qualifiedName);
+    }
+
+    public List<ModelDoc> getClasses() {
+        return new ArrayList<ModelDoc>(classes.values());
+    }
+
+    public DocCommentParser getCommentParser() {
+        return commentParser;
+    }
+
+    protected void collectSourceFiles(File directory, List<File> sourceFiles) {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            if (file.isDirectory()) {
+                collectSourceFiles(file, sourceFiles);
+            } else if (file.getName().endsWith(".java") && !file.getName().equals(PACKAGE_INFO_FILE)) {
+                sourceFiles.add(file);
+            }
+        }
+    }
+
+    protected List<ParsedUnit> parse(List<File> sourceFiles, int threads) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, sourceFiles.size())));
+        try {
+            List<Future<ParsedUnit>> futures = new ArrayList<Future<ParsedUnit>>(sourceFiles.size());
+            for (final File sourceFile : sourceFiles) {
+                futures.add(executor.submit(new Callable<ParsedUnit>() {
+                    public ParsedUnit call() throws Exception {
+                        return parse(sourceFile);
+                    }
+                }));
+            }
+            List<ParsedUnit> units = new ArrayList<ParsedUnit>(sourceFiles.size());
+            List<String> failures = new ArrayList<String>();
+            Throwable firstFailure = null;
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    units.add(futures.get(i).get());
+                } catch (ExecutionException ex) {
+                    failures.add(sourceFiles.get(i) + ": " + ex.getCause().getMessage());
+                    if (firstFailure == null) firstFailure = ex.getCause();
+                }
+            }
+            if (failures.size() > 0) {
+                StringBuilder sb = new StringBuilder();
+                sb.append("Can't parse ").append(failures.size()).append(" source file(s), ");
+                sb.append("use the JAVADOC model backend for sources above the Java 5 language level:");
+                for (String failure : failures) {
+                    sb.append("\n    ").append(failure);
+                }
+                throw new IllegalStateException(sb.toString(), firstFailure);
+            }
+            return units;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while parsing source files", ex);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return The declarations of the file.
+     * @throws Exception If the file can't be parsed.
+     */
+    protected ParsedUnit parse(File file) throws Exception {
+        if (log.isLoggable(Level.FINE))
+            log.fine("Parsing Java source of file: " + file);
+        CompilationUnit cu;
+        InputStream is = new FileInputStream(file);
+        try {
+            cu = new ASTParser(is, ENCODING).CompilationUnit();
+        } catch (Throwable ex) {
+            // The parser throws errors (TokenMgrError) as well as ParseException
+            throw new Exception(ex.getMessage(), ex);
+        } finally {
+            is.close();
+        }
+
+        Imports imports = new Imports(cu.getPackage() != null ? cu.getPackage().getName().toString() : "");
+        if (cu.getImports() != null) {
+            for (ImportDeclaration importDeclaration : cu.getImports()) {
+                if (importDeclaration.isStatic()) continue;
+                if (importDeclaration.isAsterisk()) {
+                    imports.onDemandImports.add(importDeclaration.getName().toString());
+                } else {
+                    imports.singleTypeImports.add(importDeclaration.getName().toString());
+                }
+            }
+        }
+
+        ParsedUnit unit = new ParsedUnit(file, imports);
+        if (cu.getTypes() != null) {
+            for (TypeDeclaration type : cu.getTypes()) {
+                addClass(unit, type, null);
+            }
+        }
+        return unit;
+    }
+
+    protected void addClass(ParsedUnit unit, TypeDeclaration type, ParsedDoc outerClass) {
+        String name = outerClass != null ? outerClass.getName() + "." + type.getName() : type.getName();
+        ParsedDoc classDoc = new ParsedDoc(
+                this, ModelDoc.Kind.CLASS,
+                name, type.getName(), qualify(unit.imports.packageName, name),
+                outerClass, unit.imports,
+                unit.file, type.getBeginLine(), getComment(type),
+                null, false
+        );
+        unit.classes.add(classDoc);
+
+        if (type.getMembers() == null) return;
+        for (BodyDeclaration member : type.getMembers()) {
+            if (member instanceof TypeDeclaration) {
+                addClass(unit, (TypeDeclaration) member, classDoc);
+            } else if (member instanceof MethodDeclaration) {
+                MethodDeclaration method = (MethodDeclaration) member;
+                List<String> parameterTypes = new ArrayList<String>();
+                boolean varArgs = false;
+                if (method.getParameters() != null) {
+                    for (Parameter parameter : method.getParameters()) {
+                        parameterTypes.add(parameter.getType().toString());
+                        varArgs = parameter.isVarArgs();
+                    }
+                }
+                classDoc.addMethod(new ParsedDoc(
+                        this, ModelDoc.Kind.METHOD,
+                        method.getName(), method.getName(), classDoc.getQualifiedName() + "." + method.getName(),
+                        classDoc, unit.imports,
+                        unit.file, method.getBeginLine(), getComment(method),
+                        parameterTypes, varArgs
+                ));
+            }
+        }
+    }
+
+    protected String getComment(BodyDeclaration declaration) {
+        // Printed with delimiters, the parser has no stable type for comments across versions
+        Object javadoc = declaration.getJavaDoc();
+        return javadoc != null ? javadoc.toString().trim() : null;
+    }
+
+    protected ParsedDoc createPackageDoc(Imports imports, File directory) {
+        File file = null;
+        String comment = null;
+        try {
+            File packageInfo = new File(directory, PACKAGE_INFO_FILE);
+            File packageHtml = new File(directory, PACKAGE_HTML_FILE);
+            if (packageInfo.isFile()) {
+                file = packageInfo;
+                Matcher m = PATTERN_PACKAGE_INFO_COMMENT.matcher(IO.readLines(packageInfo));
+                if (m.find()) comment = m.group(1);
+            } else if (packageHtml.isFile()) {
+                file = packageHtml;
+                String html = IO.readLines(packageHtml);
+                Matcher m = PATTERN_HTML_BODY.matcher(html);
+                comment = m.find() ? m.group(1) : html;
+            }
+        } catch (Exception ex) {
+            log.warning("Can't read package documentation of '" + imports.packageName + "': " + ex);
+        }
+        return new ParsedDoc(
+                this, ModelDoc.Kind.PACKAGE,
+                imports.packageName, imports.packageName, imports.packageName,
+                null, new Imports(imports.packageName),
+                file, file != null ? 1 : 0, comment,
+                null, false
+        );
+    }
+
+    protected List<ModelTag> createInlineTags(final ParsedDoc doc) {
+        if (doc.getComment() == null) return Collections.emptyList();
+        return getCommentParser().getInlineTags(
+                doc.getComment(),
+                new DocCommentParser.LinkResolver() {
+                    public ModelTag resolve(String text, String reference, String label, String position) {
+                        return resolveLink(doc, text, reference, label, position);
+                    }
+                },
+                doc.getPosition()
+        );
+    }
+
+    protected ModelTag resolveLink(ParsedDoc doc, String text, String reference, String label, String position) {
+        int hash = reference.indexOf('#');
+        String classReference = hash != -1 ? reference.substring(0, hash) : reference;
+        String memberReference = hash != -1 ? reference.substring(hash + 1) : null;
+
+        String referencedClass = null;
+        ParsedDoc classDoc = null;
+        if (classReference.length() == 0) {
+            classDoc = getEnclosingClass(doc);
+            referencedClass = classDoc != null ? classDoc.getQualifiedName() : null;
+        } else {
+            referencedClass = resolveClassName(classReference, doc);
+            classDoc = referencedClass != null ? classes.get(referencedClass) : null;
+        }
+
+        if (referencedClass == null) {
+            String referencedPackage = memberReference == null && packages.containsKey(classReference)
+                    ? classReference : null;
+            if (referencedPackage == null && log.isLoggable(Level.FINE))
+                log.fine("Can't resolve link reference '" + reference + "' at: " + position);
+            return new ModelTag(text, position, label, referencedPackage, null, null, null);
+        }
+
+        String memberName = null;
+        String methodSignature = null;
+        if (memberReference != null) {
+            int paren = memberReference.indexOf('(');
+            memberName = paren != -1 ? memberReference.substring(0, paren) : memberReference;
+            if (classDoc != null) {
+                ModelDoc method = findMethod(classDoc, memberName, paren != -1 ? memberReference.substring(paren) : null);
+                if (method != null) methodSignature = method.getFlatSignature();
+            }
+        }
+        return new ModelTag(text, position, label, null, referencedClass, memberName, methodSignature);
+    }
+
+    /**
+     * @param parameters The parameter list of the reference, e.g. <code>(String, int)</code>, or <code>null</code>
+     *                   to find the first method with the given name.
+     */
+    protected ModelDoc findMethod(ParsedDoc classDoc, String name, String parameters) {
+        List<String> parameterTypes = null;
+        if (parameters != null) {
+            parameterTypes = new ArrayList<String>();
+            String list = parameters.substring(1, parameters.lastIndexOf(')') > 0 ? parameters.lastIndexOf(')') : parameters.length());
+            for (String parameter : splitParameters(list)) {
+                String type = parameter.trim().replace("...", "[]");
+                // Drop the parameter name, if any
+                int space = type.lastIndexOf(' ');
+                if (space != -1 && !type.endsWith("]")) type = type.substring(0, space);
+                parameterTypes.add(ParsedDoc.getSimpleTypeName(type) + ParsedDoc.getDimension(type, ""));
+            }
+        }
+        for (ModelDoc method : classDoc.getMethods()) {
+            if (method.getName().equals(name)
+                    && (parameterTypes == null || parameterTypes.equals(method.getParameterTypes())))
+                return method;
+        }
+        return null;
+    }
+
+    protected List<String> splitParameters(String list) {
+        List<String> parameters = new ArrayList<String>();
+        if (list.trim().length() == 0) return parameters;
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < list.length(); i++) {
+            char c = list.charAt(i);
+            if (c == '<') depth++;
+            else if (c == '>') depth--;
+            else if (c == ',' && depth == 0) {
+                parameters.add(list.substring(start, i));
+                start = i + 1;
+            }
+        }
+        parameters.add(list.substring(start));
+        return parameters;
+    }
+
+    /**
+     * @return The qualified name of the type in the model or on the classpath, otherwise the name as given.
+     */
+    public String qualifyTypeName(String name, ParsedDoc context) {
+        String resolved = resolveClassName(name, context);
+        return resolved != null ? resolved : name;
+    }
+
+    /**
+     * Resolves a class name like the compiler would in the scope of the given doc.
+     *
+     * @return The qualified class name, or <code>null</code> if it's neither in the model nor loadable.
+     */
+    public String resolveClassName(String name, ParsedDoc context) {
+        if (name.length() == 0 || !Character.isJavaIdentifierStart(name.charAt(0))) return null;
+
+        // Nested classes of the enclosing classes, and the enclosing classes themselves
+        for (ParsedDoc c = getEnclosingClass(context); c != null; c = c.getContainingClass()) {
+            String candidate = c.getQualifiedName() + "." + name;
+            if (classes.containsKey(candidate)) return candidate;
+            if (c.getSimpleName().equals(name)) return c.getQualifiedName();
+        }
+
+        Imports imports = context.getImports();
+        String firstIdentifier = name.indexOf('.') != -1 ? name.substring(0, name.indexOf('.')) : name;
+        List<String> candidates = new ArrayList<String>();
+        candidates.add(qualify(imports.packageName, name));
+        for (String singleTypeImport : imports.singleTypeImports) {
+            if (singleTypeImport.equals(firstIdentifier) || singleTypeImport.endsWith("." + firstIdentifier))
+                candidates.add(singleTypeImport + name.substring(firstIdentifier.length()));
+        }
+        for (String onDemandImport : imports.onDemandImports) {
+            candidates.add(onDemandImport + "." + name);
+        }
+        candidates.add("java.lang." + name);
+        candidates.add(name);
+
+        for (String candidate : candidates) {
+            if (classes.containsKey(candidate)) return candidate;
+        }
+        for (String candidate : candidates) {
+            if (isLoadable(candidate)) return candidate;
+        }
+        return null;
+    }
+
+    protected boolean isLoadable(String className) {
+        Boolean loadable = loadableClasses.get(className);
+        if (loadable == null) {
+            loadable = false;
+            // Try nested class names, e.g. foo.Outer.Inner is foo.Outer$Inner
+            String binaryName = className;
+            while (!loadable) {
+                try {
+                    Class.forName(binaryName, false, getClassLoader());
+                    loadable = true;
+                } catch (Throwable ex) {
+                    int lastDot = binaryName.lastIndexOf('.');
+                    if (lastDot == -1) break;
+                    binaryName = binaryName.substring(0, lastDot) + "$" + binaryName.substring(lastDot + 1);
+                }
+            }
+            loadableClasses.put(className, loadable);
+        }
+        return loadable;
+    }
+
+    /**
+     * @return The context class loader of the calling thread, which sees the project classpath in the Maven plugin.
+     */
+    protected ClassLoader getClassLoader() {
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return classLoader != null ? classLoader : ParsedSourceModel.class.getClassLoader();
+    }
+
+    protected ParsedDoc getEnclosingClass(ParsedDoc doc) {
+        switch (doc.getKind()) {
+            case CLASS:
+                return doc;
+            case METHOD:
+                return doc.getContainingClass();
+            default:
+                return null;
+        }
+    }
+
+    protected static String qualify(String packageName, String name) {
+        return packageName.length() > 0 ? packageName + "." + name : name;
+    }
+
+    /**
+     * The package and imports of a source file, the scope of names in its documentation comments.
+     */
+    public static class Imports {
+
+        final public String packageName;
+        final public List<String> singleTypeImports = new ArrayList<String>();
+        final public List<String> onDemandImports = new ArrayList<String>();
+
+        public Imports(String packageName) {
+            this.packageName = packageName;
+        }
+    }
+
+    protected static class ParsedUnit {
+
+        final File file;
+        final Imports imports;
+        final List<ParsedDoc> classes = new ArrayList<ParsedDoc>();
+
+        public ParsedUnit(File file, Imports imports) {
+            this.file = file;
+            this.imports = imports;
+        }
+    }
+}
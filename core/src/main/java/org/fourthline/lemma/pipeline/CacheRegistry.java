@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fourthline.lemma.pipeline;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects the {@link CacheStatistics} of all caches used during a pipeline execution.
+ * <p>
+ * While the pipeline executes, the statistics of each cache are published as an MBean named
+ * <code>org.fourthline.lemma:type=Cache,pipeline=&lt;pipeline&gt;,name=&lt;cache&gt;</code> on the
+ * platform MBean server. Participants add their caches with {@link #register(Context, CacheStatistics)}.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class CacheRegistry {
+
+    final public static String CONTEXT_CACHE_REGISTRY = "CacheRegistry";
+
+    final public static String JMX_DOMAIN = "org.fourthline.lemma";
+
+    final private static AtomicInteger instanceCounter = new AtomicInteger();
+
+    final private Logger log = Logger.getLogger(CacheRegistry.class.getName());
+
+    final private String pipelineName;
+    final private Map<String, CacheStatistics> caches = new LinkedHashMap<String, CacheStatistics>();
+    final private List<ObjectName> objectNames = new ArrayList<ObjectName>();
+
+    /**
+     * Adds the statistics to the registry of the context, if there is one.
+     */
+    public static void register(Context context, CacheStatistics statistics) {
+        CacheRegistry registry = (CacheRegistry) context.get(CONTEXT_CACHE_REGISTRY);
+        if (registry != null)
+            registry.add(statistics);
+    }
+
+    public CacheRegistry(String pipelineName) {
+        this.pipelineName = pipelineName + "-" + instanceCounter.incrementAndGet();
+    }
+
+    synchronized public void add(CacheStatistics statistics) {
+        if (caches.get(statistics.getName()) == statistics) return;
+        caches.put(statistics.getName(), statistics);
+        try {
+            ObjectName objectName = new ObjectName(
+                    JMX_DOMAIN + ":type=Cache"
+                            + ",pipeline=" + ObjectName.quote(pipelineName)
+                            + ",name=" + ObjectName.quote(statistics.getName())
+            );
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName))
+                server.unregisterMBean(objectName);
+            server.registerMBean(statistics, objectName);
+            objectNames.add(objectName);
+        } catch (Exception ex) {
+            log.log(Level.WARNING, "Can't register cache statistics MBean: " + statistics.getName(), ex);
+        }
+    }
+
+    synchronized public List<CacheStatistics> getCaches() {
+        return new ArrayList<CacheStatistics>(caches.values());
+    }
+
+    /**
+     * Removes all MBeans of this registry from the platform MBean server.
+     */
+    synchronized public void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : objectNames) {
+            try {
+                if (server.isRegistered(objectName))
+                    server.unregisterMBean(objectName);
+            } catch (Exception ex) {
+                log.log(Level.WARNING, "Can't unregister cache statistics MBean: " + objectName, ex);
+            }
+        }
+        objectNames.clear();
+    }
+
+    /**
+     * @return One line per cache with entries, estimated kilobytes, hits, misses, loads, load time and evictions.
+     */
+    public String toTable() {
+        StringBuilder sb = new StringBuilder();
+        String format = "%-20s %8s %10s %8s %8s %8s %10s %9s%n";
+        sb.append(String.format(format, "Cache", "Entries", "KB", "Hits", "Misses", "Loads", "Load ms", "Evictions"));
+        for (CacheStatistics cache : getCaches()) {
+            sb.append(String.format(format,
+                    cache.getName(),
+                    cache.getEntries(),
+                    cache.getEstimatedBytes() >= 0 ? cache.getEstimatedBytes() / 1024 : "-",
+                    cache.getHits(),
+                    cache.getMisses(),
+                    cache.getLoads(),
+                    cache.getLoadTimeMillis(),
+                    cache.getEvictions()
+            ));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fourthline.lemma.pipeline;
+
+/**
+ * Counts the entries, hits, misses, loads and evictions of a cache.
+ * <p>
+ * The owner of the cache updates the counters, the statistics of all caches used by a pipeline
+ * are collected by its {@link CacheRegistry}.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class CacheStatistics implements CacheStatisticsMBean {
+
+    final private String name;
+
+    private int entries;
+    private long estimatedBytes = -1;
+    private long hits;
+    private long misses;
+    private long loads;
+    private long loadTimeNanos;
+    private long evictions;
+
+    public CacheStatistics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    synchronized public void hit() {
+        hits++;
+    }
+
+    synchronized public void miss() {
+        misses++;
+    }
+
+    /**
+     * @param nanos The time it took to load the entry.
+     */
+    synchronized public void loaded(long nanos) {
+        loads++;
+        loadTimeNanos += nanos;
+    }
+
+    synchronized public void evicted() {
+        evictions++;
+    }
+
+    /**
+     * @param estimatedBytes The estimated heap size of the cached entries, <code>-1</code> if unknown.
+     */
+    synchronized public void setSize(int entries, long estimatedBytes) {
+        this.entries = entries;
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    synchronized public int getEntries() {
+        return entries;
+    }
+
+    synchronized public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    synchronized public long getHits() {
+        return hits;
+    }
+
+    synchronized public long getMisses() {
+        return misses;
+    }
+
+    synchronized public long getLoads() {
+        return loads;
+    }
+
+    synchronized public long getLoadTimeNanos() {
+        return loadTimeNanos;
+    }
+
+    public long getLoadTimeMillis() {
+        return getLoadTimeNanos() / 1000000;
+    }
+
+    synchronized public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Resets the counters, the size of the cache is kept.
+     */
+    synchronized public void reset() {
+        hits = 0;
+        misses = 0;
+        loads = 0;
+        loadTimeNanos = 0;
+        evictions = 0;
+    }
+
+    @Override
+    synchronized public String toString() {
+        return name + ", entries: " + entries
+                + (estimatedBytes >= 0 ? ", bytes: " + estimatedBytes : "")
+                + ", hits/misses: " + hits + "/" + misses
+                + ", loads: " + loads + " (" + (loadTimeNanos / 1000000) + " ms)"
+                + ", evictions: " + evictions;
+    }
+}
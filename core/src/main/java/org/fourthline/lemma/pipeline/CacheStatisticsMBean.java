@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fourthline.lemma.pipeline;
+
+/**
+ * Management interface of {@link CacheStatistics}.
+ *
+ * @author Christian Bauer
+ */
+public interface CacheStatisticsMBean {
+
+    String getName();
+
+    int getEntries();
+
+    /**
+     * @return The estimated heap size of the cached entries, <code>-1</code> if unknown.
+     */
+    long getEstimatedBytes();
+
+    long getHits();
+
+    long getMisses();
+
+    long getLoads();
+
+    long getLoadTimeMillis();
+
+    long getEvictions();
+
+    void reset();
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Collects the problems found when a pipeline checks citations and cross-references.
+ * <p>
+ * A check continues after a problem, so the report lists all broken addresses, missing
+ * fragments and unresolved cross-references of a template at once.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class CheckReport {
+
+    final public static String CONTEXT_CHECK_REPORT = "CheckReport";
+
+    final private Logger log = Logger.getLogger(CheckReport.class.getName());
+
+    final private List<Problem> problems = new ArrayList<Problem>();
+
+    private long citations;
+    private long xrefs;
+
+    synchronized public void add(String location, String message) {
+        problems.add(new Problem(location, message));
+    }
+
+    synchronized public List<Problem> getProblems() {
+        return new ArrayList<Problem>(problems);
+    }
+
+    synchronized public boolean hasProblems() {
+        return problems.size() > 0;
+    }
+
+    synchronized public void checkedCitation() {
+        citations++;
+    }
+
+    synchronized public void checkedXRef() {
+        xrefs++;
+    }
+
+    synchronized public long getCitations() {
+        return citations;
+    }
+
+    synchronized public long getXRefs() {
+        return xrefs;
+    }
+
+    synchronized public void clear() {
+        problems.clear();
+        citations = 0;
+        xrefs = 0;
+    }
+
+    public void log() {
+        if (hasProblems()) {
+            log.warning(toString());
+        } else {
+            log.info(toString());
+        }
+    }
+
+    @Override
+    synchronized public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Checked ").append(citations).append(" citation(s) and ")
+                .append(xrefs).append(" cross-reference(s), ");
+        if (problems.size() == 0) {
+            sb.append("no problems found");
+        } else {
+            sb.append("found ").append(problems.size()).append(" problem(s):");
+            for (Problem problem : problems) {
+                sb.append("\n").append(problem);
+            }
+        }
+        return sb.toString();
+    }
+
+    public static class Problem {
+
+        final private String location;
+        final private String message;
+
+        public Problem(String location, String message) {
+            this.location = location;
+            this.message = message;
+        }
+
+        /**
+         * @return The address of the citation or cross-reference, and of the citations including it.
+         */
+        public String getLocation() {
+            return location;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return location + ": " + message;
+        }
+    }
+}
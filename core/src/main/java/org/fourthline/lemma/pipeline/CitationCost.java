@@ -0,0 +1,218 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.pipeline;
+
+import org.w3c.dom.Node;
+
+import java.io.File;
+
+/**
+ * The measured cost of processing a single citation.
+ * <p>
+ * The citation processor makes the cost of the citation it currently reads available to
+ * the reader's thread. Readers and content handlers add the time of their stages and record
+ * the resolved file through the static methods of this class, which do nothing if no cost
+ * is measured. The <code>READ</code> stage is the time spent in the reader which is not
+ * accounted for by the other stages.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class CitationCost {
+
+    public enum Stage {
+        RESOLVE, READ, FILTER, PRINT, PARSE, SPLICE;
+
+        public String getLabel() {
+            return name().toLowerCase();
+        }
+    }
+
+    final private static ThreadLocal<CitationCost> current = new ThreadLocal<CitationCost>();
+
+    /**
+     * @return The start time, or <code>0</code> if no cost is measured on this thread.
+     */
+    public static long start() {
+        return current.get() != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Adds the time since the given start to the stage of the current citation.
+     */
+    public static void stop(Stage stage, long start) {
+        if (start == 0) return;
+        CitationCost cost = current.get();
+        if (cost != null)
+            cost.addTime(stage, System.nanoTime() - start);
+    }
+
+    /**
+     * Records the file read by the current citation, the first file of a citation is recorded.
+     */
+    public static void resolved(File file) {
+        CitationCost cost = current.get();
+        if (cost != null && cost.file == null && file != null) {
+            cost.file = file;
+            cost.fileSize = file.length();
+        }
+    }
+
+    /**
+     * Records if the content of the current citation was found in the content cache.
+     */
+    public static void cacheAccess(boolean hit) {
+        CitationCost cost = current.get();
+        if (cost == null) return;
+        if (hit) {
+            cost.cacheHits++;
+        } else {
+            cost.cacheMisses++;
+        }
+    }
+
+    /**
+     * @return The number of nodes of the given subtree, including the given node.
+     */
+    public static int countNodes(Node node) {
+        int count = 1;
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            count += countNodes(child);
+        }
+        return count;
+    }
+
+    final private String address;
+    final private String readerClass;
+    final private long[] times = new long[Stage.values().length];
+    private File file;
+    private long fileSize = -1;
+    private int nodes;
+    private int cacheHits;
+    private int cacheMisses;
+    private String failure;
+
+    public CitationCost(String address, String readerClass) {
+        this.address = address;
+        this.readerClass = readerClass;
+    }
+
+    /**
+     * Makes this the current cost of the calling thread, call before the reader is executed.
+     *
+     * @return The start time of reading.
+     */
+    public long beginRead() {
+        current.set(this);
+        return System.nanoTime();
+    }
+
+    /**
+     * Completes reading, the time not spent in other reader stages is added to <code>READ</code>.
+     */
+    public void endRead(long start) {
+        current.remove();
+        long time = System.nanoTime() - start
+                - getTime(Stage.RESOLVE) - getTime(Stage.FILTER) - getTime(Stage.PRINT) - getTime(Stage.PARSE);
+        addTime(Stage.READ, Math.max(0, time));
+    }
+
+    public void addTime(Stage stage, long nanos) {
+        times[stage.ordinal()] += nanos;
+    }
+
+    /**
+     * @return The time of the stage in nanoseconds.
+     */
+    public long getTime(Stage stage) {
+        return times[stage.ordinal()];
+    }
+
+    /**
+     * @return The time of all stages in nanoseconds.
+     */
+    public long getTotalTime() {
+        long total = 0;
+        for (long time : times) {
+            total += time;
+        }
+        return total;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public String getReaderClass() {
+        return readerClass;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return The size of the file in bytes, or <code>-1</code> if no file was read.
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public int getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(int nodes) {
+        this.nodes = nodes;
+    }
+
+    public int getCacheHits() {
+        return cacheHits;
+    }
+
+    public int getCacheMisses() {
+        return cacheMisses;
+    }
+
+    /**
+     * @return <code>hit</code>, <code>miss</code>, <code>partial</code>, or <code>none</code> if
+     *         the content cache was not accessed.
+     */
+    public String getCacheResult() {
+        if (cacheHits == 0 && cacheMisses == 0) return "none";
+        if (cacheMisses == 0) return "hit";
+        if (cacheHits == 0) return "miss";
+        return "partial";
+    }
+
+    /**
+     * @return The error message if reading the citation failed, or <code>null</code>.
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    public void setFailure(String failure) {
+        this.failure = failure;
+    }
+
+    @Override
+    public String toString() {
+        return address + " (" + readerClass + ")";
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.pipeline;
+
+import org.seamless.util.io.IO;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Collects the {@link CitationCost} of every citation processed by a pipeline.
+ * <p>
+ * The report is written next to the output file, as JSON (<code>name.costs.json</code>)
+ * and as an HTML table (<code>name.costs.html</code>). Times are in milliseconds. Citations
+ * are listed in the order they have been read, a nested citation follows the citation which
+ * contains it. A citation which failed is listed with its error message, and the totals of all
+ * stages include it.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class CostReport {
+
+    final public static String CONTEXT_COST_REPORT = "CostReport";
+
+    final public static String SUFFIX_JSON = ".costs.json";
+    final public static String SUFFIX_HTML = ".costs.html";
+
+    final private Logger log = Logger.getLogger(CostReport.class.getName());
+
+    final private List<CitationCost> costs = new ArrayList<CitationCost>();
+
+    synchronized public void add(CitationCost cost) {
+        costs.add(cost);
+    }
+
+    synchronized public List<CitationCost> getCosts() {
+        return new ArrayList<CitationCost>(costs);
+    }
+
+    synchronized public void clear() {
+        costs.clear();
+    }
+
+    /**
+     * @return The time of the stage of all citations in nanoseconds.
+     */
+    public long getTotalTime(CitationCost.Stage stage) {
+        long total = 0;
+        for (CitationCost cost : getCosts()) {
+            total += cost.getTime(stage);
+        }
+        return total;
+    }
+
+    /**
+     * @return The time of all stages of all citations in nanoseconds.
+     */
+    public long getTotalTime() {
+        long total = 0;
+        for (CitationCost cost : getCosts()) {
+            total += cost.getTotalTime();
+        }
+        return total;
+    }
+
+    /**
+     * @return The citations which failed.
+     */
+    public List<CitationCost> getFailures() {
+        List<CitationCost> failures = new ArrayList<CitationCost>();
+        for (CitationCost cost : getCosts()) {
+            if (cost.getFailure() != null) failures.add(cost);
+        }
+        return failures;
+    }
+
+    /**
+     * @return The citations with the highest total time, slowest first.
+     */
+    public List<CitationCost> getSlowest(int count) {
+        List<CitationCost> slowest = getCosts();
+        Collections.sort(slowest, new Comparator<CitationCost>() {
+            public int compare(CitationCost a, CitationCost b) {
+                long diff = b.getTotalTime() - a.getTotalTime();
+                return diff > 0 ? 1 : (diff < 0 ? -1 : 0);
+            }
+        });
+        return slowest.subList(0, Math.min(count, slowest.size()));
+    }
+
+    public void logSlowest(int count) {
+        List<CitationCost> slowest = getSlowest(count);
+        if (slowest.size() == 0) return;
+        log.info("Slowest " + slowest.size() + " of " + getCosts().size() + " citations:");
+        for (CitationCost cost : slowest) {
+            StringBuilder sb = new StringBuilder();
+            sb.append(formatMillis(cost.getTotalTime())).append(" ms ");
+            sb.append(cost.getAddress());
+            sb.append(" (");
+            for (CitationCost.Stage stage : CitationCost.Stage.values()) {
+                sb.append(stage.getLabel()).append(": ").append(formatMillis(cost.getTime(stage))).append(", ");
+            }
+            sb.append("nodes: ").append(cost.getNodes());
+            sb.append(", cache: ").append(cost.getCacheResult());
+            sb.append(")");
+            log.info(sb.toString());
+        }
+    }
+
+    /**
+     * Writes the JSON and HTML report next to the given output file.
+     */
+    public void write(File outputFile) throws IOException {
+        String name = outputFile.getName();
+        if (name.lastIndexOf('.') > 0)
+            name = name.substring(0, name.lastIndexOf('.'));
+        File jsonFile = new File(outputFile.getParentFile(), name + SUFFIX_JSON);
+        File htmlFile = new File(outputFile.getParentFile(), name + SUFFIX_HTML);
+        log.info("Writing citation cost report: " + jsonFile + ", " + htmlFile);
+        IO.writeUTF8(jsonFile, toJSON());
+        IO.writeUTF8(htmlFile, toHTML());
+    }
+
+    public String toJSON() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"citations\": [");
+        List<CitationCost> all = getCosts();
+        for (int i = 0; i < all.size(); i++) {
+            CitationCost cost = all.get(i);
+            sb.append(i > 0 ? ",\n" : "\n");
+            sb.append("    {");
+            sb.append("\"address\": ").append(quoteJSON(cost.getAddress()));
+            sb.append(", \"reader\": ").append(quoteJSON(cost.getReaderClass()));
+            sb.append(", \"file\": ").append(cost.getFile() != null ? quoteJSON(cost.getFile().getPath()) : "null");
+            sb.append(", \"fileSize\": ").append(cost.getFileSize());
+            for (CitationCost.Stage stage : CitationCost.Stage.values()) {
+                sb.append(", \"").append(stage.getLabel()).append("\": ").append(formatMillis(cost.getTime(stage)));
+            }
+            sb.append(", \"total\": ").append(formatMillis(cost.getTotalTime()));
+            sb.append(", \"nodes\": ").append(cost.getNodes());
+            sb.append(", \"cache\": ").append(quoteJSON(cost.getCacheResult()));
+            sb.append(", \"failure\": ").append(cost.getFailure() != null ? quoteJSON(cost.getFailure()) : "null");
+            sb.append("}");
+        }
+        sb.append(all.size() > 0 ? "\n  ],\n" : "],\n");
+        sb.append("  \"totals\": {\"citations\": ").append(all.size());
+        sb.append(", \"failures\": ").append(getFailures().size());
+        for (CitationCost.Stage stage : CitationCost.Stage.values()) {
+            sb.append(", \"").append(stage.getLabel()).append("\": ").append(formatMillis(getTotalTime(stage)));
+        }
+        sb.append(", \"total\": ").append(formatMillis(getTotalTime()));
+        sb.append("}\n}\n");
+        return sb.toString();
+    }
+
+    public String toHTML() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"UTF-8\"/>\n");
+        sb.append("<title>Citation costs</title>\n");
+        sb.append("<style>td.n, th.n { text-align: right; } th, td { padding: 2px 6px; }</style>\n");
+        sb.append("</head>\n<body>\n<table>\n<thead><tr>");
+        sb.append("<th>Address</th><th>Reader</th><th>File</th><th>Size</th>");
+        for (CitationCost.Stage stage : CitationCost.Stage.values()) {
+            sb.append("<th>").append(stage.getLabel()).append(" (ms)</th>");
+        }
+        sb.append("<th>total (ms)</th><th>Nodes</th><th>Cache</th><th>Failure</th></tr></thead>\n<tbody>\n");
+        for (CitationCost cost : getCosts()) {
+            sb.append("<tr>");
+            sb.append("<td>").append(escapeHTML(cost.getAddress())).append("</td>");
+            sb.append("<td>").append(escapeHTML(cost.getReaderClass())).append("</td>");
+            sb.append("<td>").append(cost.getFile() != null ? escapeHTML(cost.getFile().getPath()) : "").append("</td>");
+            sb.append("<td class=\"n\">").append(cost.getFileSize() >= 0 ? cost.getFileSize() : "").append("</td>");
+            for (CitationCost.Stage stage : CitationCost.Stage.values()) {
+                sb.append("<td class=\"n\">").append(formatMillis(cost.getTime(stage))).append("</td>");
+            }
+            sb.append("<td class=\"n\">").append(formatMillis(cost.getTotalTime())).append("</td>");
+            sb.append("<td class=\"n\">").append(cost.getNodes()).append("</td>");
+            sb.append("<td>").append(cost.getCacheResult()).append("</td>");
+            sb.append("<td>").append(cost.getFailure() != null ? escapeHTML(cost.getFailure()) : "").append("</td>");
+            sb.append("</tr>\n");
+        }
+        sb.append("</tbody>\n<tfoot><tr>");
+        sb.append("<th colspan=\"4\">").append(getCosts().size()).append(" citations, ");
+        sb.append(getFailures().size()).append(" failed</th>");
+        for (CitationCost.Stage stage : CitationCost.Stage.values()) {
+            sb.append("<th class=\"n\">").append(formatMillis(getTotalTime(stage))).append("</th>");
+        }
+        sb.append("<th class=\"n\">").append(formatMillis(getTotalTime())).append("</th>");
+        sb.append("<th colspan=\"3\"></th></tr></tfoot>\n</table>\n</body>\n</html>\n");
+        return sb.toString();
+    }
+
+    protected String formatMillis(long nanos) {
+        return String.valueOf(nanos / 1000 / 1000d);
+    }
+
+    protected String quoteJSON(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append("\"").toString();
+    }
+
+    protected String escapeHTML(String s) {
+        return s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
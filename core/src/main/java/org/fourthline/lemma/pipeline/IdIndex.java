@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.pipeline;
+
+import org.fourthline.lemma.Constants;
+import org.seamless.util.io.IO;
+import org.seamless.xhtml.XHTML;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * The identifiers of an output document, with the title of each identified element.
+ * <p>
+ * A full run writes the index next to its output file (<code>name.ids</code>). When only some
+ * sections are rendered, cross-references to identifiers of the other sections are resolved with
+ * the index of the last full run, they link to the full output document.
+ * </p>
+ * <p>
+ * The first line of the file is the name of the output document, each following line is an
+ * identifier and its title (possibly empty), separated by a tab.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class IdIndex {
+
+    final public static String CONTEXT_ID_INDEX = "IdIndex";
+
+    final public static String SUFFIX = ".ids";
+
+    final private static Logger log = Logger.getLogger(IdIndex.class.getName());
+
+    final private String document;
+    final private Map<String, String> titles = new LinkedHashMap<String, String>();
+
+    /**
+     * @param document The name of the output document, links to identifiers are relative to it.
+     */
+    public IdIndex(String document) {
+        this.document = document;
+    }
+
+    public String getDocument() {
+        return document;
+    }
+
+    public void add(String id, String title) {
+        titles.put(id, title != null ? title : "");
+    }
+
+    public boolean contains(String id) {
+        return titles.containsKey(id);
+    }
+
+    /**
+     * @return The title of the identified element, or <code>null</code> if it has no title.
+     */
+    public String getTitle(String id) {
+        String title = titles.get(id);
+        return title != null && title.length() > 0 ? title : null;
+    }
+
+    /**
+     * @return A link to the identified element in the output document.
+     */
+    public String getHref(String id) {
+        return document + "#" + id;
+    }
+
+    public int size() {
+        return titles.size();
+    }
+
+    /**
+     * Collects the identifiers of all elements in the output, the title of an element is the
+     * content of its first <code>title</code> child element, without a final period.
+     */
+    public static IdIndex collect(XHTML output, String document) {
+        IdIndex index = new IdIndex(document);
+        NodeList elements = output.getW3CDocument().getElementsByTagName("*");
+        for (int i = 0; i < elements.getLength(); i++) {
+            Element element = (Element) elements.item(i);
+            String id = element.getAttribute("id");
+            if (id.length() == 0) continue;
+            index.add(id, findTitle(element));
+        }
+        return index;
+    }
+
+    protected static String findTitle(Element element) {
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child.getNodeType() != Node.ELEMENT_NODE) continue;
+            for (String type : ((Element) child).getAttribute("class").split("\\s+")) {
+                if (type.equals(Constants.TYPE_TITLE)) {
+                    String title = child.getTextContent().replaceAll("\\s+", " ").trim();
+                    return title.endsWith(".") ? title.substring(0, title.length() - 1) : title;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The index file next to the given output file.
+     */
+    public static File getFile(File outputFile) {
+        String name = outputFile.getName();
+        if (name.lastIndexOf('.') > 0)
+            name = name.substring(0, name.lastIndexOf('.'));
+        return new File(outputFile.getParentFile(), name + SUFFIX);
+    }
+
+    public void write(File file) throws IOException {
+        log.info("Writing identifier index with " + size() + " entries: " + file);
+        StringBuilder sb = new StringBuilder();
+        sb.append(document).append("\n");
+        for (Map.Entry<String, String> entry : titles.entrySet()) {
+            sb.append(entry.getKey()).append("\t").append(entry.getValue()).append("\n");
+        }
+        IO.writeUTF8(file, sb.toString());
+    }
+
+    /**
+     * Reads an index written by {@link #write(File)}, the file is decoded as UTF-8.
+     */
+    public static IdIndex read(File file) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        if (lines.size() == 0 || lines.get(0).trim().length() == 0)
+            throw new IOException("Identifier index has no document name: " + file);
+        IdIndex index = new IdIndex(lines.get(0).trim());
+        for (int i = 1; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.trim().length() == 0) continue;
+            int separator = line.indexOf('\t');
+            if (separator == -1) {
+                index.add(line.trim(), null);
+            } else {
+                index.add(line.substring(0, separator), line.substring(separator + 1).trim());
+            }
+        }
+        log.info("Read identifier index with " + index.size() + " entries of document: " + index.getDocument());
+        return index;
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.pipeline;
+
+import org.seamless.xhtml.XHTMLParser;
+
+import javax.xml.validation.Schema;
+import javax.xml.xpath.XPath;
+import java.util.logging.Logger;
+
+/**
+ * Shares XHTML parsers, XPath instances, and the XHTML validation schema between all participants.
+ * <p>
+ * Parsers and XPath instances are not thread-safe, each thread gets its own instance. The
+ * compiled XHTML validation schema is immutable, it is compiled only once and then shared
+ * by all parsers.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class ParserPool {
+
+    final private static Logger log = Logger.getLogger(ParserPool.class.getName());
+
+    private static Schema schema;
+
+    final private static ThreadLocal<XHTMLParser> parsers = new ThreadLocal<XHTMLParser>() {
+        @Override
+        protected XHTMLParser initialValue() {
+            return new SharedSchemaParser();
+        }
+    };
+
+    final private static ThreadLocal<XPath> xpaths = new ThreadLocal<XPath>() {
+        @Override
+        protected XPath initialValue() {
+            return getParser().createXPath();
+        }
+    };
+
+    private ParserPool() {
+    }
+
+    /**
+     * @return The parser of the calling thread.
+     */
+    public static XHTMLParser getParser() {
+        return parsers.get();
+    }
+
+    /**
+     * @return The XPath instance of the calling thread.
+     */
+    public static XPath getXPath() {
+        return xpaths.get();
+    }
+
+    /**
+     * Compiles the XHTML schema on first access, then returns the same instance for all parsers.
+     */
+    protected static class SharedSchemaParser extends XHTMLParser {
+
+        @Override
+        public Schema getSchema() {
+            synchronized (ParserPool.class) {
+                if (schema == null) {
+                    log.fine("Compiling shared XHTML validation schema");
+                    schema = super.getSchema();
+                }
+                return schema;
+            }
+        }
+    }
+
+}
@@ -17,6 +17,7 @@
 
 package org.fourthline.lemma.pipeline;
 
+import org.fourthline.lemma.pipeline.jfr.FlightRecorderEvents;
 import org.fourthline.lemma.processor.Processor;
 import org.fourthline.lemma.processor.ProcessorOptions;
 
@@ -38,29 +39,122 @@ public abstract class Pipeline<IN, OUT> {
 
     final private Logger log = Logger.getLogger(Pipeline.class.getName());
 
+    /**
+     * The number of slowest citations logged at the end of execution if costs are measured.
+     */
+    final public static int COST_REPORT_SLOWEST = 10;
+
     final private Context context = new Context();
 
+    private CostReport costReport;
+
+    private TraceRecorder traceRecorder;
+
+    private CacheRegistry cacheRegistry;
+
     public Context getContext() {
         return context;
     }
 
+    public CostReport getCostReport() {
+        return costReport;
+    }
+
+    /**
+     * @param costReport Collects the cost of each citation, <code>null</code> disables measurement.
+     */
+    public void setCostReport(CostReport costReport) {
+        this.costReport = costReport;
+    }
+
+    public TraceRecorder getTraceRecorder() {
+        return traceRecorder;
+    }
+
+    /**
+     * @param traceRecorder Records a timeline of the execution, <code>null</code> disables tracing.
+     */
+    public void setTraceRecorder(TraceRecorder traceRecorder) {
+        this.traceRecorder = traceRecorder;
+    }
+
+    /**
+     * @return The statistics of the caches used by the current, or last, execution.
+     */
+    public CacheRegistry getCacheRegistry() {
+        return cacheRegistry;
+    }
+
+    /**
+     * Resets all state of previous executions and their configuration, the pipeline then executes
+     * like a new pipeline.
+     * <p>
+     * Clears the context, resets the processor options, and removes the cost report and the trace
+     * recorder. Subclasses reset their own state.
+     * </p>
+     */
+    public void reset() {
+        getContext().clear();
+        getProcessorOptions().reset();
+        setCostReport(null);
+        setTraceRecorder(null);
+    }
+
     protected void resetContext() {
         getContext().clear();
         getContext().put(ProcessorOptions.CONTEXT_PROCESSOR_OPTIONS, getProcessorOptions());
+        getContext().put(CacheRegistry.CONTEXT_CACHE_REGISTRY, getCacheRegistry());
+        if (getCostReport() != null)
+            getContext().put(CostReport.CONTEXT_COST_REPORT, getCostReport());
     }
 
     public OUT execute(IN input) {
         log.info("Executing: " + getClass().getSimpleName());
 
+        TraceRecorder previousTraceRecorder =
+                getTraceRecorder() != null ? TraceRecorder.activate(getTraceRecorder()) : null;
+        TraceRecorder.Span pipelineSpan =
+                TraceRecorder.begin(TraceRecorder.CATEGORY_PIPELINE, getClass().getSimpleName());
+        Object pipelineEvent = FlightRecorderEvents.beginPipeline(getClass());
+        cacheRegistry = new CacheRegistry(getClass().getSimpleName());
         resetContext();
         OUT output = null;
-        for (Processor<IN, OUT> processor : getProcessors()) {
-            log.info("Processing with: " + processor.getClass().getSimpleName());
-            output = processor.process(input, getContext());
+        try {
+            for (Processor<IN, OUT> processor : getProcessors()) {
+                log.info("Processing with: " + processor.getClass().getSimpleName());
+                TraceRecorder.Span processorSpan =
+                        TraceRecorder.begin(TraceRecorder.CATEGORY_PROCESSOR, processor.getClass().getSimpleName());
+                Object processorEvent = FlightRecorderEvents.beginProcessor(processor.getClass());
+                try {
+                    output = processor.process(input, getContext());
+                } finally {
+                    FlightRecorderEvents.end(processorEvent);
+                    TraceRecorder.end(processorSpan);
+                }
+                processed(processor);
+            }
+        } finally {
+            cacheRegistry.unregister();
+            FlightRecorderEvents.end(pipelineEvent);
+            TraceRecorder.end(pipelineSpan);
+            if (getTraceRecorder() != null)
+                TraceRecorder.activate(previousTraceRecorder);
         }
+
+        log.info("Cache statistics:\n" + getCacheRegistry().toTable());
+
+        if (getCostReport() != null)
+            getCostReport().logSlowest(COST_REPORT_SLOWEST);
+
         return output;
     }
 
+    /**
+     * Called after a processor completed, e.g. to release resources later processors don't need.
+     */
+    protected void processed(Processor<IN, OUT> processor) {
+    }
+
     public void prepareOutputFile(File file, boolean overwrite) throws Exception {
         if (file.exists() && !overwrite) {
             String input = "";
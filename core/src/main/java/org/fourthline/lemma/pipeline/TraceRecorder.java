@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.pipeline;
+
+import org.seamless.util.io.IO;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Records nested spans of a pipeline execution as a Chrome/Perfetto trace-event timeline.
+ * <p>
+ * A pipeline activates its recorder for the executing thread (and threads it starts) with
+ * {@link #activate(TraceRecorder)}. Processors, readers and content handlers record spans
+ * through the static {@link #begin(String, String)} and {@link #end(Span)} methods, which do
+ * nothing if no recorder is active. The written JSON file can be opened in
+ * <code>chrome://tracing</code> or the Perfetto UI.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class TraceRecorder {
+
+    final public static String CATEGORY_PIPELINE = "pipeline";
+    final public static String CATEGORY_PROCESSOR = "processor";
+    final public static String CATEGORY_CITATION = "citation";
+    final public static String CATEGORY_READER = "reader";
+    final public static String CATEGORY_FILE = "file";
+
+    final private static InheritableThreadLocal<TraceRecorder> active = new InheritableThreadLocal<TraceRecorder>();
+
+    final private Logger log = Logger.getLogger(TraceRecorder.class.getName());
+
+    final private long startNanos = System.nanoTime();
+    final private List<Span> spans = new ArrayList<Span>();
+    final private Map<Long, String> threadNames = new LinkedHashMap<Long, String>();
+
+    /**
+     * Makes the given recorder active for the current thread.
+     *
+     * @param recorder The recorder, or <code>null</code> to stop recording.
+     * @return The previously active recorder, pass it to this method again to restore it.
+     */
+    public static TraceRecorder activate(TraceRecorder recorder) {
+        TraceRecorder previous = active.get();
+        if (recorder != null) {
+            active.set(recorder);
+        } else {
+            active.remove();
+        }
+        return previous;
+    }
+
+    /**
+     * @return The started span, or <code>null</code> if no recorder is active on this thread.
+     */
+    public static Span begin(String category, String name) {
+        TraceRecorder recorder = active.get();
+        if (recorder == null) return null;
+        return new Span(recorder, category, name);
+    }
+
+    /**
+     * Completes the span, <code>null</code> is ignored.
+     */
+    public static void end(Span span) {
+        if (span == null) return;
+        span.endNanos = System.nanoTime();
+        span.recorder.add(span);
+    }
+
+    synchronized protected void add(Span span) {
+        spans.add(span);
+        if (!threadNames.containsKey(span.threadId))
+            threadNames.put(span.threadId, span.threadName);
+    }
+
+    synchronized public int size() {
+        return spans.size();
+    }
+
+    public void write(File file) throws IOException {
+        log.info("Writing trace with " + size() + " spans: " + file);
+        if (file.getParentFile() != null && !file.getParentFile().exists())
+            file.getParentFile().mkdirs();
+        IO.writeUTF8(file, toJSON());
+    }
+
+    synchronized public String toJSON() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"displayTimeUnit\": \"ms\", \"traceEvents\": [");
+        boolean first = true;
+        for (Map.Entry<Long, String> entry : threadNames.entrySet()) {
+            sb.append(first ? "\n" : ",\n");
+            first = false;
+            sb.append("{\"ph\": \"M\", \"pid\": 1, \"tid\": ").append(entry.getKey());
+            sb.append(", \"name\": \"thread_name\", \"args\": {\"name\": ").append(quote(entry.getValue())).append("}}");
+        }
+        for (Span span : spans) {
+            sb.append(first ? "\n" : ",\n");
+            first = false;
+            sb.append("{\"ph\": \"X\", \"pid\": 1, \"tid\": ").append(span.threadId);
+            sb.append(", \"cat\": ").append(quote(span.category));
+            sb.append(", \"name\": ").append(quote(span.name));
+            sb.append(", \"ts\": ").append(toMicros(span.startNanos - startNanos));
+            sb.append(", \"dur\": ").append(toMicros(span.endNanos - span.startNanos));
+            if (span.args.size() > 0) {
+                sb.append(", \"args\": {");
+                boolean firstArg = true;
+                for (Map.Entry<String, String> arg : span.args.entrySet()) {
+                    if (!firstArg) sb.append(", ");
+                    firstArg = false;
+                    sb.append(quote(arg.getKey())).append(": ").append(quote(arg.getValue()));
+                }
+                sb.append("}");
+            }
+            sb.append("}");
+        }
+        sb.append("\n]}\n");
+        return sb.toString();
+    }
+
+    protected String toMicros(long nanos) {
+        return String.valueOf(nanos / 1000d);
+    }
+
+    protected String quote(String s) {
+        if (s == null) return "null";
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append("\"").toString();
+    }
+
+    /**
+     * A span of time on a thread, completed spans are recorded.
+     */
+    public static class Span {
+
+        final private TraceRecorder recorder;
+        final private String category;
+        final private String name;
+        final private long threadId;
+        final private String threadName;
+        final private long startNanos;
+        final private Map<String, String> args = new LinkedHashMap<String, String>(4);
+        private long endNanos;
+
+        protected Span(TraceRecorder recorder, String category, String name) {
+            this.recorder = recorder;
+            this.category = category;
+            this.name = name;
+            Thread thread = Thread.currentThread();
+            this.threadId = thread.getId();
+            this.threadName = thread.getName();
+            this.startNanos = System.nanoTime();
+        }
+
+        /**
+         * Adds an argument shown with the span, <code>null</code> values are ignored.
+         */
+        public Span arg(String key, Object value) {
+            if (value != null)
+                args.put(key, value.toString());
+            return this;
+        }
+    }
+}
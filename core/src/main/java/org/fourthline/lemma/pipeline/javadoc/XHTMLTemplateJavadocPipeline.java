@@ -18,6 +18,12 @@
 package org.fourthline.lemma.pipeline.javadoc;
 
 import com.sun.javadoc.RootDoc;
+import org.fourthline.lemma.model.CompositeSourceModel;
+import org.fourthline.lemma.model.ModelDoc;
+import org.fourthline.lemma.model.PackageShards;
+import org.fourthline.lemma.model.SourceModel;
+import org.fourthline.lemma.model.javadoc.JavadocSourceModel;
+import org.fourthline.lemma.model.source.ParsedSourceModel;
 import org.fourthline.lemma.processor.ProcessorOptions;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
@@ -28,11 +34,23 @@ import org.seamless.util.logging.LoggingUtil;
 import org.seamless.xhtml.XHTML;
 import org.seamless.xhtml.XHTMLParser;
 import org.seamless.xml.ParserException;
+import org.fourthline.lemma.pipeline.CheckReport;
+import org.fourthline.lemma.pipeline.CostReport;
+import org.fourthline.lemma.pipeline.IdIndex;
+import org.fourthline.lemma.pipeline.ParserPool;
 import org.fourthline.lemma.pipeline.Pipeline;
+import org.fourthline.lemma.pipeline.jfr.FlightRecorderEvents;
+import org.fourthline.lemma.pipeline.TraceRecorder;
+import org.fourthline.lemma.processor.AbstractJavadocProcessor;
 import org.fourthline.lemma.processor.Processor;
+import org.fourthline.lemma.processor.xhtml.CitationCheckProcessor;
 import org.fourthline.lemma.processor.xhtml.JavadocCitationProcessor;
+import org.fourthline.lemma.processor.xhtml.SectionSelectionProcessor;
 import org.fourthline.lemma.processor.xhtml.TocProcessor;
 import org.fourthline.lemma.processor.xhtml.XRefProcessor;
+import org.fourthline.lemma.reader.FileResolver;
+import org.fourthline.lemma.reader.content.handler.ContentCache;
+import org.fourthline.lemma.reader.csv.CSVReader;
 import org.fourthline.lemma.reader.javacode.JavacodeRawReader;
 import org.fourthline.lemma.reader.javadoc.AbstractJavadocReader;
 import org.fourthline.lemma.reader.text.PlaintextReader;
@@ -44,6 +62,12 @@ import java.io.FileFilter;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 /**
@@ -61,6 +85,16 @@ import java.util.logging.Logger;
  * <li>{@link org.fourthline.lemma.processor.xhtml.XRefProcessor}</li>
  * <li>{@link org.fourthline.lemma.processor.xhtml.TocProcessor}</li>
  * </ol>
+ * <p>
+ * If a {@link CheckReport} is set, the template is only checked by the
+ * {@link org.fourthline.lemma.processor.xhtml.CitationCheckProcessor}, and returned unchanged.
+ * </p>
+ * <p>
+ * If sections are selected in the {@link ProcessorOptions}, the
+ * {@link org.fourthline.lemma.processor.xhtml.SectionSelectionProcessor} runs first and removes the
+ * other sections and their citations. Cross-references into removed sections are resolved with the
+ * {@link IdIndex} of the last full run, if one has been set.
+ * </p>
  *
  * @author Christian Bauer
  */
@@ -68,56 +102,382 @@ public class XHTMLTemplateJavadocPipeline extends Pipeline<XHTML, XHTML> {
 
     static final private Logger log = Logger.getLogger(XHTMLTemplateJavadocPipeline.class.getName());
 
-    final private XHTMLParser parser = new XHTMLParser();
-    final private XPath xpath;
+    /**
+     * The Javadoc tool reads its classpath from this system property.
+     */
+    final public static String JAVADOC_CLASSPATH_PROPERTY = "env.class.path";
+
+    /**
+     * Guards the (global) Javadoc classpath property while a model is built.
+     */
+    final private static Object JAVADOC_LOCK = new Object();
 
-    final private RootDoc rootDoc;
+    final private SourceModel.Factory sourceModelFactory;
+    private SourceModel sourceModel;
+    private Set<File> releasedSourceFiles;
     final private File[] sourceDirectories;
+    final private FileResolver fileResolver;
+    private ContentCache contentCache = new ContentCache();
     final private boolean normalizeOutput;
     final private ProcessorOptions processorOptions;
+    final private boolean processXRefs;
+    private CheckReport checkReport;
+    private IdIndex idIndex;
 
     public XHTMLTemplateJavadocPipeline(SharedOptions options) {
-        this(options.sourceDirectories, options.packageNames, true, options.processXRefs);
+        this(
+                options.sourceDirectories,
+                options.sourceArchives,
+                createSourceModelFactory(
+                        options.sourceModel, options.sourceDirectories, options.packageNames, null, options.modelShards
+                ),
+                true,
+                options.processXRefs
+        );
+        getProcessorOptions().deferValidation = options.deferValidation;
+        if (options.costReport)
+            setCostReport(new CostReport());
+        if (options.traceFile != null)
+            setTraceRecorder(new TraceRecorder());
+        if (options.check)
+            setCheckReport(new CheckReport());
+        getProcessorOptions().selectedSections.addAll(options.sections);
     }
 
     public XHTMLTemplateJavadocPipeline(List<File> sourceDirectories,
                                         List<String> packageNames,
                                         boolean normalizeOutput,
                                         boolean processXRefs) {
+        this(sourceDirectories, new ArrayList<File>(), packageNames, normalizeOutput, processXRefs);
+    }
+
+    public XHTMLTemplateJavadocPipeline(List<File> sourceDirectories,
+                                        List<File> sourceArchives,
+                                        List<String> packageNames,
+                                        boolean normalizeOutput,
+                                        boolean processXRefs) {
+        this(sourceDirectories, sourceArchives, packageNames, null, normalizeOutput, processXRefs);
+    }
+
+    /**
+     * @param javadocClasspath The classpath of the Javadoc tool, or <code>null</code> to use the
+     *                         current value of the {@link #JAVADOC_CLASSPATH_PROPERTY} system property.
+     */
+    public XHTMLTemplateJavadocPipeline(List<File> sourceDirectories,
+                                        List<File> sourceArchives,
+                                        List<String> packageNames,
+                                        String javadocClasspath,
+                                        boolean normalizeOutput,
+                                        boolean processXRefs) {
+        this(
+                sourceDirectories,
+                sourceArchives,
+                createSourceModelFactory(SourceModel.Backend.JAVADOC, sourceDirectories, packageNames, javadocClasspath, 1),
+                normalizeOutput,
+                processXRefs
+        );
+    }
+
+    /**
+     * @param sourceModelFactory Builds the source model now, and again if it is needed after it has
+     *                           been released at the end of citation processing. The factory may also
+     *                           return a shared model, override {@link #sourceModelReleased(SourceModel)}
+     *                           to hand it back.
+     */
+    public XHTMLTemplateJavadocPipeline(List<File> sourceDirectories,
+                                        List<File> sourceArchives,
+                                        SourceModel.Factory sourceModelFactory,
+                                        boolean normalizeOutput,
+                                        boolean processXRefs) {
+        this(sourceDirectories, sourceArchives, null, sourceModelFactory, normalizeOutput, processXRefs);
+        getSourceModel();
+    }
+
+    /**
+     * @param rootDoc An existing Javadoc model of the source directories, e.g. shared by several pipelines.
+     */
+    public XHTMLTemplateJavadocPipeline(List<File> sourceDirectories,
+                                        List<File> sourceArchives,
+                                        RootDoc rootDoc,
+                                        boolean normalizeOutput,
+                                        boolean processXRefs) {
+        this(sourceDirectories, sourceArchives, new JavadocSourceModel(rootDoc), normalizeOutput, processXRefs);
+    }
+
+    /**
+     * @param sourceModel An existing model of the source directories, e.g. shared by several pipelines.
+     *                    The pipeline never releases it.
+     */
+    public XHTMLTemplateJavadocPipeline(List<File> sourceDirectories,
+                                        List<File> sourceArchives,
+                                        SourceModel sourceModel,
+                                        boolean normalizeOutput,
+                                        boolean processXRefs) {
+        this(sourceDirectories, sourceArchives, sourceModel, null, normalizeOutput, processXRefs);
+    }
+
+    protected XHTMLTemplateJavadocPipeline(List<File> sourceDirectories,
+                                           List<File> sourceArchives,
+                                           SourceModel sourceModel,
+                                           SourceModel.Factory sourceModelFactory,
+                                           boolean normalizeOutput,
+                                           boolean processXRefs) {
         log.info("Configuring pipeline...");
 
         this.sourceDirectories = sourceDirectories.toArray(new File[sourceDirectories.size()]);
-
-        // First sentence detection routine depends on locale in Javadoc
-        // tool, so enforce it! Ridiculous!
-        rootDoc = new EasyDoclet(
-                "en_US",
+        this.fileResolver = new FileResolver(
                 this.sourceDirectories,
-                packageNames.toArray(new String[packageNames.size()]),
-                new File[0]
-        ).getRootDoc();
+                sourceArchives.toArray(new File[sourceArchives.size()])
+        );
+
+        this.sourceModel = sourceModel;
+        this.sourceModelFactory = sourceModelFactory;
 
         this.normalizeOutput = normalizeOutput;
-        this.xpath = getParser().createXPath();
 
+        this.processXRefs = processXRefs;
         this.processorOptions = new ProcessorOptions();
         processorOptions.processXRefs = processXRefs;
     }
 
+    /**
+     * Builds the source model with the given backend.
+     *
+     * @param javadocClasspath The classpath of the Javadoc tool, ignored by other backends.
+     */
+    public static SourceModel createSourceModel(SourceModel.Backend backend,
+                                                List<File> sourceDirectories,
+                                                List<String> packageNames,
+                                                String javadocClasspath) {
+        return createSourceModel(backend, sourceDirectories, packageNames, javadocClasspath, 1);
+    }
+
+    /**
+     * Builds the source model with the given backend.
+     *
+     * @param javadocClasspath The classpath of the Javadoc tool, ignored by other backends.
+     * @param shards           The number of Javadoc runs building the model in parallel, each documents
+     *                         a part of the packages. Ignored by other backends, they always parse in parallel.
+     */
+    public static SourceModel createSourceModel(SourceModel.Backend backend,
+                                                List<File> sourceDirectories,
+                                                List<String> packageNames,
+                                                String javadocClasspath,
+                                                int shards) {
+        switch (backend) {
+            case SOURCE:
+                Object modelEvent = FlightRecorderEvents.beginJavadocModel(sourceDirectories, packageNames);
+                try {
+                    return new ParsedSourceModel(sourceDirectories, packageNames);
+                } finally {
+                    FlightRecorderEvents.end(modelEvent);
+                }
+            default:
+                List<List<String>> packageShards = shards > 1
+                        ? PackageShards.split(sourceDirectories, packageNames, shards)
+                        : null;
+                if (packageShards == null || packageShards.size() < 2)
+                    return new JavadocSourceModel(createRootDoc(sourceDirectories, packageNames, javadocClasspath));
+                return createShardedJavadocModel(sourceDirectories, packageShards, javadocClasspath);
+        }
+    }
+
+    /**
+     * @return A factory calling {@link #createSourceModel(SourceModel.Backend, List, List, String, int)}.
+     */
+    public static SourceModel.Factory createSourceModelFactory(final SourceModel.Backend backend,
+                                                               final List<File> sourceDirectories,
+                                                               final List<String> packageNames,
+                                                               final String javadocClasspath,
+                                                               final int shards) {
+        return new SourceModel.Factory() {
+            public SourceModel createSourceModel() {
+                return XHTMLTemplateJavadocPipeline.createSourceModel(
+                        backend, sourceDirectories, packageNames, javadocClasspath, shards
+                );
+            }
+        };
+    }
+
+    /**
+     * Builds the Javadoc model.
+     * <p>
+     * The Javadoc tool only reads its classpath from a system property. If a classpath is given,
+     * the property is set only while the model is built, and restored afterwards. Concurrent
+     * pipelines (e.g. in a parallel Maven build) build their models one after another.
+     * </p>
+     */
+    public static RootDoc createRootDoc(List<File> sourceDirectories,
+                                        List<String> packageNames,
+                                        String javadocClasspath) {
+        synchronized (JAVADOC_LOCK) {
+            String previousClasspath = setJavadocClasspath(javadocClasspath);
+            try {
+                return buildRootDoc(sourceDirectories, packageNames);
+            } finally {
+                restoreJavadocClasspath(javadocClasspath, previousClasspath);
+            }
+        }
+    }
+
+    /**
+     * Builds the Javadoc model with one Javadoc run per shard of packages, on parallel threads.
+     * <p>
+     * Every run reads the sources of all source directories, so links to classes of other
+     * shards are resolved. A forked JVM per shard is not an option, the model is a live object graph.
+     * </p>
+     */
+    protected static SourceModel createShardedJavadocModel(final List<File> sourceDirectories,
+                                                           List<List<String>> packageShards,
+                                                           String javadocClasspath) {
+        synchronized (JAVADOC_LOCK) {
+            String previousClasspath = setJavadocClasspath(javadocClasspath);
+            ExecutorService executor = Executors.newFixedThreadPool(packageShards.size());
+            try {
+                long start = System.nanoTime();
+                List<Future<RootDoc>> futures = new ArrayList<Future<RootDoc>>();
+                for (final List<String> packageShard : packageShards) {
+                    futures.add(executor.submit(new Callable<RootDoc>() {
+                        public RootDoc call() throws Exception {
+                            return buildRootDoc(sourceDirectories, packageShard);
+                        }
+                    }));
+                }
+                List<SourceModel> shards = new ArrayList<SourceModel>();
+                for (Future<RootDoc> future : futures) {
+                    shards.add(new JavadocSourceModel(future.get()));
+                }
+                log.info(
+                        "Built Javadoc model in " + packageShards.size() + " parallel shards in "
+                                + ((System.nanoTime() - start) / 1000000) + " ms: " + packageShards
+                );
+                return new CompositeSourceModel(shards, packageShards);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while building Javadoc model", ex);
+            } catch (ExecutionException ex) {
+                throw new RuntimeException("Can't build Javadoc model", ex.getCause());
+            } finally {
+                executor.shutdownNow();
+                restoreJavadocClasspath(javadocClasspath, previousClasspath);
+            }
+        }
+    }
+
+    protected static RootDoc buildRootDoc(List<File> sourceDirectories, List<String> packageNames) {
+        Object modelEvent = FlightRecorderEvents.beginJavadocModel(sourceDirectories, packageNames);
+        try {
+            // First sentence detection routine depends on locale in Javadoc
+            // tool, so enforce it! Ridiculous!
+            return new EasyDoclet(
+                    "en_US",
+                    sourceDirectories.toArray(new File[sourceDirectories.size()]),
+                    packageNames.toArray(new String[packageNames.size()]),
+                    new File[0]
+            ).getRootDoc();
+        } finally {
+            FlightRecorderEvents.end(modelEvent);
+        }
+    }
+
+    /**
+     * @return The previous value of the classpath property, call only while holding the Javadoc lock.
+     */
+    protected static String setJavadocClasspath(String javadocClasspath) {
+        String previousClasspath = System.getProperty(JAVADOC_CLASSPATH_PROPERTY);
+        if (javadocClasspath != null)
+            System.setProperty(JAVADOC_CLASSPATH_PROPERTY, javadocClasspath);
+        return previousClasspath;
+    }
+
+    protected static void restoreJavadocClasspath(String javadocClasspath, String previousClasspath) {
+        if (javadocClasspath != null) {
+            if (previousClasspath != null) {
+                System.setProperty(JAVADOC_CLASSPATH_PROPERTY, previousClasspath);
+            } else {
+                System.clearProperty(JAVADOC_CLASSPATH_PROPERTY);
+            }
+        }
+    }
+
     public XHTMLParser getParser() {
-        return parser;
+        return ParserPool.getParser();
     }
 
     public XPath getXPath() {
-        return xpath;
+        return ParserPool.getXPath();
     }
 
     public File[] getSourceDirectories() {
         return sourceDirectories;
     }
 
-    public RootDoc getRootDoc() {
-        return rootDoc;
+    public FileResolver getFileResolver() {
+        return fileResolver;
+    }
+
+    public ContentCache getContentCache() {
+        return contentCache;
+    }
+
+    /**
+     * @param contentCache The cache for content of cited files, e.g. shared by several pipelines.
+     */
+    public void setContentCache(ContentCache contentCache) {
+        this.contentCache = contentCache;
+    }
+
+    /**
+     * @return The source model, built again if it has been released.
+     */
+    synchronized public SourceModel getSourceModel() {
+        if (sourceModel == null) {
+            log.info("Building source model...");
+            sourceModel = sourceModelFactory.createSourceModel();
+            releasedSourceFiles = null;
+        }
+        return sourceModel;
+    }
+
+    /**
+     * Releases the source model if this pipeline built it, a model given to the pipeline is kept.
+     * <p>
+     * Called when citation processing is complete, later processors and the serialization of
+     * the output don't need the model. The source files of the model are remembered.
+     * </p>
+     */
+    synchronized public void releaseSourceModel() {
+        if (sourceModelFactory == null || sourceModel == null) return;
+        log.info("Releasing source model, citation processing is complete");
+        releasedSourceFiles = getSourceFiles(sourceModel);
+        SourceModel released = sourceModel;
+        sourceModel = null;
+        sourceModelReleased(released);
+    }
+
+    /**
+     * Called after the pipeline dropped its reference to a model of its factory, e.g. to return a
+     * shared model to its cache.
+     */
+    protected void sourceModelReleased(SourceModel sourceModel) {
+    }
+
+    /**
+     * @return The source files of all classes in the source model.
+     */
+    synchronized public Set<File> getSourceFiles() {
+        if (sourceModel == null && releasedSourceFiles != null)
+            return releasedSourceFiles;
+        return getSourceFiles(getSourceModel());
+    }
+
+    protected Set<File> getSourceFiles(SourceModel model) {
+        Set<File> sourceFiles = new LinkedHashSet<File>();
+        for (ModelDoc classDoc : model.getClasses()) {
+            if (classDoc.getFile() != null)
+                sourceFiles.add(classDoc.getFile());
+        }
+        return sourceFiles;
     }
 
     public boolean isNormalizeOutput() {
@@ -128,41 +488,118 @@ public class XHTMLTemplateJavadocPipeline extends Pipeline<XHTML, XHTML> {
         XHTML template;
         try {
             log.info("Parsing initial XHTML template file: " + xhtmlTemplateFile);
-            template = parser.parse(xhtmlTemplateFile);
+            template = getParser().parse(xhtmlTemplateFile);
         } catch (ParserException ex) {
             throw new RuntimeException(ex);
         }
         return execute(template);
     }
 
+    public CheckReport getCheckReport() {
+        return checkReport;
+    }
+
+    /**
+     * @param checkReport Collects the problems of all citations and cross-references, the template is then
+     *                    only checked and not rendered. <code>null</code> renders the template.
+     */
+    public void setCheckReport(CheckReport checkReport) {
+        this.checkReport = checkReport;
+    }
+
+    public IdIndex getIdIndex() {
+        return idIndex;
+    }
+
+    /**
+     * @param idIndex Resolves cross-references to identifiers which are not in the output, e.g. when only
+     *                some sections are rendered. <code>null</code> leaves them unresolved.
+     */
+    public void setIdIndex(IdIndex idIndex) {
+        this.idIndex = idIndex;
+    }
+
+    /**
+     * Also clears the content cache, even if it is shared with other pipelines, restores the
+     * cross-reference processing of the constructor, and removes the check report and the identifier index.
+     * The source model is kept.
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        getContentCache().clear();
+        getProcessorOptions().processXRefs = processXRefs;
+        setCheckReport(null);
+        setIdIndex(null);
+    }
+
     @Override
     protected void resetContext() {
         super.resetContext();
-        getContext().put(AbstractJavadocReader.CONTEXT_ROOT_DOC, getRootDoc());
+        if (getCheckReport() != null)
+            getContext().put(CheckReport.CONTEXT_CHECK_REPORT, getCheckReport());
+        if (getIdIndex() != null)
+            getContext().put(IdIndex.CONTEXT_ID_INDEX, getIdIndex());
+        getContext().put(AbstractJavadocReader.CONTEXT_SOURCE_MODEL, getSourceModel());
         getContext().put(JavacodeRawReader.CONTEXT_SOURCE_DIRECTORIES, getSourceDirectories());
         getContext().put(XMLReader.CONTEXT_SOURCE_DIRECTORIES, getSourceDirectories());
         getContext().put(PlaintextReader.CONTEXT_SOURCE_DIRECTORIES, getSourceDirectories());
+        getContext().put(CSVReader.CONTEXT_SOURCE_DIRECTORIES, getSourceDirectories());
+        getContext().put(FileResolver.CONTEXT_FILE_RESOLVER, getFileResolver());
+        getContext().put(ContentCache.CONTEXT_CONTENT_CACHE, getContentCache());
+        getCacheRegistry().add(getContentCache().getStatistics());
     }
 
     @Override
     public XHTML execute(XHTML input) {
         XHTML output = super.execute(input);
 
+        if (getCheckReport() != null) {
+            getCheckReport().log();
+            return output;
+        }
+
         if (isNormalizeOutput())
             output.getW3CDocument().normalizeDocument();
 
+        log.info("File resolution, " + getFileResolver());
+
         return output;
     }
 
     @Override
     public Processor<XHTML, XHTML>[] getProcessors() {
+        if (getCheckReport() != null) {
+            return new Processor[]{
+                    new CitationCheckProcessor(getSourceModel())
+            };
+        }
+        if (getProcessorOptions().selectedSections.size() > 0) {
+            return new Processor[]{
+                    new SectionSelectionProcessor(),
+                    new JavadocCitationProcessor(getSourceModel()),
+                    new XRefProcessor(),
+                    new TocProcessor(),
+            };
+        }
         return new Processor[]{
-                new JavadocCitationProcessor(getRootDoc()),
+                new JavadocCitationProcessor(getSourceModel()),
                 new XRefProcessor(),
                 new TocProcessor(),
         };
     }
 
+    @Override
+    protected void processed(Processor<XHTML, XHTML> processor) {
+        super.processed(processor);
+        if (processor instanceof AbstractJavadocProcessor) {
+            // Only citations read the source model, XRef and TOC processing run without it
+            ((AbstractJavadocProcessor) processor).release();
+            getContext().remove(AbstractJavadocReader.CONTEXT_SOURCE_MODEL);
+            releaseSourceModel();
+        }
+    }
+
     @Override
     public ProcessorOptions getProcessorOptions() {
         return processorOptions;
@@ -177,8 +614,23 @@ public class XHTMLTemplateJavadocPipeline extends Pipeline<XHTML, XHTML> {
         XHTMLTemplateJavadocPipeline pipeline =
                 new XHTMLTemplateJavadocPipeline(options);
 
+        boolean partial = options.sections.size() > 0;
+        if (partial && options.idIndexFile != null && options.idIndexFile.exists())
+            pipeline.setIdIndex(IdIndex.read(options.idIndexFile));
+
         XHTML result = pipeline.execute(options.xhtmlTemplateFile);
 
+        if (pipeline.getCheckReport() != null) {
+            if (pipeline.getTraceRecorder() != null)
+                pipeline.getTraceRecorder().write(options.traceFile);
+            if (pipeline.getCheckReport().hasProblems()) {
+                System.err.println(pipeline.getCheckReport());
+                System.exit(1);
+            }
+            System.out.println(pipeline.getCheckReport());
+            return;
+        }
+
         pipeline.prepareOutputFile(options.xhtmlOutputFile, options.overwriteOutputFile);
 
         System.out.println("Writing output file: " + options.xhtmlOutputFile.getAbsolutePath());
@@ -187,6 +639,14 @@ public class XHTMLTemplateJavadocPipeline extends Pipeline<XHTML, XHTML> {
                 options.xhtmlOutputFile,
                 pipeline.getParser().print(result, 4, true) // TODO: Make configurable?
         );
+
+        if (!partial && options.idIndexFile != null)
+            IdIndex.collect(result, options.xhtmlOutputFile.getName()).write(options.idIndexFile);
+
+        if (pipeline.getCostReport() != null)
+            pipeline.getCostReport().write(options.xhtmlOutputFile);
+        if (pipeline.getTraceRecorder() != null)
+            pipeline.getTraceRecorder().write(options.traceFile);
     }
 
     /**
@@ -198,6 +658,10 @@ public class XHTMLTemplateJavadocPipeline extends Pipeline<XHTML, XHTML> {
                 usage = "The base path(s) of all source and resource files.")
         public List<File> sourceDirectories = new ArrayList();
 
+        @Option(required = false, name = "-a", metaVar = "<sources.jar>",
+                usage = "Source archive searched after the source directories, repeat option for multiple archives.")
+        public List<File> sourceArchives = new ArrayList();
+
         @Option(required = false, name = "-p", metaVar = "<package.name>",
                 usage = "Included package, repeat option for multiple packages.")
         public List<String> packageNames = new ArrayList();
@@ -210,6 +674,34 @@ public class XHTMLTemplateJavadocPipeline extends Pipeline<XHTML, XHTML> {
         @Option(name = "-xref", metaVar = "true|false", usage = "Process Javadoc {@link} tags with stable identifiers.")
         public boolean processXRefs = true;
 
+        @Option(name = "-deferValidation", metaVar = "true|false",
+                usage = "Validate all cited Javadoc content once at the end, not every citation on its own.")
+        public boolean deferValidation = false;
+
+        @Option(name = "-costReport", metaVar = "true|false",
+                usage = "Write the processing cost of every citation as JSON and HTML next to the output file.")
+        public boolean costReport = false;
+
+        @Option(name = "-trace", metaVar = "<trace.json>",
+                usage = "Write a timeline of the execution as Chrome/Perfetto trace-event JSON.")
+        public File traceFile;
+
+        @Option(name = "-model", metaVar = "JAVADOC|SOURCE",
+                usage = "Build the source model with the Javadoc tool, or parse the source files directly (faster).")
+        public SourceModel.Backend sourceModel = SourceModel.Backend.JAVADOC;
+
+        @Option(name = "-modelShards", metaVar = "<count>",
+                usage = "Build the Javadoc model with this many parallel Javadoc runs, each documents a part of the packages.")
+        public int modelShards = 1;
+
+        @Option(name = "-check", metaVar = "true|false",
+                usage = "Only check citations and cross-references, report all problems and write no output.")
+        public boolean check = false;
+
+        @Option(name = "-section", metaVar = "<id|xpath>",
+                usage = "Render only this section, repeat option for multiple sections. Other sections are stubs.")
+        public List<String> sections = new ArrayList();
+
         public SharedOptions() {
         }
 
@@ -247,11 +739,23 @@ public class XHTMLTemplateJavadocPipeline extends Pipeline<XHTML, XHTML> {
                 }
             }
 
+            for (File sourceArchive : sourceArchives) {
+                if (!sourceArchive.isFile() || !sourceArchive.canRead()) {
+                    System.err.println("Source archive not found or not readable: " + sourceArchive);
+                    return false;
+                }
+            }
+
             if (!xhtmlTemplateFile.exists()) {
                 System.err.println("XHTML template file not found: " + xhtmlTemplateFile);
                 return false;
             }
 
+            if (modelShards < 1) {
+                System.err.println("Number of model shards must be positive: " + modelShards);
+                return false;
+            }
+
             if (packageNames.size() == 0) {
                 for (File sourceDirectory : sourceDirectories) {
                     // Default to all sub-directories in source directory
@@ -276,18 +780,31 @@ public class XHTMLTemplateJavadocPipeline extends Pipeline<XHTML, XHTML> {
      */
     public static class Options extends SharedOptions {
 
-        @Option(required = true, name = "-o", metaVar = "<result.xhtml>", usage = "XHTML output file.")
+        @Option(name = "-o", metaVar = "<result.xhtml>", usage = "XHTML output file, required unless checking.")
         public File xhtmlOutputFile;
 
         @Option(name = "-overwrite", metaVar = "true|false", usage = "Overwrite existing output file quietly.")
         public boolean overwriteOutputFile = false;
 
+        @Option(name = "-idIndex", metaVar = "<result.ids>",
+                usage = "Identifier index, written by a full run and read by a run with selected sections.")
+        public File idIndexFile;
+
         public Options() {
         }
 
         public Options(String[] args) {
             super(args);
         }
+
+        @Override
+        public boolean prepare() {
+            if (!check && xhtmlOutputFile == null) {
+                System.err.println("XHTML output file is required: -o <result.xhtml>");
+                return false;
+            }
+            return super.prepare();
+        }
     }
 
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fourthline.lemma.pipeline.jfr;
+
+import java.io.File;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Creates and commits flight recorder events, does nothing if no recording is active.
+ * <p>
+ * The <code>begin</code> methods return <code>null</code> if the event type is not enabled,
+ * or if the JVM has no flight recorder API. Pass the returned event to {@link #end(Object)}
+ * when the measured operation completes, <code>null</code> is ignored.
+ * </p>
+ * <p>
+ * Content loads and line range parses are tagged with the address of the citation currently
+ * read on the same thread, the file of a reader event is the first file it resolves.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class FlightRecorderEvents {
+
+    final private static Logger log = Logger.getLogger(FlightRecorderEvents.class.getName());
+
+    final public static boolean AVAILABLE = isAvailable();
+
+    final private static ThreadLocal<Object> currentReaderEvent = new ThreadLocal<Object>();
+
+    protected static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (Throwable t) {
+            log.fine("Flight recorder API not available, not creating events: " + t);
+            return false;
+        }
+    }
+
+    public static Object beginPipeline(Class pipelineClass) {
+        if (!AVAILABLE) return null;
+        PipelineEvent event = new PipelineEvent();
+        if (!event.isEnabled()) return null;
+        event.pipeline = pipelineClass.getName();
+        event.begin();
+        return event;
+    }
+
+    public static Object beginProcessor(Class processorClass) {
+        if (!AVAILABLE) return null;
+        ProcessorEvent event = new ProcessorEvent();
+        if (!event.isEnabled()) return null;
+        event.processor = processorClass.getName();
+        event.begin();
+        return event;
+    }
+
+    public static Object beginReader(Class readerClass, Object address) {
+        if (!AVAILABLE) return null;
+        ReaderEvent event = new ReaderEvent();
+        if (!event.isEnabled()) return null;
+        event.reader = readerClass.getName();
+        event.address = String.valueOf(address);
+        currentReaderEvent.set(event);
+        event.begin();
+        return event;
+    }
+
+    public static Object beginJavadocModel(List<File> sourceDirectories, List<String> packageNames) {
+        if (!AVAILABLE) return null;
+        JavadocModelEvent event = new JavadocModelEvent();
+        if (!event.isEnabled()) return null;
+        event.sourceDirectories = sourceDirectories.toString();
+        event.packages = packageNames.toString();
+        event.begin();
+        return event;
+    }
+
+    public static Object beginLineRangeParse(File file) {
+        if (!AVAILABLE) return null;
+        LineRangeParseEvent event = new LineRangeParseEvent();
+        if (!event.isEnabled()) return null;
+        event.address = getCurrentAddress();
+        event.file = file.getPath();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * @param source Where the content is loaded from, e.g. <code>disk</code>, <code>archive</code>, or <code>index</code>.
+     */
+    public static Object beginContentLoad(File file, String source) {
+        if (!AVAILABLE) return null;
+        ContentLoadEvent event = new ContentLoadEvent();
+        if (!event.isEnabled()) return null;
+        event.address = getCurrentAddress();
+        event.file = file.getPath();
+        event.source = source;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Records the file of the citation currently read on this thread.
+     */
+    public static void resolved(File file) {
+        if (!AVAILABLE || file == null) return;
+        ReaderEvent event = (ReaderEvent) currentReaderEvent.get();
+        if (event != null && event.file == null)
+            event.file = file.getPath();
+    }
+
+    public static void end(Object event) {
+        if (event == null) return;
+        LemmaEvent lemmaEvent = (LemmaEvent) event;
+        if (currentReaderEvent.get() == lemmaEvent)
+            currentReaderEvent.remove();
+        lemmaEvent.end();
+        if (lemmaEvent.shouldCommit())
+            lemmaEvent.commit();
+    }
+
+    protected static String getCurrentAddress() {
+        ReaderEvent event = (ReaderEvent) currentReaderEvent.get();
+        return event != null ? event.address : null;
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fourthline.lemma.pipeline.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Parsing of the declaration line ranges of a Java source file.
+ *
+ * @author Christian Bauer
+ */
+@Name(LemmaEvent.NAME_PREFIX + "LineRangeParse")
+@Label("Line Range Parse")
+@Description("Parsing of the declaration line ranges of a Java source file.")
+public class LineRangeParseEvent extends LemmaEvent {
+
+    @Label("Citation Address")
+    String address;
+
+    @Label("File")
+    String file;
+}
@@ -17,23 +17,31 @@
 
 package org.fourthline.lemma.processor;
 
-import com.sun.javadoc.RootDoc;
+import org.fourthline.lemma.model.SourceModel;
 
 /**
- * Resolves citation sources with the help of a Javadoc <code>RootDoc</code> instance.
+ * Resolves citation sources with the help of a <code>SourceModel</code> instance.
  *
  * @author Christian Bauer
  */
 public abstract class AbstractJavadocProcessor<IN, OUT> extends AbstractProcessor<IN, OUT> {
 
-    final private RootDoc rootDoc;
+    private SourceModel sourceModel;
 
-    protected AbstractJavadocProcessor(RootDoc rootDoc) {
-        this.rootDoc = rootDoc;
+    protected AbstractJavadocProcessor(SourceModel sourceModel) {
+        this.sourceModel = sourceModel;
     }
 
-    public RootDoc getRootDoc() {
-        return rootDoc;
+    public SourceModel getSourceModel() {
+        return sourceModel;
+    }
+
+    /**
+     * Releases the source model and all readers, the processor can't read citations afterwards.
+     */
+    public void release() {
+        sourceModel = null;
+        releaseReaders();
     }
 
 }
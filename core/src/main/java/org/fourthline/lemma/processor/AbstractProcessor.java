@@ -23,6 +23,9 @@ import org.seamless.xhtml.XHTMLElement;
 import org.seamless.xhtml.XHTMLParser;
 import org.fourthline.lemma.anchor.CitationAnchor;
 import org.fourthline.lemma.anchor.Scheme;
+import org.fourthline.lemma.pipeline.CacheStatistics;
+import org.fourthline.lemma.pipeline.ParserPool;
+import org.fourthline.lemma.reader.csv.CSVReader;
 import org.fourthline.lemma.reader.javacode.JavacodeRawReader;
 import org.fourthline.lemma.reader.javacode.JavacodeReader;
 import org.fourthline.lemma.reader.text.PlaintextReader;
@@ -48,19 +51,12 @@ import java.util.Map;
  */
 public abstract class AbstractProcessor<IN, OUT> implements Processor<IN, OUT> {
 
-    final private XHTMLParser parser = new XHTMLParser();
-    final private XPath xpath;
-
-    protected AbstractProcessor() {
-        this.xpath = parser.createXPath();
-    }
-
     public XHTMLParser getParser() {
-        return parser;
+        return ParserPool.getParser();
     }
 
     public XPath getXPath() {
-        return xpath;
+        return ParserPool.getXPath();
     }
 
     final protected Map<String, Class<? extends Reader>> READER_SUFFIX_MAP =
@@ -70,23 +66,39 @@ public abstract class AbstractProcessor<IN, OUT> implements Processor<IN, OUT> {
                 put(".xhtml", XMLReader.class);
                 put(".xml", XMLReader.class);
                 put(".txt", PlaintextReader.class);
-                put(".csv", PlaintextReader.class);
+                put(".csv", CSVReader.class);
             }};
 
     final private Map<Class<? extends Reader>, Reader> readerCache = new HashMap();
 
+    final private CacheStatistics readerCacheStatistics = new CacheStatistics("readers");
+
+    public CacheStatistics getReaderCacheStatistics() {
+        return readerCacheStatistics;
+    }
+
+    /**
+     * Releases all cached readers, together with their caches, e.g. of parsed source files.
+     */
+    public void releaseReaders() {
+        readerCache.clear();
+        readerCacheStatistics.setSize(0, -1);
+    }
+
     public Reader getReader(CitationAnchor citation) {
 
         Class<? extends Reader> readerType = null;
         Option readerOption = citation.getOption(CitationAnchor.OptionKey.READER);
 
-        if (readerOption == null && !citation.getAddress().getScheme().equals(Scheme.FILE)) {
+        if (readerOption == null && !isFileScheme(citation.getAddress().getScheme())) {
 
             switch(citation.getAddress().getScheme()) {
                 case JAVADOC:
-                    return new JavadocReader();
+                    readerType = JavadocReader.class;
+                    break;
                 case JAVACODE:
-                    return new JavacodeReader();
+                    readerType = JavacodeReader.class;
+                    break;
                 default:
                     throw new IllegalStateException("No reader available for address scheme of: " + citation);
             }
@@ -115,16 +127,29 @@ public abstract class AbstractProcessor<IN, OUT> implements Processor<IN, OUT> {
         if (readerType == null)
             throw new IllegalStateException("Unconfigured and/or unknown reader type for: " + citation);
 
-        if (!readerCache.containsKey(readerType)) {
-            try {
-                Reader reader = readerType.newInstance();
-                readerCache.put(readerType, reader);
-            } catch (Exception ex) {
-                throw new RuntimeException("Can't instantiate reader type: " + readerType, ex);
-            }
+        Reader reader = readerCache.get(readerType);
+        if (reader != null) {
+            readerCacheStatistics.hit();
+            return reader;
+        }
+        readerCacheStatistics.miss();
+        try {
+            long start = System.nanoTime();
+            reader = readerType.newInstance();
+            readerCacheStatistics.loaded(System.nanoTime() - start);
+            readerCache.put(readerType, reader);
+            readerCacheStatistics.setSize(readerCache.size(), -1);
+        } catch (Exception ex) {
+            throw new RuntimeException("Can't instantiate reader type: " + readerType, ex);
         }
+        return reader;
+    }
 
-        return readerCache.get(readerType);
+    /**
+     * @return <code>true</code> if readers for addresses with this scheme are selected by file suffix.
+     */
+    protected boolean isFileScheme(Scheme scheme) {
+        return scheme.equals(Scheme.FILE) || scheme.equals(Scheme.JAR);
     }
 
 }
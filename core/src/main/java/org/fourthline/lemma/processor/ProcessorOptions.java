@@ -17,9 +17,27 @@
 
 package org.fourthline.lemma.processor;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class ProcessorOptions {
 
     final public static String CONTEXT_PROCESSOR_OPTIONS = " ProcessorOptions";
 
     public boolean processXRefs = true;
+
+    public boolean deferValidation = false;
+
+    /**
+     * Identifiers or XPath expressions of the sections to render, all sections are rendered if empty.
+     */
+    public List<String> selectedSections = new ArrayList<String>();
+
+    /**
+     * Resets the options of a single execution to their defaults, <code>processXRefs</code> is kept.
+     */
+    public void reset() {
+        deferValidation = false;
+        selectedSections.clear();
+    }
 }
@@ -0,0 +1,390 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.processor.xhtml;
+
+import org.fourthline.lemma.Constants;
+import org.fourthline.lemma.anchor.AnchorAddress;
+import org.fourthline.lemma.anchor.CitationAnchor;
+import org.fourthline.lemma.anchor.Scheme;
+import org.fourthline.lemma.model.ModelDoc;
+import org.fourthline.lemma.model.SourceModel;
+import org.fourthline.lemma.pipeline.CacheRegistry;
+import org.fourthline.lemma.pipeline.CheckReport;
+import org.fourthline.lemma.pipeline.Context;
+import org.fourthline.lemma.processor.AbstractJavadocProcessor;
+import org.fourthline.lemma.processor.ProcessorOptions;
+import org.fourthline.lemma.reader.FileResolver;
+import org.fourthline.lemma.reader.Reader;
+import org.fourthline.lemma.reader.content.LineRange;
+import org.fourthline.lemma.reader.content.handler.ContentCache;
+import org.fourthline.lemma.reader.content.handler.ContentFileHandler;
+import org.fourthline.lemma.reader.javacode.JavacodeRawReader;
+import org.fourthline.lemma.reader.javacode.JavacodeReader;
+import org.fourthline.lemma.reader.javadoc.AbstractJavadocReader;
+import org.fourthline.lemma.reader.javadoc.JavadocReader;
+import org.fourthline.lemma.reader.text.PlaintextReader;
+import org.fourthline.lemma.reader.xml.ElementSelector;
+import org.fourthline.lemma.reader.xml.XMLReader;
+import org.seamless.xhtml.Option;
+import org.seamless.xhtml.XHTML;
+import org.seamless.xhtml.XHTMLParser;
+import org.seamless.xml.ParserException;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks all citation and cross-reference anchors in XHTML documents without rendering them.
+ * <p>
+ * Every citation address is resolved, against the source model for <code>javadoc://</code> and
+ * <code>javacode://</code> addresses, and with the {@link FileResolver} for files. The lines of cited
+ * methods are looked up with the line range parser of the source file, and the fragment labels named
+ * in <code>include</code> and <code>exclude</code> options must appear in the cited lines. Citations
+ * in cited Javadoc comments are checked recursively. Finally, each cross-reference must point to the
+ * identifier of a citation, or an element of the template or of cited Javadoc content.
+ * </p>
+ * <p>
+ * No output document is built and the input is returned unchanged. Problems don't stop the check,
+ * they are added to the {@link CheckReport} of the context. The XHTML content of cited Javadoc comments
+ * is parsed but not validated against the schema, the full render does that.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class CitationCheckProcessor extends AbstractJavadocProcessor<XHTML, XHTML> {
+
+    final private Logger log = Logger.getLogger(CitationCheckProcessor.class.getName());
+
+    final private static Map<Class<? extends Reader>, Pattern> FRAGMENT_LABEL_PATTERNS =
+            new HashMap<Class<? extends Reader>, Pattern>();
+
+    static {
+        FRAGMENT_LABEL_PATTERNS.put(JavacodeReader.class, JavacodeReader.PATTERN_FRAGMENT_LABEL);
+        FRAGMENT_LABEL_PATTERNS.put(JavacodeRawReader.class, JavacodeReader.PATTERN_FRAGMENT_LABEL);
+        FRAGMENT_LABEL_PATTERNS.put(XMLReader.class, XMLReader.PATTERN_FRAGMENT_LABEL);
+        FRAGMENT_LABEL_PATTERNS.put(PlaintextReader.class, PlaintextReader.PATTERN_FRAGMENT_LABEL);
+    }
+
+    final protected ContentFileHandler handler = new ContentFileHandler();
+
+    public CitationCheckProcessor(SourceModel sourceModel) {
+        super(sourceModel);
+    }
+
+    public XHTML process(XHTML input, Context context) {
+        log.fine("Checking input...");
+
+        CheckReport report = (CheckReport) context.get(CheckReport.CONTEXT_CHECK_REPORT);
+        if (report == null)
+            throw new IllegalStateException("Missing check report in context, can't check citations");
+
+        ProcessorOptions processorOptions = (ProcessorOptions) context.get(ProcessorOptions.CONTEXT_PROCESSOR_OPTIONS);
+
+        CacheRegistry.register(context, getReaderCacheStatistics());
+
+        Check check = new Check(context, report, processorOptions.processXRefs);
+
+        if (check.processXRefs) {
+            collectIdentifiers(check, input, "template");
+            collectXRefs(check, input, new Stack<CitationAnchor>());
+        }
+
+        checkCitations(check, input, new Stack<CitationAnchor>());
+
+        if (check.processXRefs)
+            checkXRefs(check);
+
+        return input;
+    }
+
+    protected void checkCitations(Check check, XHTML input, Stack<CitationAnchor> stack) {
+
+        for (CitationAnchor citation : CitationAnchor.findCitationAnchors(getXPath(), input, Constants.TYPE_CITATION)) {
+
+            String location = getLocation(citation, stack);
+
+            AnchorAddress address;
+            try {
+                address = citation.getAddress();
+            } catch (RuntimeException ex) {
+                check.report.add(location, describe(ex));
+                continue;
+            }
+            if (address == null) continue;
+
+            check.report.checkedCitation();
+
+            if (stack.contains(citation)) {
+                check.report.add(location, "Circular citations, remove: " + citation);
+                continue;
+            }
+
+            stack.push(citation);
+            try {
+                checkCitation(check, citation, location, stack);
+            } catch (RuntimeException ex) {
+                check.report.add(location, describe(ex));
+            } finally {
+                stack.pop();
+            }
+        }
+    }
+
+    protected void checkCitation(Check check, CitationAnchor citation, String location, Stack<CitationAnchor> stack) {
+
+        // Fails for unknown reader types
+        Reader reader = getReader(citation);
+
+        if (check.processXRefs)
+            addIdentifier(check, citation.getOutputIdentifier(), location);
+
+        if (isFileScheme(citation.getAddress().getScheme())) {
+
+            checkFile(check, citation, reader, location);
+
+        } else if (reader instanceof AbstractJavadocReader) {
+
+            ModelDoc doc = ((AbstractJavadocReader) reader).findTargetDoc(citation, getSourceModel());
+
+            if (reader instanceof JavadocReader) {
+                checkJavadoc(check, citation, (JavadocReader) reader, doc, location, stack);
+            } else if (reader instanceof JavacodeReader) {
+                // Fails if the line range of a method or nested class can't be found
+                String[] source = ((JavacodeReader) reader).readSource(doc, getContentCache(check.context));
+                checkFragmentLabels(check, citation, JavacodeReader.PATTERN_FRAGMENT_LABEL, source, location);
+            }
+        }
+        // Custom readers are only instantiated
+    }
+
+    protected void checkFile(Check check, CitationAnchor citation, Reader reader, String location) {
+        FileResolver resolver = (FileResolver) check.context.get(FileResolver.CONTEXT_FILE_RESOLVER);
+        if (resolver == null)
+            throw new IllegalStateException("Missing file resolver in context, can't check files");
+
+        // Fails if the file can't be found
+        File file = resolver.resolve(citation.getAddress().getPath());
+
+        Option selectOption = citation.getOption(CitationAnchor.OptionKey.SELECT);
+        if (reader instanceof XMLReader && selectOption != null && selectOption.getFirstValue() != null) {
+            // Only the syntax, finding the element requires reading the file
+            new ElementSelector(selectOption.getFirstValue());
+            return;
+        }
+
+        LineRange range = citation.getAddress().getLineRange();
+        Pattern fragmentLabelPattern = FRAGMENT_LABEL_PATTERNS.get(reader.getClass());
+        if (range == null && (fragmentLabelPattern == null || !hasFragmentOptions(citation)))
+            return;
+
+        String[] lines = handler.getContent(file, range, getContentCache(check.context));
+
+        if (range != null && lines.length < range.getEnd() - range.getBegin() + 1) {
+            check.report.add(
+                    location,
+                    "Line range " + citation.getAddress().getFragment() + " exceeds the lines of file: " + file
+            );
+        }
+
+        if (fragmentLabelPattern != null)
+            checkFragmentLabels(check, citation, fragmentLabelPattern, lines, location);
+    }
+
+    protected void checkJavadoc(Check check, CitationAnchor citation, JavadocReader reader, ModelDoc doc,
+                                String location, Stack<CitationAnchor> stack) {
+
+        // Fails for {@link} tags which don't reference anything
+        String content = reader.readTags(doc.getInlineTags());
+
+        // Without markup there are no citations, cross-references, or identifiers
+        if (content.indexOf('<') == -1 && content.indexOf('&') == -1)
+            return;
+
+        XHTML contentDom;
+        try {
+            contentDom = getParser().parse(
+                    XHTMLParser.wrap(Constants.WRAPPER_ELEMENT.name(), XHTML.NAMESPACE_URI, content),
+                    false
+            );
+        } catch (ParserException ex) {
+            check.report.add(location, "Couldn't parse XHTML content of Javadoc comment: " + ex.getMessage());
+            return;
+        }
+
+        reader.resolveThisReferences(check.context, doc, contentDom);
+
+        if (check.processXRefs) {
+            collectIdentifiers(check, contentDom, location);
+            collectXRefs(check, contentDom, stack);
+        }
+
+        checkCitations(check, contentDom, stack);
+    }
+
+    protected void checkFragmentLabels(Check check, CitationAnchor citation, Pattern fragmentLabelPattern,
+                                       String[] lines, String location) {
+        if (!hasFragmentOptions(citation)) return;
+
+        Set<String> labels = new HashSet<String>();
+        for (String line : lines) {
+            Matcher m = fragmentLabelPattern.matcher(line);
+            if (m.matches())
+                labels.add(m.group(2));
+        }
+
+        for (CitationAnchor.OptionKey key :
+                new CitationAnchor.OptionKey[]{CitationAnchor.OptionKey.INCLUDE, CitationAnchor.OptionKey.EXCLUDE}) {
+            Option option = citation.getOption(key);
+            if (option == null) continue;
+            for (String label : option.getValues()) {
+                if (!labels.contains(label))
+                    check.report.add(
+                            location,
+                            "Fragment label of '" + key.getKey() + "' option not found in cited lines: DOC:" + label
+                    );
+            }
+        }
+    }
+
+    protected boolean hasFragmentOptions(CitationAnchor citation) {
+        return citation.getOption(CitationAnchor.OptionKey.INCLUDE) != null
+                || citation.getOption(CitationAnchor.OptionKey.EXCLUDE) != null;
+    }
+
+    protected void collectIdentifiers(Check check, XHTML input, String location) {
+        NodeList elements = input.getW3CDocument().getElementsByTagName("*");
+        for (int i = 0; i < elements.getLength(); i++) {
+            Element element = (Element) elements.item(i);
+            String id = element.getAttribute("id");
+            // A citation is replaced by its content, which has the identifier of the citation
+            if (id.length() == 0 || isCitation(element)) continue;
+            addIdentifier(check, id, location);
+        }
+    }
+
+    protected void addIdentifier(Check check, String id, String location) {
+        String otherLocation = check.identifiers.get(id);
+        if (otherLocation != null) {
+            check.report.add(location, "Duplicate identifier '" + id + "', also used by: " + otherLocation);
+        } else {
+            check.identifiers.put(id, location);
+        }
+    }
+
+    protected void collectXRefs(Check check, XHTML input, Stack<CitationAnchor> stack) {
+        for (CitationAnchor xref : CitationAnchor.findCitationAnchors(getXPath(), input, Constants.TYPE_XREF)) {
+            check.xrefs.add(new XRef(xref, getLocation(xref, stack)));
+        }
+    }
+
+    protected void checkXRefs(Check check) {
+        for (XRef xref : check.xrefs) {
+
+            AnchorAddress address;
+            try {
+                address = xref.anchor.getAddress();
+            } catch (RuntimeException ex) {
+                check.report.add(xref.location, describe(ex));
+                continue;
+            }
+            if (address == null) continue;
+
+            check.report.checkedXRef();
+
+            // Like the XRefProcessor, try both schemes
+            String xrefTarget = address.toIdentifierString();
+            String javacodeXrefTarget =
+                    new AnchorAddress(Scheme.JAVACODE, address.getPath(), address.getFragment()).toIdentifierString();
+
+            if (!check.identifiers.containsKey(xrefTarget) && !check.identifiers.containsKey(javacodeXrefTarget)) {
+                check.report.add(
+                        xref.location,
+                        "Linked citation identifier not found: " + xrefTarget + "/" + javacodeXrefTarget
+                );
+            }
+        }
+    }
+
+    protected boolean isCitation(Element element) {
+        for (String type : element.getAttribute("class").split("\\s+")) {
+            if (type.equals(Constants.TYPE_CITATION)) return true;
+        }
+        return false;
+    }
+
+    protected ContentCache getContentCache(Context context) {
+        return (ContentCache) context.get(ContentCache.CONTEXT_CONTENT_CACHE);
+    }
+
+    /**
+     * @return The address of the anchor, followed by the addresses of the citations including it.
+     */
+    protected String getLocation(CitationAnchor anchor, Stack<CitationAnchor> stack) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(anchor.getAttribute(XHTML.ATTR.href));
+        for (int i = stack.size() - 1; i >= 0; i--) {
+            sb.append(" in ").append(stack.get(i).getAttribute(XHTML.ATTR.href));
+        }
+        return sb.toString();
+    }
+
+    protected String describe(RuntimeException ex) {
+        return ex.getMessage() != null ? ex.getMessage() : ex.toString();
+    }
+
+    /**
+     * The state of one check, all identifiers and cross-references found in the document.
+     */
+    protected static class Check {
+
+        final Context context;
+        final CheckReport report;
+        final boolean processXRefs;
+        final Map<String, String> identifiers = new HashMap<String, String>();
+        final List<XRef> xrefs = new ArrayList<XRef>();
+
+        public Check(Context context, CheckReport report, boolean processXRefs) {
+            this.context = context;
+            this.report = report;
+            this.processXRefs = processXRefs;
+        }
+    }
+
+    protected static class XRef {
+
+        final CitationAnchor anchor;
+        final String location;
+
+        public XRef(CitationAnchor anchor, String location) {
+            this.anchor = anchor;
+            this.location = location;
+        }
+    }
+
+}
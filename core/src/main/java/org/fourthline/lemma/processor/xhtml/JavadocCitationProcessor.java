@@ -17,16 +17,23 @@
 
 package org.fourthline.lemma.processor.xhtml;
 
-import com.sun.javadoc.RootDoc;
 import org.fourthline.lemma.Constants;
 import org.fourthline.lemma.anchor.CitationAnchor;
+import org.fourthline.lemma.model.SourceModel;
+import org.fourthline.lemma.pipeline.CacheRegistry;
+import org.fourthline.lemma.pipeline.CitationCost;
 import org.fourthline.lemma.pipeline.Context;
+import org.fourthline.lemma.pipeline.CostReport;
+import org.fourthline.lemma.pipeline.TraceRecorder;
+import org.fourthline.lemma.pipeline.jfr.FlightRecorderEvents;
 import org.fourthline.lemma.processor.AbstractJavadocProcessor;
 import org.fourthline.lemma.processor.ProcessorOptions;
 import org.fourthline.lemma.reader.Reader;
+import org.fourthline.lemma.reader.javadoc.DeferredValidation;
 import org.seamless.xhtml.XHTML;
 
 import java.util.Stack;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -44,15 +51,30 @@ public class JavadocCitationProcessor extends AbstractJavadocProcessor<XHTML, XH
 
     private Logger log = Logger.getLogger(JavadocCitationProcessor.class.getName());
 
-    public JavadocCitationProcessor(RootDoc rootDoc) {
-        super(rootDoc);
+    public JavadocCitationProcessor(SourceModel sourceModel) {
+        super(sourceModel);
     }
 
     public XHTML process(XHTML input, Context context) {
         log.fine("Processing input...");
 
+        ProcessorOptions processorOptions = (ProcessorOptions)context.get(ProcessorOptions.CONTEXT_PROCESSOR_OPTIONS);
+
+        CacheRegistry.register(context, getReaderCacheStatistics());
+
+        DeferredValidation deferredValidation = null;
+        if (processorOptions.deferValidation) {
+            deferredValidation = new DeferredValidation();
+            context.put(DeferredValidation.CONTEXT_DEFERRED_VALIDATION, deferredValidation);
+        }
+
         XHTML output = processCitations(context, input, new Stack<CitationAnchor>());
 
+        if (deferredValidation != null) {
+            context.remove(DeferredValidation.CONTEXT_DEFERRED_VALIDATION);
+            deferredValidation.validate(getParser());
+        }
+
 /*
         if (log.isLoggable(Level.FINEST)) {
             log.finest("Completed processing input, generated output: ");
@@ -61,7 +83,6 @@ public class JavadocCitationProcessor extends AbstractJavadocProcessor<XHTML, XH
             log.finest("--------------------------------------------------------------------------------");
         }
 */
-        ProcessorOptions processorOptions = (ProcessorOptions)context.get(ProcessorOptions.CONTEXT_PROCESSOR_OPTIONS);
         if (processorOptions.processXRefs)
             getParser().checkDuplicateIdentifiers(output);
 
@@ -70,8 +91,11 @@ public class JavadocCitationProcessor extends AbstractJavadocProcessor<XHTML, XH
 
     protected XHTML processCitations(Context context, XHTML input, Stack<CitationAnchor> stack) {
 
+        CostReport costReport = (CostReport) context.get(CostReport.CONTEXT_COST_REPORT);
+
         CitationAnchor[] anchors = CitationAnchor.findCitationAnchors(getXPath(), input, Constants.TYPE_CITATION);
-        log.fine("Found citation anchors in input: " + anchors.length);
+        if (log.isLoggable(Level.FINE))
+            log.fine("Found citation anchors in input: " + anchors.length);
         for (CitationAnchor citation : anchors) {
 
             if (citation.getAddress() == null) continue;
@@ -81,28 +105,70 @@ public class JavadocCitationProcessor extends AbstractJavadocProcessor<XHTML, XH
                 throw new IllegalStateException("Circular citations, remove: " + citation);
             }
 
-            log.fine("Start processing: " + citation);
-            stack.push(citation);
+            TraceRecorder.Span citationSpan =
+                    TraceRecorder.begin(TraceRecorder.CATEGORY_CITATION, citation.getAddress().toString());
+            try {
+                processCitation(context, citation, stack, costReport);
+            } finally {
+                TraceRecorder.end(citationSpan);
+            }
+        }
+
+        return input;
+    }
 
-            Reader reader = getReader(citation);
-            XHTML result = reader.read(citation, context);
+    protected void processCitation(Context context, CitationAnchor citation, Stack<CitationAnchor> stack,
+                                   CostReport costReport) {
 
-            if (result == null) {
-                log.warning("Reader '" + reader.getClass() + "' did not produce a result for: " + citation);
-                continue;
-            }
+        if (log.isLoggable(Level.FINE))
+            log.fine("Start processing: " + citation);
+        stack.push(citation);
 
-            // Parse it again recursively!
-            result = processCitations(context, result, stack);
+        Reader reader = getReader(citation);
 
-            // Now swap the citation element with the result root element
-            citation.getParent().replaceChild(citation, result.getRoot(getXPath()), false);
+        CitationCost cost = null;
+        if (costReport != null) {
+            cost = new CitationCost(citation.getAddress().toString(), reader.getClass().getName());
+            costReport.add(cost);
+        }
 
-            log.fine("Completed processing: " + citation);
-            stack.pop();
+        XHTML result;
+        long readStart = cost != null ? cost.beginRead() : 0;
+        TraceRecorder.Span readerSpan =
+                TraceRecorder.begin(TraceRecorder.CATEGORY_READER, reader.getClass().getSimpleName());
+        Object readerEvent = FlightRecorderEvents.beginReader(reader.getClass(), citation.getAddress());
+        try {
+            result = reader.read(citation, context);
+        } catch (RuntimeException ex) {
+            if (cost != null)
+                cost.setFailure(ex.getMessage() != null ? ex.getMessage() : ex.toString());
+            throw ex;
+        } finally {
+            FlightRecorderEvents.end(readerEvent);
+            TraceRecorder.end(readerSpan);
+            if (cost != null) cost.endRead(readStart);
         }
 
-        return input;
+        if (result == null) {
+            log.warning("Reader '" + reader.getClass() + "' did not produce a result for: " + citation);
+            return;
+        }
+
+        if (cost != null)
+            cost.setNodes(CitationCost.countNodes(result.getRoot(getXPath()).getW3CElement()));
+
+        // Parse it again recursively!
+        result = processCitations(context, result, stack);
+
+        // Now swap the citation element with the result root element
+        long spliceStart = System.nanoTime();
+        citation.getParent().replaceChild(citation, result.getRoot(getXPath()), false);
+        if (cost != null)
+            cost.addTime(CitationCost.Stage.SPLICE, System.nanoTime() - spliceStart);
+
+        if (log.isLoggable(Level.FINE))
+            log.fine("Completed processing: " + citation);
+        stack.pop();
     }
 
 
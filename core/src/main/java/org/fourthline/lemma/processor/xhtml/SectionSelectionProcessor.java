@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.processor.xhtml;
+
+import org.fourthline.lemma.Constants;
+import org.fourthline.lemma.anchor.CitationAnchor;
+import org.fourthline.lemma.pipeline.Context;
+import org.fourthline.lemma.processor.AbstractProcessor;
+import org.fourthline.lemma.processor.ProcessorOptions;
+import org.seamless.xhtml.Body;
+import org.seamless.xhtml.XHTML;
+import org.seamless.xhtml.XHTMLElement;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Removes everything but the selected sections from the template, before any citation is read.
+ * <p>
+ * Sections are selected by identifier, or with an XPath expression starting with a slash or a
+ * parenthesis, e.g. <code>(//*[@class='chapter'])[3]</code>.
+ * Every other section (a container classed as a {@link TocProcessor.SectionType}) which doesn't
+ * contain a selected section is replaced by a <code>stub</code>, it keeps its attributes and title.
+ * Citations outside of the selected sections are removed, so only the selected citations are read.
+ * </p>
+ * <p>
+ * Cross-references to identifiers of removed citations can be resolved with the
+ * {@link org.fourthline.lemma.pipeline.IdIndex} of the last full run.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class SectionSelectionProcessor extends AbstractProcessor<XHTML, XHTML> {
+
+    final private Logger log = Logger.getLogger(SectionSelectionProcessor.class.getName());
+
+    public XHTML process(XHTML input, Context context) {
+        ProcessorOptions processorOptions = (ProcessorOptions) context.get(ProcessorOptions.CONTEXT_PROCESSOR_OPTIONS);
+        if (processorOptions.selectedSections.size() == 0)
+            return input;
+
+        List<Element> selected = findSelectedSections(input, processorOptions.selectedSections);
+
+        Body body = input.getRoot(getXPath()).getBody();
+        int stubs = body != null ? stubSections(body, selected) : 0;
+
+        int removed = 0;
+        for (CitationAnchor citation : CitationAnchor.findCitationAnchors(getXPath(), input, Constants.TYPE_CITATION)) {
+            if (isInside(citation.getW3CElement(), selected)) continue;
+            citation.getW3CElement().getParentNode().removeChild(citation.getW3CElement());
+            removed++;
+        }
+
+        log.info("Rendering " + selected.size() + " selected section(s), replaced "
+                + stubs + " section(s) with stubs and removed " + removed + " other citation(s)");
+        return input;
+    }
+
+    protected List<Element> findSelectedSections(XHTML input, List<String> selectors) {
+        List<Element> selected = new ArrayList<Element>();
+        for (String selector : selectors) {
+            int found = 0;
+            if (selector.startsWith("/") || selector.startsWith("(")) {
+                NodeList nodes;
+                try {
+                    nodes = (NodeList) getXPath().evaluate(selector, input.getW3CDocument(), XPathConstants.NODESET);
+                } catch (XPathExpressionException ex) {
+                    throw new IllegalArgumentException("Invalid XPath expression of selected section: " + selector, ex);
+                }
+                for (int i = 0; i < nodes.getLength(); i++) {
+                    if (nodes.item(i).getNodeType() != Node.ELEMENT_NODE) continue;
+                    selected.add((Element) nodes.item(i));
+                    found++;
+                }
+            } else {
+                XHTMLElement element = input.getRoot(getXPath()).findChildWithIdentifier(selector);
+                if (element != null) {
+                    selected.add(element.getW3CElement());
+                    found++;
+                }
+            }
+            if (found == 0)
+                throw new IllegalArgumentException("Selected section not found in template: " + selector);
+        }
+        return selected;
+    }
+
+    /**
+     * @return The number of sections replaced with stubs.
+     */
+    protected int stubSections(XHTMLElement element, List<Element> selected) {
+        int stubs = 0;
+        for (XHTMLElement child : element.getChildren()) {
+            if (isInside(child.getW3CElement(), selected))
+                continue;
+            if (isSection(child) && !isContaining(child.getW3CElement(), selected)) {
+                stub(child);
+                child.setAttribute(XHTML.ATTR.CLASS, child.getAttribute(XHTML.ATTR.CLASS) + " " + Constants.TYPE_STUB);
+                stubs++;
+            } else {
+                stubs += stubSections(child, selected);
+            }
+        }
+        return stubs;
+    }
+
+    /**
+     * Removes all content of the section except its title, so the section is still listed in the TOC.
+     */
+    protected void stub(XHTMLElement section) {
+        Node node = section.getW3CElement().getFirstChild();
+        while (node != null) {
+            Node next = node.getNextSibling();
+            if (!isTitle(node))
+                section.getW3CElement().removeChild(node);
+            node = next;
+        }
+    }
+
+    protected boolean isTitle(Node node) {
+        if (node.getNodeType() != Node.ELEMENT_NODE) return false;
+        for (String type : ((Element) node).getAttribute("class").split(" ")) {
+            if (type.trim().equals(Constants.TYPE_TITLE)) return true;
+        }
+        return false;
+    }
+
+    protected boolean isSection(XHTMLElement element) {
+        if (!element.getElementName().equals(TocProcessor.SECTION_ELEMENT)) return false;
+        for (String type : element.getClasses()) {
+            for (TocProcessor.SectionType sectionType : TocProcessor.SectionType.values()) {
+                if (type.trim().equals(sectionType.name())) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return <code>true</code> if the node is a selected element or one of its descendants.
+     */
+    protected boolean isInside(Node node, List<Element> selected) {
+        for (Node n = node; n != null; n = n.getParentNode()) {
+            if (selected.contains(n)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return <code>true</code> if a selected element is a descendant of the given element.
+     */
+    protected boolean isContaining(Element element, List<Element> selected) {
+        for (Element s : selected) {
+            for (Node n = s.getParentNode(); n != null; n = n.getParentNode()) {
+                if (n == element) return true;
+            }
+        }
+        return false;
+    }
+
+}
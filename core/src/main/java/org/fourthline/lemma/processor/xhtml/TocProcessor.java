@@ -28,6 +28,7 @@ import org.fourthline.lemma.processor.AbstractProcessor;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -122,7 +123,8 @@ public class TocProcessor extends AbstractProcessor<XHTML, XHTML> {
             }
         }
 
-        log.fine("Found section elements as children of '" + currentElement.getElementName() + "': " + sectionElements.size());
+        if (log.isLoggable(Level.FINE))
+            log.fine("Found section elements as children of '" + currentElement.getElementName() + "': " + sectionElements.size());
 
         // Create TOC items as needed for each section
         if (sectionElements.size() > 0) {
@@ -131,14 +133,17 @@ public class TocProcessor extends AbstractProcessor<XHTML, XHTML> {
                 SectionType sectionType = pair.fst;
                 XHTMLElement sectionElement = pair.snd;
 
-                log.finest("Analyzing section element of type: " + sectionType);
+                if (log.isLoggable(Level.FINEST))
+                    log.finest("Analyzing section element of type: " + sectionType);
 
                 // First, we need an identifier so we can link to the TOC item
-                log.finest("Trying to find nearest identifier of: " + sectionElement.getElementName());
+                if (log.isLoggable(Level.FINEST))
+                    log.finest("Trying to find nearest identifier of: " + sectionElement.getElementName());
                 String id = findNearestIdentifier(sectionElement);
 
                 // A title would be nice, so we can modify it later with a TOC number prefix
-                log.finest("Trying to find nearest title element of: " + sectionElement.getElementName());
+                if (log.isLoggable(Level.FINEST))
+                    log.finest("Trying to find nearest title element of: " + sectionElement.getElementName());
                 XHTMLElement titleElement = findNearestTitleElement(sectionElement);
 
                 // If we don't have them...
@@ -149,8 +154,10 @@ public class TocProcessor extends AbstractProcessor<XHTML, XHTML> {
                     continue;
                 }
 
-                log.finest("Found identifier: " + id);
-                log.finest("Found title element content: " + titleElement.getContent());
+                if (log.isLoggable(Level.FINEST)) {
+                    log.finest("Found identifier: " + id);
+                    log.finest("Found title element content: " + titleElement.getContent());
+                }
 
                 // If we have them, create the TOC item and link it into the TOC tree
                 TocItem sectionTocItem = new TocItem(currentTocItem.level + 1, sectionType.name(), id, titleElement);
@@ -179,7 +186,8 @@ public class TocProcessor extends AbstractProcessor<XHTML, XHTML> {
 
             if (childCitations.length > 0) {
                 id = childCitations[0].getId();
-                log.finest("Child citation elements found, using the identifier of the first: " + id);
+                if (log.isLoggable(Level.FINEST))
+                    log.finest("Child citation elements found, using the identifier of the first: " + id);
             } else {
                 log.finest("No child citation elements found");
             }
@@ -227,7 +235,8 @@ public class TocProcessor extends AbstractProcessor<XHTML, XHTML> {
 
         public void generate(XHTMLElement parentElement, String numberPrefix, int number) {
 
-            log.finest("Generating TOC item output, item in parent is " + number + " and prefix is: " + numberPrefix);
+            if (log.isLoggable(Level.FINEST))
+                log.finest("Generating TOC item output, item in parent is " + number + " and prefix is: " + numberPrefix);
 
             String itemClass = TYPE_TOC_ITEM + " " + TYPE_TOC_ITEM_LEVEL + level + " " + TYPE_TOC_ITEM_LEVEL + levelName;
             String prefixedNumber = numberPrefix + (number + 1) + ".";
@@ -244,7 +253,8 @@ public class TocProcessor extends AbstractProcessor<XHTML, XHTML> {
                     .setAttribute(XHTML.ATTR.href, "#" + id)
                     .setContent(titleElement.getContent());
 
-            log.finest("Prefixing title '" + titleElement.getContent() + "' with numbers: " + prefixedNumber);
+            if (log.isLoggable(Level.FINEST))
+                log.finest("Prefixing title '" + titleElement.getContent() + "' with numbers: " + prefixedNumber);
             titleElement.setContent(prefixedNumber + " " + titleElement.getContent());
 
             for (int i = 0; i < children.size(); i++) {
@@ -22,15 +22,21 @@ import org.seamless.xhtml.XHTML;
 import org.seamless.xhtml.XHTMLElement;
 import org.fourthline.lemma.Constants;
 import org.fourthline.lemma.pipeline.Context;
+import org.fourthline.lemma.pipeline.IdIndex;
 import org.fourthline.lemma.anchor.CitationAnchor;
 import org.fourthline.lemma.anchor.AnchorAddress;
 import org.fourthline.lemma.anchor.Scheme;
 import org.fourthline.lemma.processor.AbstractProcessor;
 
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Detects cross-reference anchors and sets their link text.
+ * <p>
+ * Identifiers not found in the document are looked up in the {@link IdIndex} of the context, if
+ * present, and the cross-reference then links into the document of that index.
+ * </p>
  *
  * @author Christian Bauer
  */
@@ -61,6 +67,8 @@ public class XRefProcessor extends AbstractProcessor<XHTML, XHTML> {
 
     protected XHTML transformReferences(XHTML input, Context context) {
 
+        IdIndex idIndex = (IdIndex) context.get(IdIndex.CONTEXT_ID_INDEX);
+
         CitationAnchor[] xrefs = CitationAnchor.findCitationAnchors(getXPath(), input, Constants.TYPE_XREF);
         for (CitationAnchor xref : xrefs) {
 
@@ -74,11 +82,13 @@ public class XRefProcessor extends AbstractProcessor<XHTML, XHTML> {
                             xref.getAddress().getFragment()
                     ).toIdentifierString();
 
-            log.finest("Trying to resolve xref: " + xrefTarget);
+            if (log.isLoggable(Level.FINEST))
+                log.finest("Trying to resolve xref: " + xrefTarget);
             XHTMLElement resolvedCitationElement = input.getRoot(getXPath()).findChildWithIdentifier(xrefTarget);
 
             if (resolvedCitationElement == null) {
-                log.fine("Could not resolve xref, trying: " + javacodeXrefTargetIdentifier);
+                if (log.isLoggable(Level.FINE))
+                    log.fine("Could not resolve xref, trying: " + javacodeXrefTargetIdentifier);
                 resolvedCitationElement = input.getRoot(getXPath()).findChildWithIdentifier(javacodeXrefTargetIdentifier);
             }
 
@@ -93,6 +103,19 @@ public class XRefProcessor extends AbstractProcessor<XHTML, XHTML> {
                     xref.setContent(citationLabel != null ? citationLabel : getResolvedLabel(xref));
                 }
 
+            } else if (idIndex != null
+                    && (idIndex.contains(xrefTarget) || idIndex.contains(javacodeXrefTargetIdentifier))) {
+
+                String id = idIndex.contains(xrefTarget) ? xrefTarget : javacodeXrefTargetIdentifier;
+                if (log.isLoggable(Level.FINE))
+                    log.fine("Resolved xref with identifier index of '" + idIndex.getDocument() + "': " + id);
+
+                xref.setAttribute(XHTML.ATTR.href, idIndex.getHref(id));
+                if (!xref.getW3CElement().hasChildNodes()) {
+                    String citationLabel = idIndex.getTitle(id);
+                    xref.setContent(citationLabel != null ? citationLabel : getResolvedLabel(xref));
+                }
+
             } else {
                 log.warning("Linked citation identifier not found: " + xrefTarget + "/" + javacodeXrefTargetIdentifier);
 
@@ -17,7 +17,11 @@
 
 package org.fourthline.lemma.reader;
 
+import org.fourthline.lemma.pipeline.CitationCost;
 import org.fourthline.lemma.pipeline.Context;
+import org.fourthline.lemma.pipeline.ParserPool;
+import org.fourthline.lemma.pipeline.jfr.FlightRecorderEvents;
+import org.fourthline.lemma.reader.content.handler.ContentCache;
 import org.fourthline.lemma.processor.ProcessorOptions;
 import org.seamless.xhtml.Option;
 import org.seamless.xhtml.XHTML;
@@ -29,8 +33,6 @@ import org.fourthline.lemma.anchor.CitationAnchor;
 
 import javax.xml.xpath.XPath;
 import java.io.File;
-import java.net.URISyntaxException;
-import java.net.URL;
 
 /**
  * Provides shared operations for reading and wrapping citation content.
@@ -39,19 +41,12 @@ import java.net.URL;
  */
 public abstract class AbstractReader implements Reader {
 
-    final private XHTMLParser parser = new XHTMLParser();
-    final private XPath xpath;
-
-    protected AbstractReader() {
-        this.xpath = parser.createXPath();
-    }
-
     public XHTMLParser getParser() {
-        return parser;
+        return ParserPool.getParser();
     }
 
     public XPath getXPath() {
-        return xpath;
+        return ParserPool.getXPath();
     }
 
     /**
@@ -59,35 +54,36 @@ public abstract class AbstractReader implements Reader {
      * <p>
      * First, the given path is resolved against the given source directories. If no file
      * can be found in any source directory matching the path, a classpath lookup is attempted.
+     * The {@link FileResolver} of the context is used, a new resolver is added to the context
+     * if none is present or if it is configured with different source directories.
      * </p>
      *
      * @param path              The path of the file to be resolved.
      * @param sourceDirectories The source directories of any file.
+     * @param context           The context holding the shared resolver.
      * @return The found file.
      */
-    protected File resolveFile(String path, File[] sourceDirectories) {
-        File file = null;
-        for (File sourceDirectory : sourceDirectories) {
-            file = new File(sourceDirectory, path);
-            if (file.canRead())
-                break;
-        }
-        if (file == null || !file.canRead()) {
-            // Try the classpath
-            URL url = Thread.currentThread().getContextClassLoader().getResource(path);
-            try {
-                if (url != null)
-                    file = new File(url.toURI());
-            } catch (URISyntaxException e) {
-                // Ignore
-            }
-        }
-        if (file == null || !file.canRead()) {
-            throw new RuntimeException("Referenced file not found in source directories or classpath: " + path);
+    protected File resolveFile(String path, File[] sourceDirectories, Context context) {
+        FileResolver resolver = (FileResolver) context.get(FileResolver.CONTEXT_FILE_RESOLVER);
+        if (resolver == null || !resolver.isResolving(sourceDirectories)) {
+            resolver = new FileResolver(sourceDirectories);
+            context.put(FileResolver.CONTEXT_FILE_RESOLVER, resolver);
         }
+        long start = CitationCost.start();
+        File file = resolver.resolve(path);
+        CitationCost.stop(CitationCost.Stage.RESOLVE, start);
+        CitationCost.resolved(file);
+        FlightRecorderEvents.resolved(file);
         return file;
     }
 
+    /**
+     * @return The shared content cache of the context, or <code>null</code> if readers should use their own cache.
+     */
+    protected ContentCache getContentCache(Context context) {
+        return (ContentCache) context.get(ContentCache.CONTEXT_CONTENT_CACHE);
+    }
+
     /**
      * Appends a new child element to the given element, wrapping the title string.
      *
@@ -98,7 +94,9 @@ public abstract class AbstractReader implements Reader {
         if (titleString == null) return;
         try {
             String wrappedTitle = XHTMLParser.wrap(Constants.WRAPPER_ELEMENT.name(), XHTML.NAMESPACE_URI, titleString);
+            long start = CitationCost.start();
             XHTML titleDom = getParser().parse(wrappedTitle, false);
+            CitationCost.stop(CitationCost.Stage.PARSE, start);
 
             titleDom.getRoot(getXPath()).setAttribute(XHTML.ATTR.CLASS, Constants.TYPE_TITLE);
             parent.appendChild(titleDom.getRoot(getXPath()), false);
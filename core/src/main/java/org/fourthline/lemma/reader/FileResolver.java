@@ -0,0 +1,327 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.reader;
+
+import org.fourthline.lemma.reader.content.handler.ArchiveEntryFile;
+import org.fourthline.lemma.reader.content.handler.SourceArchive;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Resolves citation file paths against source directories and the classpath.
+ * <p>
+ * The source directories are scanned once, on first lookup, and an index of relative
+ * path to file is kept. A directory reached again through a symbolic link is not scanned again,
+ * so links can't make the scan loop. A path which is not in the index is probed directly in
+ * the source directories (it might have been created after the scan, or only be reachable
+ * through a link which was not followed), and only then looked up on the classpath. Classpath hits and misses are cached, as the context classloader might
+ * have to search many JARs to produce a miss.
+ * </p>
+ * <p>
+ * Indexed and cached files are checked before they are returned, an entry of a deleted
+ * file is dropped and the lookup is repeated.
+ * </p>
+ * <p>
+ * A path is always resolved in the configured order of source directories, the file in the
+ * first source directory containing it is returned. Before an indexed file is returned, the source
+ * directories preceding its own are probed, a file created there after the scan replaces the entry.
+ * </p>
+ * <p>
+ * Source archives (e.g. <code>-sources.jar</code> files) are searched after the source
+ * directories, their entries are returned as {@link ArchiveEntryFile}. A path can also
+ * name an archive and an entry explicitly, as in <code>lib/foo-sources.jar!/com/foo/Bar.java</code>;
+ * the archive path is then resolved like any other file.
+ * </p>
+ * <p>
+ * All resolved files on disk are recorded, see {@link #getResolvedFiles()}. Entries of source
+ * archives are not recorded, only the archive files themselves if they have been resolved.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class FileResolver {
+
+    final private Logger log = Logger.getLogger(FileResolver.class.getName());
+
+    final public static String CONTEXT_FILE_RESOLVER = "FileResolver";
+
+    final private File[] sourceDirectories;
+    final private File[] sourceArchives;
+
+    private Map<String, File> index;
+    final private Map<String, File> classpathHits = new HashMap<String, File>();
+    final private Set<String> classpathMisses = new HashSet<String>();
+    final private Map<File, SourceArchive> openArchives = new HashMap<File, SourceArchive>();
+    final private Set<File> resolvedFiles = new LinkedHashSet<File>();
+
+    private long lookups;
+    private long indexHits;
+    private long classpathLookups;
+
+    public FileResolver(File[] sourceDirectories) {
+        this(sourceDirectories, null);
+    }
+
+    public FileResolver(File[] sourceDirectories, File[] sourceArchives) {
+        this.sourceDirectories = sourceDirectories != null ? sourceDirectories : new File[0];
+        this.sourceArchives = sourceArchives != null ? sourceArchives : new File[0];
+    }
+
+    public File[] getSourceDirectories() {
+        return sourceDirectories;
+    }
+
+    public File[] getSourceArchives() {
+        return sourceArchives;
+    }
+
+    public boolean isResolving(File[] sourceDirectories) {
+        return Arrays.equals(this.sourceDirectories, sourceDirectories);
+    }
+
+    /**
+     * @param path The path of the file to be resolved.
+     * @return The found file.
+     * @throws RuntimeException If the file can't be found in any source directory or on the classpath.
+     */
+    synchronized public File resolve(String path) {
+        lookups++;
+        File file = resolveFile(path);
+        if (!(file instanceof ArchiveEntryFile))
+            resolvedFiles.add(file);
+        return file;
+    }
+
+    protected File resolveFile(String path) {
+
+        int separator = path.indexOf(ArchiveEntryFile.SEPARATOR);
+        if (separator != -1)
+            return resolveArchiveEntry(path.substring(0, separator), path.substring(separator + 2));
+
+        if (index == null)
+            index = buildIndex();
+
+        File file = index.get(path);
+        if (file != null) {
+            if (file.canRead()) {
+                indexHits++;
+                File preceding = findInPrecedingSourceDirectory(path, file);
+                if (preceding != null) {
+                    if (log.isLoggable(Level.FINE))
+                        log.fine("File created in preceding source directory, replacing in index: " + preceding);
+                    index.put(path, preceding);
+                    return preceding;
+                }
+                return file;
+            }
+            if (log.isLoggable(Level.FINE))
+                log.fine("Indexed file is no longer readable, removing from index: " + file);
+            index.remove(path);
+        }
+
+        // Maybe it has been created since we scanned the source directories
+        for (File sourceDirectory : sourceDirectories) {
+            file = new File(sourceDirectory, path);
+            if (file.canRead()) {
+                index.put(path, file);
+                return file;
+            }
+        }
+
+        for (File sourceArchive : sourceArchives) {
+            file = getArchive(sourceArchive).getEntryFile(path);
+            if (file != null) {
+                index.put(path, file);
+                return file;
+            }
+        }
+
+        file = resolveClasspath(path);
+        if (file == null) {
+            throw new RuntimeException("Referenced file not found in source directories, source archives, or classpath: " + path);
+        }
+        return file;
+    }
+
+    /**
+     * @return The readable file of the path in a source directory preceding the directory of
+     *         the indexed file, or <code>null</code>.
+     */
+    protected File findInPrecedingSourceDirectory(String path, File indexedFile) {
+        for (File sourceDirectory : sourceDirectories) {
+            File file = new File(sourceDirectory, path);
+            if (file.equals(indexedFile))
+                return null;
+            if (file.canRead())
+                return file;
+        }
+        return null;
+    }
+
+    protected File resolveArchiveEntry(String archivePath, String entryName) {
+        File archiveFile = resolve(archivePath);
+        File file = getArchive(archiveFile).getEntryFile(entryName);
+        if (file == null) {
+            throw new RuntimeException("Referenced entry '" + entryName + "' not found in archive: " + archiveFile);
+        }
+        return file;
+    }
+
+    protected SourceArchive getArchive(File archiveFile) {
+        SourceArchive archive = openArchives.get(archiveFile);
+        if (archive == null) {
+            if (log.isLoggable(Level.FINE))
+                log.fine("Opening source archive: " + archiveFile);
+            try {
+                archive = new SourceArchive(archiveFile);
+            } catch (IOException ex) {
+                throw new RuntimeException("Can't open source archive: " + archiveFile, ex);
+            }
+            openArchives.put(archiveFile, archive);
+        }
+        return archive;
+    }
+
+    protected File resolveClasspath(String path) {
+        classpathLookups++;
+
+        File file = classpathHits.get(path);
+        if (file != null) {
+            if (file.canRead()) return file;
+            classpathHits.remove(path);
+        } else if (classpathMisses.contains(path)) {
+            return null;
+        }
+
+        if (log.isLoggable(Level.FINE))
+            log.fine("Trying to find file on classpath: " + path);
+        URL url = Thread.currentThread().getContextClassLoader().getResource(path);
+        try {
+            if (url != null)
+                file = new File(url.toURI());
+        } catch (URISyntaxException e) {
+            // Ignore
+        } catch (IllegalArgumentException e) {
+            // Not a file: URL, e.g. inside a JAR
+        }
+
+        if (file != null && file.canRead()) {
+            classpathHits.put(path, file);
+            return file;
+        }
+        classpathMisses.add(path);
+        return null;
+    }
+
+    protected Map<String, File> buildIndex() {
+        Map<String, File> map = new HashMap<String, File>();
+        for (File sourceDirectory : sourceDirectories) {
+            if (log.isLoggable(Level.FINE))
+                log.fine("Indexing files in source directory: " + sourceDirectory);
+            addToIndex(map, sourceDirectory, "", new HashSet<String>());
+        }
+        if (log.isLoggable(Level.FINE))
+            log.fine("Indexed files in source directories: " + map.size());
+        return map;
+    }
+
+    /**
+     * @param visitedDirectories The canonical paths of all directories scanned in this source directory.
+     */
+    protected void addToIndex(Map<String, File> map, File directory, String prefix, Set<String> visitedDirectories) {
+        String canonicalPath;
+        try {
+            canonicalPath = directory.getCanonicalPath();
+        } catch (IOException ex) {
+            canonicalPath = directory.getAbsolutePath();
+        }
+        if (!visitedDirectories.add(canonicalPath)) {
+            if (log.isLoggable(Level.FINE))
+                log.fine("Not indexing directory again, reached through symbolic link: " + directory);
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            String relativePath = prefix + file.getName();
+            if (file.isDirectory()) {
+                addToIndex(map, file, relativePath + "/", visitedDirectories);
+            } else if (!map.containsKey(relativePath)) {
+                // The first source directory wins
+                map.put(relativePath, file);
+            }
+        }
+    }
+
+    synchronized public void invalidate() {
+        index = null;
+        classpathHits.clear();
+        classpathMisses.clear();
+        close();
+    }
+
+    /**
+     * Closes all opened source archives, they will be opened again when needed.
+     */
+    synchronized public void close() {
+        for (SourceArchive archive : openArchives.values()) {
+            archive.close();
+        }
+        openArchives.clear();
+        // The index might contain entries of closed archives
+        index = null;
+    }
+
+    /**
+     * @return All files on disk returned by this resolver so far, in order of first resolution.
+     */
+    synchronized public Set<File> getResolvedFiles() {
+        return new LinkedHashSet<File>(resolvedFiles);
+    }
+
+    synchronized public long getLookups() {
+        return lookups;
+    }
+
+    synchronized public long getIndexHits() {
+        return indexHits;
+    }
+
+    synchronized public long getClasspathLookups() {
+        return classpathLookups;
+    }
+
+    @Override
+    synchronized public String toString() {
+        return "lookups: " + lookups
+                + ", index hits: " + indexHits
+                + ", fell through to classpath: " + classpathLookups
+                + " (cached hits/misses: " + classpathHits.size() + "/" + classpathMisses.size() + ")";
+    }
+}
@@ -23,6 +23,7 @@ import org.fourthline.lemma.anchor.CitationAnchor;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -49,7 +50,8 @@ public class CleanupFilter implements ContentFilter {
     public String[] filter(String[] source, CitationAnchor citation) {
         if (source == null || source.length == 0) return source;
 
-        log.fine("Cleaning (removing labels, whitespace, escaping) source lines: " + source.length);
+        if (log.isLoggable(Level.FINE))
+            log.fine("Cleaning (removing labels, whitespace, escaping) source lines: " + source.length);
         List<String> cleanLines = new ArrayList();
 
         // Count whitespaces of first line
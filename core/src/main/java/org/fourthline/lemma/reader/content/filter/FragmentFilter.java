@@ -23,6 +23,7 @@ import org.fourthline.lemma.anchor.CitationAnchor;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -57,8 +58,9 @@ public class FragmentFilter implements ContentFilter {
         String[] excludeFragments = excludeOption != null ? excludeOption.getValues() : new String[0];
         boolean printDotsForExcluded = dotsOption != null ? Boolean.valueOf(dotsOption.getFirstValue()) : false;
 
-        log.fine("Filtering " + source.length + " source lines, included/excluded fragments: "
-                + includeFragments.length + "/" + excludeFragments.length);
+        if (log.isLoggable(Level.FINE))
+            log.fine("Filtering " + source.length + " source lines, included/excluded fragments: "
+                    + includeFragments.length + "/" + excludeFragments.length);
 
         List<Integer> includedLines = new ArrayList();
 
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.reader.content.handler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * An entry of a {@link SourceArchive}, presented as a file to readers.
+ * <p>
+ * The path of this file is the path of the archive followed by the entry name, it
+ * does not exist on disk. Use {@link #openStream()} to read its content; the
+ * {@link ContentFileHandler} does this automatically.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class ArchiveEntryFile extends File {
+
+    final public static String SEPARATOR = "!/";
+
+    final transient private SourceArchive archive;
+    final transient private ZipEntry entry;
+
+    public ArchiveEntryFile(SourceArchive archive, ZipEntry entry) {
+        super(archive.getFile(), entry.getName());
+        this.archive = archive;
+        this.entry = entry;
+    }
+
+    public SourceArchive getArchive() {
+        return archive;
+    }
+
+    public String getEntryName() {
+        return entry.getName();
+    }
+
+    public InputStream openStream() throws IOException {
+        return archive.openStream(entry);
+    }
+
+    @Override
+    public boolean canRead() {
+        return true;
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public boolean isFile() {
+        return true;
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return false;
+    }
+
+    @Override
+    public long length() {
+        return entry.getSize();
+    }
+
+    @Override
+    public long lastModified() {
+        return entry.getTime();
+    }
+
+    @Override
+    public String getCanonicalPath() throws IOException {
+        return archive.getFile().getCanonicalPath() + SEPARATOR + entry.getName();
+    }
+
+    @Override
+    public String toString() {
+        return archive.getFile().getPath() + SEPARATOR + entry.getName();
+    }
+}
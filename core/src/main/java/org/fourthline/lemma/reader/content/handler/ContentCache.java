@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.reader.content.handler;
+
+import org.fourthline.lemma.pipeline.CacheStatistics;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches the content lines of files, optionally limited in size.
+ * <p>
+ * An entry is only returned while the size and modification time of its file are unchanged,
+ * so a cache can be shared by several pipelines (e.g. all modules of a Maven build). If a
+ * limit is set, the least recently used entries are evicted when the cached content exceeds
+ * the given number of characters.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class ContentCache {
+
+    final public static String CONTEXT_CONTENT_CACHE = "ContentCache";
+
+    /**
+     * Estimated heap size of a cached line, in addition to its characters.
+     */
+    final public static int LINE_OVERHEAD_BYTES = 40;
+
+    final private long maxCharacters;
+
+    final private Map<File, Entry> entries = new LinkedHashMap<File, Entry>(16, 0.75f, true);
+
+    final private CacheStatistics statistics = new CacheStatistics("content");
+
+    private long characters;
+    private long lineCount;
+
+    /**
+     * Creates a cache without size limit.
+     */
+    public ContentCache() {
+        this(0);
+    }
+
+    /**
+     * @param maxCharacters The maximum number of cached characters, <code>0</code> for no limit.
+     */
+    public ContentCache(long maxCharacters) {
+        this.maxCharacters = maxCharacters;
+    }
+
+    public long getMaxCharacters() {
+        return maxCharacters;
+    }
+
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return The cached lines, or <code>null</code> if the file is not cached or has been modified.
+     */
+    synchronized public String[] get(File file) {
+        Entry entry = entries.get(file);
+        if (entry != null && !entry.isCurrent(file)) {
+            remove(file);
+            entry = null;
+        }
+        if (entry == null) {
+            statistics.miss();
+            return null;
+        }
+        statistics.hit();
+        return entry.lines;
+    }
+
+    synchronized public boolean contains(File file) {
+        Entry entry = entries.get(file);
+        return entry != null && entry.isCurrent(file);
+    }
+
+    synchronized public void put(File file, String[] lines) {
+        remove(file);
+        Entry entry = new Entry(file, lines);
+        if (maxCharacters > 0 && entry.characters > maxCharacters)
+            return; // Never fits
+        entries.put(file, entry);
+        characters += entry.characters;
+        lineCount += entry.lines.length;
+
+        if (maxCharacters > 0) {
+            Iterator<Entry> it = entries.values().iterator();
+            while (characters > maxCharacters && it.hasNext()) {
+                Entry eldest = it.next();
+                it.remove();
+                characters -= eldest.characters;
+                lineCount -= eldest.lines.length;
+                statistics.evicted();
+            }
+        }
+        updateSize();
+    }
+
+    /**
+     * Records the time it took to load the content of a file, before it was put into the cache.
+     */
+    public void loaded(long nanos) {
+        statistics.loaded(nanos);
+    }
+
+    synchronized public void clear() {
+        entries.clear();
+        characters = 0;
+        lineCount = 0;
+        updateSize();
+    }
+
+    synchronized public int size() {
+        return entries.size();
+    }
+
+    synchronized public long getCharacters() {
+        return characters;
+    }
+
+    public long getHits() {
+        return statistics.getHits();
+    }
+
+    public long getMisses() {
+        return statistics.getMisses();
+    }
+
+    public long getEvictions() {
+        return statistics.getEvictions();
+    }
+
+    protected void remove(File file) {
+        Entry entry = entries.remove(file);
+        if (entry != null) {
+            characters -= entry.characters;
+            lineCount -= entry.lines.length;
+            updateSize();
+        }
+    }
+
+    protected void updateSize() {
+        statistics.setSize(entries.size(), characters * 2 + lineCount * LINE_OVERHEAD_BYTES);
+    }
+
+    @Override
+    synchronized public String toString() {
+        return "files: " + entries.size()
+                + ", characters: " + characters + (maxCharacters > 0 ? "/" + maxCharacters : "")
+                + ", hits/misses: " + getHits() + "/" + getMisses()
+                + ", evictions: " + getEvictions();
+    }
+
+    protected static class Entry {
+        final String[] lines;
+        final long length;
+        final long lastModified;
+        final long characters;
+
+        public Entry(File file, String[] lines) {
+            this.lines = lines;
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+            long count = 0;
+            for (String line : lines) {
+                count += line.length() + 1;
+            }
+            this.characters = count;
+        }
+
+        public boolean isCurrent(File file) {
+            return file.length() == length && file.lastModified() == lastModified;
+        }
+    }
+}
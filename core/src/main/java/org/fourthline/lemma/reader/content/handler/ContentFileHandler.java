@@ -17,17 +17,37 @@
 
 package org.fourthline.lemma.reader.content.handler;
 
+import org.fourthline.lemma.pipeline.CitationCost;
+import org.fourthline.lemma.pipeline.TraceRecorder;
+import org.fourthline.lemma.pipeline.jfr.FlightRecorderEvents;
 import org.fourthline.lemma.reader.content.LineRange;
-import org.seamless.util.io.IO;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Arrays;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 
 /**
  * Reads contents of a file, returns the given line range as a string array.
+ * <p>
+ * Files are read completely and cached. The exception is a line range of a large
+ * file that has not been cached, these lines are read through a {@link LineOffsetIndex}.
+ * Both paths decode files as UTF-8 and split lines the same way, so a range has the same
+ * content whichever path reads it.
+ * </p>
+ * <p>
+ * Each handler has its own {@link ContentCache}, unless a shared cache is given when
+ * content is requested.
+ * </p>
  *
  * @author Christian Bauer
  */
@@ -35,27 +55,83 @@ public class ContentFileHandler {
 
     final private Logger log = Logger.getLogger(ContentFileHandler.class.getName());
 
-    final private Map<File, String[]> cache = new HashMap();
+    /**
+     * Files larger than this are not read completely if only a line range is requested.
+     */
+    final public static long INDEXED_ACCESS_THRESHOLD = 4 * 1024 * 1024;
+
+    final private ContentCache ownCache = new ContentCache();
+    final private Map<File, LineOffsetIndex> lineOffsetIndexes = new HashMap();
 
     public String[] getContent(File file, LineRange range) {
+        return getContent(file, range, null);
+    }
+
+    /**
+     * @param sharedCache The cache to use instead of the handler's own cache, can be <code>null</code>.
+     */
+    public String[] getContent(File file, LineRange range, ContentCache sharedCache) {
+        ContentCache cache = sharedCache != null ? sharedCache : ownCache;
+        CitationCost.resolved(file);
+        FlightRecorderEvents.resolved(file);
         try {
 
+            if (range != null && isIndexedAccess(file, cache)) {
+                if (log.isLoggable(Level.FINE))
+                    log.fine("Reading content line range " + range + " through line offset index of file: " + file.getName());
+                TraceRecorder.Span loadSpan = beginLoadSpan(file, "index");
+                Object loadEvent = FlightRecorderEvents.beginContentLoad(file, "index");
+                try {
+                    return getLineOffsetIndex(file).readLines(range);
+                } finally {
+                    FlightRecorderEvents.end(loadEvent);
+                    TraceRecorder.end(loadSpan);
+                }
+            }
+
             String[] content;
 
-            synchronized (cache) {
-                if (cache.containsKey(file)) {
+            content = cache.get(file);
+            CitationCost.cacheAccess(content != null);
+            if (content != null) {
+                if (log.isLoggable(Level.FINE))
                     log.fine("Using cached content lines of file: " + file.getName());
-                    content = cache.get(file);
-                } else {
+            } else if (file instanceof ArchiveEntryFile) {
+                if (log.isLoggable(Level.FINE))
+                    log.fine("Reading content lines from archive entry: " + file);
+                TraceRecorder.Span loadSpan = beginLoadSpan(file, "archive");
+                Object loadEvent = FlightRecorderEvents.beginContentLoad(file, "archive");
+                long loadStart = System.nanoTime();
+                try {
+                    content = readLines(((ArchiveEntryFile) file).openStream());
+                } finally {
+                    FlightRecorderEvents.end(loadEvent);
+                    TraceRecorder.end(loadSpan);
+                }
+                cache.loaded(System.nanoTime() - loadStart);
+                cache.put(file, content);
+            } else {
+                if (log.isLoggable(Level.FINE))
                     log.fine("Reading content lines from file on disk: " + file);
-                    content = IO.readLines(file, false);
-                    cache.put(file, content);
+                TraceRecorder.Span loadSpan = beginLoadSpan(file, "disk");
+                Object loadEvent = FlightRecorderEvents.beginContentLoad(file, "disk");
+                long loadStart = System.nanoTime();
+                try {
+                    content = readLines(new FileInputStream(file));
+                } finally {
+                    FlightRecorderEvents.end(loadEvent);
+                    TraceRecorder.end(loadSpan);
                 }
+                cache.loaded(System.nanoTime() - loadStart);
+                cache.put(file, content);
             }
 
             if (range != null) {
-                log.fine("Returning content line range " + range + " of file: " + file.getName());
-                return Arrays.copyOfRange(content, range.getBegin()- 1, range.getEnd());
+                if (log.isLoggable(Level.FINE))
+                    log.fine("Returning content line range " + range + " of file: " + file.getName());
+                int end = Math.min(range.getEnd(), content.length);
+                if (range.getBegin() > end) return new String[0];
+                return Arrays.copyOfRange(content, range.getBegin()- 1, end);
             } else {
                 return content;
             }
@@ -66,4 +142,40 @@ public class ContentFileHandler {
 
     }
 
+    protected TraceRecorder.Span beginLoadSpan(File file, String source) {
+        TraceRecorder.Span span = TraceRecorder.begin(TraceRecorder.CATEGORY_FILE, file.getName());
+        return span != null ? span.arg("file", file.getPath()).arg("source", source) : null;
+    }
+
+    protected boolean isIndexedAccess(File file, ContentCache cache) {
+        if (file instanceof ArchiveEntryFile || file.length() < INDEXED_ACCESS_THRESHOLD)
+            return false;
+        return !cache.contains(file);
+    }
+
+    protected LineOffsetIndex getLineOffsetIndex(File file) throws IOException {
+        synchronized (lineOffsetIndexes) {
+            LineOffsetIndex index = lineOffsetIndexes.get(file);
+            if (index == null || !index.isCurrent()) {
+                index = LineOffsetIndex.load(file);
+                lineOffsetIndexes.put(file, index);
+            }
+            return index;
+        }
+    }
+
+    protected String[] readLines(InputStream is) throws IOException {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
 }
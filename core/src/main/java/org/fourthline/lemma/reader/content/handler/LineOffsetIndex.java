@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.reader.content.handler;
+
+import org.fourthline.lemma.reader.content.LineRange;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A sparse index of line start offsets in a (large) text file.
+ * <p>
+ * The byte offset of every n-th line is recorded, reading a line range then requires a
+ * seek to the nearest indexed line before the range and skipping at most n lines. The
+ * index is persisted in a directory (by default <code>lemma-line-index</code> in the
+ * temporary directory, override with the <code>lemma.lineIndexDirectory</code> system
+ * property) and reused as long as the size and modification time of the file are unchanged.
+ * </p>
+ * <p>
+ * Lines are terminated with a line feed, text is decoded as UTF-8.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class LineOffsetIndex {
+
+    final private static Logger log = Logger.getLogger(LineOffsetIndex.class.getName());
+
+    final public static int DEFAULT_INTERVAL = 1000;
+
+    final public static String INDEX_DIRECTORY_PROPERTY = "lemma.lineIndexDirectory";
+
+    final private static int MAGIC = 0x4C4F4958;
+    final private static int VERSION = 1;
+
+    final private File file;
+    final private long length;
+    final private long lastModified;
+    final private int interval;
+    final private int lineCount;
+    final private long[] offsets;
+
+    protected LineOffsetIndex(File file, long length, long lastModified,
+                              int interval, int lineCount, long[] offsets) {
+        this.file = file;
+        this.length = length;
+        this.lastModified = lastModified;
+        this.interval = interval;
+        this.lineCount = lineCount;
+        this.offsets = offsets;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return <code>true</code> if the file has not been modified since it was indexed.
+     */
+    public boolean isCurrent() {
+        return file.length() == length && file.lastModified() == lastModified;
+    }
+
+    /**
+     * Reads the given lines, seeking to the nearest indexed offset first.
+     *
+     * @param range The lines to read, the first line is 1; an end after the last line is ignored.
+     * @return The lines of the range, without line terminators.
+     */
+    public String[] readLines(LineRange range) throws IOException {
+        int begin = range.getBegin();
+        int end = Math.min(range.getEnd(), lineCount);
+        if (begin > end) return new String[0];
+
+        int block = (begin - 1) / interval;
+        int line = block * interval + 1;
+
+        List<String> lines = new ArrayList<String>(end - begin + 1);
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            fis.getChannel().position(offsets[block]);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(fis, "UTF-8"));
+            String s;
+            while (line <= end && (s = reader.readLine()) != null) {
+                if (line >= begin)
+                    lines.add(s);
+                line++;
+            }
+        } finally {
+            fis.close();
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    /**
+     * Loads the persisted index of the file, or builds (and persists) a new index if
+     * none exists or the file has been modified.
+     */
+    public static LineOffsetIndex load(File file) throws IOException {
+        File indexFile = getIndexFile(file);
+        if (indexFile.canRead()) {
+            try {
+                LineOffsetIndex index = read(file, indexFile);
+                if (index != null && index.isCurrent()) {
+                    if (log.isLoggable(Level.FINE))
+                        log.fine("Using persisted line offset index: " + indexFile);
+                    return index;
+                }
+            } catch (IOException ex) {
+                if (log.isLoggable(Level.FINE))
+                    log.fine("Ignoring unreadable line offset index '" + indexFile + "': " + ex);
+            }
+        }
+
+        LineOffsetIndex index = build(file, DEFAULT_INTERVAL);
+        try {
+            index.write(indexFile);
+        } catch (IOException ex) {
+            log.warning("Can't persist line offset index '" + indexFile + "': " + ex);
+        }
+        return index;
+    }
+
+    public static LineOffsetIndex build(File file, int interval) throws IOException {
+        if (log.isLoggable(Level.FINE))
+            log.fine("Building line offset index of file: " + file);
+
+        // Read the metadata first, if the file is modified while we read, the index is not current
+        long length = file.length();
+        long lastModified = file.lastModified();
+
+        List<Long> offsets = new ArrayList<Long>();
+        offsets.add(0l);
+
+        int lines = 0;
+        long position = 0;
+        boolean lineOpen = false;
+        byte[] buffer = new byte[64 * 1024];
+        InputStream is = new BufferedInputStream(new FileInputStream(file), buffer.length);
+        try {
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        lines++;
+                        lineOpen = false;
+                        if (lines % interval == 0)
+                            offsets.add(position + i + 1);
+                    } else {
+                        lineOpen = true;
+                    }
+                }
+                position += read;
+            }
+        } finally {
+            is.close();
+        }
+        if (lineOpen) lines++;
+
+        long[] offsetArray = new long[offsets.size()];
+        for (int i = 0; i < offsetArray.length; i++) {
+            offsetArray[i] = offsets.get(i);
+        }
+
+        if (log.isLoggable(Level.FINE))
+            log.fine("Indexed lines of file '" + file + "': " + lines);
+        return new LineOffsetIndex(file, length, lastModified, interval, lines, offsetArray);
+    }
+
+    protected static LineOffsetIndex read(File file, File indexFile) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+            if (!in.readUTF().equals(file.getCanonicalPath())) return null;
+            long length = in.readLong();
+            long lastModified = in.readLong();
+            int interval = in.readInt();
+            int lineCount = in.readInt();
+            long[] offsets = new long[in.readInt()];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = in.readLong();
+            }
+            return new LineOffsetIndex(file, length, lastModified, interval, lineCount, offsets);
+        } finally {
+            in.close();
+        }
+    }
+
+    protected void write(File indexFile) throws IOException {
+        if (!indexFile.getParentFile().exists())
+            indexFile.getParentFile().mkdirs();
+
+        // Concurrent builds might index the same file, write a private copy and move it into place
+        File tempFile = File.createTempFile(indexFile.getName(), ".tmp", indexFile.getParentFile());
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(file.getCanonicalPath());
+            out.writeLong(length);
+            out.writeLong(lastModified);
+            out.writeInt(interval);
+            out.writeInt(lineCount);
+            out.writeInt(offsets.length);
+            for (long offset : offsets) {
+                out.writeLong(offset);
+            }
+        } finally {
+            out.close();
+        }
+        if (!tempFile.renameTo(indexFile)) {
+            // Not atomic on all platforms, the index might have been persisted by someone else
+            indexFile.delete();
+            if (!tempFile.renameTo(indexFile)) {
+                tempFile.delete();
+                throw new IOException("Can't move line offset index into place: " + indexFile);
+            }
+        }
+        if (log.isLoggable(Level.FINE))
+            log.fine("Persisted line offset index: " + indexFile);
+    }
+
+    protected static File getIndexFile(File file) throws IOException {
+        String directory = System.getProperty(INDEX_DIRECTORY_PROPERTY);
+        File indexDirectory = directory != null
+                ? new File(directory)
+                : new File(System.getProperty("java.io.tmpdir"), "lemma-line-index");
+        String path = file.getCanonicalPath();
+        return new File(indexDirectory, Integer.toHexString(path.hashCode()) + "-" + file.getName() + ".idx");
+    }
+
+}
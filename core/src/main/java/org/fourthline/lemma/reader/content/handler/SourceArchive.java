@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.reader.content.handler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * An open JAR or ZIP file of source files, e.g. a <code>-sources.jar</code> artifact.
+ * <p>
+ * The central directory of the archive is read once when it is opened, individual
+ * entries are then streamed on demand, the archive is never extracted.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class SourceArchive {
+
+    final private Logger log = Logger.getLogger(SourceArchive.class.getName());
+
+    final private File file;
+    final private ZipFile zipFile;
+    final private Map<String, ZipEntry> entries = new HashMap<String, ZipEntry>();
+
+    public SourceArchive(File file) throws IOException {
+        this.file = file;
+        this.zipFile = new ZipFile(file);
+
+        Enumeration<? extends ZipEntry> e = zipFile.entries();
+        while (e.hasMoreElements()) {
+            ZipEntry entry = e.nextElement();
+            if (!entry.isDirectory())
+                entries.put(entry.getName(), entry);
+        }
+        if (log.isLoggable(Level.FINE))
+            log.fine("Indexed entries of source archive '" + file + "': " + entries.size());
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public Set<String> getEntryNames() {
+        return entries.keySet();
+    }
+
+    /**
+     * @param name The path of the entry within the archive, without leading slash.
+     * @return The entry as a file, or <code>null</code> if the archive has no such entry.
+     */
+    public ArchiveEntryFile getEntryFile(String name) {
+        if (name.startsWith("/")) name = name.substring(1);
+        ZipEntry entry = entries.get(name);
+        return entry != null ? new ArchiveEntryFile(this, entry) : null;
+    }
+
+    public InputStream openStream(ZipEntry entry) throws IOException {
+        return zipFile.getInputStream(entry);
+    }
+
+    public void close() {
+        try {
+            zipFile.close();
+        } catch (IOException ex) {
+            log.warning("Can't close source archive '" + file + "': " + ex);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return file.toString();
+    }
+}
@@ -18,6 +18,7 @@
 package org.fourthline.lemma.reader.content.printer;
 
 import org.fourthline.lemma.anchor.CitationAnchor;
+import org.fourthline.lemma.pipeline.ParserPool;
 import org.seamless.xhtml.Option;
 import org.seamless.xhtml.XHTML;
 import org.seamless.xhtml.XHTMLElement;
@@ -128,8 +129,8 @@ abstract public class CalloutContentPrinter extends ContentPrinter {
             currentLine++;
         }
 
-        XHTMLParser parser = new XHTMLParser();
-        XPath xpath = parser.createXPath();
+        XHTMLParser parser = ParserPool.getParser();
+        XPath xpath = ParserPool.getXPath();
 
         XHTMLElement preFormatted =
             createPreFormattedElement(contentElement, preFormattedClasses);
@@ -22,6 +22,7 @@ import org.fourthline.lemma.anchor.CitationAnchor;
 import org.seamless.xhtml.XHTML;
 import org.seamless.xhtml.XHTMLElement;
 
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -37,7 +38,8 @@ public abstract class ContentPrinter {
         if (source == null || source.length == 0)
             return;
 
-        log.fine("Printing content lines: " + source.length);
+        if (log.isLoggable(Level.FINE))
+            log.fine("Printing content lines: " + source.length);
 
         XHTMLElement content =
             parentElement.createChild(Constants.WRAPPER_ELEMENT)
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.reader.csv;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads comma-separated records one at a time.
+ * <p>
+ * Fields may be enclosed in double quotes, a quoted field can contain separators,
+ * line breaks, and escaped (doubled) quotes. Records are terminated with LF or CRLF.
+ * Nothing is buffered beyond the current record, so a caller can stop reading a
+ * large file at any point.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class CSVParser {
+
+    final private Reader reader;
+    final private char separator;
+
+    private int pushback = -1;
+    private int recordNumber;
+
+    public CSVParser(Reader reader) {
+        this(reader, ',');
+    }
+
+    public CSVParser(Reader reader, char separator) {
+        this.reader = reader;
+        this.separator = separator;
+    }
+
+    /**
+     * @return The number of records read so far, the first record is 1.
+     */
+    public int getRecordNumber() {
+        return recordNumber;
+    }
+
+    /**
+     * @return The fields of the next record, or <code>null</code> at the end of the input.
+     */
+    public String[] readRecord() throws IOException {
+        int c = read();
+        if (c == -1) return null;
+
+        List<String> fields = new ArrayList<String>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field in record: " + (recordNumber + 1));
+                } else if (c == '"') {
+                    int next = read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        pushback = next;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == -1 || c == '\n') {
+                break;
+            } else if (c == '\r') {
+                int next = read();
+                if (next != '\n') pushback = next;
+                break;
+            } else if (c == separator) {
+                fields.add(field.toString());
+                field.setLength(0);
+                wasQuoted = false;
+            } else if (c == '"' && field.length() == 0 && !wasQuoted) {
+                quoted = true;
+                wasQuoted = true;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+        fields.add(field.toString());
+
+        recordNumber++;
+        return fields.toArray(new String[fields.size()]);
+    }
+
+    /**
+     * Skips records without keeping their fields.
+     *
+     * @return The number of skipped records, less than requested at the end of the input.
+     */
+    public int skipRecords(int count) throws IOException {
+        int skipped = 0;
+        while (skipped < count && readRecord() != null) {
+            skipped++;
+        }
+        return skipped;
+    }
+
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    protected int read() throws IOException {
+        if (pushback != -1) {
+            int c = pushback;
+            pushback = -1;
+            return c;
+        }
+        return reader.read();
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.reader.csv;
+
+import org.fourthline.lemma.Constants;
+import org.fourthline.lemma.anchor.CitationAnchor;
+import org.fourthline.lemma.pipeline.Context;
+import org.fourthline.lemma.reader.AbstractReader;
+import org.fourthline.lemma.reader.content.LineRange;
+import org.fourthline.lemma.reader.content.handler.ArchiveEntryFile;
+import org.seamless.xhtml.Option;
+import org.seamless.xhtml.XHTML;
+import org.seamless.xhtml.XHTMLElement;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads CSV files and renders them as an XHTML table.
+ * <p>
+ * The first record of the file is the header row, unless the <code>header: false</code> option
+ * is set. A range of data rows can be selected with the <code>rows</code> option, e.g.
+ * <code>rows: 1-20</code> (the first data row is 1, the header is not counted). Columns can
+ * be selected with the <code>columns</code> option, either by header name or by position,
+ * e.g. <code>columns: name, 3</code> (the first column is 1).
+ * </p>
+ * <p>
+ * The file is parsed as a stream, reading stops after the last selected row. Citing the
+ * first rows of a very large file therefore only reads these rows.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class CSVReader extends AbstractReader {
+
+    final private Logger log = Logger.getLogger(CSVReader.class.getName());
+
+    final public static String CONTEXT_SOURCE_DIRECTORIES = "CSVReader.sourceDirectories";
+
+    final public static String TYPE_TABLE = "csv";
+
+    final public static Pattern PATTERN_ROW_RANGE = Pattern.compile("^\\s*([0-9]+)\\s*(?:-\\s*([0-9]+)?\\s*)?$");
+
+    public XHTML read(CitationAnchor citation, Context context) {
+
+        File[] sourceDirectories = (File[]) context.get(CONTEXT_SOURCE_DIRECTORIES);
+        File addressedFile = resolveFile(citation.getAddress().getPath(), sourceDirectories, context);
+        if (log.isLoggable(Level.FINE))
+            log.fine("Including and parsing CSV file: " + addressedFile);
+
+        XHTML xhtml = getParser().createDocument();
+
+        XHTMLElement root =
+                xhtml.createRoot(getXPath(), Constants.WRAPPER_ELEMENT)
+                        .setAttribute(XHTML.ATTR.CLASS, citation.getOutputClasses());
+
+        if (isGenerateId(context))
+            root.setAttribute(XHTML.ATTR.id, citation.getOutputIdentifier());
+
+        appendTitle(root, citation.getTitle());
+        addFilePath(root, citation, addressedFile);
+
+        appendContent(root, addressedFile, citation);
+
+        return xhtml;
+    }
+
+    protected void appendContent(XHTMLElement parent, File file, CitationAnchor citation) {
+
+        Option headerOption = citation.getOption(CitationAnchor.OptionKey.HEADER);
+        boolean header = headerOption == null || Boolean.valueOf(headerOption.getFirstValue());
+
+        LineRange rows = getRowRange(citation);
+
+        Option columnsOption = citation.getOption(CitationAnchor.OptionKey.COLUMNS);
+        String[] columns = columnsOption != null ? columnsOption.getValues() : null;
+
+        XHTMLElement table =
+                parent.createChild(Constants.WRAPPER_ELEMENT)
+                        .setAttribute(XHTML.ATTR.CLASS, Constants.TYPE_CONTENT)
+                        .createChild(XHTML.ELEMENT.table)
+                        .setClasses(TYPE_TABLE);
+
+        try {
+            CSVParser csv = new CSVParser(new BufferedReader(new InputStreamReader(openStream(file), "UTF-8")));
+            try {
+                String[] record = header ? csv.readRecord() : null;
+                int[] selectedColumns = getSelectedColumns(columns, record, citation);
+
+                if (record != null) {
+                    appendRow(table.createChild(XHTML.ELEMENT.thead), XHTML.ELEMENT.th, record, selectedColumns);
+                }
+
+                XHTMLElement body = table.createChild(XHTML.ELEMENT.tbody);
+                int skipped = csv.skipRecords(rows.getBegin() - 1);
+                int row = skipped + 1;
+                while ((rows.getEnd() == null || row <= rows.getEnd()) && (record = csv.readRecord()) != null) {
+                    appendRow(body, XHTML.ELEMENT.td, record, selectedColumns);
+                    row++;
+                }
+                if (log.isLoggable(Level.FINE))
+                    log.fine("Read data rows of CSV file, stopped after record " + csv.getRecordNumber() + ": " + file);
+            } finally {
+                csv.close();
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Can't read CSV file: " + file, ex);
+        }
+    }
+
+    protected void appendRow(XHTMLElement parent, XHTML.ELEMENT cellElement, String[] record, int[] selectedColumns) {
+        XHTMLElement tr = parent.createChild(XHTML.ELEMENT.tr);
+        if (selectedColumns == null) {
+            for (String field : record) {
+                tr.createChild(cellElement).setContent(field);
+            }
+        } else {
+            for (int column : selectedColumns) {
+                // Short records get empty cells
+                tr.createChild(cellElement).setContent(column < record.length ? record[column] : "");
+            }
+        }
+    }
+
+    /**
+     * @return The 1-based range of data rows, an open end reads until the end of the file.
+     */
+    protected LineRange getRowRange(CitationAnchor citation) {
+        Option rowsOption = citation.getOption(CitationAnchor.OptionKey.ROWS);
+        if (rowsOption == null || rowsOption.getFirstValue() == null)
+            return new LineRange(1, null);
+
+        Matcher matcher = PATTERN_ROW_RANGE.matcher(rowsOption.getFirstValue());
+        if (!matcher.matches())
+            throw new IllegalArgumentException(
+                    "Invalid row range, expected 'begin-end' or 'row' in citation: " + citation
+            );
+        int begin = Integer.valueOf(matcher.group(1));
+        Integer end;
+        if (rowsOption.getFirstValue().contains("-")) {
+            end = matcher.group(2) != null ? Integer.valueOf(matcher.group(2)) : null;
+        } else {
+            end = begin;
+        }
+        if (begin < 1 || (end != null && end < begin))
+            throw new IllegalArgumentException("Invalid row range in citation: " + citation);
+        return new LineRange(begin, end);
+    }
+
+    /**
+     * @return The 0-based indexes of the selected columns, or <code>null</code> if all columns should be read.
+     */
+    protected int[] getSelectedColumns(String[] columns, String[] header, CitationAnchor citation) {
+        if (columns == null || columns.length == 0) return null;
+
+        int[] indexes = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            String column = columns[i].trim();
+            indexes[i] = header != null ? indexOf(header, column) : -1;
+            if (indexes[i] == -1) {
+                try {
+                    indexes[i] = Integer.valueOf(column) - 1;
+                } catch (NumberFormatException ex) {
+                    // Not a position
+                }
+            }
+            if (indexes[i] < 0)
+                throw new IllegalArgumentException("Unknown column '" + column + "' in citation: " + citation);
+        }
+        return indexes;
+    }
+
+    protected int indexOf(String[] header, String name) {
+        for (int i = 0; i < header.length; i++) {
+            if (header[i].trim().equals(name)) return i;
+        }
+        return -1;
+    }
+
+    protected InputStream openStream(File file) throws IOException {
+        return file instanceof ArchiveEntryFile
+                ? ((ArchiveEntryFile) file).openStream()
+                : new FileInputStream(file);
+    }
+
+}
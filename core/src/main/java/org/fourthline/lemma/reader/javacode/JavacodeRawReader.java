@@ -21,10 +21,13 @@ import org.seamless.xhtml.XHTML;
 import org.seamless.xhtml.XHTMLElement;
 import org.fourthline.lemma.Constants;
 import org.fourthline.lemma.anchor.CitationAnchor;
+import org.fourthline.lemma.pipeline.CitationCost;
 import org.fourthline.lemma.pipeline.Context;
+import org.fourthline.lemma.reader.content.handler.ContentCache;
 import org.fourthline.lemma.reader.content.filter.ContentFilter;
 
 import java.io.File;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -45,8 +48,9 @@ public class JavacodeRawReader extends JavacodeReader {
     public XHTML read(CitationAnchor citation, Context context) {
 
         File[] sourceDirectories = (File[])context.get(CONTEXT_SOURCE_DIRECTORIES);
-        File addressedFile = resolveFile(citation.getAddress().getPath(), sourceDirectories);
-        log.fine("Including and parsing XHTML file: " + addressedFile);
+        File addressedFile = resolveFile(citation.getAddress().getPath(), sourceDirectories, context);
+        if (log.isLoggable(Level.FINE))
+            log.fine("Including and parsing XHTML file: " + addressedFile);
 
         XHTML xhtml = getParser().createDocument();
 
@@ -60,20 +64,24 @@ public class JavacodeRawReader extends JavacodeReader {
         appendTitle(root, citation.getTitle());
         addFilePath(root, citation, addressedFile);
 
-        appendContent(root, addressedFile, citation);
+        appendContent(root, addressedFile, citation, getContentCache(context));
 
         return xhtml;
     }
 
-    protected void appendContent(XHTMLElement parent, File file, CitationAnchor citation) {
+    protected void appendContent(XHTMLElement parent, File file, CitationAnchor citation, ContentCache cache) {
 
-        String[] content = handler.getContent(file, null);
+        String[] content = handler.getContent(file, citation.getAddress().getLineRange(), cache);
 
+        long start = CitationCost.start();
         for (ContentFilter filter : filters) {
             content = filter.filter(content, citation);
         }
+        CitationCost.stop(CitationCost.Stage.FILTER, start);
 
+        start = CitationCost.start();
         printer.print(content, citation, parent, "prettyprint");
+        CitationCost.stop(CitationCost.Stage.PRINT, start);
     }
 
 }
@@ -17,21 +17,20 @@
 
 package org.fourthline.lemma.reader.javacode;
 
-import com.sun.javadoc.ClassDoc;
-import com.sun.javadoc.Doc;
-import com.sun.javadoc.ExecutableMemberDoc;
-import com.sun.javadoc.MethodDoc;
-import com.sun.javadoc.PackageDoc;
-import com.sun.javadoc.Parameter;
-import com.sun.javadoc.RootDoc;
-import com.sun.javadoc.Type;
 import org.fourthline.lemma.Constants;
 import org.fourthline.lemma.anchor.CitationAnchor;
+import org.fourthline.lemma.model.ModelDoc;
+import org.fourthline.lemma.model.SourceModel;
+import org.fourthline.lemma.pipeline.CacheRegistry;
+import org.fourthline.lemma.pipeline.CacheStatistics;
+import org.fourthline.lemma.pipeline.CitationCost;
 import org.fourthline.lemma.pipeline.Context;
+import org.fourthline.lemma.pipeline.jfr.FlightRecorderEvents;
 import org.fourthline.lemma.reader.content.LineRange;
 import org.fourthline.lemma.reader.content.filter.CleanupFilter;
 import org.fourthline.lemma.reader.content.filter.ContentFilter;
 import org.fourthline.lemma.reader.content.filter.FragmentFilter;
+import org.fourthline.lemma.reader.content.handler.ContentCache;
 import org.fourthline.lemma.reader.content.handler.ContentFileHandler;
 import org.fourthline.lemma.reader.content.printer.ContentPrinter;
 import org.fourthline.lemma.reader.content.printer.JavaContentPrinter;
@@ -42,6 +41,7 @@ import org.seamless.xhtml.XHTMLElement;
 import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
@@ -49,7 +49,7 @@ import java.util.regex.Pattern;
  * Reads raw lines of Java code, handles <code>javacode://</code> scheme.
  * <p>
  * This class will discover the source of the citation reference by using the
- * Javadoc index and {@link org.fourthline.lemma.reader.javacode.LineRangeParser}s.
+ * source model and {@link org.fourthline.lemma.reader.javacode.LineRangeParser}s.
  * </p>
  *
  * @author Christian Bauer
@@ -67,6 +67,9 @@ public class JavacodeReader extends AbstractJavadocReader {
 
     final private Map<File, LineRangeParser> lineRangeParsers = new HashMap();
 
+    final private CacheStatistics lineRangeParserStatistics =
+            new CacheStatistics(getClass().getSimpleName() + ".lineRangeParsers");
+
     public JavacodeReader() {
         handler = new ContentFileHandler();
         printer = new JavaContentPrinter();
@@ -76,77 +79,93 @@ public class JavacodeReader extends AbstractJavadocReader {
         };
     }
 
-    protected XHTML read(CitationAnchor citation, Context context, RootDoc rootDoc) {
+    protected XHTML read(CitationAnchor citation, Context context, SourceModel sourceModel) {
+        CacheRegistry.register(context, lineRangeParserStatistics);
         return read(
-                findTargetDoc(citation, rootDoc),
+                findTargetDoc(citation, sourceModel),
                 citation,
-                isGenerateId(context)
+                context
         );
     }
 
-    protected XHTML read(Doc doc, CitationAnchor citation, boolean uniqueId) {
+    protected XHTML read(ModelDoc doc, CitationAnchor citation, Context context) {
         if (doc == null) return null;
 
-        log.fine("Reading Javacode: " + doc.position());
+        if (log.isLoggable(Level.FINE))
+            log.fine("Reading Javacode: " + doc.getFile() + ":" + doc.getLine());
 
         XHTML xhtml = getParser().createDocument();
 
         XHTMLElement root =
                 xhtml.createRoot(getXPath(), Constants.WRAPPER_ELEMENT)
                         .setAttribute(XHTML.ATTR.CLASS, citation.getOutputClasses());
-        if (uniqueId)
+        if (isGenerateId(context))
             root.setAttribute(XHTML.ATTR.id, citation.getOutputIdentifier());
 
         appendTitle(root, citation.getTitle());
-        addFilePath(root, citation, doc.position().file());
+        addFilePath(root, citation, doc.getFile());
 
-        appendContent(root, doc, citation);
+        appendContent(root, doc, citation, getContentCache(context));
 
         return xhtml;
 
     }
 
-    protected void appendContent(XHTMLElement parent, Doc doc, CitationAnchor citation) {
+    protected void appendContent(XHTMLElement parent, ModelDoc doc, CitationAnchor citation, ContentCache cache) {
 
-        String[] source = readSource(doc);
+        String[] source = readSource(doc, cache);
 
+        long start = CitationCost.start();
         for (ContentFilter filter : filters) {
             source = filter.filter(source, citation);
         }
+        CitationCost.stop(CitationCost.Stage.FILTER, start);
 
+        start = CitationCost.start();
         printer.print(source, citation, parent, "prettyprint");
+        CitationCost.stop(CitationCost.Stage.PRINT, start);
+    }
+
+    public String[] readSource(ModelDoc doc) {
+        return readSource(doc, null);
     }
 
-    public String[] readSource(Doc doc) {
+    /**
+     * @param cache The shared content cache, or <code>null</code> to use the reader's own cache.
+     */
+    public String[] readSource(ModelDoc doc, ContentCache cache) {
 
-        File file = doc.position().file();
+        File file = doc.getFile();
 
         // The type of doc decides if the whole file is returned or just a few lines of the file
 
-        if (doc instanceof ClassDoc) {
-            ClassDoc classDoc = (ClassDoc) doc;
+        if (doc.getKind() == ModelDoc.Kind.CLASS) {
 
             // If it's a nested class, read only the lines of that nested class source
-            if (classDoc.containingClass() == null) {
-                log.finest("Doc is referencing a root type declaration: " + doc.name());
-                return handler.getContent(file, null);
+            if (doc.getContainingClass() == null) {
+                if (log.isLoggable(Level.FINEST))
+                    log.finest("Doc is referencing a root type declaration: " + doc.getName());
+                return handler.getContent(file, null, cache);
             } else {
-                String nestedClassName = classDoc.simpleTypeName();
-                log.finest("Doc is referencing a nested type declaration: " + nestedClassName);
-                return handler.getContent(file, getLineRangeParser(file).getTypesLineRange().get(nestedClassName));
+                String nestedClassName = doc.getSimpleName();
+                if (log.isLoggable(Level.FINEST))
+                    log.finest("Doc is referencing a nested type declaration: " + nestedClassName);
+                return handler.getContent(file, getLineRangeParser(file).getTypesLineRange().get(nestedClassName), cache);
             }
 
-        } else if (doc instanceof PackageDoc) {
+        } else if (doc.getKind() == ModelDoc.Kind.PACKAGE) {
 
             // For a package we return everything
-            log.finest("Doc is referencing a package: " + doc.name());
-            return handler.getContent(file, null);
+            if (log.isLoggable(Level.FINEST))
+                log.finest("Doc is referencing a package: " + doc.getName());
+            return handler.getContent(file, null, cache);
 
-        } else if (doc instanceof ExecutableMemberDoc) {
+        } else if (doc.getKind() == ModelDoc.Kind.METHOD) {
 
             // For methods we return the lines of the method source (signature matching is complex though)
-            log.finest("Doc is referencing method declaration: " + doc.name());
-            return handler.getContent(file, getMethodLineRange(file, (MethodDoc) doc));
+            if (log.isLoggable(Level.FINEST))
+                log.finest("Doc is referencing method declaration: " + doc.getName());
+            return handler.getContent(file, getMethodLineRange(file, doc), cache);
 
         } else {
             log.warning("Unknown doc type/reference, not reading any source: " + doc);
@@ -156,11 +175,12 @@ public class JavacodeReader extends AbstractJavadocReader {
     }
 
 
-    public LineRange getMethodLineRange(File file, MethodDoc methodDoc) {
+    public LineRange getMethodLineRange(File file, ModelDoc methodDoc) {
         LineRangeParser parser = getLineRangeParser(file);
 
         String signature = getSignature(methodDoc);
-        log.fine("Looking up source line range of method using signature: " + signature);
+        if (log.isLoggable(Level.FINE))
+            log.fine("Looking up source line range of method using signature: " + signature);
         LineRange range = parser.getMethodsLineRange().get(signature);
 
         // Out of options
@@ -170,17 +190,31 @@ public class JavacodeReader extends AbstractJavadocReader {
             );
         }
 
-        log.fine("Method line range is: " + range);
+        if (log.isLoggable(Level.FINE))
+            log.fine("Method line range is: " + range);
         return range;
 
     }
 
     protected LineRangeParser getLineRangeParser(File file) {
         synchronized (lineRangeParsers) {
-            if (lineRangeParsers.containsKey(file)) return lineRangeParsers.get(file);
+            if (lineRangeParsers.containsKey(file)) {
+                lineRangeParserStatistics.hit();
+                return lineRangeParsers.get(file);
+            }
+            lineRangeParserStatistics.miss();
             try {
-                LineRangeParser parser = instantiateLineRangeParser(file);
+                Object parseEvent = FlightRecorderEvents.beginLineRangeParse(file);
+                long start = System.nanoTime();
+                LineRangeParser parser;
+                try {
+                    parser = instantiateLineRangeParser(file);
+                } finally {
+                    FlightRecorderEvents.end(parseEvent);
+                }
+                lineRangeParserStatistics.loaded(System.nanoTime() - start);
                 lineRangeParsers.put(file, parser);
+                lineRangeParserStatistics.setSize(lineRangeParsers.size(), -1);
                 return parser;
             } catch (Exception ex) {
                 throw new RuntimeException(ex);
@@ -192,21 +226,17 @@ public class JavacodeReader extends AbstractJavadocReader {
         return new LineRangeParser(file);
     }
 
-    protected String getSignature(MethodDoc methodDoc) {
+    protected String getSignature(ModelDoc methodDoc) {
         StringBuilder signature = new StringBuilder();
-        signature.append(methodDoc.name());
+        signature.append(methodDoc.getName());
         signature.append("(");
-        for (Parameter parameter : methodDoc.parameters()) {
-            signature.append(toString(parameter.type(), false)); // TODO: Always use unqualified name?!
+        for (String parameterType : methodDoc.getParameterTypes()) {
+            signature.append(parameterType); // TODO: Always use unqualified name?!
             signature.append(",");
         }
         // Cut last comma
-        if (methodDoc.parameters().length > 0) signature.deleteCharAt(signature.length() - 1);
+        if (methodDoc.getParameterTypes().size() > 0) signature.deleteCharAt(signature.length() - 1);
         signature.append(")");
         return signature.toString();
     }
-
-    protected String toString(Type type, boolean qualified) {
-        return (qualified ? type.qualifiedTypeName() : type.simpleTypeName()) + type.dimension();
-    }
 }
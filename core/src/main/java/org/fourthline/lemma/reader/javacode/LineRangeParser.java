@@ -32,6 +32,7 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -60,7 +61,8 @@ public class LineRangeParser {
     protected final Map<String, LineRange> typesLineRange = new HashMap();
 
     public LineRangeParser(final File file) throws IOException, ParseException {
-        log.fine("Parsing Java source of file: " + file);
+        if (log.isLoggable(Level.FINE))
+            log.fine("Parsing Java source of file: " + file);
 
         CompilationUnit cu = JavaParser.parse(file);
 
@@ -72,7 +74,8 @@ public class LineRangeParser {
                 String signature = typeDeclaration.getName();
                 LineRange range = new LineRange(typeDeclaration.getBeginLine(), typeDeclaration.getEndLine());
 
-                log.fine("Parsed source of type '" + signature + "', lines: " + range);
+                if (log.isLoggable(Level.FINE))
+                    log.fine("Parsed source of type '" + signature + "', lines: " + range);
                 LineRangeParser.this.typesLineRange.put(signature, range);
 
                 for (BodyDeclaration bodyDeclaration : typeDeclaration.getMembers()) {
@@ -86,7 +89,8 @@ public class LineRangeParser {
                 String signature = getSignature(methodDeclaration);
                 LineRange range = new LineRange(methodDeclaration.getBeginLine(), methodDeclaration.getEndLine());
 
-                log.fine("Parsed source of method '" + signature + "', lines: " + range);
+                if (log.isLoggable(Level.FINE))
+                    log.fine("Parsed source of method '" + signature + "', lines: " + range);
 
                 LineRangeParser.this.methodsLineRange.put(signature, range);
             }
@@ -17,23 +17,22 @@
 
 package org.fourthline.lemma.reader.javadoc;
 
-import com.sun.javadoc.ClassDoc;
-import com.sun.javadoc.Doc;
-import com.sun.javadoc.MethodDoc;
-import com.sun.javadoc.PackageDoc;
-import com.sun.javadoc.RootDoc;
 import org.seamless.xhtml.XHTML;
 import org.fourthline.lemma.Constants;
 import org.fourthline.lemma.anchor.AnchorAddress;
 import org.fourthline.lemma.anchor.CitationAnchor;
 import org.fourthline.lemma.anchor.Scheme;
+import org.fourthline.lemma.model.ModelDoc;
+import org.fourthline.lemma.model.SourceModel;
 import org.fourthline.lemma.pipeline.Context;
 import org.fourthline.lemma.reader.AbstractReader;
 
+import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Looks up the Javadoc <code>RootDoc</code> from the context.
+ * Looks up the <code>SourceModel</code> from the context.
  *
  * @author Christian Bauer
  */
@@ -41,19 +40,19 @@ public abstract class AbstractJavadocReader extends AbstractReader {
 
     final private Logger log = Logger.getLogger(AbstractJavadocReader.class.getName());
 
-    final public static String CONTEXT_ROOT_DOC = "JavadocReader.rootDoc";
+    final public static String CONTEXT_SOURCE_MODEL = "JavadocReader.sourceModel";
 
     public XHTML read(CitationAnchor citation, Context context) {
-        RootDoc rootDoc = (RootDoc) context.get(CONTEXT_ROOT_DOC);
-        if (rootDoc == null) {
-            throw new IllegalStateException("Missing root Javadoc in context, can't read Javadoc");
+        SourceModel sourceModel = (SourceModel) context.get(CONTEXT_SOURCE_MODEL);
+        if (sourceModel == null) {
+            throw new IllegalStateException("Missing source model in context, can't read Javadoc");
         }
-        return read(citation, context, rootDoc);
+        return read(citation, context, sourceModel);
     }
 
-    protected abstract XHTML read(CitationAnchor citation, Context context, RootDoc rootDoc);
+    protected abstract XHTML read(CitationAnchor citation, Context context, SourceModel sourceModel);
 
-    protected Doc findTargetDoc(CitationAnchor citation, RootDoc rootDoc) {
+    public ModelDoc findTargetDoc(CitationAnchor citation, SourceModel sourceModel) {
 
         if (!(citation.getAddress().getScheme().equals(Scheme.JAVADOC) ||
                 citation.getAddress().getScheme().equals(Scheme.JAVACODE))) {
@@ -61,26 +60,28 @@ public abstract class AbstractJavadocReader extends AbstractReader {
         }
 
         // Try package name first
-        Doc targetDoc = rootDoc.packageNamed(citation.getAddress().getPath());
+        ModelDoc targetDoc = sourceModel.findPackage(citation.getAddress().getPath());
         if (targetDoc == null) {
 
             // Now try class name
-            targetDoc = rootDoc.classNamed(citation.getAddress().getPath());
+            targetDoc = sourceModel.findClass(citation.getAddress().getPath());
 
             // Get method doc for signature (both qualified and flat are attempted)
             // TODO: This might not guarantee a hit because we only check qualified names syntactically, not semantically
             String fragment = citation.getAddress().getFragment();
             if (targetDoc != null && fragment != null) {
 
-                MethodDoc[] methodDocs = ((ClassDoc) targetDoc).methods();
+                List<ModelDoc> methodDocs = targetDoc.getMethods();
                 targetDoc = null;
 
-                log.finest("Trying to find matching signature for citation target fragment: " + fragment);
-                for (MethodDoc methodDoc : methodDocs) {
-                    String qualifiedSignature = methodDoc.name() + methodDoc.signature();
-                    String unqualifiedSignature = methodDoc.name() + methodDoc.flatSignature();
+                if (log.isLoggable(Level.FINEST))
+                    log.finest("Trying to find matching signature for citation target fragment: " + fragment);
+                for (ModelDoc methodDoc : methodDocs) {
+                    String qualifiedSignature = methodDoc.getName() + methodDoc.getSignature();
+                    String unqualifiedSignature = methodDoc.getName() + methodDoc.getFlatSignature();
                     if (qualifiedSignature.equals(fragment) || unqualifiedSignature.equals(fragment)) {
-                        log.finest("Found method with matching signature: " + methodDoc.position());
+                        if (log.isLoggable(Level.FINEST))
+                            log.finest("Found method with matching signature: " + methodDoc.getFile() + ":" + methodDoc.getLine());
                         targetDoc = methodDoc;
                         break;
                     }
@@ -95,36 +96,19 @@ public abstract class AbstractJavadocReader extends AbstractReader {
         return targetDoc;
     }
 
-    protected XHTML resolveThisReferences(Context context, Doc targetDoc, XHTML input) {
+    public XHTML resolveThisReferences(Context context, ModelDoc targetDoc, XHTML input) {
         CitationAnchor[] anchors = CitationAnchor.findCitationAnchors(getXPath(), input, Constants.TYPE_CITATION);
         for (CitationAnchor citation : anchors) {
             if (citation.getAddress().getPath().equals(AnchorAddress.PATH_THIS)) {
 
-                AnchorAddress resolvedAddress;
-
-                if (targetDoc instanceof ClassDoc) {
-                    resolvedAddress = AnchorAddress.valueOf(
-                            citation.getAddress().getScheme(),
-                            (ClassDoc)targetDoc,
-                            citation.getAddress().getFragment()
-                    );
-                } else if (targetDoc instanceof PackageDoc) {
-                    resolvedAddress = AnchorAddress.valueOf(
-                            citation.getAddress().getScheme(),
-                            (PackageDoc)targetDoc
-                    );
-                } else if (targetDoc instanceof MethodDoc) {
-                    resolvedAddress = AnchorAddress.valueOf(
-                            citation.getAddress().getScheme(),
-                            (MethodDoc)targetDoc
-                    );
-                } else {
-                    throw new IllegalArgumentException(
-                        "Unknown doc type/reference, unable to resolve 'this' reference: " + citation
-                    );
-                }
+                AnchorAddress resolvedAddress = AnchorAddress.valueOf(
+                        citation.getAddress().getScheme(),
+                        targetDoc,
+                        citation.getAddress().getFragment()
+                );
 
-                log.fine("Replacing 'this' reference with anchor address: " + resolvedAddress);
+                if (log.isLoggable(Level.FINE))
+                    log.fine("Replacing 'this' reference with anchor address: " + resolvedAddress);
                 citation.setAttribute(XHTML.ATTR.href, resolvedAddress.toString());
             }
         }
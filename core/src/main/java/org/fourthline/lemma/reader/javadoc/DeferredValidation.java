@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.reader.javadoc;
+
+import org.fourthline.lemma.anchor.CitationAnchor;
+import org.seamless.xhtml.XHTML;
+import org.seamless.xhtml.XHTMLParser;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Validator;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Collects cited Javadoc content and validates all of it in a single pass.
+ * <p>
+ * Instead of building and validating a whole XHTML document for every citation, the
+ * {@link JavadocReader} adds its content to this collector if it is present in the
+ * context. All fragments are then validated together in one document, and each error
+ * is reported with the citation (and the line within its content) that caused it.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class DeferredValidation {
+
+    final private Logger log = Logger.getLogger(DeferredValidation.class.getName());
+
+    final public static String CONTEXT_DEFERRED_VALIDATION = "JavadocReader.deferredValidation";
+
+    final private List<Fragment> fragments = new ArrayList<Fragment>();
+
+    private Transformer transformer;
+
+    public void add(CitationAnchor citation, XHTML content) {
+        fragments.add(new Fragment(citation.toString(), serialize(content)));
+    }
+
+    public int getFragmentCount() {
+        return fragments.size();
+    }
+
+    /**
+     * Validates all collected content.
+     *
+     * @param parser The parser which provides the compiled XHTML schema.
+     * @throws RuntimeException If there were validation errors, the message lists all of them.
+     */
+    public void validate(XHTMLParser parser) {
+        if (fragments.size() == 0) return;
+
+        if (log.isLoggable(Level.FINE))
+            log.fine("Validating content of citations: " + fragments.size());
+
+        StringBuilder document = new StringBuilder();
+        document.append("<html xmlns=\"").append(XHTML.NAMESPACE_URI).append("\">");
+        document.append("<head><title/></head><body>\n");
+        int line = 2;
+        for (Fragment fragment : fragments) {
+            fragment.firstLine = line;
+            document.append(fragment.content).append("\n");
+            line += countLines(fragment.content);
+        }
+        document.append("</body></html>");
+
+        final List<String> errors = new ArrayList<String>();
+        Validator validator = parser.getSchema().newValidator();
+        validator.setErrorHandler(new ErrorHandler() {
+            public void warning(SAXParseException ex) throws SAXException {
+                log.warning(describe(ex));
+            }
+
+            public void error(SAXParseException ex) throws SAXException {
+                errors.add(describe(ex));
+            }
+
+            public void fatalError(SAXParseException ex) throws SAXException {
+                errors.add(describe(ex));
+            }
+        });
+
+        try {
+            validator.validate(new StreamSource(new StringReader(document.toString())));
+        } catch (SAXParseException ex) {
+            // Fatal errors abort validation after they have been reported to the handler
+            if (errors.size() == 0) errors.add(describe(ex));
+        } catch (Exception ex) {
+            throw new RuntimeException("Couldn't validate XHTML content of citations", ex);
+        }
+
+        if (errors.size() > 0) {
+            StringBuilder message = new StringBuilder();
+            message.append("Invalid XHTML content in ").append(errors.size()).append(" location(s):");
+            for (String error : errors) {
+                message.append("\n").append(error);
+            }
+            throw new RuntimeException(message.toString());
+        }
+    }
+
+    protected String describe(SAXParseException ex) {
+        Fragment fragment = null;
+        for (Fragment f : fragments) {
+            if (f.firstLine > ex.getLineNumber()) break;
+            fragment = f;
+        }
+        if (fragment == null) {
+            return "Line " + ex.getLineNumber() + ": " + ex.getMessage();
+        }
+        return fragment.citation
+                + " (content line " + (ex.getLineNumber() - fragment.firstLine + 1) + "): "
+                + ex.getMessage();
+    }
+
+    protected String serialize(XHTML content) {
+        try {
+            if (transformer == null) {
+                transformer = TransformerFactory.newInstance().newTransformer();
+                transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+            }
+            StringWriter writer = new StringWriter();
+            transformer.transform(
+                    new DOMSource(content.getW3CDocument().getDocumentElement()),
+                    new StreamResult(writer)
+            );
+            return writer.toString();
+        } catch (Exception ex) {
+            throw new RuntimeException("Couldn't serialize content for validation", ex);
+        }
+    }
+
+    protected int countLines(String s) {
+        int lines = 1;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == '\n') lines++;
+        }
+        return lines;
+    }
+
+    protected static class Fragment {
+        final String citation;
+        final String content;
+        int firstLine;
+
+        public Fragment(String citation, String content) {
+            this.citation = citation;
+            this.content = content;
+        }
+    }
+
+}
@@ -17,10 +17,6 @@
 
 package org.fourthline.lemma.reader.javadoc;
 
-import com.sun.javadoc.Doc;
-import com.sun.javadoc.RootDoc;
-import com.sun.javadoc.SeeTag;
-import com.sun.javadoc.Tag;
 import org.seamless.util.Text;
 import org.seamless.xhtml.Option;
 import org.seamless.xhtml.XHTML;
@@ -32,12 +28,18 @@ import org.fourthline.lemma.Constants;
 import org.fourthline.lemma.anchor.AnchorAddress;
 import org.fourthline.lemma.anchor.CitationAnchor;
 import org.fourthline.lemma.anchor.Scheme;
+import org.fourthline.lemma.model.ModelDoc;
+import org.fourthline.lemma.model.ModelTag;
+import org.fourthline.lemma.model.SourceModel;
+import org.fourthline.lemma.pipeline.CitationCost;
 import org.fourthline.lemma.pipeline.Context;
 
+import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Reads title and content from a Javadoc <code>Doc</code>, handles <code>javadoc://</code> scheme.
+ * Reads title and content from the documentation comment of a <code>ModelDoc</code>, handles <code>javadoc://</code> scheme.
  * <p>
  * This reader understands the individual Javadoc <em>"tags"</em>, it wraps
  * these individual parts of each Javadoc comment and validates the whole.
@@ -49,16 +51,17 @@ public class JavadocReader extends AbstractJavadocReader {
 
     final private Logger log = Logger.getLogger(JavadocReader.class.getName());
 
-    protected XHTML read(CitationAnchor citation, Context context, RootDoc rootDoc) {
-        Doc targetDoc = findTargetDoc(citation, rootDoc);
-        XHTML result = read(targetDoc, citation, isGenerateId(context));
+    protected XHTML read(CitationAnchor citation, Context context, SourceModel sourceModel) {
+        ModelDoc targetDoc = findTargetDoc(citation, sourceModel);
+        XHTML result = read(targetDoc, citation, context);
         resolveThisReferences(context, targetDoc, result);
         return result;
     }
 
-    protected XHTML read(Doc doc, CitationAnchor citation, boolean uniqueId) {
+    protected XHTML read(ModelDoc doc, CitationAnchor citation, Context context) {
 
-        log.fine("Reading Javadoc: " + doc.position());
+        if (log.isLoggable(Level.FINE))
+            log.fine("Reading Javadoc: " + doc.getFile() + ":" + doc.getLine());
 
         XHTML xhtml = getParser().createDocument();
 
@@ -66,33 +69,33 @@ public class JavadocReader extends AbstractJavadocReader {
                 xhtml.createRoot(getXPath(), Constants.WRAPPER_ELEMENT)
                         .setAttribute(XHTML.ATTR.CLASS, citation.getOutputClasses());
 
-        if (uniqueId)
+        if (isGenerateId(context))
             root.setAttribute(XHTML.ATTR.id, citation.getOutputIdentifier());
 
         String titleString = readTitle(doc, citation);
 
         appendTitle(root, titleString);
-        addFilePath(root, citation, doc.position().file());
+        addFilePath(root, citation, doc.getFile());
 
-        appendContent(root, doc, citation, titleString);
+        appendContent(root, doc, citation, titleString, context);
 
         return xhtml;
     }
 
-    protected String readTitle(Doc doc, CitationAnchor citation) {
+    protected String readTitle(ModelDoc doc, CitationAnchor citation) {
         String text = citation.getTitle();
         Option readTitleOption = citation.getOption(CitationAnchor.OptionKey.READ_TITLE);
         if ((readTitleOption == null || readTitleOption.isTrue()) && text == null) {
-            if (doc.firstSentenceTags().length > 0) {
-                text = readTags(doc.firstSentenceTags());
+            if (doc.getFirstSentenceTags().size() > 0) {
+                text = readTags(doc.getFirstSentenceTags());
             }
         }
         return text;
     }
 
-    protected void appendContent(XHTMLElement parent, Doc doc, CitationAnchor citation, String titleString) {
+    protected void appendContent(XHTMLElement parent, ModelDoc doc, CitationAnchor citation, String titleString, Context context) {
 
-        String content = readTags(doc.inlineTags());
+        String content = readTags(doc.getInlineTags());
 
         // Cut off the title if we already have it
         if (titleString != null && content.startsWith(titleString)) {
@@ -106,14 +109,11 @@ public class JavadocReader extends AbstractJavadocReader {
 
             try {
                 String wrapped = XHTMLParser.wrap(Constants.WRAPPER_ELEMENT.name(), XHTML.NAMESPACE_URI, text);
+                long start = CitationCost.start();
                 XHTML textDom = getParser().parse(wrapped, false);
+                CitationCost.stop(CitationCost.Stage.PARSE, start);
 
-                // Let's validate here!
-                XHTML validationDOM = getParser().createDocument();
-                XHTMLElement validationRoot = validationDOM.createRoot(getXPath(), XHTML.ELEMENT.html);
-                validationRoot.createChild(XHTML.ELEMENT.head).createChild(XHTML.ELEMENT.title); // Mandatory
-                validationRoot.createChild(XHTML.ELEMENT.body).appendChild(textDom.getRoot(getXPath()), true);
-                getParser().validate(validationDOM);
+                validateContent(textDom, citation, context);
 
                 textDom.getRoot(getXPath()).setAttribute(XHTML.ATTR.CLASS, Constants.TYPE_CONTENT);
                 parent.appendChild(textDom.getRoot(getXPath()), false);
@@ -124,39 +124,58 @@ public class JavadocReader extends AbstractJavadocReader {
 
 
         } else {
-            log.fine("Citation does not have content: " + citation);
+            if (log.isLoggable(Level.FINE))
+                log.fine("Citation does not have content: " + citation);
         }
     }
 
-    protected String readTags(Tag[] tags) {
+    protected void validateContent(XHTML textDom, CitationAnchor citation, Context context) throws ParserException {
+
+        // Validate later, together with the content of all other citations
+        DeferredValidation deferredValidation =
+                (DeferredValidation) context.get(DeferredValidation.CONTEXT_DEFERRED_VALIDATION);
+        if (deferredValidation != null) {
+            deferredValidation.add(citation, textDom);
+            return;
+        }
+
+        // Let's validate here!
+        XHTML validationDOM = getParser().createDocument();
+        XHTMLElement validationRoot = validationDOM.createRoot(getXPath(), XHTML.ELEMENT.html);
+        validationRoot.createChild(XHTML.ELEMENT.head).createChild(XHTML.ELEMENT.title); // Mandatory
+        validationRoot.createChild(XHTML.ELEMENT.body).appendChild(textDom.getRoot(getXPath()), true);
+        getParser().validate(validationDOM);
+    }
+
+    public String readTags(List<ModelTag> tags) {
         StringBuilder content = new StringBuilder();
-        for (Tag tag : tags) {
+        for (ModelTag tag : tags) {
 
-            if (tag.kind().equals("Text")) {
+            if (tag.getKind().equals(ModelTag.KIND_TEXT)) {
 
                 content.append(readTagText(tag));
 
-            } else if (tag.kind().equals("@see")) {
+            } else if (tag.getKind().equals(ModelTag.KIND_SEE)) {
 
-                content.append(readTagSee((SeeTag) tag));
+                content.append(readTagSee(tag));
 
-            } else if (tag.kind().equals("@code") || tag.kind().equals("@literal")) {
+            } else if (tag.getKind().equals(ModelTag.KIND_CODE) || tag.getKind().equals(ModelTag.KIND_LITERAL)) {
 
                 content.append(readTagCode(tag));
 
             } else {
-                log.warning("Skipping unknown tag of kind: " + tag.kind());
+                log.warning("Skipping unknown tag of kind: " + tag.getKind());
             }
         }
         return content.toString();
     }
 
-    protected String readTagText(Tag tag) {
+    protected String readTagText(ModelTag tag) {
         log.finest("Reading inline text tag");
-        return tag.text();
+        return tag.getText();
     }
 
-    protected String readTagSee(SeeTag seeTag) {
+    protected String readTagSee(ModelTag seeTag) {
         log.finest("Reading inline link tag");
 
         AnchorAddress xref;
@@ -167,46 +186,46 @@ public class JavadocReader extends AbstractJavadocReader {
         }
     }
 
-    protected String readTagCode(Tag tag) {
+    protected String readTagCode(ModelTag tag) {
         log.finest("Reading code/literal tag");
         StringBuilder content = new StringBuilder();
         // If it's an inline {@code} tag with no newlines in its text, we wrap the text in a <tt> element
-        boolean inlineCode = !tag.text().contains("\n");
+        boolean inlineCode = !tag.getText().contains("\n");
         if (inlineCode) content.append("<code>");
         content.append(DOM.CDATA_BEGIN);
-        content.append(tag.text());
+        content.append(tag.getText());
         content.append(DOM.CDATA_END);
         if (inlineCode) content.append("</code>");
         return content.toString();
     }
 
-    protected AnchorAddress getLinkReferenceAddress(SeeTag tag) {
+    protected AnchorAddress getLinkReferenceAddress(ModelTag tag) {
         // TODO: Always javadoc:// scheme?
         return AnchorAddress.valueOf(Scheme.JAVADOC, tag);
     }
 
-    protected String getLinkReference(SeeTag tag, AnchorAddress address) {
+    protected String getLinkReference(ModelTag tag, AnchorAddress address) {
         StringBuilder sb = new StringBuilder();
         sb.append("<a class=\"").append(Constants.TYPE_XREF).append("\" href=\"").append(address.toString()).append("\">");
-        sb.append(tag.label());
+        sb.append(tag.getLabel());
         sb.append("</a>");
         return sb.toString();
     }
 
-    protected String getLinkLabel(SeeTag tag) {
+    protected String getLinkLabel(ModelTag tag) {
         String referencedLabel;
-        if (tag.referencedMember() != null) {
-            referencedLabel = tag.referencedClassName() + "#" + tag.referencedMemberName();
-        } else if (tag.referencedClass() != null) {
-            referencedLabel = tag.referencedClassName();
-        } else if (tag.referencedPackage() != null) {
-            referencedLabel = tag.referencedPackage().name();
+        if (tag.getReferencedClass() != null && tag.getReferencedMemberName() != null) {
+            referencedLabel = tag.getReferencedClass() + "#" + tag.getReferencedMemberName();
+        } else if (tag.getReferencedClass() != null) {
+            referencedLabel = tag.getReferencedClass();
+        } else if (tag.getReferencedPackage() != null) {
+            referencedLabel = tag.getReferencedPackage();
         } else {
-            throw new IllegalStateException("Reference not found: " + tag + " at " + tag.position());
+            throw new IllegalStateException("Reference not found: " + tag + " at " + tag.getPosition());
         }
 
-        if (tag.label() != null && tag.label().length() > 0) {
-            return tag.label() + " (" + referencedLabel + ")";
+        if (tag.getLabel() != null && tag.getLabel().length() > 0) {
+            return tag.getLabel() + " (" + referencedLabel + ")";
         } else {
             return referencedLabel;
         }
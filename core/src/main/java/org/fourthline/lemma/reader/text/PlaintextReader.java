@@ -19,11 +19,13 @@ package org.fourthline.lemma.reader.text;
 
 import org.fourthline.lemma.Constants;
 import org.fourthline.lemma.anchor.CitationAnchor;
+import org.fourthline.lemma.pipeline.CitationCost;
 import org.fourthline.lemma.pipeline.Context;
 import org.fourthline.lemma.reader.AbstractReader;
 import org.fourthline.lemma.reader.content.filter.CleanupFilter;
 import org.fourthline.lemma.reader.content.filter.ContentFilter;
 import org.fourthline.lemma.reader.content.filter.FragmentFilter;
+import org.fourthline.lemma.reader.content.handler.ContentCache;
 import org.fourthline.lemma.reader.content.handler.ContentFileHandler;
 import org.fourthline.lemma.reader.content.printer.ContentPrinter;
 import org.fourthline.lemma.reader.content.printer.PlainContentPrinter;
@@ -32,6 +34,7 @@ import org.seamless.xhtml.XHTML;
 import org.seamless.xhtml.XHTMLElement;
 
 import java.io.File;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
@@ -42,6 +45,11 @@ import java.util.regex.Pattern;
  * fragment labels in plain text comments - which are all characters
  * following a hash "#" character.
  * </p>
+ * <p>
+ * Files which can't be labeled, such as generated logs, can be cited with a line range in
+ * the address fragment, e.g. <code>file://logs/server.log#L1200-L1260</code>. Only these
+ * lines are read from large files.
+ * </p>
  *
  * @author Christian Bauer
  */
@@ -70,8 +78,9 @@ public class PlaintextReader extends AbstractReader {
     public XHTML read(CitationAnchor citation, Context context) {
 
         File[] sourceDirectories = (File[])context.get(CONTEXT_SOURCE_DIRECTORIES);
-        File addressedFile = resolveFile(citation.getAddress().getPath(), sourceDirectories);
-        log.fine("Including and parsing XHTML file: " + addressedFile);
+        File addressedFile = resolveFile(citation.getAddress().getPath(), sourceDirectories, context);
+        if (log.isLoggable(Level.FINE))
+            log.fine("Including and parsing XHTML file: " + addressedFile);
 
         XHTML xhtml = getParser().createDocument();
 
@@ -85,25 +94,29 @@ public class PlaintextReader extends AbstractReader {
         appendTitle(root, citation.getTitle());
         addFilePath(root, citation, addressedFile);
 
-        appendContent(root, addressedFile, citation);
+        appendContent(root, addressedFile, citation, getContentCache(context));
 
         return xhtml;
     }
 
-    protected void appendContent(XHTMLElement parent, File file, CitationAnchor citation) {
+    protected void appendContent(XHTMLElement parent, File file, CitationAnchor citation, ContentCache cache) {
 
-        String[] content = handler.getContent(file, null);
+        String[] content = handler.getContent(file, citation.getAddress().getLineRange(), cache);
 
+        long start = CitationCost.start();
         for (ContentFilter filter : filters) {
             content = filter.filter(content, citation);
         }
+        CitationCost.stop(CitationCost.Stage.FILTER, start);
 
+        start = CitationCost.start();
         Option prettyOption = citation.getOption(CitationAnchor.OptionKey.PRETTY);
         if (prettyOption != null && Boolean.valueOf(prettyOption.getFirstValue())) {
             printer.print(content, citation, parent, "prettyprint");
         } else {
             printer.print(content, citation, parent);
         }
+        CitationCost.stop(CitationCost.Stage.PRINT, start);
     }
 
 }
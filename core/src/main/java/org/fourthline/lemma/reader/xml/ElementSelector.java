@@ -0,0 +1,389 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.reader.xml;
+
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.Comment;
+import javax.xml.stream.events.EntityReference;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.ProcessingInstruction;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Selects a single element of an XML document with a streaming parser.
+ * <p>
+ * The selector is a simple absolute path, e.g. <code>/beans/bean[@id='ds']</code>. Each step
+ * names an element (or <code>*</code>), optionally followed by attribute value predicates
+ * and a 1-based position predicate, e.g. <code>/beans/bean[@class='Foo'][2]</code>. A
+ * leading <code>//</code> matches the first step at any depth. Element and attribute
+ * names are compared without namespace prefix.
+ * </p>
+ * <p>
+ * The document is never loaded completely, parsing stops as soon as the first
+ * matching element has been closed. The element is serialized again, including comments
+ * and whitespace, and returned as lines of text.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class ElementSelector {
+
+    final private Logger log = Logger.getLogger(ElementSelector.class.getName());
+
+    final public static Pattern PATTERN_STEP = Pattern.compile("^(\\*|[\\w.:-]+)((?:\\[[^\\]]+\\])*)$");
+
+    final public static Pattern PATTERN_PREDICATE =
+            Pattern.compile("\\[\\s*(?:@([\\w.:-]+)\\s*=\\s*(?:'([^']*)'|\"([^\"]*)\")|([0-9]+))\\s*\\]");
+
+    final private String expression;
+    final private boolean descendant;
+    final private List<Step> steps = new ArrayList<Step>();
+
+    public ElementSelector(String expression) {
+        if (expression == null)
+            throw new IllegalArgumentException("Element selector can not be null");
+        this.expression = expression.trim();
+
+        String path;
+        if (this.expression.startsWith("//")) {
+            descendant = true;
+            path = this.expression.substring(2);
+        } else if (this.expression.startsWith("/")) {
+            descendant = false;
+            path = this.expression.substring(1);
+        } else {
+            throw new IllegalArgumentException("Element selector must be an absolute path: " + expression);
+        }
+
+        for (String s : splitSteps(path)) {
+            steps.add(new Step(s));
+        }
+        if (steps.size() == 0)
+            throw new IllegalArgumentException("Element selector has no steps: " + expression);
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * @param is The XML document, the stream is closed when this method returns.
+     * @return The lines of the first matching element, or <code>null</code> if no element matched.
+     */
+    public String[] select(InputStream is) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        XMLEventReader reader = factory.createXMLEventReader(is);
+        try {
+            Stack<Frame> frames = new Stack<Frame>();
+            frames.push(new Frame(0));
+
+            String indentation = "";
+            StringBuilder selected = null;
+            int selectedDepth = 0;
+
+            while (reader.hasNext()) {
+                XMLEvent event = reader.nextEvent();
+
+                if (selected != null) {
+                    boolean closed = write(event, reader, selected);
+                    if (event.isStartElement() && !closed) {
+                        selectedDepth++;
+                    } else if (event.isEndElement()) {
+                        selectedDepth--;
+                    }
+                    if (selectedDepth == 0) {
+                        if (log.isLoggable(Level.FINE))
+                            log.fine("Selected element, stopped parsing at line: " + event.getLocation().getLineNumber());
+                        return toLines(indentation + selected.toString());
+                    }
+                    continue;
+                }
+
+                if (event.isCharacters()) {
+                    // Remember the indentation of the current line, the selected element might start here
+                    String text = event.asCharacters().getData();
+                    int newline = text.lastIndexOf('\n');
+                    String tail = newline != -1 ? text.substring(newline + 1) : indentation + text;
+                    indentation = tail.trim().length() == 0 ? tail : "";
+                } else if (event.isStartElement()) {
+                    StartElement element = event.asStartElement();
+                    Frame parent = frames.peek();
+
+                    // Positions are counted among the siblings which match a step, as in XPath
+                    int matched = descendant ? 0 : -1;
+                    if (parent.matched >= 0) {
+                        int step = parent.matched;
+                        if (steps.get(step).matches(element)
+                                && steps.get(step).matchesPosition(++parent.counts[step])) {
+                            matched = step + 1;
+                        } else if (descendant && step > 0
+                                && steps.get(0).matches(element)
+                                && steps.get(0).matchesPosition(++parent.counts[0])) {
+                            matched = 1;
+                        }
+                    }
+
+                    if (matched == steps.size()) {
+                        selected = new StringBuilder();
+                        if (write(event, reader, selected)) {
+                            // Empty element, already closed
+                            return toLines(indentation + selected.toString());
+                        }
+                        selectedDepth = 1;
+                        continue;
+                    }
+                    frames.push(new Frame(matched));
+                    indentation = "";
+                } else if (event.isEndElement()) {
+                    frames.pop();
+                    indentation = "";
+                } else {
+                    indentation = "";
+                }
+            }
+            return null;
+        } finally {
+            reader.close();
+            try {
+                is.close();
+            } catch (IOException ex) {
+                // Ignore
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the event was an empty element and its end event has been consumed.
+     */
+    protected boolean write(XMLEvent event, XMLEventReader reader, StringBuilder sb) throws XMLStreamException {
+        switch (event.getEventType()) {
+            case XMLEvent.START_ELEMENT:
+                StartElement element = event.asStartElement();
+                sb.append("<").append(toString(element.getName().getPrefix(), element.getName().getLocalPart()));
+                for (Iterator it = element.getNamespaces(); it.hasNext(); ) {
+                    Namespace ns = (Namespace) it.next();
+                    sb.append(" ").append(ns.isDefaultNamespaceDeclaration() ? "xmlns" : "xmlns:" + ns.getPrefix());
+                    sb.append("=\"").append(escape(ns.getNamespaceURI(), true)).append("\"");
+                }
+                for (Iterator it = element.getAttributes(); it.hasNext(); ) {
+                    Attribute attribute = (Attribute) it.next();
+                    sb.append(" ").append(toString(attribute.getName().getPrefix(), attribute.getName().getLocalPart()));
+                    sb.append("=\"").append(escape(attribute.getValue(), true)).append("\"");
+                }
+                if (reader.peek() != null && reader.peek().isEndElement()) {
+                    // Don't expand empty elements
+                    reader.nextEvent();
+                    sb.append("/>");
+                    return true;
+                }
+                sb.append(">");
+                break;
+            case XMLEvent.END_ELEMENT:
+                sb.append("</").append(
+                        toString(event.asEndElement().getName().getPrefix(), event.asEndElement().getName().getLocalPart())
+                ).append(">");
+                break;
+            case XMLEvent.CDATA:
+                sb.append("<![CDATA[").append(event.asCharacters().getData()).append("]]>");
+                break;
+            case XMLEvent.CHARACTERS:
+            case XMLEvent.SPACE:
+                Characters characters = event.asCharacters();
+                if (characters.isCData()) {
+                    sb.append("<![CDATA[").append(characters.getData()).append("]]>");
+                } else {
+                    sb.append(escape(characters.getData(), false));
+                }
+                break;
+            case XMLEvent.COMMENT:
+                sb.append("<!--").append(((Comment) event).getText()).append("-->");
+                break;
+            case XMLEvent.PROCESSING_INSTRUCTION:
+                ProcessingInstruction pi = (ProcessingInstruction) event;
+                sb.append("<?").append(pi.getTarget());
+                if (pi.getData() != null && pi.getData().length() > 0)
+                    sb.append(" ").append(pi.getData());
+                sb.append("?>");
+                break;
+            case XMLEvent.ENTITY_REFERENCE:
+                sb.append("&").append(((EntityReference) event).getName()).append(";");
+                break;
+            default:
+                // Ignore anything else, there is no DTD or document-level event inside an element
+        }
+        return false;
+    }
+
+    protected String toString(String prefix, String localPart) {
+        return prefix != null && prefix.length() > 0 ? prefix + ":" + localPart : localPart;
+    }
+
+    protected String escape(String s, boolean attribute) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '&':
+                    sb.append("&amp;");
+                    break;
+                case '<':
+                    sb.append("&lt;");
+                    break;
+                case '>':
+                    sb.append("&gt;");
+                    break;
+                case '"':
+                    sb.append(attribute ? "&quot;" : "\"");
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    protected String[] toLines(String s) {
+        return s.split("\r?\n", -1);
+    }
+
+    protected List<String> splitSteps(String path) {
+        List<String> result = new ArrayList<String>();
+        StringBuilder current = new StringBuilder();
+        char quote = 0;
+        int brackets = 0;
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (quote != 0) {
+                if (c == quote) quote = 0;
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '[') {
+                brackets++;
+            } else if (c == ']') {
+                brackets--;
+            } else if (c == '/' && brackets == 0) {
+                result.add(current.toString());
+                current = new StringBuilder();
+                continue;
+            }
+            current.append(c);
+        }
+        result.add(current.toString());
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return getExpression();
+    }
+
+    protected static String localPart(String name) {
+        int colon = name.indexOf(':');
+        return colon != -1 ? name.substring(colon + 1) : name;
+    }
+
+    /**
+     * Number of matched selector steps of an element and its child position counters.
+     */
+    protected class Frame {
+        final int matched;
+        final int[] counts = new int[steps.size()];
+
+        protected Frame(int matched) {
+            this.matched = matched;
+        }
+    }
+
+    protected static class Step {
+
+        final String name;
+        final Map<String, String> attributes = new LinkedHashMap<String, String>();
+        Integer position;
+
+        protected Step(String step) {
+            Matcher m = PATTERN_STEP.matcher(step.trim());
+            if (!m.matches())
+                throw new IllegalArgumentException("Invalid element selector step: " + step);
+
+            name = localPart(m.group(1));
+
+            Matcher predicate = PATTERN_PREDICATE.matcher(m.group(2));
+            int end = 0;
+            while (predicate.find()) {
+                if (predicate.start() != end)
+                    throw new IllegalArgumentException("Invalid element selector predicate: " + step);
+                end = predicate.end();
+                if (predicate.group(1) != null) {
+                    attributes.put(
+                            localPart(predicate.group(1)),
+                            predicate.group(2) != null ? predicate.group(2) : predicate.group(3)
+                    );
+                } else {
+                    position = Integer.valueOf(predicate.group(4));
+                }
+            }
+            if (end != m.group(2).length())
+                throw new IllegalArgumentException("Invalid element selector predicate: " + step);
+        }
+
+        protected boolean matches(StartElement element) {
+            if (!name.equals("*") && !name.equals(element.getName().getLocalPart()))
+                return false;
+            for (Map.Entry<String, String> entry : attributes.entrySet()) {
+                String value = null;
+                for (Iterator it = element.getAttributes(); it.hasNext(); ) {
+                    Attribute attribute = (Attribute) it.next();
+                    if (attribute.getName().getLocalPart().equals(entry.getKey())) {
+                        value = attribute.getValue();
+                        break;
+                    }
+                }
+                if (!entry.getValue().equals(value))
+                    return false;
+            }
+            return true;
+        }
+
+        protected boolean matchesPosition(int count) {
+            return position == null || position == count;
+        }
+    }
+
+}
@@ -19,18 +19,27 @@ package org.fourthline.lemma.reader.xml;
 
 import org.fourthline.lemma.Constants;
 import org.fourthline.lemma.anchor.CitationAnchor;
+import org.fourthline.lemma.pipeline.CitationCost;
 import org.fourthline.lemma.pipeline.Context;
 import org.fourthline.lemma.reader.AbstractReader;
 import org.fourthline.lemma.reader.content.filter.CleanupFilter;
 import org.fourthline.lemma.reader.content.filter.ContentFilter;
 import org.fourthline.lemma.reader.content.filter.FragmentFilter;
+import org.fourthline.lemma.reader.content.handler.ContentCache;
+import org.fourthline.lemma.reader.content.handler.ArchiveEntryFile;
 import org.fourthline.lemma.reader.content.handler.ContentFileHandler;
 import org.fourthline.lemma.reader.content.printer.ContentPrinter;
 import org.fourthline.lemma.reader.content.printer.XMLContentPrinter;
 import org.seamless.xhtml.XHTML;
+import org.seamless.xhtml.Option;
 import org.seamless.xhtml.XHTMLElement;
 
+import javax.xml.stream.XMLStreamException;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
@@ -46,6 +55,11 @@ import java.util.regex.Pattern;
  * helps you to detect XML code blocks in your output document, e.g. for a
  * Javascript syntax highlighter.
  * </p>
+ * <p>
+ * A single element can be cited with the <code>select</code> option, e.g.
+ * <code>style="select: /beans/bean[@id='dataSource']"</code>. The file is then read with
+ * a streaming parser which stops after the selected element, see {@link ElementSelector}.
+ * </p>
  *
  * @author Christian Bauer
  */
@@ -74,8 +88,9 @@ public class XMLReader extends AbstractReader {
     public XHTML read(CitationAnchor citation, Context context) {
 
         File[] sourceDirectories = (File[]) context.get(CONTEXT_SOURCE_DIRECTORIES);
-        File addressedFile = resolveFile(citation.getAddress().getPath(), sourceDirectories);
-        log.fine("Including and parsing XHTML file: " + addressedFile);
+        File addressedFile = resolveFile(citation.getAddress().getPath(), sourceDirectories, context);
+        if (log.isLoggable(Level.FINE))
+            log.fine("Including and parsing XHTML file: " + addressedFile);
 
         XHTML xhtml = getParser().createDocument();
 
@@ -89,20 +104,52 @@ public class XMLReader extends AbstractReader {
         appendTitle(root, citation.getTitle());
         addFilePath(root, citation, addressedFile);
 
-        appendContent(root, addressedFile, citation);
+        appendContent(root, addressedFile, citation, getContentCache(context));
 
         return xhtml;
     }
 
-    protected void appendContent(XHTMLElement parent, File file, CitationAnchor citation) {
+    protected void appendContent(XHTMLElement parent, File file, CitationAnchor citation, ContentCache cache) {
 
-        String[] content = handler.getContent(file, null);
+        String[] content;
+        Option selectOption = citation.getOption(CitationAnchor.OptionKey.SELECT);
+        if (selectOption != null && selectOption.getFirstValue() != null) {
+            content = selectElement(file, new ElementSelector(selectOption.getFirstValue()));
+        } else {
+            content = handler.getContent(file, citation.getAddress().getLineRange(), cache);
+        }
 
+        long start = CitationCost.start();
         for (ContentFilter filter : filters) {
             content = filter.filter(content, citation);
         }
+        CitationCost.stop(CitationCost.Stage.FILTER, start);
 
+        start = CitationCost.start();
         printer.print(content, citation, parent, "prettyprint");
+        CitationCost.stop(CitationCost.Stage.PRINT, start);
+    }
+
+    protected String[] selectElement(File file, ElementSelector selector) {
+        if (log.isLoggable(Level.FINE))
+            log.fine("Selecting element '" + selector.getExpression() + "' in file: " + file);
+        String[] content;
+        try {
+            InputStream is = file instanceof ArchiveEntryFile
+                    ? ((ArchiveEntryFile) file).openStream()
+                    : new FileInputStream(file);
+            content = selector.select(is);
+        } catch (IOException ex) {
+            throw new RuntimeException("Can't read file: " + file, ex);
+        } catch (XMLStreamException ex) {
+            throw new RuntimeException("Can't parse XML file: " + file, ex);
+        }
+        if (content == null) {
+            throw new RuntimeException(
+                    "No element matched selector '" + selector.getExpression() + "' in file: " + file
+            );
+        }
+        return content;
     }
 
 }
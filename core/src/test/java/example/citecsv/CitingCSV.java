@@ -0,0 +1,84 @@
+package example.citecsv;
+
+import com.sun.tools.javac.util.Pair;
+import org.seamless.xhtml.XHTML;
+import example.util.DocletTest;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Citing CSV files
+ * <p>
+ * Files with a <code>.csv</code> extension are rendered as a table, the first record is the header row:
+ * </p>
+ * <a class="citation" href="file://example/citecsv/orders.csv" style="reader: org.fourthline.lemma.reader.text.PlaintextReader">Citation</a>
+ * <p>
+ * Reference the file in your citation anchor:
+ * </p>
+ * <a class="citation" href="file://example/citecsv/sample01_input.xhtml">Citation</a>
+ * <p>
+ * Lemma will generate the following output:
+ * </p>
+ * <a class="citation" href="file://example/citecsv/sample01_output.xhtml">Citation</a>
+ * <p>
+ * Select data rows with the <code>rows</code> option, the first row after the header is 1. Select
+ * columns with the <code>columns</code> option, by header name or position (the first column is 1):
+ * </p>
+ * <a class="citation" href="file://example/citecsv/sample02_input.xhtml">Citation</a>
+ * <p>
+ * Only the selected rows and columns are rendered:
+ * </p>
+ * <a class="citation" href="file://example/citecsv/sample02_output.xhtml">Citation</a>
+ * <p>
+ * If the file has no header row, disable it with <code>header: false</code>, the first record is then
+ * a data row and columns can only be selected by position:
+ * </p>
+ * <a class="citation" href="file://example/citecsv/sample03_input.xhtml">Citation</a>
+ *
+ * @author Christian Bauer
+ */
+public class CitingCSV extends DocletTest {
+
+    @DataProvider(name = "samples")
+    public Object[][] getSamples() {
+        return new Object[][]{
+                {new Pair<String, String>("example/citecsv/sample01_input.xhtml", "example/citecsv/sample01_output.xhtml")},
+                {new Pair<String, String>("example/citecsv/sample02_input.xhtml", "example/citecsv/sample02_output.xhtml")},
+                {new Pair<String, String>("example/citecsv/sample03_input.xhtml", "example/citecsv/sample03_output.xhtml")},
+        };
+    }
+
+    @Test(dataProvider = "samples")
+    public void process(Pair<String, String> sample) throws Exception {
+
+        XHTML output = getTemplatePipeline().execute(parseDocument(sample.fst));
+        assertEquals(getParser().print(output), getContent(sample.snd));
+
+    }
+
+    @Test
+    public void unknownColumn() throws Exception {
+        XHTML input = parseDocument("example/citecsv/sample02_input.xhtml");
+        input.getRoot(getTemplatePipeline().getXPath()).getBody().getW3CElement()
+                .getElementsByTagName("a").item(0).getAttributes().getNamedItem("style")
+                .setNodeValue("columns: product, discount");
+        try {
+            getTemplatePipeline().execute(input);
+            fail("Unknown column must fail the citation");
+        } catch (Exception ex) {
+            assertTrue(getMessages(ex).contains("Unknown column 'discount'"), getMessages(ex));
+        }
+    }
+
+    protected String getMessages(Throwable ex) {
+        StringBuilder sb = new StringBuilder();
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            sb.append(t.getMessage()).append("\n");
+        }
+        return sb.toString();
+    }
+}
@@ -11,8 +11,9 @@ import static org.testng.Assert.assertEquals;
 /**
  * Citing plain text files
  * <p>
- * Regular text files that end with a <code>.txt</code> or <code>.csv</code> extension use the <code>#</code>
- * character as a comment marker:
+ * Regular text files that end with a <code>.txt</code> extension use the <code>#</code>
+ * character as a comment marker (files with a <code>.csv</code> extension are rendered
+ * as a table instead):
  * </p>
  * <a class="citation" href="file://example/citeplaintext/myorders.txt" style="clean-labels:false;">Citation</a>
  * <p>
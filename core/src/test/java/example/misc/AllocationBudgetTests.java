@@ -0,0 +1,218 @@
+package example.misc;
+
+import example.util.DocletTest;
+import org.fourthline.lemma.Constants;
+import org.fourthline.lemma.anchor.CitationAnchor;
+import org.fourthline.lemma.pipeline.CacheRegistry;
+import org.fourthline.lemma.pipeline.Context;
+import org.fourthline.lemma.processor.Processor;
+import org.fourthline.lemma.processor.xhtml.JavadocCitationProcessor;
+import org.fourthline.lemma.reader.Reader;
+import org.fourthline.lemma.reader.content.handler.ContentCache;
+import org.fourthline.lemma.reader.javadoc.AbstractJavadocReader;
+import org.seamless.xhtml.XHTML;
+import org.seamless.xhtml.XHTMLElement;
+import org.seamless.util.io.IO;
+import org.testng.SkipException;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Checks the bytes allocated by single reader and processor calls against the budgets
+ * in <code>allocation-budgets.txt</code>.
+ * <p>
+ * Each call is measured several times and the smallest value is compared, so garbage
+ * created by the JIT or class loading doesn't fail the test. A processor call is budgeted per
+ * citation of its template, its allocated bytes are divided by the number of citations.
+ * </p>
+ * <p>
+ * Set the system property <code>lemma.allocationBudgets.record</code> to a file to record the budgets
+ * instead of checking them: every call is measured, and the file is written with the measured values
+ * plus {@link #HEADROOM} and a header naming the JVM that measured them.
+ * </p>
+ */
+public class AllocationBudgetTests extends DocletTest {
+
+    final private Logger log = Logger.getLogger(AllocationBudgetTests.class.getName());
+
+    public static final String BUDGETS_FILE = "example/misc/allocation-budgets.txt";
+    public static final String PRIMING_TEMPLATE = "example/helloworld/example01_input.xhtml";
+    public static final int MEASUREMENTS = 3;
+    public static final String RECORD_PROPERTY = "lemma.allocationBudgets.record";
+    public static final double HEADROOM = 1.25;
+
+    final protected List<String> recordedBudgets = new ArrayList<String>();
+
+    @DataProvider(name = "budgets")
+    public Object[][] getBudgets() throws Exception {
+        List<Object[]> budgets = new ArrayList<Object[]>();
+        for (String line : getContent(BUDGETS_FILE).split("\n")) {
+            line = line.trim();
+            if (line.length() == 0 || line.startsWith("#")) continue;
+            String[] fields = line.split("\\|", -1);
+            if (fields.length != 4)
+                throw new IllegalArgumentException("Expected four fields separated by '|' in budget: " + line);
+            budgets.add(new Object[]{
+                    new Budget(fields[0].trim(), Long.valueOf(fields[1].trim()), fields[2].trim(), fields[3].trim())
+            });
+        }
+        return budgets.toArray(new Object[budgets.size()][]);
+    }
+
+    @Test(dataProvider = "budgets")
+    public void checkBudget(Budget budget) throws Exception {
+        long allocated = Long.MAX_VALUE;
+        for (int i = 0; i < MEASUREMENTS + 1; i++) {
+            long bytes = budget.isReader() ? measureReader(budget) : measureProcessor(budget);
+            // The first call loads classes and fills caches of the source model
+            if (i > 0)
+                allocated = Math.min(allocated, bytes);
+        }
+        long allocatedKB = allocated / 1024;
+        log.info("Allocated " + allocatedKB + " KB of " + budget.kilobytes + " KB budget: " + budget);
+
+        if (System.getProperty(RECORD_PROPERTY) != null) {
+            synchronized (recordedBudgets) {
+                recordedBudgets.add(budget.toLine(Math.max(1, (long) Math.ceil(allocatedKB * HEADROOM))));
+            }
+            return;
+        }
+
+        assertTrue(
+                allocatedKB <= budget.kilobytes,
+                "Allocated " + allocatedKB + " KB, exceeds budget of " + budget.kilobytes + " KB: " + budget
+        );
+    }
+
+    @AfterClass
+    public void writeRecordedBudgets() throws Exception {
+        String file = System.getProperty(RECORD_PROPERTY);
+        if (file == null || recordedBudgets.size() == 0) return;
+
+        StringBuilder sb = new StringBuilder();
+        for (String line : getContent(BUDGETS_FILE).split("\n")) {
+            // Keep the leading documentation, replace the provenance and the budgets
+            if (!line.startsWith("#")) break;
+            sb.append(line).append("\n");
+        }
+        sb.append("\n# Recorded ").append(new Date()).append(" on Java ").append(System.getProperty("java.version"));
+        sb.append(" (").append(System.getProperty("java.vm.name")).append("), smallest of ").append(MEASUREMENTS);
+        sb.append(" measurements after a warm-up call, plus ").append(Math.round((HEADROOM - 1) * 100));
+        sb.append("% headroom.\n\n");
+        for (String line : recordedBudgets) {
+            sb.append(line).append("\n");
+        }
+        IO.writeUTF8(new File(file), sb.toString());
+        log.info("Recorded " + recordedBudgets.size() + " allocation budgets: " + file);
+    }
+
+    protected long measureReader(Budget budget) throws Exception {
+        Context context = getContext();
+        CitationAnchor citation = createCitation(budget.target, budget.argument);
+        Reader reader = new JavadocCitationProcessor(getTemplatePipeline().getSourceModel()).getReader(citation);
+        ((ContentCache) context.get(ContentCache.CONTEXT_CONTENT_CACHE)).clear();
+
+        long start = getAllocatedBytes();
+        reader.read(citation, context);
+        return getAllocatedBytes() - start;
+    }
+
+    /**
+     * @return The bytes allocated by the processor divided by the number of citations in the template.
+     */
+    protected long measureProcessor(Budget budget) throws Exception {
+        Context context = getContext();
+        XHTML input = parseDocument(budget.argument);
+        int citations = CitationAnchor.findCitationAnchors(
+                getTemplatePipeline().getXPath(), input, Constants.TYPE_CITATION
+        ).length;
+        ((ContentCache) context.get(ContentCache.CONTEXT_CONTENT_CACHE)).clear();
+
+        for (Processor<XHTML, XHTML> processor : getTemplatePipeline().getProcessors()) {
+            if (processor.getClass().getSimpleName().equals(budget.target)) {
+                long start = getAllocatedBytes();
+                processor.process(input, context);
+                return (getAllocatedBytes() - start) / Math.max(1, citations);
+            }
+            input = processor.process(input, context);
+        }
+        throw new IllegalArgumentException("Processor not found in pipeline: " + budget.target);
+    }
+
+    /**
+     * Executes the pipeline once after each reset, the context then holds everything readers and processors need.
+     */
+    protected Context getContext() throws Exception {
+        Context context = getTemplatePipeline().getContext();
+        if (!context.containsKey(ContentCache.CONTEXT_CONTENT_CACHE)) {
+            getTemplatePipeline().execute(parseDocument(PRIMING_TEMPLATE));
+            // The registry of the finished execution no longer publishes statistics
+            context.remove(CacheRegistry.CONTEXT_CACHE_REGISTRY);
+            // The model has been removed after citation processing
+            context.put(AbstractJavadocReader.CONTEXT_SOURCE_MODEL, getTemplatePipeline().getSourceModel());
+        }
+        return context;
+    }
+
+    protected CitationAnchor createCitation(String href, String options) {
+        XHTML xhtml = getParser().createDocument();
+        XHTMLElement parent = xhtml.createRoot(getTemplatePipeline().getXPath(), Constants.WRAPPER_ELEMENT);
+        XHTMLElement anchor = parent.createChild(XHTML.ELEMENT.a);
+        anchor.setAttribute(XHTML.ATTR.CLASS, Constants.TYPE_CITATION);
+        anchor.setAttribute(XHTML.ATTR.href, href);
+        if (options.length() > 0)
+            anchor.getW3CElement().setAttribute("style", options);
+        return new CitationAnchor(getTemplatePipeline().getXPath(), anchor.getW3CElement());
+    }
+
+    protected long getAllocatedBytes() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean))
+            throw new SkipException("JVM can't measure allocated bytes per thread");
+        com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+        if (!sunThreadBean.isThreadAllocatedMemorySupported() || !sunThreadBean.isThreadAllocatedMemoryEnabled())
+            throw new SkipException("JVM can't measure allocated bytes per thread");
+        return sunThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public static class Budget {
+
+        final public String type;
+        final public long kilobytes;
+        final public String target;
+        final public String argument;
+
+        public Budget(String type, long kilobytes, String target, String argument) {
+            if (!type.equals("reader") && !type.equals("processor"))
+                throw new IllegalArgumentException("Unknown budget type, expected 'reader' or 'processor': " + type);
+            this.type = type;
+            this.kilobytes = kilobytes;
+            this.target = target;
+            this.argument = argument;
+        }
+
+        public String toLine(long kilobytes) {
+            return String.format("%-9s | %5d | %s | %s", type, kilobytes, target, argument).trim();
+        }
+
+        public boolean isReader() {
+            return type.equals("reader");
+        }
+
+        @Override
+        public String toString() {
+            return type + " " + target + (argument.length() > 0 ? " (" + argument + ")" : "");
+        }
+    }
+}
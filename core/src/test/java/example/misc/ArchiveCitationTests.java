@@ -0,0 +1,92 @@
+package example.misc;
+
+import example.util.DocletTest;
+import org.fourthline.lemma.pipeline.javadoc.XHTMLTemplateJavadocPipeline;
+import org.seamless.xhtml.XHTML;
+import org.seamless.xhtml.XHTMLElement;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Entries of source archives must be rendered like the same file in a source directory.
+ * <p>
+ * The archive <code>sources.jar</code> contains a copy of <code>example/citeplaintext/myorders.txt</code>
+ * as <code>archived/myorders.txt</code>.
+ * </p>
+ */
+public class ArchiveCitationTests extends DocletTest {
+
+    public static final String ARCHIVE = "example/misc/sources.jar";
+
+    @Test
+    public void citeArchiveEntry() throws Exception {
+        String expected = renderContent(
+                createPipeline(false), "file://example/citeplaintext/myorders.txt", "file.example_citeplaintext_myorders.txt"
+        );
+        assertTrue(expected.contains("item-price=99.90"), expected);
+
+        String archived = renderContent(
+                createPipeline(false),
+                "jar://" + ARCHIVE + "!/archived/myorders.txt",
+                "jar.example_misc_sources.jar_archived_myorders.txt"
+        );
+        assertEquals(archived, expected);
+    }
+
+    @Test
+    public void citeConfiguredArchive() throws Exception {
+        // Not in any source directory, found in the configured archive
+        String expected = renderContent(
+                createPipeline(false), "file://example/citeplaintext/myorders.txt", "file.example_citeplaintext_myorders.txt"
+        );
+        String archived = renderContent(
+                createPipeline(true), "file://archived/myorders.txt", "file.archived_myorders.txt"
+        );
+        assertEquals(archived, expected);
+    }
+
+    @Test
+    public void citeMissingEntry() throws Exception {
+        try {
+            renderContent(createPipeline(false), "jar://" + ARCHIVE + "!/archived/missing.txt", null);
+            fail("Missing archive entry must fail the citation");
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getMessage().contains("Referenced entry 'archived/missing.txt' not found in archive"), ex.getMessage());
+        }
+    }
+
+    /**
+     * @return The text of the rendered <code>ORDER1</code> fragments of the cited file.
+     */
+    protected String renderContent(XHTMLTemplateJavadocPipeline pipeline, String href, String id) throws Exception {
+        XHTML input = getParser().parse(
+                "<html xmlns=\"http://www.w3.org/1999/xhtml\"><head><title>Archive</title></head><body><div>" +
+                        "<a class=\"citation\" href=\"" + href + "\" style=\"include: ORDER1\"/>" +
+                        "</div></body></html>",
+                false
+        );
+        XHTML output = pipeline.execute(input);
+        XHTMLElement citation = output.getRoot(getTemplatePipeline().getXPath()).findChildWithIdentifier(id);
+        assertNotNull(citation, "Citation not rendered: " + id);
+        return citation.getContent();
+    }
+
+    protected XHTMLTemplateJavadocPipeline createPipeline(boolean configureArchive) {
+        List<File> dirs = new ArrayList<File>();
+        dirs.add(getSourceDirectory());
+        List<File> archives = new ArrayList<File>();
+        if (configureArchive)
+            archives.add(new File(getSourceDirectory(), ARCHIVE));
+        return new XHTMLTemplateJavadocPipeline(
+                dirs, archives, getTemplatePipeline().getSourceModel(), true, isProcessXRefs()
+        );
+    }
+}
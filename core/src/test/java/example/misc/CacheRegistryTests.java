@@ -0,0 +1,144 @@
+package example.misc;
+
+import example.util.DocletTest;
+import org.fourthline.lemma.pipeline.CacheRegistry;
+import org.fourthline.lemma.pipeline.CacheStatistics;
+import org.fourthline.lemma.pipeline.javadoc.XHTMLTemplateJavadocPipeline;
+import org.fourthline.lemma.processor.Processor;
+import org.seamless.xhtml.XHTML;
+import org.testng.annotations.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * The statistics of all caches used by a pipeline execution are published as MBeans while
+ * the pipeline executes, and count the cache accesses of the execution.
+ */
+public class CacheRegistryTests extends DocletTest {
+
+    public static final String TEMPLATE = "example/misc/costs01_input.xhtml";
+
+    @Test
+    public void registerMBeans() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        Set<ObjectName> existing = getCacheMBeans();
+
+        CacheRegistry registry = new CacheRegistry("Test");
+        CacheStatistics statistics = new CacheStatistics("content");
+        registry.add(statistics);
+        registry.add(statistics);
+        registry.add(new CacheStatistics("readers"));
+
+        Set<ObjectName> registered = getCacheMBeans();
+        registered.removeAll(existing);
+        assertEquals(registered.size(), 2);
+
+        ObjectName content = null;
+        for (ObjectName name : registered) {
+            assertTrue(ObjectName.unquote(name.getKeyProperty("pipeline")).startsWith("Test-"), name.toString());
+            if (ObjectName.unquote(name.getKeyProperty("name")).equals("content"))
+                content = name;
+        }
+        assertNotNull(content);
+
+        // The MBean shows the current counters
+        statistics.hit();
+        statistics.miss();
+        statistics.miss();
+        statistics.setSize(3, 1024);
+        assertEquals(server.getAttribute(content, "Hits"), 1L);
+        assertEquals(server.getAttribute(content, "Misses"), 2L);
+        assertEquals(server.getAttribute(content, "Entries"), 3);
+        assertEquals(server.getAttribute(content, "EstimatedBytes"), 1024L);
+        server.invoke(content, "reset", new Object[0], new String[0]);
+        assertEquals(statistics.getHits(), 0);
+        assertEquals(statistics.getMisses(), 0);
+        assertEquals(statistics.getEntries(), 3);
+
+        // Registries of the same pipeline don't replace each other's MBeans
+        CacheRegistry other = new CacheRegistry("Test");
+        other.add(new CacheStatistics("content"));
+        assertTrue(server.isRegistered(content));
+        other.unregister();
+
+        registry.unregister();
+        for (ObjectName name : registered) {
+            assertFalse(server.isRegistered(name), name.toString());
+        }
+        assertEquals(getCacheMBeans(), existing);
+        registry.unregister();
+    }
+
+    @Test
+    public void countCacheAccess() throws Exception {
+        final Set<ObjectName> existing = getCacheMBeans();
+        final Set<ObjectName> registered = new HashSet<ObjectName>();
+
+        List<File> dirs = new ArrayList<File>();
+        dirs.add(getSourceDirectory());
+        XHTMLTemplateJavadocPipeline pipeline = new XHTMLTemplateJavadocPipeline(
+                dirs, new ArrayList<File>(), getTemplatePipeline().getSourceModel(), true, isProcessXRefs()
+        ) {
+            @Override
+            protected void processed(Processor<XHTML, XHTML> processor) {
+                super.processed(processor);
+                registered.addAll(getCacheMBeans());
+            }
+        };
+        pipeline.execute(parseDocument(TEMPLATE));
+
+        // Three citations of two files, with two readers
+        CacheStatistics content = getCache(pipeline.getCacheRegistry(), "content");
+        assertTrue(content == pipeline.getContentCache().getStatistics());
+        assertEquals(content.getHits(), 1);
+        assertEquals(content.getMisses(), 2);
+        assertEquals(content.getLoads(), 2);
+        assertEquals(content.getEntries(), 2);
+        assertEquals(content.getEvictions(), 0);
+
+        CacheStatistics readers = getCache(pipeline.getCacheRegistry(), "readers");
+        assertEquals(readers.getHits(), 1);
+        assertEquals(readers.getMisses(), 2);
+        assertEquals(readers.getEntries(), 2);
+
+        // Published while the pipeline executed, removed when it completed
+        registered.removeAll(existing);
+        Set<String> names = new HashSet<String>();
+        for (ObjectName name : registered) {
+            names.add(ObjectName.unquote(name.getKeyProperty("name")));
+        }
+        assertTrue(names.contains("content"), names.toString());
+        assertTrue(names.contains("readers"), names.toString());
+        assertEquals(getCacheMBeans(), existing);
+    }
+
+    protected CacheStatistics getCache(CacheRegistry registry, String name) {
+        for (CacheStatistics statistics : registry.getCaches()) {
+            if (statistics.getName().equals(name))
+                return statistics;
+        }
+        throw new AssertionError("Cache not registered: " + name);
+    }
+
+    protected Set<ObjectName> getCacheMBeans() {
+        try {
+            return new HashSet<ObjectName>(ManagementFactory.getPlatformMBeanServer().queryNames(
+                    new ObjectName(CacheRegistry.JMX_DOMAIN + ":type=Cache,*"), null
+            ));
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package example.misc;
+
+import example.util.DocletTest;
+import org.fourthline.lemma.Constants;
+import org.fourthline.lemma.anchor.CitationAnchor;
+import org.fourthline.lemma.pipeline.CheckReport;
+import org.fourthline.lemma.pipeline.javadoc.XHTMLTemplateJavadocPipeline;
+import org.seamless.xhtml.XHTML;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Checking a template must report all broken citations and cross-references at once, without rendering.
+ */
+public class CheckTests extends DocletTest {
+
+    @Test
+    public void checkValidTemplate() throws Exception {
+        CheckReport report = check("example/helloworld/example01_input.xhtml");
+        assertEquals(report.getProblems().size(), 0, report.toString());
+        assertTrue(report.getCitations() > 1);
+    }
+
+    @Test
+    public void checkBrokenTemplate() throws Exception {
+        XHTMLTemplateJavadocPipeline pipeline = createPipeline();
+        XHTML output = pipeline.execute(parseDocument("example/misc/check01_input.xhtml"));
+        CheckReport report = pipeline.getCheckReport();
+
+        // Nothing has been rendered
+        assertEquals(CitationAnchor.findCitationAnchors(getTemplatePipeline().getXPath(), output, Constants.TYPE_CITATION).length, 7);
+
+        assertEquals(report.getCitations(), 7);
+        assertEquals(report.getXRefs(), 2);
+
+        List<CheckReport.Problem> problems = report.getProblems();
+        assertEquals(problems.size(), 6, report.toString());
+        assertProblem(problems.get(0), "javadoc://example.helloworld.NoSuchClass", "Target not found");
+        assertProblem(problems.get(1), "javacode://example.helloworld.HelloWorld#noSuchMethod()", "Target not found");
+        assertProblem(problems.get(2), "file://example/helloworld/NoSuchFile.txt", "Referenced file not found");
+        assertProblem(problems.get(3), "javacode://example.helloworld.HelloWorld", "DOC:NO_SUCH_LABEL");
+        assertProblem(problems.get(4), "file://example/citeplaintext/myorders.txt#L10-L20", "exceeds the lines");
+        assertProblem(problems.get(5), "javadoc://example.helloworld.HelloWorldTest", "identifier not found");
+    }
+
+    @Test
+    public void checkCitedJavadoc() throws Exception {
+        // The {@link} of a cited method comment doesn't point to any citation
+        CheckReport report = check("example/advanced/example01_input.xhtml");
+        assertEquals(report.getProblems().size(), 1, report.toString());
+        assertProblem(
+                report.getProblems().get(0),
+                "javadoc://example.helloworld.HelloWorld#getMessage() in javadoc://example.advanced.LinkingCitations#brokenLinks()",
+                "identifier not found"
+        );
+    }
+
+    @Test
+    public void checkDuplicateIdentifiers() throws Exception {
+        CheckReport report = check("example/helloworld/error01_input.xhtml");
+        assertEquals(report.getProblems().size(), 1, report.toString());
+        assertProblem(report.getProblems().get(0), "javadoc://example.helloworld.HelloWorld", "Duplicate identifier");
+    }
+
+    protected CheckReport check(String template) throws Exception {
+        XHTMLTemplateJavadocPipeline pipeline = createPipeline();
+        pipeline.execute(parseDocument(template));
+        return pipeline.getCheckReport();
+    }
+
+    protected XHTMLTemplateJavadocPipeline createPipeline() {
+        List<File> dirs = new ArrayList<File>();
+        dirs.add(getSourceDirectory());
+        XHTMLTemplateJavadocPipeline pipeline = new XHTMLTemplateJavadocPipeline(
+                dirs, new ArrayList<File>(), getTemplatePipeline().getSourceModel(), true, isProcessXRefs()
+        );
+        pipeline.setCheckReport(new CheckReport());
+        return pipeline;
+    }
+
+    protected void assertProblem(CheckReport.Problem problem, String location, String message) {
+        assertEquals(problem.getLocation(), location);
+        assertTrue(problem.getMessage().contains(message), problem.getMessage());
+    }
+}
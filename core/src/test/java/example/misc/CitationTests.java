@@ -2,8 +2,13 @@ package example.misc;
 
 import org.fourthline.lemma.anchor.AnchorAddress;
 import org.fourthline.lemma.anchor.Scheme;
+import org.fourthline.lemma.reader.csv.CSVParser;
+import org.fourthline.lemma.reader.xml.ElementSelector;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+
 import static org.testng.Assert.assertEquals;
 
 /**
@@ -50,7 +55,72 @@ public class CitationTests {
         assertEquals(address.getPath(), "foo.txt");
         assertEquals(address.getFragment(), null);
 
+        address = AnchorAddress.valueOf("file://logs/server.log#L1200-L1260");
+        assertEquals(address.getScheme(), Scheme.FILE);
+        assertEquals(address.getPath(), "logs/server.log");
+        assertEquals(address.getFragment(), "L1200-L1260");
+        assertEquals(address.getLineRange().getBegin(), new Integer(1200));
+        assertEquals(address.getLineRange().getEnd(), new Integer(1260));
+
+        address = AnchorAddress.valueOf("logs/server.log#L42");
+        assertEquals(address.getScheme(), Scheme.FILE);
+        assertEquals(address.getLineRange().getBegin(), new Integer(42));
+        assertEquals(address.getLineRange().getEnd(), new Integer(42));
+
+        address = AnchorAddress.valueOf("javacode://com.myorg.MyClass#L42");
+        assertEquals(address.getFragment(), "L42()");
+        assertEquals(address.getLineRange(), null);
+
+        address = AnchorAddress.valueOf("jar://lib/foo-sources.jar!/com/myorg/Bar.java");
+        assertEquals(address.getScheme(), Scheme.JAR);
+        assertEquals(address.getPath(), "lib/foo-sources.jar!/com/myorg/Bar.java");
+        assertEquals(address.getFragment(), null);
+
     }
 
+    @Test
+    public void selectXMLElements() throws Exception {
+
+        String xml = "<orders>\n" +
+                "    <order id=\"1\">\n" +
+                "        <lineitem product-id=\"123\"/>\n" +
+                "    </order>\n" +
+                "    <order id=\"2\">\n" +
+                "        <!-- DOC:CALLOUT -->\n" +
+                "        <lineitem product-id=\"777\"/>\n" +
+                "    </order>\n" +
+                "</orders>\n";
+
+        String[] lines = new ElementSelector("/orders/order[@id='2']").select(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+        assertEquals(lines.length, 4);
+        assertEquals(lines[0], "    <order id=\"2\">");
+        assertEquals(lines[1], "        <!-- DOC:CALLOUT -->");
+        assertEquals(lines[3], "    </order>");
+
+        lines = new ElementSelector("//lineitem[2]").select(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+        assertEquals(lines, null);
+
+        lines = new ElementSelector("/orders/order[2]/lineitem").select(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+        assertEquals(lines.length, 1);
+        assertEquals(lines[0], "        <lineitem product-id=\"777\"/>");
+    }
+
+    @Test
+    public void parseCSVRecords() throws Exception {
+
+        CSVParser csv = new CSVParser(new StringReader(
+                "name,score\r\n" +
+                "\"Smith, John\",42\n" +
+                "\"Multi\nline \"\"quoted\"\"\",\n" +
+                "last,7"
+        ));
+
+        assertEquals(csv.readRecord(), new String[]{"name", "score"});
+        assertEquals(csv.readRecord(), new String[]{"Smith, John", "42"});
+        assertEquals(csv.readRecord(), new String[]{"Multi\nline \"quoted\"", ""});
+        assertEquals(csv.getRecordNumber(), 3);
+        assertEquals(csv.skipRecords(5), 1);
+        assertEquals(csv.readRecord(), null);
+    }
 
 }
@@ -0,0 +1,152 @@
+package example.misc;
+
+import example.util.DocletTest;
+import org.fourthline.lemma.pipeline.CitationCost;
+import org.fourthline.lemma.pipeline.CostReport;
+import org.fourthline.lemma.pipeline.javadoc.XHTMLTemplateJavadocPipeline;
+import org.fourthline.lemma.reader.text.PlaintextReader;
+import org.fourthline.lemma.reader.xml.XMLReader;
+import org.seamless.xhtml.XHTML;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * The cost report lists every citation of a template in document order, with its stage times,
+ * the resolved file, the produced nodes, and the content cache result.
+ */
+public class CostReportTests extends DocletTest {
+
+    public static final String PLAINTEXT = "example/citeplaintext/myorders.txt";
+    public static final String XML = "example/citexml/MyOrders.xml";
+
+    @Test
+    public void reportCitations() throws Exception {
+        XHTMLTemplateJavadocPipeline pipeline = createPipeline();
+        CostReport report = pipeline.getCostReport();
+
+        pipeline.execute(parseDocument("/example/misc/costs01_input.xhtml"));
+
+        List<CitationCost> costs = report.getCosts();
+        assertEquals(costs.size(), 3);
+
+        assertCost(costs.get(0), "file://" + PLAINTEXT, PlaintextReader.class, PLAINTEXT);
+        assertCost(costs.get(1), "file://" + XML, XMLReader.class, XML);
+        assertCost(costs.get(2), "file://" + PLAINTEXT, PlaintextReader.class, PLAINTEXT);
+
+        // The second citation of the same file is served by the content cache
+        assertEquals(costs.get(0).getCacheResult(), "miss");
+        assertEquals(costs.get(1).getCacheResult(), "miss");
+        assertEquals(costs.get(2).getCacheResult(), "hit");
+
+        // The fragment citation produces less output than the citation of the whole file
+        assertTrue(costs.get(0).getNodes() < costs.get(2).getNodes());
+
+        assertTrue(report.getFailures().isEmpty());
+
+        long total = 0;
+        for (CitationCost.Stage stage : CitationCost.Stage.values()) {
+            long stageTotal = 0;
+            for (CitationCost cost : costs) {
+                stageTotal += cost.getTime(stage);
+            }
+            assertEquals(report.getTotalTime(stage), stageTotal, stage.getLabel());
+            total += stageTotal;
+        }
+        assertEquals(report.getTotalTime(), total);
+
+        List<CitationCost> slowest = report.getSlowest(costs.size());
+        assertEquals(slowest.size(), costs.size());
+        for (int i = 1; i < slowest.size(); i++) {
+            assertTrue(slowest.get(i - 1).getTotalTime() >= slowest.get(i).getTotalTime());
+        }
+        assertEquals(report.getSlowest(1).get(0), slowest.get(0));
+
+        String json = report.toJSON();
+        assertTrue(json.indexOf("myorders.txt") < json.indexOf("MyOrders.xml"), json);
+        assertTrue(json.contains("\"totals\": {\"citations\": 3, \"failures\": 0"), json);
+        assertTrue(json.contains("\"cache\": \"hit\""), json);
+
+        String html = report.toHTML();
+        assertTrue(html.contains("3 citations, 0 failed"), html);
+        assertTrue(html.contains(XMLReader.class.getName()), html);
+    }
+
+    @Test
+    public void reportFailedCitation() throws Exception {
+        XHTMLTemplateJavadocPipeline pipeline = createPipeline();
+        CostReport report = pipeline.getCostReport();
+
+        XHTML input = getParser().parse(
+                "<html xmlns=\"http://www.w3.org/1999/xhtml\"><head><title>Costs</title></head><body>" +
+                        "<div><a class=\"citation\" href=\"file://" + PLAINTEXT + "\"/></div>" +
+                        "<div><a class=\"citation\" href=\"file://example/misc/missing.txt\"/></div>" +
+                        "<div><a class=\"citation\" href=\"file://" + XML + "\"/></div>" +
+                        "</body></html>",
+                false
+        );
+        try {
+            pipeline.execute(input);
+            fail("Missing file must fail the citation");
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getMessage().contains("Referenced file not found"), ex.getMessage());
+        }
+
+        // Processing stops at the failed citation, which is still reported
+        List<CitationCost> costs = report.getCosts();
+        assertEquals(costs.size(), 2);
+
+        assertCost(costs.get(0), "file://" + PLAINTEXT, PlaintextReader.class, PLAINTEXT);
+        assertNull(costs.get(0).getFailure());
+
+        CitationCost failed = costs.get(1);
+        assertEquals(failed.getAddress(), "file://example/misc/missing.txt");
+        assertEquals(failed.getReaderClass(), PlaintextReader.class.getName());
+        assertNotNull(failed.getFailure());
+        assertTrue(failed.getFailure().contains("Referenced file not found"), failed.getFailure());
+        assertNull(failed.getFile());
+        assertEquals(failed.getFileSize(), -1);
+        assertEquals(failed.getNodes(), 0);
+        assertEquals(failed.getTime(CitationCost.Stage.SPLICE), 0);
+
+        assertEquals(report.getFailures().size(), 1);
+        assertEquals(report.getFailures().get(0), failed);
+        assertEquals(report.getTotalTime(), costs.get(0).getTotalTime() + failed.getTotalTime());
+
+        String json = report.toJSON();
+        assertTrue(json.contains("\"failures\": 1"), json);
+        assertTrue(json.contains("\"failure\": null"), json);
+        assertTrue(json.contains("\"failure\": \"Referenced file not found"), json);
+        assertTrue(report.toHTML().contains("2 citations, 1 failed"));
+    }
+
+    protected void assertCost(CitationCost cost, String address, Class readerClass, String path) throws Exception {
+        assertEquals(cost.getAddress(), address);
+        assertEquals(cost.getReaderClass(), readerClass.getName());
+        File file = new File(getSourceDirectory(), path);
+        assertNotNull(cost.getFile(), address);
+        assertEquals(cost.getFile().getCanonicalFile(), file.getCanonicalFile());
+        assertEquals(cost.getFileSize(), file.length());
+        assertTrue(cost.getNodes() > 0, address);
+        assertTrue(cost.getTotalTime() > 0, address);
+        assertNull(cost.getFailure(), address);
+    }
+
+    protected XHTMLTemplateJavadocPipeline createPipeline() {
+        List<File> dirs = new ArrayList<File>();
+        dirs.add(getSourceDirectory());
+        XHTMLTemplateJavadocPipeline pipeline = new XHTMLTemplateJavadocPipeline(
+                dirs, new ArrayList<File>(), getTemplatePipeline().getSourceModel(), true, isProcessXRefs()
+        );
+        pipeline.setCostReport(new CostReport());
+        return pipeline;
+    }
+}
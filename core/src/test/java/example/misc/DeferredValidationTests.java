@@ -0,0 +1,79 @@
+package example.misc;
+
+import example.util.DocletTest;
+import org.fourthline.lemma.Constants;
+import org.fourthline.lemma.anchor.CitationAnchor;
+import org.fourthline.lemma.reader.javadoc.DeferredValidation;
+import org.seamless.xhtml.XHTML;
+import org.seamless.xhtml.XHTMLParser;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Validating the content of all citations once at the end must render and fail like validating every citation.
+ */
+public class DeferredValidationTests extends DocletTest {
+
+    @DataProvider(name = "samples")
+    public Object[][] getSamples() {
+        return new Object[][]{
+                {"example/helloworld/example01_input.xhtml", "example/helloworld/example01_output.xhtml"},
+                {"example/helloworld/example04_input.xhtml", "example/helloworld/example04_output.xhtml"},
+                {"example/helloworld/generic01_input.xhtml", "example/helloworld/generic01_output.xhtml"},
+                {"example/helloworld/generic03_input.xhtml", "example/helloworld/generic03_output.xhtml"},
+        };
+    }
+
+    @Test(dataProvider = "samples")
+    public void renderValid(String input, String output) throws Exception {
+        getTemplatePipeline().getProcessorOptions().deferValidation = true;
+        XHTML result = getTemplatePipeline().execute(parseDocument(input));
+        assertEquals(getParser().print(result), getContent(output));
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void failInvalid() throws Exception {
+        getTemplatePipeline().getProcessorOptions().deferValidation = true;
+        getTemplatePipeline().execute(parseDocument("example/helloworld/error01_input.xhtml"));
+    }
+
+    @Test
+    public void reportCitationOfError() throws Exception {
+        XHTML template = getParser().parse(
+                "<html xmlns=\"http://www.w3.org/1999/xhtml\"><head><title>Deferred</title></head><body>" +
+                        "<div><a class=\"citation\" href=\"javadoc://example.helloworld.HelloWorld\"/></div>" +
+                        "<div><a class=\"citation\" href=\"javadoc://example.helloworld.HelloWorldTest\"/></div>" +
+                        "</body></html>",
+                false
+        );
+        CitationAnchor[] citations = CitationAnchor.findCitationAnchors(
+                getTemplatePipeline().getXPath(), template, Constants.TYPE_CITATION
+        );
+        assertEquals(citations.length, 2);
+
+        DeferredValidation validation = new DeferredValidation();
+        validation.add(citations[0], parseContent("<p>First line</p>\n<p>Second line</p>"));
+        validation.add(citations[1], parseContent("<p>First line</p>\n<blink>Second line</blink>"));
+        assertEquals(validation.getFragmentCount(), 2);
+
+        try {
+            validation.validate(getParser());
+            fail("Invalid content must fail validation");
+        } catch (RuntimeException ex) {
+            assertTrue(ex.getMessage().contains("1 location(s)"), ex.getMessage());
+            assertTrue(ex.getMessage().contains(citations[1] + " (content line 2)"), ex.getMessage());
+            assertFalse(ex.getMessage().contains(citations[0] + " (content line"), ex.getMessage());
+        }
+    }
+
+    protected XHTML parseContent(String content) throws Exception {
+        return getParser().parse(
+                XHTMLParser.wrap(Constants.WRAPPER_ELEMENT.name(), XHTML.NAMESPACE_URI, content), false
+        );
+    }
+}
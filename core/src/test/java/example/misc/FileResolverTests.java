@@ -0,0 +1,104 @@
+package example.misc;
+
+import org.fourthline.lemma.reader.FileResolver;
+import org.seamless.util.io.IO;
+import org.testng.SkipException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Files are resolved in the configured order of source directories, symbolic links must not
+ * make the scan of a source directory loop.
+ */
+public class FileResolverTests {
+
+    protected File directory;
+    protected File first;
+    protected File second;
+
+    @BeforeMethod
+    public void createDirectories() throws Exception {
+        directory = File.createTempFile("lemma", "resolver");
+        directory.delete();
+        first = new File(directory, "first");
+        second = new File(directory, "second");
+        new File(first, "docs").mkdirs();
+        new File(second, "docs").mkdirs();
+    }
+
+    @AfterMethod
+    public void deleteDirectories() throws Exception {
+        delete(directory);
+    }
+
+    @Test(timeOut = 10000)
+    public void scanSymbolicLinkCycle() throws Exception {
+        File guide = write(second, "docs/guide.txt");
+        // Links to an ancestor and to the directory itself
+        link(new File(second, "docs/up"), second);
+        link(new File(second, "docs/self"), new File(second, "docs"));
+
+        FileResolver resolver = createResolver();
+        assertEquals(resolver.resolve("docs/guide.txt"), guide);
+
+        // Not indexed through the link, but still found in the source directory
+        File linked = resolver.resolve("docs/up/docs/guide.txt");
+        assertEquals(linked, new File(second, "docs/up/docs/guide.txt"));
+        assertEquals(linked.getCanonicalFile(), guide.getCanonicalFile());
+    }
+
+    @Test
+    public void resolveInConfiguredOrder() throws Exception {
+        File firstReadme = write(first, "docs/readme.txt");
+        write(second, "docs/readme.txt");
+        File secondGuide = write(second, "docs/guide.txt");
+
+        FileResolver resolver = createResolver();
+        assertEquals(resolver.resolve("docs/readme.txt"), firstReadme);
+        assertEquals(resolver.resolve("docs/guide.txt"), secondGuide);
+
+        // Created after the scan in the first source directory, which wins
+        File firstGuide = write(first, "docs/guide.txt");
+        assertEquals(resolver.resolve("docs/guide.txt"), firstGuide);
+
+        // Deleted again, the second source directory has it
+        assertTrue(firstGuide.delete());
+        assertEquals(resolver.resolve("docs/guide.txt"), secondGuide);
+    }
+
+    protected FileResolver createResolver() {
+        return new FileResolver(new File[]{first, second});
+    }
+
+    protected File write(File sourceDirectory, String path) throws Exception {
+        File file = new File(sourceDirectory, path);
+        IO.writeUTF8(file, path);
+        return file;
+    }
+
+    protected void link(File link, File target) throws Exception {
+        try {
+            Files.createSymbolicLink(link.toPath(), target.toPath());
+        } catch (Exception ex) {
+            throw new SkipException("Symbolic links not supported: " + ex);
+        }
+    }
+
+    protected void delete(File file) throws Exception {
+        // Don't follow links, they point into the tree
+        File[] children = Files.isSymbolicLink(file.toPath()) ? null : file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,190 @@
+package example.misc;
+
+import org.fourthline.lemma.reader.content.LineRange;
+import org.fourthline.lemma.reader.content.handler.ContentFileHandler;
+import org.fourthline.lemma.reader.content.handler.LineOffsetIndex;
+import org.seamless.util.io.IO;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Reading line ranges through a (persisted) line offset index must return the same lines as
+ * reading the whole file.
+ */
+public class LineOffsetIndexTests {
+
+    public static final int LINES = 2500;
+
+    protected File directory;
+    protected File indexDirectory;
+    protected String previousIndexDirectory;
+
+    @BeforeMethod
+    public void createDirectories() throws Exception {
+        directory = File.createTempFile("lemma", "lines");
+        directory.delete();
+        directory.mkdirs();
+        indexDirectory = new File(directory, "index");
+        previousIndexDirectory = System.getProperty(LineOffsetIndex.INDEX_DIRECTORY_PROPERTY);
+        System.setProperty(LineOffsetIndex.INDEX_DIRECTORY_PROPERTY, indexDirectory.getAbsolutePath());
+    }
+
+    @AfterMethod
+    public void deleteDirectories() throws Exception {
+        if (previousIndexDirectory != null) {
+            System.setProperty(LineOffsetIndex.INDEX_DIRECTORY_PROPERTY, previousIndexDirectory);
+        } else {
+            System.clearProperty(LineOffsetIndex.INDEX_DIRECTORY_PROPERTY);
+        }
+        delete(directory);
+    }
+
+    @Test
+    public void readRanges() throws Exception {
+        File file = writeLines("lines.txt", LINES, true);
+        String[] all = readPlain(file);
+        assertEquals(all.length, LINES);
+
+        // A small interval seeks into the middle of the file for most ranges
+        for (LineOffsetIndex index : new LineOffsetIndex[]{LineOffsetIndex.build(file, 7), LineOffsetIndex.load(file)}) {
+            assertEquals(index.getLineCount(), LINES);
+            assertRange(index, all, 1, 1);
+            assertRange(index, all, 1, 10);
+            assertRange(index, all, 7, 8);
+            assertRange(index, all, 8, 8);
+            assertRange(index, all, 999, 1001);
+            assertRange(index, all, 1000, 2000);
+            assertRange(index, all, 2001, 2001);
+            assertRange(index, all, LINES, LINES);
+
+            // An end after the last line is ignored, a range after the last line is empty
+            assertEquals(index.readLines(new LineRange(LINES - 1, LINES + 100)).length, 2);
+            assertEquals(index.readLines(new LineRange(LINES + 1, LINES + 2)).length, 0);
+        }
+    }
+
+    @Test
+    public void readWithoutTrailingNewline() throws Exception {
+        File file = writeLines("open.txt", LINES, false);
+        String[] all = readPlain(file);
+
+        LineOffsetIndex index = LineOffsetIndex.build(file, 10);
+        assertEquals(index.getLineCount(), LINES);
+        assertRange(index, all, LINES - 5, LINES);
+        assertRange(index, all, LINES, LINES);
+
+        File single = new File(directory, "single.txt");
+        IO.writeUTF8(single, "only");
+        index = LineOffsetIndex.build(single, 10);
+        assertEquals(index.getLineCount(), 1);
+        assertEquals(index.readLines(new LineRange(1, 1)), new String[]{"only"});
+    }
+
+    @Test
+    public void reusePersistedIndex() throws Exception {
+        File file = writeLines("persisted.txt", LINES, true);
+        LineOffsetIndex.load(file);
+
+        File[] indexFiles = indexDirectory.listFiles();
+        assertEquals(indexFiles.length, 1);
+        File indexFile = indexFiles[0];
+
+        // Not rewritten while the file is unchanged
+        long persisted = 1000000000000l;
+        assertTrue(indexFile.setLastModified(persisted));
+        LineOffsetIndex index = LineOffsetIndex.load(file);
+        assertTrue(index.isCurrent());
+        assertEquals(index.getLineCount(), LINES);
+        assertRange(index, readPlain(file), 1500, 1510);
+        assertEquals(indexFile.lastModified(), persisted);
+    }
+
+    @Test
+    public void rebuildStaleIndex() throws Exception {
+        File file = writeLines("stale.txt", LINES, true);
+        LineOffsetIndex index = LineOffsetIndex.load(file);
+        long lastModified = file.lastModified();
+
+        // Lines are inserted at the beginning, all persisted offsets are wrong now
+        StringBuilder sb = new StringBuilder();
+        for (String line : readPlain(file)) {
+            sb.append(line).append("\n");
+        }
+        IO.writeUTF8(file, "inserted\nlines\n" + sb);
+        assertTrue(file.setLastModified(lastModified + 2000));
+        assertTrue(!index.isCurrent());
+
+        LineOffsetIndex rebuilt = LineOffsetIndex.load(file);
+        assertTrue(rebuilt.isCurrent());
+        assertEquals(rebuilt.getLineCount(), LINES + 2);
+        String[] all = readPlain(file);
+        assertRange(rebuilt, all, 1, 3);
+        assertRange(rebuilt, all, 1999, 2003);
+        assertRange(rebuilt, all, LINES + 2, LINES + 2);
+    }
+
+    @Test
+    public void readSameLinesAsContentHandler() throws Exception {
+        // Small files are read completely by the handler, the index must decode them the same way
+        File file = writeLines("small.txt", 30, true);
+        LineRange range = new LineRange(2, 13);
+        assertEquals(
+                new ContentFileHandler().getContent(file, range),
+                LineOffsetIndex.build(file, 5).readLines(range)
+        );
+        assertEquals(new ContentFileHandler().getContent(file, null), readPlain(file));
+    }
+
+    protected void assertRange(LineOffsetIndex index, String[] all, int begin, int end) throws Exception {
+        String[] expected = Arrays.copyOfRange(all, begin - 1, end);
+        assertEquals(index.readLines(new LineRange(begin, end)), expected, "Lines " + begin + "-" + end);
+    }
+
+    protected File writeLines(String name, int count, boolean trailingNewline) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= count; i++) {
+            // Multi-byte characters, offsets are bytes and not characters
+            sb.append("Line ").append(i).append(i % 3 == 0 ? " äöü €" : "");
+            if (i < count || trailingNewline) sb.append("\n");
+        }
+        File file = new File(directory, name);
+        IO.writeUTF8(file, sb.toString());
+        return file;
+    }
+
+    protected String[] readPlain(File file) throws Exception {
+        List<String> lines = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    protected void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,68 @@
+package example.misc;
+
+import example.util.DocletTest;
+import org.fourthline.lemma.pipeline.CheckReport;
+import org.fourthline.lemma.pipeline.CostReport;
+import org.fourthline.lemma.pipeline.IdIndex;
+import org.fourthline.lemma.pipeline.TraceRecorder;
+import org.fourthline.lemma.pipeline.javadoc.XHTMLTemplateJavadocPipeline;
+import org.fourthline.lemma.reader.content.handler.ContentCache;
+import org.seamless.xhtml.XHTML;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * A reset pipeline has no state of previous executions and renders like a new pipeline.
+ */
+public class PipelineResetTests extends DocletTest {
+
+    public static final String TEMPLATE = "example/citexml/sample01_input.xhtml";
+
+    @Test
+    public void resetAllState() throws Exception {
+        XHTMLTemplateJavadocPipeline pipeline = createPipeline();
+        String expected = getParser().print(createPipeline().execute(parseDocument(TEMPLATE)), 4, true);
+
+        pipeline.getProcessorOptions().deferValidation = true;
+        pipeline.getProcessorOptions().processXRefs = !isProcessXRefs();
+        pipeline.getProcessorOptions().selectedSections.add("unknown");
+        pipeline.setCostReport(new CostReport());
+        pipeline.setTraceRecorder(new TraceRecorder());
+        pipeline.setCheckReport(new CheckReport());
+        pipeline.setIdIndex(new IdIndex("manual.xhtml"));
+        pipeline.getContentCache().put(new File("cached.txt"), new String[]{"cached"});
+        pipeline.getContext().put("leftover", Boolean.TRUE);
+
+        pipeline.reset();
+
+        assertFalse(pipeline.getProcessorOptions().deferValidation);
+        assertEquals(pipeline.getProcessorOptions().processXRefs, isProcessXRefs());
+        assertTrue(pipeline.getProcessorOptions().selectedSections.isEmpty());
+        assertNull(pipeline.getCostReport());
+        assertNull(pipeline.getTraceRecorder());
+        assertNull(pipeline.getCheckReport());
+        assertNull(pipeline.getIdIndex());
+        assertEquals(pipeline.getContentCache().size(), 0);
+        assertTrue(pipeline.getContext().isEmpty());
+
+        XHTML result = pipeline.execute(parseDocument(TEMPLATE));
+        assertEquals(getParser().print(result, 4, true), expected);
+        assertTrue(pipeline.getContext().get(ContentCache.CONTEXT_CONTENT_CACHE) == pipeline.getContentCache());
+    }
+
+    protected XHTMLTemplateJavadocPipeline createPipeline() {
+        List<File> dirs = new ArrayList<File>();
+        dirs.add(getSourceDirectory());
+        return new XHTMLTemplateJavadocPipeline(
+                dirs, new ArrayList<File>(), getTemplatePipeline().getSourceModel(), true, isProcessXRefs()
+        );
+    }
+}
@@ -0,0 +1,109 @@
+package example.misc;
+
+import example.util.DocletTest;
+import org.fourthline.lemma.Constants;
+import org.fourthline.lemma.anchor.CitationAnchor;
+import org.fourthline.lemma.pipeline.IdIndex;
+import org.fourthline.lemma.pipeline.javadoc.XHTMLTemplateJavadocPipeline;
+import org.seamless.xhtml.XHTML;
+import org.seamless.xhtml.XHTMLElement;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Rendering selected sections must only read their citations, other sections are stubs and
+ * cross-references into them link to the output of the last full run.
+ */
+public class SectionSelectionTests extends DocletTest {
+
+    public static final String TEMPLATE = "example/misc/sections01_input.xhtml";
+    public static final String CITED_ID = "javadoc.example.helloworld.HelloWorldTest";
+
+    @Test
+    public void renderSelectedSection() throws Exception {
+        XHTML full = getTemplatePipeline().execute(parseDocument(TEMPLATE));
+        IdIndex idIndex = IdIndex.collect(full, "manual.xhtml");
+        assertTrue(idIndex.contains(CITED_ID));
+        assertEquals(idIndex.getTitle("second"), "Second chapter");
+
+        XHTMLTemplateJavadocPipeline pipeline = createPipeline("first");
+        pipeline.setIdIndex(idIndex);
+        XHTML partial = pipeline.execute(parseDocument(TEMPLATE));
+        XHTMLElement root = partial.getRoot(getTemplatePipeline().getXPath());
+
+        // The selected section is rendered
+        assertNotNull(root.findChildWithIdentifier("javadoc.example.helloworld.HelloWorld"));
+
+        // The other section is a stub with its title, its citation hasn't been read
+        XHTMLElement second = root.findChildWithIdentifier("second");
+        assertTrue(second.getAttribute(XHTML.ATTR.CLASS).contains(Constants.TYPE_STUB));
+        assertEquals(second.getChildren().length, 1);
+        assertNull(root.findChildWithIdentifier(CITED_ID));
+
+        // The xref links into the full output
+        CitationAnchor[] xrefs = CitationAnchor.findCitationAnchors(getTemplatePipeline().getXPath(), partial, Constants.TYPE_XREF);
+        assertEquals(xrefs.length, 1);
+        assertEquals(xrefs[0].getAttribute(XHTML.ATTR.href), "manual.xhtml#" + CITED_ID);
+    }
+
+    @Test
+    public void selectWithXPath() throws Exception {
+        XHTML partial = createPipeline("(//*[@class='chapter'])[2]").execute(parseDocument(TEMPLATE));
+        XHTMLElement root = partial.getRoot(getTemplatePipeline().getXPath());
+
+        assertNotNull(root.findChildWithIdentifier(CITED_ID));
+        assertNull(root.findChildWithIdentifier("javadoc.example.helloworld.HelloWorld"));
+        assertTrue(root.findChildWithIdentifier("first").getAttribute(XHTML.ATTR.CLASS).contains(Constants.TYPE_STUB));
+        assertFalse(root.findChildWithIdentifier("second").getAttribute(XHTML.ATTR.CLASS).contains(Constants.TYPE_STUB));
+
+        // Without an identifier index the xref of the stub is gone, nothing is unresolved
+        assertEquals(CitationAnchor.findCitationAnchors(getTemplatePipeline().getXPath(), partial, Constants.TYPE_XREF).length, 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void selectMissingSection() throws Exception {
+        createPipeline("no-such-section").execute(parseDocument(TEMPLATE));
+    }
+
+    @Test
+    public void writeIdIndex() throws Exception {
+        IdIndex idIndex = new IdIndex("manual.xhtml");
+        idIndex.add("first", "First chapter");
+        idIndex.add("untitled", null);
+        idIndex.add("encoded", "Grüße, 10 €");
+
+        File file = File.createTempFile("lemma", IdIndex.SUFFIX);
+        file.deleteOnExit();
+        idIndex.write(file);
+
+        IdIndex read = IdIndex.read(file);
+        assertEquals(read.getDocument(), "manual.xhtml");
+        assertEquals(read.size(), 3);
+        assertEquals(read.getTitle("first"), "First chapter");
+        assertEquals(read.getTitle("encoded"), "Grüße, 10 €");
+        assertTrue(read.contains("untitled"));
+        assertNull(read.getTitle("untitled"));
+        assertEquals(read.getHref("first"), "manual.xhtml#first");
+    }
+
+    protected XHTMLTemplateJavadocPipeline createPipeline(String... sections) {
+        List<File> dirs = new ArrayList<File>();
+        dirs.add(getSourceDirectory());
+        XHTMLTemplateJavadocPipeline pipeline = new XHTMLTemplateJavadocPipeline(
+                dirs, new ArrayList<File>(), getTemplatePipeline().getSourceModel(), true, isProcessXRefs()
+        );
+        for (String section : sections) {
+            pipeline.getProcessorOptions().selectedSections.add(section);
+        }
+        return pipeline;
+    }
+}
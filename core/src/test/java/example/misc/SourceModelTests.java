@@ -0,0 +1,286 @@
+package example.misc;
+
+import example.util.DocletTest;
+import example.util.PipelineCache;
+import org.fourthline.lemma.model.CompositeSourceModel;
+import org.fourthline.lemma.model.ModelDoc;
+import org.fourthline.lemma.model.ModelTag;
+import org.fourthline.lemma.model.PackageShards;
+import org.fourthline.lemma.model.SourceModel;
+import org.fourthline.lemma.model.source.ParsedSourceModel;
+import org.fourthline.lemma.pipeline.javadoc.XHTMLTemplateJavadocPipeline;
+import org.fourthline.lemma.reader.javadoc.AbstractJavadocReader;
+import org.seamless.util.io.IO;
+import org.seamless.xhtml.XHTML;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * The source model parsed from source files, and the Javadoc model built in shards, must
+ * produce the same manual as the Javadoc model. The shards document several packages each and
+ * are built concurrently, every class and member of the sharded model must be identical.
+ */
+public class SourceModelTests extends DocletTest {
+
+    public static final int SHARDS = 3;
+
+    protected SourceModel shardedModel;
+
+    @DataProvider(name = "templates")
+    public Object[][] getTemplates() {
+        return new Object[][]{
+                {"example/helloworld/example01_input.xhtml"},
+                {"example/helloworld/example03_input.xhtml"},
+                {"example/advanced/example01_input.xhtml"},
+                {"example/advanced/example03_input.xhtml"},
+                {"example/citexml/sample02_input.xhtml"},
+        };
+    }
+
+    @Test
+    public void compareClasses() throws Exception {
+        SourceModel javadocModel = getModel(SourceModel.Backend.JAVADOC);
+        SourceModel parsedModel = getModel(SourceModel.Backend.SOURCE);
+
+        for (ModelDoc javadocClass : javadocModel.getClasses()) {
+            ModelDoc parsedClass = parsedModel.findClass(javadocClass.getQualifiedName());
+            assertNotNull(parsedClass, "Missing class in parsed model: " + javadocClass);
+            assertEquals(parsedClass.getFile().getCanonicalFile(), javadocClass.getFile().getCanonicalFile());
+            assertEquals(parsedClass.getSimpleName(), javadocClass.getSimpleName());
+            assertEquals(getSignatures(parsedClass), getSignatures(javadocClass));
+        }
+    }
+
+    @Test
+    public void resolveLinks() throws Exception {
+        ModelDoc linking = getModel(SourceModel.Backend.SOURCE).findClass("example.advanced.LinkingCitations");
+        assertNotNull(linking);
+        List<ModelTag> links = new ArrayList<ModelTag>();
+        for (ModelDoc method : linking.getMethods()) {
+            if (!method.getName().equals("brokenLinks")) continue;
+            for (ModelTag tag : method.getInlineTags()) {
+                if (tag.getKind().equals(ModelTag.KIND_SEE)) links.add(tag);
+            }
+        }
+        assertEquals(links.size(), 2);
+
+        // Resolved with the single-type import of the source file
+        assertEquals(links.get(0).getReferencedClass(), "example.helloworld.HelloWorld");
+        assertEquals(links.get(0).getReferencedMemberName(), "getMessage");
+        assertEquals(links.get(0).getReferencedMethodSignature(), "()");
+
+        assertEquals(links.get(1).getLabel(), "this link");
+        assertEquals(links.get(1).getReferencedMemberName(), "sayHello");
+    }
+
+    @Test
+    public void compareShardedClasses() throws Exception {
+        SourceModel shardedModel = getShardedModel();
+        assertEquals(((CompositeSourceModel) shardedModel).getShards().size(), SHARDS);
+
+        List<String> expected = new ArrayList<String>();
+        for (ModelDoc classDoc : getModel(SourceModel.Backend.JAVADOC).getClasses()) {
+            expected.add(classDoc.getQualifiedName());
+        }
+        List<String> sharded = new ArrayList<String>();
+        for (ModelDoc classDoc : shardedModel.getClasses()) {
+            sharded.add(classDoc.getQualifiedName());
+        }
+        Collections.sort(expected);
+        Collections.sort(sharded);
+        assertEquals(sharded, expected);
+    }
+
+    @Test
+    public void compareShardedModel() throws Exception {
+        List<File> dirs = new ArrayList<File>();
+        dirs.add(getSourceDirectory());
+        List<String> packageNames = getDefaultPackageNames(getSourceDirectory());
+
+        // Each shard documents several packages, built concurrently with the other shards
+        List<List<String>> packageShards = PackageShards.split(dirs, packageNames, SHARDS);
+        assertEquals(packageShards.size(), SHARDS);
+        int multiPackageShards = 0;
+        for (List<String> packageShard : packageShards) {
+            if (packageShard.size() > 1) multiPackageShards++;
+        }
+        assertTrue(multiPackageShards > 0, "No shard with several packages: " + packageShards);
+
+        SourceModel javadocModel = getModel(SourceModel.Backend.JAVADOC);
+        List<ModelDoc> expectedClasses = javadocModel.getClasses();
+        assertTrue(expectedClasses.size() > 0);
+
+        // Several builds, concurrent Javadoc runs must not depend on timing
+        for (int build = 0; build < 2; build++) {
+            SourceModel shardedModel = XHTMLTemplateJavadocPipeline.createSourceModel(
+                    SourceModel.Backend.JAVADOC, dirs, packageNames, null, SHARDS
+            );
+            assertEquals(shardedModel.getClasses().size(), expectedClasses.size());
+            for (ModelDoc expectedClass : expectedClasses) {
+                ModelDoc shardedClass = shardedModel.findClass(expectedClass.getQualifiedName());
+                assertNotNull(shardedClass, "Missing class in sharded model: " + expectedClass);
+                assertEquals(describe(shardedClass), describe(expectedClass));
+            }
+        }
+    }
+
+    @Test(dataProvider = "templates")
+    public void compareOutput(String template) throws Exception {
+        assertOutput(template, getModel(SourceModel.Backend.SOURCE));
+    }
+
+    @Test(dataProvider = "templates")
+    public void compareShardedOutput(String template) throws Exception {
+        // Links between classes of different shards must be resolved
+        assertOutput(template, getShardedModel());
+    }
+
+    @Test
+    public void releaseModel() throws Exception {
+        final int[] builds = new int[1];
+        List<File> dirs = new ArrayList<File>();
+        dirs.add(getSourceDirectory());
+        XHTMLTemplateJavadocPipeline pipeline = new XHTMLTemplateJavadocPipeline(
+                dirs,
+                new ArrayList<File>(),
+                new SourceModel.Factory() {
+                    public SourceModel createSourceModel() {
+                        builds[0]++;
+                        return getModel(SourceModel.Backend.SOURCE);
+                    }
+                },
+                true,
+                isProcessXRefs()
+        );
+        assertEquals(builds[0], 1);
+        Set<File> sourceFiles = pipeline.getSourceFiles();
+
+        pipeline.execute(parseDocument("example/helloworld/example01_input.xhtml"));
+        assertFalse(pipeline.getContext().containsKey(AbstractJavadocReader.CONTEXT_SOURCE_MODEL));
+
+        // Still known after the model has been released
+        assertEquals(pipeline.getSourceFiles(), sourceFiles);
+        assertEquals(builds[0], 1);
+
+        // Built again when the pipeline is executed again
+        pipeline.execute(parseDocument("example/helloworld/example01_input.xhtml"));
+        assertEquals(builds[0], 2);
+    }
+
+    protected void assertOutput(String template, SourceModel model) throws Exception {
+        List<File> dirs = new ArrayList<File>();
+        dirs.add(getSourceDirectory());
+        XHTMLTemplateJavadocPipeline pipeline = new XHTMLTemplateJavadocPipeline(
+                dirs, new ArrayList<File>(), model, true, isProcessXRefs()
+        );
+
+        XHTML expected = getTemplatePipeline().execute(parseDocument(template));
+        XHTML result = pipeline.execute(parseDocument(template));
+
+        assertEquals(getParser().print(result, 4, true), getParser().print(expected, 4, true));
+    }
+
+    @Test
+    public void failOnUnparseableSource() throws Exception {
+        File sourceDirectory = File.createTempFile("lemma", "src");
+        sourceDirectory.delete();
+        File packageDirectory = new File(sourceDirectory, "broken");
+        packageDirectory.mkdirs();
+        IO.writeUTF8(new File(packageDirectory, "Valid.java"), "package broken; public class Valid {}");
+        IO.writeUTF8(
+                new File(packageDirectory, "Lambda.java"),
+                "package broken; public class Lambda { Runnable r = () -> {}; }"
+        );
+
+        List<File> dirs = new ArrayList<File>();
+        dirs.add(sourceDirectory);
+        List<String> packageNames = new ArrayList<String>();
+        packageNames.add("broken");
+        try {
+            new ParsedSourceModel(dirs, packageNames);
+            fail("Unparseable source file must fail the model");
+        } catch (IllegalStateException ex) {
+            assertTrue(ex.getMessage().contains("Lambda.java"), ex.getMessage());
+            assertFalse(ex.getMessage().contains("Valid.java"), ex.getMessage());
+        } finally {
+            new File(packageDirectory, "Valid.java").delete();
+            new File(packageDirectory, "Lambda.java").delete();
+            packageDirectory.delete();
+            sourceDirectory.delete();
+        }
+    }
+
+    protected SourceModel getModel(SourceModel.Backend backend) {
+        return PipelineCache.getModel(backend, getSourceDirectory(), getDefaultPackageNames(getSourceDirectory()));
+    }
+
+    synchronized protected SourceModel getShardedModel() {
+        if (shardedModel == null) {
+            List<File> dirs = new ArrayList<File>();
+            dirs.add(getSourceDirectory());
+            shardedModel = XHTMLTemplateJavadocPipeline.createSourceModel(
+                    SourceModel.Backend.JAVADOC, dirs, getDefaultPackageNames(getSourceDirectory()), null, SHARDS
+            );
+        }
+        return shardedModel;
+    }
+
+    /**
+     * @return The class, its methods, and their documentation tags as text, methods sorted by signature.
+     */
+    protected List<String> describe(ModelDoc classDoc) throws Exception {
+        List<String> description = new ArrayList<String>();
+        description.add(describeMember(classDoc));
+        List<String> methods = new ArrayList<String>();
+        for (ModelDoc method : classDoc.getMethods()) {
+            methods.add(describeMember(method));
+        }
+        // The Javadoc tool doesn't guarantee declaration order
+        Collections.sort(methods);
+        description.addAll(methods);
+        return description;
+    }
+
+    protected String describeMember(ModelDoc doc) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        sb.append(doc.getKind()).append(" ").append(doc.getQualifiedName());
+        sb.append(doc.getSignature() != null ? doc.getSignature() : "");
+        sb.append(" ").append(doc.getFile() != null ? doc.getFile().getCanonicalPath() : null);
+        sb.append(":").append(doc.getLine());
+        for (ModelTag tag : doc.getFirstSentenceTags()) {
+            sb.append("\n  first: ").append(describeTag(tag));
+        }
+        for (ModelTag tag : doc.getInlineTags()) {
+            sb.append("\n  inline: ").append(describeTag(tag));
+        }
+        return sb.toString();
+    }
+
+    protected String describeTag(ModelTag tag) {
+        return tag.getKind() + " '" + tag.getText() + "' -> " + tag.getReferencedPackage() + " "
+                + tag.getReferencedClass() + " " + tag.getReferencedMemberName() + " "
+                + tag.getReferencedMethodSignature();
+    }
+
+    protected List<String> getSignatures(ModelDoc classDoc) {
+        List<String> signatures = new ArrayList<String>();
+        for (ModelDoc method : classDoc.getMethods()) {
+            signatures.add(method.getName() + method.getFlatSignature());
+        }
+        // The Javadoc tool doesn't guarantee declaration order
+        Collections.sort(signatures);
+        return signatures;
+    }
+}
@@ -0,0 +1,305 @@
+package example.misc;
+
+import example.util.DocletTest;
+import org.fourthline.lemma.pipeline.TraceRecorder;
+import org.fourthline.lemma.pipeline.javadoc.XHTMLTemplateJavadocPipeline;
+import org.fourthline.lemma.processor.xhtml.JavadocCitationProcessor;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * The trace of a pipeline execution is a Chrome trace-event JSON file, each span of a processor,
+ * citation, reader, and loaded file lies within the span that started it, on the same thread.
+ */
+public class TraceRecorderTests extends DocletTest {
+
+    public static final String TEMPLATE = "example/misc/costs01_input.xhtml";
+
+    @Test
+    public void writeNestedSpans() throws Exception {
+        XHTMLTemplateJavadocPipeline pipeline = createPipeline();
+        TraceRecorder recorder = new TraceRecorder();
+        pipeline.setTraceRecorder(recorder);
+        pipeline.execute(parseDocument(TEMPLATE));
+
+        File file = File.createTempFile("lemma", ".trace.json");
+        file.deleteOnExit();
+        recorder.write(file);
+
+        Map trace = (Map) new JSON(readUTF8(file)).parse();
+        assertEquals(trace.get("displayTimeUnit"), "ms");
+
+        Map<Object, Object> threadNames = new HashMap<Object, Object>();
+        List<Span> spans = new ArrayList<Span>();
+        for (Object e : (List) trace.get("traceEvents")) {
+            Map event = (Map) e;
+            assertEquals(event.get("pid"), 1d);
+            if ("M".equals(event.get("ph"))) {
+                assertEquals(event.get("name"), "thread_name");
+                threadNames.put(event.get("tid"), ((Map) event.get("args")).get("name"));
+            } else {
+                assertEquals(event.get("ph"), "X");
+                spans.add(new Span(event));
+            }
+        }
+        assertEquals(spans.size(), recorder.size());
+
+        // Three citations of two files, the second citation of the plain text file is served by the content cache
+        assertEquals(getSpans(spans, TraceRecorder.CATEGORY_PIPELINE).size(), 1);
+        assertEquals(getSpans(spans, TraceRecorder.CATEGORY_PROCESSOR).size(), pipeline.getProcessors().size());
+        assertEquals(getSpans(spans, TraceRecorder.CATEGORY_CITATION).size(), 3);
+        assertEquals(getSpans(spans, TraceRecorder.CATEGORY_READER).size(), 3);
+        List<Span> fileSpans = getSpans(spans, TraceRecorder.CATEGORY_FILE);
+        assertEquals(fileSpans.size(), 2);
+        assertEquals(fileSpans.get(0).name, "myorders.txt");
+        assertEquals(fileSpans.get(1).name, "MyOrders.xml");
+        assertTrue(((String) fileSpans.get(0).args.get("file")).endsWith("myorders.txt"), fileSpans.get(0).toString());
+        assertEquals(fileSpans.get(0).args.get("source"), "disk");
+
+        Span pipelineSpan = getSpans(spans, TraceRecorder.CATEGORY_PIPELINE).get(0);
+        assertEquals(pipelineSpan.name, XHTMLTemplateJavadocPipeline.class.getSimpleName());
+        for (Span span : spans) {
+            assertNotNull(threadNames.get(span.tid), "Thread without name: " + span);
+            if (span == pipelineSpan) continue;
+            Span parent = getParent(spans, span);
+            assertNotNull(parent, "Span isn't nested: " + span);
+            if (span.category.equals(TraceRecorder.CATEGORY_PROCESSOR)) {
+                assertEquals(parent, pipelineSpan);
+            } else if (span.category.equals(TraceRecorder.CATEGORY_CITATION)) {
+                assertEquals(parent.category, TraceRecorder.CATEGORY_PROCESSOR);
+                assertEquals(parent.name, JavadocCitationProcessor.class.getSimpleName());
+            } else if (span.category.equals(TraceRecorder.CATEGORY_READER)) {
+                assertEquals(parent.category, TraceRecorder.CATEGORY_CITATION);
+            } else if (span.category.equals(TraceRecorder.CATEGORY_FILE)) {
+                assertEquals(parent.category, TraceRecorder.CATEGORY_READER);
+            }
+        }
+    }
+
+    protected List<Span> getSpans(List<Span> spans, String category) {
+        List<Span> result = new ArrayList<Span>();
+        for (Span span : spans) {
+            if (span.category.equals(category))
+                result.add(span);
+        }
+        return result;
+    }
+
+    /**
+     * @return The shortest other span on the same thread which contains the given span.
+     */
+    protected Span getParent(List<Span> spans, Span child) {
+        Span parent = null;
+        for (Span span : spans) {
+            if (span == child || !span.tid.equals(child.tid) || !span.contains(child)) continue;
+            if (parent == null || span.dur < parent.dur)
+                parent = span;
+        }
+        return parent;
+    }
+
+    protected String readUTF8(File file) throws Exception {
+        StringBuilder sb = new StringBuilder();
+        InputStreamReader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                sb.append(buffer, 0, read);
+            }
+        } finally {
+            reader.close();
+        }
+        return sb.toString();
+    }
+
+    protected XHTMLTemplateJavadocPipeline createPipeline() {
+        List<File> dirs = new ArrayList<File>();
+        dirs.add(getSourceDirectory());
+        return new XHTMLTemplateJavadocPipeline(
+                dirs, new ArrayList<File>(), getTemplatePipeline().getSourceModel(), true, isProcessXRefs()
+        );
+    }
+
+    /**
+     * A complete ("X") event of the trace, times are in microseconds.
+     */
+    static class Span {
+
+        // Start and end times are rounded to fractions of a microsecond
+        static final double TOLERANCE = 0.002;
+
+        final Object tid;
+        final String category;
+        final String name;
+        final double ts;
+        final double dur;
+        final Map args;
+
+        Span(Map event) {
+            this.tid = event.get("tid");
+            this.category = (String) event.get("cat");
+            this.name = (String) event.get("name");
+            this.ts = (Double) event.get("ts");
+            this.dur = (Double) event.get("dur");
+            this.args = event.containsKey("args") ? (Map) event.get("args") : new HashMap();
+            assertNotNull(tid, toString());
+            assertTrue(ts >= 0 && dur >= 0, toString());
+        }
+
+        boolean contains(Span span) {
+            return ts <= span.ts + TOLERANCE && span.ts + span.dur <= ts + dur + TOLERANCE;
+        }
+
+        @Override
+        public String toString() {
+            return category + " " + name + " (tid " + tid + ", ts " + ts + ", dur " + dur + ")";
+        }
+    }
+
+    /**
+     * Parses JSON into maps, lists, strings, doubles, booleans, and <code>null</code>.
+     */
+    static class JSON {
+
+        final String s;
+        int pos;
+
+        JSON(String s) {
+            this.s = s;
+        }
+
+        Object parse() {
+            Object value = value();
+            skipWhitespace();
+            if (pos != s.length())
+                throw new IllegalArgumentException("Unexpected content at " + pos);
+            return value;
+        }
+
+        Object value() {
+            skipWhitespace();
+            if (pos >= s.length())
+                throw new IllegalArgumentException("Unexpected end of JSON");
+            char c = s.charAt(pos);
+            if (c == '{') {
+                Map<String, Object> map = new LinkedHashMap<String, Object>();
+                pos++;
+                skipWhitespace();
+                if (s.charAt(pos) == '}') {
+                    pos++;
+                    return map;
+                }
+                do {
+                    skipWhitespace();
+                    String key = string();
+                    skipWhitespace();
+                    expect(':');
+                    if (map.put(key, value()) != null)
+                        throw new IllegalArgumentException("Duplicate key '" + key + "' at " + pos);
+                    skipWhitespace();
+                } while (next(','));
+                expect('}');
+                return map;
+            } else if (c == '[') {
+                List<Object> list = new ArrayList<Object>();
+                pos++;
+                skipWhitespace();
+                if (s.charAt(pos) == ']') {
+                    pos++;
+                    return list;
+                }
+                do {
+                    list.add(value());
+                    skipWhitespace();
+                } while (next(','));
+                expect(']');
+                return list;
+            } else if (c == '"') {
+                return string();
+            } else if (s.startsWith("true", pos)) {
+                pos += 4;
+                return Boolean.TRUE;
+            } else if (s.startsWith("false", pos)) {
+                pos += 5;
+                return Boolean.FALSE;
+            } else if (s.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            }
+            int start = pos;
+            while (pos < s.length() && "+-0123456789.eE".indexOf(s.charAt(pos)) != -1) pos++;
+            if (start == pos)
+                throw new IllegalArgumentException("Unexpected character '" + c + "' at " + pos);
+            return Double.valueOf(s.substring(start, pos));
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            char c;
+            while ((c = s.charAt(pos++)) != '"') {
+                if (c < 0x20)
+                    throw new IllegalArgumentException("Unescaped control character at " + (pos - 1));
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                c = s.charAt(pos++);
+                switch (c) {
+                    case 'u':
+                        sb.append((char) Integer.parseInt(s.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    default:
+                        sb.append(c);
+                }
+            }
+            return sb.toString();
+        }
+
+        boolean next(char c) {
+            if (pos < s.length() && s.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        void expect(char c) {
+            if (!next(c))
+                throw new IllegalArgumentException("Expected '" + c + "' at " + pos);
+        }
+
+        void skipWhitespace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) pos++;
+        }
+    }
+}
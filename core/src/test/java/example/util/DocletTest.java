@@ -6,6 +6,7 @@ import org.seamless.xhtml.XHTML;
 import org.seamless.xhtml.XHTMLParser;
 import org.fourthline.lemma.pipeline.javadoc.XHTMLTemplateJavadocPipeline;
 import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Optional;
 import org.testng.annotations.Parameters;
@@ -33,14 +34,22 @@ public abstract class DocletTest {
     public void init(@Optional String sourceDirectoryString) throws Exception {
 
         sourceDirectory = new File(sourceDirectoryString);
-        List<File> dirs = new ArrayList();
-        dirs.add(sourceDirectory);
 
-        xhtmlTemplatePipeline = new XHTMLTemplateJavadocPipeline(
-                dirs, getDefaultPackageNames(sourceDirectory), true, isProcessXRefs()
+        // Building the Javadoc model is expensive, all test classes share pipelines and models
+        xhtmlTemplatePipeline = PipelineCache.getPipeline(
+                sourceDirectory, getDefaultPackageNames(sourceDirectory), isProcessXRefs()
         );
     }
 
+    /**
+     * Clears the state a previous test left in the shared pipeline.
+     */
+    @BeforeMethod
+    public void resetPipeline() {
+        if (getTemplatePipeline() == null) return;
+        getTemplatePipeline().reset();
+    }
+
     public List<String> getDefaultPackageNames(File sourceDirectory) {
         List<String> names = new ArrayList();
         File[] subdirs = sourceDirectory.listFiles(new FileFilter() {
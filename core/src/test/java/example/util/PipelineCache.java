@@ -0,0 +1,113 @@
+package example.util;
+
+import org.fourthline.lemma.model.SourceModel;
+import org.fourthline.lemma.pipeline.javadoc.XHTMLTemplateJavadocPipeline;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Pipelines and source models shared by all test classes in a JVM.
+ * <p>
+ * Building the source model is the most expensive part of a test class setup, so a model
+ * is built once per backend, source directory, and package set. Pipelines use the Javadoc backend
+ * and are cached per source directory, package set and xref processing flag, pipelines with and
+ * without xref processing share a model.
+ * Tests of a shared pipeline must not depend on state left behind by other tests,
+ * {@link DocletTest#resetPipeline()} runs before every test method and calls
+ * {@link XHTMLTemplateJavadocPipeline#reset()} to clear it.
+ * </p>
+ */
+public class PipelineCache {
+
+    final private static Logger log = Logger.getLogger(PipelineCache.class.getName());
+
+    final private static Map<Key, SourceModel> models = new HashMap<Key, SourceModel>();
+    final private static Map<Key, XHTMLTemplateJavadocPipeline> pipelines = new HashMap<Key, XHTMLTemplateJavadocPipeline>();
+
+    synchronized public static XHTMLTemplateJavadocPipeline getPipeline(File sourceDirectory,
+                                                                    List<String> packageNames,
+                                                                    boolean processXRefs) {
+        Key pipelineKey = new Key(SourceModel.Backend.JAVADOC, sourceDirectory, packageNames, processXRefs);
+        XHTMLTemplateJavadocPipeline pipeline = pipelines.get(pipelineKey);
+        if (pipeline == null) {
+            List<File> dirs = new ArrayList<File>();
+            dirs.add(sourceDirectory);
+            pipeline = new XHTMLTemplateJavadocPipeline(
+                    dirs,
+                    new ArrayList<File>(),
+                    getModel(SourceModel.Backend.JAVADOC, sourceDirectory, packageNames),
+                    true,
+                    processXRefs
+            );
+            pipelines.put(pipelineKey, pipeline);
+        }
+        return pipeline;
+    }
+
+    synchronized public static SourceModel getModel(SourceModel.Backend backend,
+                                                    File sourceDirectory,
+                                                    List<String> packageNames) {
+        Key modelKey = new Key(backend, sourceDirectory, packageNames, false);
+        SourceModel model = models.get(modelKey);
+        if (model == null) {
+            log.info("Building shared " + backend + " model of packages " + packageNames + " in: " + sourceDirectory);
+            List<File> dirs = new ArrayList<File>();
+            dirs.add(sourceDirectory);
+            model = XHTMLTemplateJavadocPipeline.createSourceModel(backend, dirs, packageNames, null);
+            models.put(modelKey, model);
+        } else {
+            log.fine("Reusing shared " + backend + " model of packages " + packageNames + " in: " + sourceDirectory);
+        }
+        return model;
+    }
+
+    /**
+     * Releases all cached pipelines and models, e.g. if the source files have been modified.
+     */
+    synchronized public static void clear() {
+        pipelines.clear();
+        models.clear();
+    }
+
+    protected static class Key {
+
+        final private SourceModel.Backend backend;
+        final private String sourceDirectory;
+        final private List<String> packageNames;
+        final private boolean processXRefs;
+
+        public Key(SourceModel.Backend backend, File sourceDirectory, List<String> packageNames, boolean processXRefs) {
+            this.backend = backend;
+            this.sourceDirectory = sourceDirectory.getAbsolutePath();
+            this.packageNames = new ArrayList<String>(packageNames);
+            Collections.sort(this.packageNames);
+            this.processXRefs = processXRefs;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key that = (Key) o;
+            return processXRefs == that.processXRefs
+                    && backend == that.backend
+                    && sourceDirectory.equals(that.sourceDirectory)
+                    && packageNames.equals(that.packageNames);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = backend.hashCode();
+            result = 31 * result + sourceDirectory.hashCode();
+            result = 31 * result + packageNames.hashCode();
+            result = 31 * result + (processXRefs ? 1 : 0);
+            return result;
+        }
+    }
+}
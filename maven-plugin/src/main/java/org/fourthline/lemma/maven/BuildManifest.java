@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.maven;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Records the inputs of a manual generation run.
+ * <p>
+ * The manifest contains the values of all relevant plugin parameters, a content hash of
+ * every input file (the template, XIncluded files, cited files, Java sources of the Javadoc
+ * model, and manual resources), and a listing of the source directories. It is stored next
+ * to the generated manual; the next run recomputes the recorded hashes and skips generation
+ * if nothing has changed.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class BuildManifest {
+
+    final public static String PREFIX_PARAMETER = "parameter.";
+    final public static String PREFIX_FILE = "file.";
+    final public static String PREFIX_LISTING = "listing.";
+
+    final public static String XINCLUDE_NAMESPACE_URI = "http://www.w3.org/2001/XInclude";
+
+    final private static String MISSING = "missing";
+
+    final private Map<String, String> entries = new TreeMap<String, String>();
+
+    public void addParameter(String name, Object value) {
+        entries.put(PREFIX_PARAMETER + name, String.valueOf(value));
+    }
+
+    public void addFile(File file) throws IOException {
+        entries.put(PREFIX_FILE + file.getAbsolutePath(), hash(file));
+    }
+
+    public void addFiles(Set<File> files) throws IOException {
+        for (File file : files) {
+            addFile(file);
+        }
+    }
+
+    /**
+     * Records all files in the directory (recursively) with their content hash.
+     */
+    public void addDirectory(File directory) throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            if (file.isDirectory()) {
+                addDirectory(file);
+            } else {
+                addFile(file);
+            }
+        }
+    }
+
+    /**
+     * Records the relative paths of all files in the directory, so added and removed files are detected.
+     */
+    public void addListing(File directory) throws IOException {
+        entries.put(PREFIX_LISTING + directory.getAbsolutePath(), listing(directory));
+    }
+
+    /**
+     * Records the template and, recursively, all files it includes with XInclude.
+     *
+     * @param baseDirectory An <code>xml:base</code> of an include is also tried relative to this directory.
+     */
+    public void addTemplate(File template, File baseDirectory) throws IOException {
+        String key = PREFIX_FILE + template.getAbsolutePath();
+        if (entries.containsKey(key)) return;
+        addFile(template);
+        if (!template.canRead()) return;
+
+        for (File include : findIncludes(template, baseDirectory)) {
+            if (include.getName().endsWith(".xhtml") || include.getName().endsWith(".xml")) {
+                addTemplate(include, baseDirectory);
+            } else {
+                addFile(include);
+            }
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Compares this (previous) manifest with the current parameters and recomputes the recorded file hashes.
+     *
+     * @param current The manifest of the current run, only its parameters are compared.
+     * @return A description of the first detected change, or <code>null</code> if nothing changed.
+     */
+    public String findChange(BuildManifest current) throws IOException {
+        for (Map.Entry<String, String> entry : current.entries.entrySet()) {
+            if (!entry.getKey().startsWith(PREFIX_PARAMETER)) continue;
+            if (!entry.getValue().equals(entries.get(entry.getKey())))
+                return "Changed " + entry.getKey() + ": " + entry.getValue();
+        }
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            String key = entry.getKey();
+            if (key.startsWith(PREFIX_PARAMETER)) {
+                if (!current.entries.containsKey(key))
+                    return "Removed " + key;
+            } else if (key.startsWith(PREFIX_FILE)) {
+                File file = new File(key.substring(PREFIX_FILE.length()));
+                if (!hash(file).equals(entry.getValue()))
+                    return "Modified file: " + file;
+            } else if (key.startsWith(PREFIX_LISTING)) {
+                File directory = new File(key.substring(PREFIX_LISTING.length()));
+                if (!listing(directory).equals(entry.getValue()))
+                    return "Added or removed files in: " + directory;
+            }
+        }
+        return null;
+    }
+
+    public void store(File file) throws IOException {
+        Properties properties = new Properties();
+        properties.putAll(entries);
+        OutputStream os = new FileOutputStream(file);
+        try {
+            properties.store(os, "Lemma build manifest, delete this file to force generation");
+        } finally {
+            os.close();
+        }
+    }
+
+    public static BuildManifest load(File file) throws IOException {
+        Properties properties = new Properties();
+        InputStream is = new BufferedInputStream(new FileInputStream(file));
+        try {
+            properties.load(is);
+        } finally {
+            is.close();
+        }
+        BuildManifest manifest = new BuildManifest();
+        for (String key : properties.stringPropertyNames()) {
+            manifest.entries.put(key, properties.getProperty(key));
+        }
+        return manifest;
+    }
+
+    protected List<File> findIncludes(File template, File baseDirectory) throws IOException {
+        List<File> includes = new ArrayList<File>();
+        InputStream is = new BufferedInputStream(new FileInputStream(template));
+        try {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            XMLStreamReader reader = factory.createXMLStreamReader(is);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT
+                            || !XINCLUDE_NAMESPACE_URI.equals(reader.getNamespaceURI())
+                            || !"include".equals(reader.getLocalName()))
+                        continue;
+
+                    String href = reader.getAttributeValue(null, "href");
+                    if (href == null || href.length() == 0 || href.contains(":")) continue;
+                    String base = reader.getAttributeValue("http://www.w3.org/XML/1998/namespace", "base");
+
+                    includes.add(resolveInclude(template, baseDirectory, base, href));
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (Exception ex) {
+            // We don't validate here, an unreadable template will fail the regular generation
+            throw new IOException("Can't read XIncludes of template '" + template + "': " + ex, ex);
+        } finally {
+            is.close();
+        }
+        return includes;
+    }
+
+    protected File resolveInclude(File template, File baseDirectory, String base, String href) {
+        String path = base != null ? base + href : href;
+        File relativeToTemplate = new File(template.getParentFile(), path);
+        if (relativeToTemplate.exists()) return relativeToTemplate;
+        File relativeToBase = new File(baseDirectory, path);
+        if (relativeToBase.exists()) return relativeToBase;
+        // Record it anyway, it might be created later
+        return relativeToTemplate;
+    }
+
+    protected String listing(File directory) throws IOException {
+        List<String> paths = new ArrayList<String>();
+        collectPaths(directory, "", paths);
+        Collections.sort(paths);
+        StringBuilder sb = new StringBuilder();
+        for (String path : paths) {
+            sb.append(path).append('\n');
+        }
+        return digest(sb.toString().getBytes("UTF-8"));
+    }
+
+    protected void collectPaths(File directory, String prefix, List<String> paths) {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+        for (File file : files) {
+            if (file.isDirectory()) {
+                collectPaths(file, prefix + file.getName() + "/", paths);
+            } else {
+                paths.add(prefix + file.getName());
+            }
+        }
+    }
+
+    protected String hash(File file) throws IOException {
+        if (!file.isFile()) return MISSING;
+        MessageDigest digest = createDigest();
+        InputStream is = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            is.close();
+        }
+        return toHex(digest.digest());
+    }
+
+    protected String digest(byte[] bytes) {
+        return toHex(createDigest().digest(bytes));
+    }
+
+    protected MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    protected String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+}
@@ -18,6 +18,7 @@
 package org.fourthline.lemma.maven;
 
 import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -26,37 +27,62 @@ import org.codehaus.classworlds.ClassRealm;
 import org.codehaus.classworlds.ClassWorld;
 import org.codehaus.plexus.util.FileUtils;
 import org.seamless.util.io.IO;
-import org.seamless.util.logging.LoggingUtil;
 import org.seamless.xhtml.XHTML;
+import org.fourthline.lemma.model.SourceModel;
+import org.fourthline.lemma.pipeline.CheckReport;
+import org.fourthline.lemma.pipeline.CostReport;
+import org.fourthline.lemma.pipeline.IdIndex;
+import org.fourthline.lemma.pipeline.TraceRecorder;
 import org.fourthline.lemma.pipeline.javadoc.XHTMLTemplateJavadocPipeline;
 
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
 import java.net.URL;
+import java.security.CodeSource;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.logging.Formatter;
-import java.util.logging.Handler;
-import java.util.logging.Level;
-import java.util.logging.LogManager;
-import java.util.logging.LogRecord;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @author Christian Bauer
  * @goal manual
  * @requiresDependencyResolution test
+ * @threadSafe
  */
 public class LemmaMojo extends AbstractMojo {
 
+    final private static int MAX_PROJECT_CLASSLOADERS = 16;
+
+    /**
+     * Class loaders with the project's test classpath, reused by executions with the same classpath.
+     */
+    final private static Map<List<String>, ClassLoader> projectClassLoaders =
+            new LinkedHashMap<List<String>, ClassLoader>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<String>, ClassLoader> eldest) {
+                    return size() > MAX_PROJECT_CLASSLOADERS;
+                }
+            };
+
     /**
      * @parameter expression="${manual.sourceDirectories}"
      * description="Don't use project.build.testSourceDirectory but the given source directories."
      */
     protected List<File> sourceDirectories;
 
+    /**
+     * @parameter
+     * description="Source archives (e.g. -sources.jar files) searched after the source directories."
+     */
+    protected List<File> sourceArchives = new ArrayList();
+
     /**
      * @parameter expression="${manual.manualSourceDirectory}"
      * default-value="${basedir}/src/manual"
@@ -99,6 +125,81 @@ public class LemmaMojo extends AbstractMojo {
      */
     protected boolean processXRefs;
 
+    /**
+     * @parameter expression="${manual.deferValidation}"
+     * default-value="false"
+     * description="Validate all cited Javadoc content once at the end, not every citation on its own."
+     */
+    protected boolean deferValidation;
+
+    /**
+     * @parameter expression="${manual.sourceModel}"
+     * default-value="javadoc"
+     * description="Build the source model with the Javadoc tool ('javadoc'), or parse the source files directly ('source', faster)."
+     */
+    protected String sourceModel;
+
+    /**
+     * @parameter expression="${manual.modelShards}"
+     * default-value="1"
+     * description="Build the Javadoc model with this many parallel Javadoc runs, each documents a part of the packages."
+     */
+    protected int modelShards;
+
+    /**
+     * @parameter expression="${manual.costReport}"
+     * default-value="false"
+     * description="Write the processing cost of every citation as JSON and HTML next to the output file."
+     */
+    protected boolean costReport;
+
+    /**
+     * @parameter expression="${manual.trace}"
+     * description="Write a timeline of the execution as Chrome/Perfetto trace-event JSON to this file."
+     */
+    protected File trace;
+
+    /**
+     * @parameter expression="${manual.check}"
+     * default-value="false"
+     * description="Only check citations and cross-references, fail with a list of all problems and write no output."
+     */
+    protected boolean check;
+
+    /**
+     * @parameter expression="${manual.sections}"
+     * description="Render only the sections with these identifiers or XPath expressions into a partial output file, other sections are stubs."
+     */
+    protected List<String> sections = new ArrayList<String>();
+
+    /**
+     * @parameter expression="${manual.upToDateCheck}"
+     * default-value="true"
+     * description="Skip generation if the build manifest of the last run shows no changed inputs. Runs which write a trace or a cost report always generate."
+     */
+    protected boolean upToDateCheck;
+
+    /**
+     * @parameter expression="${manual.compareResourceContent}"
+     * default-value="false"
+     * description="Compare content hashes of manual resources and doc-files, not only size and modification time."
+     */
+    protected boolean compareResourceContent;
+
+    /**
+     * @parameter expression="${manual.sessionCacheModels}"
+     * default-value="4"
+     * description="Source models shared by the modules of a build, 0 disables sharing of models and file content. A module returns its model to the cache when its citations have been processed, but the cache keeps up to this many models in memory for the whole build. Set 0 if memory matters more than building the model of every module."
+     */
+    protected int sessionCacheModels;
+
+    /**
+     * @parameter expression="${manual.sessionCacheMemory}"
+     * default-value="64"
+     * description="Megabytes of file content shared by the modules of a build."
+     */
+    protected int sessionCacheMemory;
+
     /**
      * @parameter
      */
@@ -111,36 +212,70 @@ public class LemmaMojo extends AbstractMojo {
      */
     protected MavenProject project;
 
+    /**
+     * @parameter expression="${session}"
+     * @required
+     * @readonly
+     */
+    protected MavenSession session;
+
+    protected SessionCache sessionCache;
+    protected SessionCache.ModelKey sessionModelKey;
+
     public MavenProject getProject() {
         return project;
     }
 
     // Maven's plugin classloader does not see the project's build/test output by default, see
     // http://maven.apache.org/guides/mini/guide-maven-classloading.html
-    public void extendPluginClasspath(List<String> elements) throws MojoExecutionException {
-        // I found most of this on pastebin
-        ClassWorld world = new ClassWorld();
-        ClassRealm realm;
-        try {
-            realm = world.newRealm(
-                    "maven.plugin." + getClass().getSimpleName(),
-                    Thread.currentThread().getContextClassLoader()
-            );
+    /**
+     * Sets the context classloader of the current thread to a realm with the given classpath.
+     *
+     * @return The previous context classloader, restore it when the execution completes.
+     */
+    public ClassLoader extendPluginClasspath(List<String> elements) throws MojoExecutionException {
+        ClassLoader previous = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(getProjectClassLoader(elements));
+        return previous;
+    }
 
-            for (String element : elements) {
-                File elementFile = new File(element);
-                getLog().debug("Adding element to plugin classpath" + elementFile.getPath());
-                URL url = new URL("file:///" + elementFile.getPath() + (elementFile.isDirectory() ? "/" : ""));
-                realm.addConstituent(url);
+    protected ClassLoader getProjectClassLoader(List<String> elements) throws MojoExecutionException {
+        List<String> key = new ArrayList<String>(elements);
+        synchronized (projectClassLoaders) {
+            ClassLoader classLoader = projectClassLoaders.get(key);
+            if (classLoader != null) {
+                getLog().debug("Reusing plugin classpath realm of equal project classpath");
+                return classLoader;
             }
-        } catch (Exception ex) {
-            throw new MojoExecutionException(ex.toString(), ex);
+
+            // I found most of this on pastebin
+            ClassWorld world = new ClassWorld();
+            ClassRealm realm;
+            try {
+                // The parent is the plugin's own realm, never the realm of a previous execution
+                realm = world.newRealm(
+                        "maven.plugin." + getClass().getSimpleName(),
+                        LemmaMojo.class.getClassLoader()
+                );
+
+                for (String element : elements) {
+                    File elementFile = new File(element);
+                    getLog().debug("Adding element to plugin classpath" + elementFile.getPath());
+                    URL url = new URL("file:///" + elementFile.getPath() + (elementFile.isDirectory() ? "/" : ""));
+                    realm.addConstituent(url);
+                }
+            } catch (Exception ex) {
+                throw new MojoExecutionException(ex.toString(), ex);
+            }
+            projectClassLoaders.put(key, realm.getClassLoader());
+            return realm.getClassLoader();
         }
-        Thread.currentThread().setContextClassLoader(realm.getClassLoader());
     }
 
     public void execute() throws MojoExecutionException, MojoFailureException {
 
+        MavenLogBridge.Registration logRegistration = MavenLogBridge.register(getLog());
+        ClassLoader previousClassLoader = null;
         try {
             File templateFile = new File(manualSourceDirectory, templateFilename);
             if (!templateFile.exists()) {
@@ -151,9 +286,6 @@ public class LemmaMojo extends AbstractMojo {
                 throw new Exception("Configured template not found in manual directory: " + templateFile);
             }
 
-            // We might want to load stuff from the test classpath
-            extendPluginClasspath((List<String>)project.getTestClasspathElements());
-
             // Default to test source directory if no source directories are configured
             if (sourceDirectories.isEmpty()) {
                 File testSourceDirectory = new File(project.getBuild().getTestSourceDirectory());
@@ -166,11 +298,43 @@ public class LemmaMojo extends AbstractMojo {
                 }
             }
 
-            XHTMLTemplateJavadocPipeline pipeline = createPipeline(sourceDirectories, packageNames, project);
-            XHTML result = pipeline.execute(templateFile);
+            if (check) {
+                previousClassLoader = extendPluginClasspath((List<String>) project.getTestClasspathElements());
+                checkTemplate(templateFile);
+                return;
+            }
 
             String path = IO.makeRelativePath(outputPath, project.getBuild().getDirectory());
             File outputFile = new File(project.getBuild().getDirectory() + "/" + path, outputFilename + ".xhtml");
+
+            if (sections != null && sections.size() > 0) {
+                previousClassLoader = extendPluginClasspath((List<String>) project.getTestClasspathElements());
+                renderSections(templateFile, outputFile);
+                return;
+            }
+            File manifestFile = new File(outputFile.getParentFile(), outputFilename + ".manifest");
+
+            BuildManifest manifest = createManifest();
+            // A trace or cost report measures a run, skipping it would leave the files of an older run
+            boolean measured = trace != null || costReport;
+            if (upToDateCheck && !measured && isUpToDate(outputFile, manifestFile, manifest)) {
+                getLog().info("Manual is up to date, skipping generation: " + outputFile.getAbsolutePath());
+                return;
+            }
+            // A failed run must not leave a manifest of older inputs behind
+            if (manifestFile.exists()) manifestFile.delete();
+
+            // We might want to load stuff from the test classpath
+            previousClassLoader = extendPluginClasspath((List<String>)project.getTestClasspathElements());
+
+            XHTMLTemplateJavadocPipeline pipeline = createPipeline(sourceDirectories, packageNames, project);
+            XHTML result;
+            try {
+                result = pipeline.execute(templateFile);
+            } finally {
+                releasePipeline(pipeline);
+            }
+
             pipeline.prepareOutputFile(outputFile, true);
             getLog().info("Writing output file: " + outputFile.getAbsolutePath());
 
@@ -179,21 +343,170 @@ public class LemmaMojo extends AbstractMojo {
                     pipeline.getParser().print(result, 4, true)
             );
 
-            copyManualResources(new File(project.getBuild().getDirectory(), path));
-            copyDocFiles(new File(project.getBuild().getDirectory(), path));
+            // Resolves cross-references of later runs which render only some sections
+            IdIndex.collect(result, outputFile.getName()).write(IdIndex.getFile(outputFile));
+
+            if (pipeline.getCostReport() != null)
+                pipeline.getCostReport().write(outputFile);
+            if (pipeline.getTraceRecorder() != null)
+                pipeline.getTraceRecorder().write(trace);
+
+            List<File> docFiles = copyResources(
+                    new File(project.getBuild().getDirectory(), path), getGeneratedFiles(outputFile)
+            );
+
+            if (upToDateCheck) {
+                recordInputs(manifest, templateFile, pipeline, docFiles);
+                manifest.store(manifestFile);
+                getLog().debug("Stored build manifest with entries: " + manifest.size());
+            }
 
+        } catch (MojoFailureException ex) {
+            throw ex;
         } catch (Exception ex) {
             throw new MojoExecutionException("Error occured: " + ex.getMessage(), ex);
+        } finally {
+            if (previousClassLoader != null)
+                Thread.currentThread().setContextClassLoader(previousClassLoader);
+            MavenLogBridge.unregister(logRegistration);
         }
 
     }
 
+    /**
+     * Checks all citations and cross-references of the template, no output is written.
+     *
+     * @throws MojoFailureException If there are problems, the message lists all of them.
+     */
+    protected void checkTemplate(File templateFile) throws Exception {
+        XHTMLTemplateJavadocPipeline pipeline = createPipeline(sourceDirectories, packageNames, project);
+        pipeline.setCheckReport(new CheckReport());
+        try {
+            pipeline.execute(templateFile);
+        } finally {
+            releasePipeline(pipeline);
+        }
+
+        if (pipeline.getTraceRecorder() != null)
+            pipeline.getTraceRecorder().write(trace);
+
+        if (pipeline.getCheckReport().hasProblems())
+            throw new MojoFailureException(pipeline.getCheckReport().toString());
+        getLog().info(pipeline.getCheckReport().toString());
+    }
+
+    /**
+     * Renders only the selected sections into a partial output file next to the full output file, the
+     * full output file and its build manifest are not touched. Cross-references into other sections
+     * link to the full output file, if its identifier index exists.
+     */
+    protected void renderSections(File templateFile, File outputFile) throws Exception {
+        File partialOutputFile = new File(outputFile.getParentFile(), outputFilename + "-partial.xhtml");
+
+        XHTMLTemplateJavadocPipeline pipeline = createPipeline(sourceDirectories, packageNames, project);
+        pipeline.getProcessorOptions().selectedSections.addAll(sections);
+
+        File idIndexFile = IdIndex.getFile(outputFile);
+        if (idIndexFile.exists()) {
+            pipeline.setIdIndex(IdIndex.read(idIndexFile));
+        } else {
+            getLog().warn("No identifier index of a full run, cross-references into other sections are unresolved: " + idIndexFile);
+        }
+
+        XHTML result;
+        try {
+            result = pipeline.execute(templateFile);
+        } finally {
+            releasePipeline(pipeline);
+        }
+
+        pipeline.prepareOutputFile(partialOutputFile, true);
+        getLog().info("Writing partial output file: " + partialOutputFile.getAbsolutePath());
+        IO.writeUTF8(
+                partialOutputFile,
+                pipeline.getParser().print(result, 4, true)
+        );
+
+        if (pipeline.getTraceRecorder() != null)
+            pipeline.getTraceRecorder().write(trace);
+    }
+
+    /**
+     * @return A manifest with the parameters of this run, input files are recorded after generation.
+     */
+    protected BuildManifest createManifest() throws DependencyResolutionRequiredException {
+        BuildManifest manifest = new BuildManifest();
+        manifest.addParameter("lemmaVersion", XHTMLTemplateJavadocPipeline.class.getPackage().getImplementationVersion());
+        manifest.addParameter("sourceDirectories", sourceDirectories);
+        manifest.addParameter("sourceArchives", sourceArchives);
+        manifest.addParameter("manualSourceDirectory", manualSourceDirectory);
+        manifest.addParameter("packageNames", packageNames);
+        manifest.addParameter("templateFilename", templateFilename);
+        manifest.addParameter("outputFilename", outputFilename);
+        manifest.addParameter("outputPath", outputPath);
+        manifest.addParameter("processXRefs", processXRefs);
+        manifest.addParameter("deferValidation", deferValidation);
+        manifest.addParameter("sourceModel", sourceModel);
+        manifest.addParameter("modelShards", modelShards);
+        manifest.addParameter("costReport", costReport);
+        manifest.addParameter("trace", trace);
+        manifest.addParameter("compareResourceContent", compareResourceContent);
+        manifest.addParameter("classpath", getSharedClasspath(project));
+        return manifest;
+    }
+
+    protected boolean isUpToDate(File outputFile, File manifestFile, BuildManifest manifest) {
+        if (!outputFile.exists() || !manifestFile.exists())
+            return false;
+        try {
+            String change = BuildManifest.load(manifestFile).findChange(manifest);
+            if (change != null) {
+                getLog().info("Manual is not up to date: " + change);
+                return false;
+            }
+            return true;
+        } catch (IOException ex) {
+            getLog().warn("Ignoring unreadable build manifest '" + manifestFile + "': " + ex);
+            return false;
+        }
+    }
+
+    protected void recordInputs(BuildManifest manifest, File templateFile,
+                                XHTMLTemplateJavadocPipeline pipeline, List<File> docFiles) throws IOException {
+        manifest.addTemplate(templateFile, project.getBasedir());
+        manifest.addDirectory(manualSourceDirectory);
+        manifest.addFiles(pipeline.getFileResolver().getResolvedFiles());
+        manifest.addFiles(pipeline.getSourceFiles());
+        for (File sourceArchive : sourceArchives) {
+            manifest.addFile(sourceArchive);
+        }
+        for (File docFile : docFiles) {
+            if (docFile.isDirectory()) {
+                manifest.addDirectory(docFile);
+            } else {
+                manifest.addFile(docFile);
+            }
+        }
+        for (File sourceDirectory : sourceDirectories) {
+            manifest.addListing(sourceDirectory);
+        }
+
+        // The Lemma code itself, changes of snapshot builds don't show in the version
+        CodeSource lemmaSource = XHTMLTemplateJavadocPipeline.class.getProtectionDomain().getCodeSource();
+        if (lemmaSource != null && lemmaSource.getLocation() != null
+                && "file".equals(lemmaSource.getLocation().getProtocol())) {
+            File lemmaFile = FileUtils.toFile(lemmaSource.getLocation());
+            if (lemmaFile.isFile())
+                manifest.addFile(lemmaFile);
+        }
+    }
+
     public XHTMLTemplateJavadocPipeline createPipeline(List<File> sourceDirectories,
                                                        List<String> packageNames,
                                                        MavenProject project) throws Exception {
 
-        // Yep, the Javadoc tool has its own classpath, we abuse the javac system property to get it into the Gaftercode
-        String javadocClasspath = null;
+        // Yep, the Javadoc tool has its own classpath, the pipeline sets it only while it builds the model
+        String javadocClasspath;
         try {
 
             List<String> classpathElements = (List<String>) project.getTestClasspathElements();
@@ -203,51 +516,12 @@ public class LemmaMojo extends AbstractMojo {
             }
             if (sb.length() > 0) sb.deleteCharAt(sb.length() - 1);
             javadocClasspath = sb.toString();
-
-            if (javadocClasspath != null) {
-                getLog().debug("Setting Javadoc classpath: " + javadocClasspath);
-                System.setProperty("env.class.path", javadocClasspath); // The Javadoc code reads this env variable!
-            }
+            getLog().debug("Using Javadoc classpath: " + javadocClasspath);
 
         } catch (DependencyResolutionRequiredException ex) {
             throw new Exception("Can't get test-scope classpath: " + ex.toString(), ex);
         }
 
-        // Hurray for more logging abstractions!
-        Handler loggingAdapter = new Handler() {
-
-            Formatter formatter = new Formatter() {
-                @Override
-                public String format(LogRecord logRecord) {
-                    return formatMessage(logRecord);
-                }
-            };
-
-            @Override
-            public void publish(LogRecord logRecord) {
-                if (logRecord.getLevel().equals(Level.SEVERE) && getLog().isErrorEnabled()) {
-                    getLog().error(formatter.format(logRecord));
-                } else if (logRecord.getLevel().equals(Level.WARNING) && getLog().isWarnEnabled()) {
-                    getLog().warn(formatter.format(logRecord));
-                } else if (logRecord.getLevel().equals(Level.INFO) && getLog().isInfoEnabled()) {
-                    getLog().info(formatter.format(logRecord));
-                } else if (getLog().isDebugEnabled()) {
-                    getLog().debug(formatter.format(logRecord));
-                }
-            }
-
-            @Override
-            public void flush() {
-            }
-
-            @Override
-            public void close() throws SecurityException {
-            }
-        };
-        loggingAdapter.setLevel(Level.ALL);
-        LoggingUtil.resetRootHandler(loggingAdapter);
-        LogManager.getLogManager().getLogger("").setLevel(Level.ALL);
-
         // Check the configuration
 
         for (File sourceDirectory : sourceDirectories) {
@@ -259,6 +533,22 @@ public class LemmaMojo extends AbstractMojo {
             }
         }
 
+        for (File sourceArchive : sourceArchives) {
+            if (!sourceArchive.isFile() || !sourceArchive.canRead()) {
+                throw new Exception("Source archive not found or not readable: " + sourceArchive);
+            }
+        }
+
+
+        SourceModel.Backend backend;
+        try {
+            backend = SourceModel.Backend.valueOf(sourceModel.toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException ex) {
+            throw new Exception("Unknown source model, expected 'javadoc' or 'source': " + sourceModel);
+        }
+        if (modelShards < 1) {
+            throw new Exception("Number of model shards must be positive: " + modelShards);
+        }
 
         if (packageNames.size() == 0) {
             for (File sourceDirectory : sourceDirectories) {
@@ -277,48 +567,153 @@ public class LemmaMojo extends AbstractMojo {
         }
 
         // Finally, do the work
-        return new XHTMLTemplateJavadocPipeline(sourceDirectories, packageNames, true, processXRefs);
+        XHTMLTemplateJavadocPipeline pipeline;
+        if (sessionCacheModels > 0 && session != null) {
+            // A parallel build (-T) runs every module with a clone of the session, they share the request
+            sessionCache = SessionCache.get(
+                    session.getRequest(), sessionCacheModels, sessionCacheMemory * 1024L * 1024L / 2
+            );
+            sessionModelKey = new SessionCache.ModelKey(
+                    backend, sourceDirectories, packageNames, getSharedClasspath(project)
+            );
+            final SourceModel.Factory modelFactory = XHTMLTemplateJavadocPipeline.createSourceModelFactory(
+                    backend, sourceDirectories, packageNames, javadocClasspath, modelShards
+            );
+            // The pipeline hands the model back to the session cache when citation processing is complete
+            pipeline = new XHTMLTemplateJavadocPipeline(
+                    sourceDirectories,
+                    sourceArchives,
+                    new SourceModel.Factory() {
+                        public SourceModel createSourceModel() {
+                            SourceModel model = sessionCache.acquireModel(sessionModelKey);
+                            if (model != null) {
+                                getLog().info("Reusing source model of an earlier module in this build");
+                                return model;
+                            }
+                            return modelFactory.createSourceModel();
+                        }
+                    },
+                    true,
+                    processXRefs
+            ) {
+                @Override
+                protected void sourceModelReleased(SourceModel sourceModel) {
+                    sessionCache.releaseModel(sessionModelKey, sourceModel);
+                    getLog().debug("Session cache, " + sessionCache);
+                }
+            };
+            pipeline.setContentCache(sessionCache.getContentCache());
+        } else {
+            // The pipeline releases a model it built itself when citation processing is complete
+            pipeline = new XHTMLTemplateJavadocPipeline(
+                    sourceDirectories,
+                    sourceArchives,
+                    XHTMLTemplateJavadocPipeline.createSourceModelFactory(
+                            backend, sourceDirectories, packageNames, javadocClasspath, modelShards
+                    ),
+                    true,
+                    processXRefs
+            );
+        }
+        pipeline.getProcessorOptions().deferValidation = deferValidation;
+        if (costReport)
+            pipeline.setCostReport(new CostReport());
+        if (trace != null)
+            pipeline.setTraceRecorder(new TraceRecorder());
+        return pipeline;
     }
 
-    public void copyManualResources(File destination) throws IOException {
+    /**
+     * @return The test classpath without the output directories of the project, so modules with the same
+     *         dependencies share a source model. The classes of a module are in its sources anyway.
+     */
+    protected String getSharedClasspath(MavenProject project) throws DependencyResolutionRequiredException {
+        Set<String> ownDirectories = new HashSet<String>();
+        ownDirectories.add(new File(project.getBuild().getOutputDirectory()).getAbsolutePath());
+        ownDirectories.add(new File(project.getBuild().getTestOutputDirectory()).getAbsolutePath());
+        StringBuilder sb = new StringBuilder();
+        for (String classpathElement : (List<String>) project.getTestClasspathElements()) {
+            if (ownDirectories.contains(new File(classpathElement).getAbsolutePath())) continue;
+            sb.append(classpathElement).append(File.pathSeparator);
+        }
+        if (sb.length() > 0) sb.deleteCharAt(sb.length() - 1);
+        return sb.toString();
+    }
+
+    /**
+     * Releases the source model of the pipeline, if the pipeline still holds it, call when the pipeline
+     * has been executed. A shared model is returned to the session cache.
+     */
+    public void releasePipeline(XHTMLTemplateJavadocPipeline pipeline) {
+        pipeline.releaseSourceModel();
+    }
+
+    /**
+     * @return The files next to the output file which this plugin generates, resource synchronization keeps them.
+     */
+    protected List<File> getGeneratedFiles(File outputFile) {
+        File directory = outputFile.getParentFile();
+        List<File> generated = new ArrayList<File>();
+        generated.add(outputFile);
+        generated.add(new File(directory, outputFilename + "-partial.xhtml"));
+        generated.add(new File(directory, outputFilename + ".manifest"));
+        generated.add(IdIndex.getFile(outputFile));
+        generated.add(new File(directory, outputFilename + CostReport.SUFFIX_JSON));
+        generated.add(new File(directory, outputFilename + CostReport.SUFFIX_HTML));
+        if (trace != null)
+            generated.add(trace);
+        return generated;
+    }
+
+    /**
+     * Synchronizes the manual resources and the doc-files of all source directories with the destination.
+     * <p>
+     * Everything else in the destination is removed, except the given generated files. If the destination
+     * is, or contains, the build or reporting output directory of the project, only the copied resource
+     * directories and the doc-files directory are synchronized.
+     * </p>
+     *
+     * @return The doc-files (and directories) of all source directories.
+     */
+    public List<File> copyResources(File destination, List<File> generatedFiles) throws IOException {
+        ResourceSync sync = new ResourceSync(getLog(), compareResourceContent);
+        boolean shared = isSharedDirectory(destination);
+        if (!shared) {
+            sync.addTargetDirectory(destination);
+            for (File generatedFile : generatedFiles) {
+                sync.keep(generatedFile);
+            }
+        }
 
-        final List<File> manualResources = new ArrayList();
         getLog().info("Searching for manual resources to copy in: " + manualSourceDirectory);
-        File[] files = manualSourceDirectory.listFiles(new FileFilter() {
+        File[] manualResources = manualSourceDirectory.listFiles(new FileFilter() {
             public boolean accept(File file) {
                 // Do not copy any .xhtml files, we assume that they all are "included" within the generated manual
-                return !file.getName().endsWith(".xhtml");
+                return !file.getName().endsWith(".xhtml") && !file.getName().startsWith(".");
             }
         });
-        if (files != null)
-            manualResources.addAll(Arrays.asList(files));
-
-        for (File manualResource : manualResources) {
-
-            if (manualResource.getName().startsWith(".")) continue;
-
-            if (manualResource.isDirectory()) {
-
-                // Copy the directory only if it contains any non-XHTML files
-                for (File file : manualResource.listFiles()) {
-                    if (file.getName().startsWith(".")) continue;
-
-                    if (!file.getName().endsWith(".xhtml")) {
-                        getLog().info("Copying directory recursively: " + manualResource);
-                        FileUtils.copyDirectoryStructure(manualResource, new File(destination, manualResource.getName()));
-                        break;
+        if (manualResources != null) {
+            for (File manualResource : manualResources) {
+                File target = new File(destination, manualResource.getName());
+                if (manualResource.isDirectory()) {
+                    if (shared)
+                        sync.addTargetDirectory(target);
+
+                    // Copy the directory only if it contains any non-XHTML files
+                    for (File file : manualResource.listFiles()) {
+                        if (file.getName().startsWith(".")) continue;
+
+                        if (!file.getName().endsWith(".xhtml")) {
+                            getLog().info("Synchronizing directory recursively: " + manualResource);
+                            sync.addDirectory(manualResource, target);
+                            break;
+                        }
                     }
+                } else {
+                    sync.addFile(manualResource, target);
                 }
-            } else {
-
-                getLog().info("Copying file: " + manualResource);
-
-                FileUtils.copyFile(manualResource, new File(destination, manualResource.getName()));
             }
         }
-    }
-
-    public void copyDocFiles(File destination) throws IOException {
 
         final List<File> docFiles = new ArrayList();
         for (File sourceDirectory : sourceDirectories) {
@@ -335,27 +730,41 @@ public class LemmaMojo extends AbstractMojo {
         }
 
         File destinationDir = new File(destination, "doc-files");
-        if (docFiles.size() > 0 && !destinationDir.exists()) {
-            destinationDir.mkdir();
-        } else if (docFiles.size() > 0 && destinationDir.exists()) {
-            getLog().info("Cleaning old doc-files target directory: " + destinationDir);
-            FileUtils.deleteDirectory(destinationDir);
-            destinationDir.mkdir();
-        }
-
+        if (shared)
+            sync.addTargetDirectory(destinationDir);
+        Set<String> names = new HashSet<String>();
         for (File docFile : docFiles) {
 
             if (docFile.getName().startsWith(".")) continue;
 
-            File targetDocFile = new File(destinationDir, docFile.getName());
-            if (targetDocFile.exists()) {
+            if (!names.add(docFile.getName())) {
                 throw new IOException("Duplicate doc-files detected, rename one: " + docFile.getName());
             }
 
-            getLog().info("Copying doc-file to: " + targetDocFile);
-            FileUtils.copyFile(docFile, targetDocFile);
+            File targetDocFile = new File(destinationDir, docFile.getName());
+            if (docFile.isDirectory()) {
+                sync.addDirectory(docFile, targetDocFile);
+            } else {
+                sync.addFile(docFile, targetDocFile);
+            }
         }
 
+        sync.sync();
+        getLog().info("Synchronized manual resources and doc-files, copied: " + sync.getCopied() + ", removed: " + sync.getRemoved());
+        return docFiles;
+    }
+
+    /**
+     * @return <code>true</code> if the directory is, or contains, the build or reporting output directory of the project.
+     */
+    protected boolean isSharedDirectory(File directory) throws IOException {
+        String path = directory.getCanonicalPath() + File.separator;
+        String[] sharedDirectories = {project.getBuild().getDirectory(), project.getReporting().getOutputDirectory()};
+        for (String sharedDirectory : sharedDirectories) {
+            if ((new File(sharedDirectory).getCanonicalPath() + File.separator).startsWith(path))
+                return true;
+        }
+        return false;
     }
 
 }
@@ -27,9 +27,18 @@ import org.seamless.util.io.IO;
 import org.seamless.xhtml.XHTML;
 import org.seamless.xhtml.XHTMLElement;
 import org.fourthline.lemma.pipeline.javadoc.XHTMLTemplateJavadocPipeline;
-
+import org.w3c.dom.NodeList;
+
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 
@@ -38,6 +47,7 @@ import java.util.Locale;
  * @goal site-manual
  * @phase site
  * @requiresDependencyResolution test
+ * @threadSafe
  */
 public class LemmaReport extends LemmaMojo implements MavenReport {
 
@@ -144,9 +154,11 @@ public class LemmaReport extends LemmaMojo implements MavenReport {
 
     protected void executeReport(Locale locale) throws MavenReportException {
 
+        MavenLogBridge.Registration logRegistration = MavenLogBridge.register(getLog());
+        ClassLoader previousClassLoader = null;
         try {
             // We might want to load stuff from the test classpath
-            extendPluginClasspath((List<String>)project.getTestClasspathElements());
+            previousClassLoader = extendPluginClasspath((List<String>)project.getTestClasspathElements());
 
             File templateFile = new File(manualSourceDirectory, templateFilename);
             if (!templateFile.exists()) {
@@ -166,7 +178,15 @@ public class LemmaReport extends LemmaMojo implements MavenReport {
             }
 
             XHTMLTemplateJavadocPipeline pipeline = createPipeline(sourceDirectories, packageNames, project);
-            XHTML result = pipeline.execute(templateFile);
+            XHTML result;
+            try {
+                result = pipeline.execute(templateFile);
+            } finally {
+                releasePipeline(pipeline);
+            }
+
+            if (pipeline.getTraceRecorder() != null)
+                pipeline.getTraceRecorder().write(trace);
 
             Sink sink = delegate.getSink();
             sink.head();
@@ -176,12 +196,7 @@ public class LemmaReport extends LemmaMojo implements MavenReport {
             sink.head_();
             sink.body();
 
-            XHTML bodyDom = pipeline.getParser().createDocument();
-            bodyDom.createRoot(pipeline.getXPath(), XHTML.ELEMENT.div);
-            for (XHTMLElement child : result.getRoot(pipeline.getXPath()).getBody().getChildren()) {
-                bodyDom.getRoot(pipeline.getXPath()).appendChild(child, true);
-            }
-            sink.rawText(pipeline.getParser().print(bodyDom, 4, false));
+            writeBody(result.getRoot(pipeline.getXPath()).getBody(), sink);
 
             sink.body_();
             sink.flush();
@@ -189,15 +204,41 @@ public class LemmaReport extends LemmaMojo implements MavenReport {
 
         } catch (Exception ex) {
             throw new MavenReportException("Error occurred: " + ex.getMessage(), ex);
+        } finally {
+            if (previousClassLoader != null)
+                Thread.currentThread().setContextClassLoader(previousClassLoader);
+            MavenLogBridge.unregister(logRegistration);
         }
 
     }
 
+    /**
+     * Serializes the children of the body element straight into the sink, in chunks, wrapped in a <code>div</code>.
+     */
+    private void writeBody(XHTMLElement body, Sink sink) throws Exception {
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+
+        Writer writer = new BufferedWriter(new SinkWriter(sink), 8192);
+        writer.write("<div xmlns=\"" + XHTML.NAMESPACE_URI + "\">\n");
+        NodeList children = body.getW3CElement().getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            transformer.transform(new DOMSource(children.item(i)), new StreamResult(writer));
+        }
+        writer.write("\n</div>");
+        writer.flush();
+    }
+
     protected void closeReport() {
         try {
             String path = IO.makeRelativePath(outputPath, project.getReporting().getOutputDirectory());
-            copyManualResources(new File(project.getReporting().getOutputDirectory(), path));
-            copyDocFiles(new File(project.getReporting().getOutputDirectory(), path));
+            List<File> generatedFiles = new ArrayList<File>();
+            generatedFiles.add(new File(project.getReporting().getOutputDirectory(), getOutputName() + ".html"));
+            if (trace != null)
+                generatedFiles.add(trace);
+            copyResources(new File(project.getReporting().getOutputDirectory(), path), generatedFiles);
         } catch (IOException ex) {
             throw new RuntimeException(ex);
         }
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.maven;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Forwards JUL records of Lemma to the Maven log of the plugin execution which produced them.
+ * <p>
+ * A single handler is attached to the Lemma (and Seamless) loggers while any execution is
+ * active, the root logger and its handlers are not touched. Each execution registers its
+ * Maven log for its thread (and threads it starts), so concurrent executions in a parallel
+ * build log to their own module. The logger level is the most verbose level of all active
+ * executions, Maven's effective log level is mapped onto JUL levels.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class MavenLogBridge extends Handler {
+
+    final public static String[] LOGGER_NAMES = {"org.fourthline.lemma", "org.seamless"};
+
+    private static MavenLogBridge instance;
+
+    // Strong references, otherwise the configured loggers might be garbage collected
+    final private static List<Logger> loggers = new ArrayList<Logger>();
+
+    final private static List<Registration> registrations = new ArrayList<Registration>();
+
+    final private InheritableThreadLocal<Log> currentLog = new InheritableThreadLocal<Log>();
+
+    final private Formatter formatter = new Formatter() {
+        @Override
+        public String format(LogRecord logRecord) {
+            return formatMessage(logRecord);
+        }
+    };
+
+    /**
+     * Forwards records logged by the current thread (and threads it starts) to the given log.
+     *
+     * @return The registration, pass it to {@link #unregister(Registration)} when the execution completes.
+     */
+    public static synchronized Registration register(Log log) {
+        if (instance == null) {
+            instance = new MavenLogBridge();
+            for (String name : LOGGER_NAMES) {
+                Logger logger = Logger.getLogger(name);
+                logger.addHandler(instance);
+                logger.setUseParentHandlers(false);
+                loggers.add(logger);
+            }
+        }
+        Registration registration = new Registration(log, getLevel(log));
+        registrations.add(registration);
+        instance.currentLog.set(log);
+        updateLevel();
+        return registration;
+    }
+
+    public static synchronized void unregister(Registration registration) {
+        registrations.remove(registration);
+        if (instance == null) return;
+        instance.currentLog.remove();
+        if (registrations.size() == 0) {
+            for (Logger logger : loggers) {
+                logger.removeHandler(instance);
+                logger.setUseParentHandlers(true);
+                logger.setLevel(null);
+            }
+            loggers.clear();
+            instance = null;
+        } else {
+            updateLevel();
+        }
+    }
+
+    /**
+     * @return The JUL level equivalent to Maven's effective log level.
+     */
+    public static Level getLevel(Log log) {
+        if (log.isDebugEnabled()) return Level.ALL;
+        if (log.isInfoEnabled()) return Level.INFO;
+        if (log.isWarnEnabled()) return Level.WARNING;
+        if (log.isErrorEnabled()) return Level.SEVERE;
+        return Level.OFF;
+    }
+
+    protected static void updateLevel() {
+        Level level = Level.OFF;
+        for (Registration registration : registrations) {
+            if (registration.level.intValue() < level.intValue())
+                level = registration.level;
+        }
+        for (Logger logger : loggers) {
+            logger.setLevel(level);
+        }
+    }
+
+    protected MavenLogBridge() {
+        setLevel(Level.ALL);
+    }
+
+    @Override
+    public void publish(LogRecord logRecord) {
+        Log log = currentLog.get();
+        if (log == null || !isLoggable(logRecord)) return;
+
+        int value = logRecord.getLevel().intValue();
+        if (value >= Level.SEVERE.intValue()) {
+            if (log.isErrorEnabled()) log.error(formatter.format(logRecord));
+        } else if (value >= Level.WARNING.intValue()) {
+            if (log.isWarnEnabled()) log.warn(formatter.format(logRecord));
+        } else if (value >= Level.INFO.intValue()) {
+            if (log.isInfoEnabled()) log.info(formatter.format(logRecord));
+        } else {
+            if (log.isDebugEnabled()) log.debug(formatter.format(logRecord));
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() throws SecurityException {
+    }
+
+    public static class Registration {
+        final private Log log;
+        final private Level level;
+
+        protected Registration(Log log, Level level) {
+            this.log = log;
+            this.level = level;
+        }
+
+        public Log getLog() {
+            return log;
+        }
+    }
+}
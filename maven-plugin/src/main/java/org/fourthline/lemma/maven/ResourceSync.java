@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.maven;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Copies files to a target directory, skipping files which are already up to date.
+ * <p>
+ * A target file is up to date if it has the same size and modification time as its source
+ * (copies get the modification time of their source), and optionally the same content hash.
+ * Outdated files are copied in parallel. Files and directories in synchronized target
+ * directories which have no source anymore are removed, unless they are kept explicitly,
+ * e.g. because they are generated output.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class ResourceSync {
+
+    final private Log log;
+    final private boolean compareContent;
+    final private int threads;
+
+    final private Map<File, File> files = new LinkedHashMap<File, File>();
+    final private Set<File> directories = new LinkedHashSet<File>();
+    final private List<File> targetDirectories = new ArrayList<File>();
+    final private Set<File> kept = new HashSet<File>();
+
+    private int copied;
+    private int removed;
+
+    public ResourceSync(Log log, boolean compareContent) {
+        this(log, compareContent, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ResourceSync(Log log, boolean compareContent, int threads) {
+        this.log = log;
+        this.compareContent = compareContent;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * @param source The source file.
+     * @param target The target file.
+     */
+    public void addFile(File source, File target) {
+        files.put(target, source);
+    }
+
+    /**
+     * Adds all files and directories of the source directory, recursively, empty directories are
+     * created in the target.
+     */
+    public void addDirectory(File source, File target) {
+        directories.add(target);
+        File[] children = source.listFiles();
+        if (children == null) return;
+        for (File child : children) {
+            if (child.isDirectory()) {
+                addDirectory(child, new File(target, child.getName()));
+            } else {
+                addFile(child, new File(target, child.getName()));
+            }
+        }
+    }
+
+    /**
+     * Marks the target directory as synchronized, files and directories not added to it will be removed.
+     */
+    public void addTargetDirectory(File target) {
+        targetDirectories.add(target);
+    }
+
+    /**
+     * Never removes this file, or this directory and its content, from a synchronized target directory.
+     */
+    public void keep(File target) {
+        kept.add(target);
+    }
+
+    public int getCopied() {
+        return copied;
+    }
+
+    public int getRemoved() {
+        return removed;
+    }
+
+    public void sync() throws IOException {
+        removeStaleFiles();
+        for (File directory : directories) {
+            if (!directory.isDirectory() && !directory.mkdirs())
+                throw new IOException("Can't create directory: " + directory);
+        }
+
+        List<Map.Entry<File, File>> outdated = new ArrayList<Map.Entry<File, File>>();
+        for (Map.Entry<File, File> entry : files.entrySet()) {
+            if (!isUpToDate(entry.getValue(), entry.getKey()))
+                outdated.add(entry);
+        }
+        log.info("Synchronizing files, outdated: " + outdated.size() + " of " + files.size());
+        if (outdated.size() == 0) return;
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, outdated.size()));
+        try {
+            List<Future<Void>> results = new ArrayList<Future<Void>>();
+            for (final Map.Entry<File, File> entry : outdated) {
+                // Maven's log is not thread-safe, don't use it in the workers
+                if (log.isDebugEnabled())
+                    log.debug("Copying file: " + entry.getValue());
+                results.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        copy(entry.getValue(), entry.getKey());
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+                copied++;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while copying files", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof IOException)
+                throw (IOException) ex.getCause();
+            throw new IOException("Can't copy file: " + ex.getCause(), ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    protected boolean isUpToDate(File source, File target) throws IOException {
+        if (!target.isFile()
+                || target.length() != source.length()
+                || target.lastModified() != source.lastModified())
+            return false;
+        return !compareContent || Arrays.equals(hash(source), hash(target));
+    }
+
+    protected void copy(File source, File target) throws IOException {
+        FileUtils.copyFile(source, target);
+        if (!target.setLastModified(source.lastModified()))
+            throw new IOException("Can't set modification time of copied file: " + target);
+    }
+
+    protected void removeStaleFiles() throws IOException {
+        Set<File> expected = new HashSet<File>();
+        List<File> targets = new ArrayList<File>(files.keySet());
+        targets.addAll(directories);
+        targets.addAll(kept);
+        for (File target : targets) {
+            // Keep the parent directories of all expected files
+            for (File file = target; file != null; file = file.getParentFile()) {
+                if (!expected.add(file)) break;
+            }
+        }
+        for (File targetDirectory : targetDirectories) {
+            removeStaleFiles(targetDirectory, expected);
+        }
+    }
+
+    protected void removeStaleFiles(File directory, Set<File> expected) throws IOException {
+        if (kept.contains(directory)) return;
+        File[] children = directory.listFiles();
+        if (children == null) return;
+        for (File child : children) {
+            if (!expected.contains(child)) {
+                log.info("Removing stale file: " + child);
+                if (child.isDirectory()) {
+                    FileUtils.deleteDirectory(child);
+                } else if (!child.delete()) {
+                    throw new IOException("Can't delete stale file: " + child);
+                }
+                removed++;
+            } else if (child.isDirectory()) {
+                removeStaleFiles(child, expected);
+            }
+        }
+    }
+
+    protected byte[] hash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+        InputStream is = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            is.close();
+        }
+        return digest.digest();
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.maven;
+
+import org.fourthline.lemma.model.SourceModel;
+import org.fourthline.lemma.reader.content.handler.ContentCache;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Source models and file contents shared by all plugin executions of a Maven session.
+ * <p>
+ * Modules which document the same source directories and packages with the same model backend
+ * and dependency classpath reuse the source model built by an earlier module. A model is used by one execution at a
+ * time, a concurrent execution in a parallel build builds its own. The number of cached models
+ * and the size of the content cache are limited, least recently used entries are evicted.
+ * The cache is keyed on the execution request, which the session clones of a parallel build share, and
+ * it is released when the request is no longer referenced.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class SessionCache {
+
+    final private static Map<Object, SessionCache> sessionCaches = new WeakHashMap<Object, SessionCache>();
+
+    /**
+     * @param request              The Maven execution request of the build, the cache is released with it.
+     * @param maxModels            The maximum number of cached source models.
+     * @param maxContentCharacters The maximum number of characters of cached file content.
+     * @return The cache of the session, the limits of the first call apply.
+     */
+    public static SessionCache get(Object request, int maxModels, long maxContentCharacters) {
+        synchronized (sessionCaches) {
+            SessionCache cache = sessionCaches.get(request);
+            if (cache == null) {
+                cache = new SessionCache(maxModels, maxContentCharacters);
+                sessionCaches.put(request, cache);
+            }
+            return cache;
+        }
+    }
+
+    final private int maxModels;
+    final private ContentCache contentCache;
+    final private Map<ModelKey, ModelEntry> models = new LinkedHashMap<ModelKey, ModelEntry>(16, 0.75f, true);
+
+    private int modelHits;
+    private int modelMisses;
+
+    protected SessionCache(int maxModels, long maxContentCharacters) {
+        this.maxModels = maxModels;
+        this.contentCache = new ContentCache(maxContentCharacters);
+    }
+
+    public ContentCache getContentCache() {
+        return contentCache;
+    }
+
+    /**
+     * @return The cached model, now in use by the caller, or <code>null</code> if there is no
+     *         cached model or it is in use by another execution.
+     */
+    synchronized public SourceModel acquireModel(ModelKey key) {
+        ModelEntry entry = models.get(key);
+        if (entry == null || entry.inUse) {
+            modelMisses++;
+            return null;
+        }
+        modelHits++;
+        entry.inUse = true;
+        return entry.sourceModel;
+    }
+
+    /**
+     * Returns the model to the cache, or adds it if it is not cached yet.
+     */
+    synchronized public void releaseModel(ModelKey key, SourceModel sourceModel) {
+        ModelEntry entry = models.get(key);
+        if (entry != null && entry.sourceModel == sourceModel) {
+            entry.inUse = false;
+        } else if (entry == null) {
+            models.put(key, new ModelEntry(sourceModel));
+        }
+
+        Iterator<ModelEntry> it = models.values().iterator();
+        while (models.size() > maxModels && it.hasNext()) {
+            if (!it.next().inUse) it.remove();
+        }
+    }
+
+    @Override
+    synchronized public String toString() {
+        return "Source models: " + models.size() + "/" + maxModels
+                + " (hits/misses: " + modelHits + "/" + modelMisses + ")"
+                + ", content: " + contentCache;
+    }
+
+    public static class ModelKey {
+
+        final private SourceModel.Backend backend;
+        final private List<String> sourceDirectories = new ArrayList<String>();
+        final private List<String> packageNames;
+        final private String classpath;
+
+        public ModelKey(SourceModel.Backend backend, List<File> sourceDirectories, List<String> packageNames, String classpath) {
+            this.backend = backend;
+            for (File sourceDirectory : sourceDirectories) {
+                this.sourceDirectories.add(sourceDirectory.getAbsolutePath());
+            }
+            this.packageNames = new ArrayList<String>(packageNames);
+            Collections.sort(this.packageNames);
+            this.classpath = classpath;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ModelKey that = (ModelKey) o;
+            return backend == that.backend
+                    && sourceDirectories.equals(that.sourceDirectories)
+                    && packageNames.equals(that.packageNames)
+                    && (classpath != null ? classpath.equals(that.classpath) : that.classpath == null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = backend.hashCode();
+            result = 31 * result + sourceDirectories.hashCode();
+            result = 31 * result + packageNames.hashCode();
+            result = 31 * result + (classpath != null ? classpath.hashCode() : 0);
+            return result;
+        }
+    }
+
+    protected static class ModelEntry {
+        final SourceModel sourceModel;
+        boolean inUse;
+
+        public ModelEntry(SourceModel sourceModel) {
+            this.sourceModel = sourceModel;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2011 4th Line GmbH, Switzerland
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.fourthline.lemma.maven;
+
+import org.apache.maven.doxia.sink.Sink;
+
+import java.io.Writer;
+
+/**
+ * Writes characters as raw text into a Doxia sink.
+ * <p>
+ * Wrap it in a <code>BufferedWriter</code>, every write is passed to the sink as a chunk.
+ * </p>
+ *
+ * @author Christian Bauer
+ */
+public class SinkWriter extends Writer {
+
+    final private Sink sink;
+
+    public SinkWriter(Sink sink) {
+        this.sink = sink;
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) {
+        if (length > 0)
+            sink.rawText(new String(chars, offset, length));
+    }
+
+    @Override
+    public void flush() {
+        sink.flush();
+    }
+
+    @Override
+    public void close() {
+        // The sink is closed by its owner
+        flush();
+    }
+}
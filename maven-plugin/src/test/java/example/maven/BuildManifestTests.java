@@ -0,0 +1,121 @@
+package example.maven;
+
+import org.fourthline.lemma.maven.BuildManifest;
+import org.seamless.util.io.IO;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * A stored manifest detects every change of parameters and input files of the next run.
+ */
+public class BuildManifestTests {
+
+    protected File directory;
+
+    @BeforeMethod
+    public void createDirectory() throws Exception {
+        directory = File.createTempFile("lemma", "manifest");
+        directory.delete();
+        directory.mkdirs();
+    }
+
+    @AfterMethod
+    public void deleteDirectory() {
+        delete(directory);
+    }
+
+    @Test
+    public void changedParameter() throws Exception {
+        BuildManifest manifest = new BuildManifest();
+        manifest.addParameter("processXRefs", true);
+        manifest.addParameter("classpath", "a.jar:b.jar");
+        BuildManifest previous = storeAndLoad(manifest);
+
+        BuildManifest current = new BuildManifest();
+        current.addParameter("processXRefs", true);
+        current.addParameter("classpath", "a.jar:b.jar");
+        assertNull(previous.findChange(current));
+
+        current = new BuildManifest();
+        current.addParameter("processXRefs", true);
+        current.addParameter("classpath", "a.jar:c.jar");
+        String change = previous.findChange(current);
+        assertNotNull(change);
+        assertTrue(change.contains("classpath"), change);
+
+        current = new BuildManifest();
+        current.addParameter("processXRefs", true);
+        change = previous.findChange(current);
+        assertNotNull(change);
+        assertTrue(change.contains("classpath"), change);
+    }
+
+    @Test
+    public void changedCitedFile() throws Exception {
+        File cited = new File(directory, "cited.txt");
+        IO.writeUTF8(cited, "one");
+
+        BuildManifest manifest = new BuildManifest();
+        manifest.addFile(cited);
+        BuildManifest previous = storeAndLoad(manifest);
+        assertNull(previous.findChange(new BuildManifest()));
+
+        IO.writeUTF8(cited, "two");
+        String change = previous.findChange(new BuildManifest());
+        assertNotNull(change);
+        assertTrue(change.contains(cited.getName()), change);
+
+        cited.delete();
+        assertNotNull(previous.findChange(new BuildManifest()));
+    }
+
+    @Test
+    public void changedXInclude() throws Exception {
+        File template = new File(directory, "manual.xhtml");
+        File chapter = new File(directory, "chapter.xhtml");
+        File section = new File(new File(directory, "sections"), "section.xhtml");
+        section.getParentFile().mkdirs();
+        IO.writeUTF8(template, include("chapter.xhtml"));
+        IO.writeUTF8(chapter, include("sections/section.xhtml"));
+        IO.writeUTF8(section, "<div xmlns=\"http://www.w3.org/1999/xhtml\">One</div>");
+
+        BuildManifest manifest = new BuildManifest();
+        manifest.addTemplate(template, directory);
+        BuildManifest previous = storeAndLoad(manifest);
+        assertNull(previous.findChange(new BuildManifest()));
+
+        // A file included by an included file
+        IO.writeUTF8(section, "<div xmlns=\"http://www.w3.org/1999/xhtml\">Two</div>");
+        String change = previous.findChange(new BuildManifest());
+        assertNotNull(change);
+        assertTrue(change.contains(section.getName()), change);
+    }
+
+    protected BuildManifest storeAndLoad(BuildManifest manifest) throws Exception {
+        File file = new File(directory, "manual.manifest");
+        manifest.store(file);
+        return BuildManifest.load(file);
+    }
+
+    protected String include(String href) {
+        return "<div xmlns=\"http://www.w3.org/1999/xhtml\" xmlns:xi=\"http://www.w3.org/2001/XInclude\">" +
+                "<xi:include href=\"" + href + "\"/></div>";
+    }
+
+    protected void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,137 @@
+package example.maven;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.fourthline.lemma.maven.ResourceSync;
+import org.seamless.util.io.IO;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Synchronizing resources copies outdated files and removes everything else from the target,
+ * except kept files.
+ */
+public class ResourceSyncTests {
+
+    protected File source;
+    protected File target;
+
+    @BeforeMethod
+    public void createDirectories() throws Exception {
+        source = createDirectory("source");
+        target = createDirectory("target");
+    }
+
+    @AfterMethod
+    public void deleteDirectories() {
+        delete(source);
+        delete(target);
+    }
+
+    @Test
+    public void copyOutdatedFiles() throws Exception {
+        File styles = new File(source, "styles.css");
+        IO.writeUTF8(styles, "body {}");
+        File image = new File(new File(source, "images"), "logo.png");
+        image.getParentFile().mkdirs();
+        IO.writeUTF8(image, "logo");
+
+        ResourceSync sync = sync();
+        assertEquals(sync.getCopied(), 2);
+        assertEquals(new File(target, "styles.css").length(), styles.length());
+        assertTrue(new File(new File(target, "images"), "logo.png").isFile());
+
+        assertEquals(sync().getCopied(), 0);
+
+        IO.writeUTF8(styles, "body { margin: 0 }");
+        assertEquals(sync().getCopied(), 1);
+        assertEquals(new File(target, "styles.css").length(), styles.length());
+    }
+
+    @Test
+    public void removeDeletedFilesAndDirectories() throws Exception {
+        File image = new File(new File(source, "images"), "logo.png");
+        image.getParentFile().mkdirs();
+        IO.writeUTF8(image, "logo");
+        File docFile = new File(new File(source, "doc-files"), "diagram.png");
+        docFile.getParentFile().mkdirs();
+        IO.writeUTF8(docFile, "diagram");
+        sync();
+
+        delete(image.getParentFile());
+        delete(docFile.getParentFile());
+        ResourceSync sync = sync();
+        assertEquals(sync.getRemoved(), 2);
+        assertFalse(new File(target, "images").exists());
+        assertFalse(new File(target, "doc-files").exists());
+    }
+
+    @Test
+    public void keepEmptyDirectories() throws Exception {
+        File empty = new File(new File(source, "images"), "empty");
+        empty.mkdirs();
+        sync();
+        assertTrue(new File(new File(target, "images"), "empty").isDirectory());
+
+        ResourceSync sync = sync();
+        assertEquals(sync.getRemoved(), 0);
+        assertTrue(new File(new File(target, "images"), "empty").isDirectory());
+    }
+
+    @Test
+    public void keepGeneratedFiles() throws Exception {
+        File output = new File(target, "manual.xhtml");
+        IO.writeUTF8(output, "<html/>");
+        File stale = new File(target, "old.css");
+        IO.writeUTF8(stale, "body {}");
+
+        ResourceSync sync = new ResourceSync(new SystemStreamLog(), false);
+        sync.addTargetDirectory(target);
+        sync.keep(output);
+        sync.sync();
+
+        assertTrue(output.isFile());
+        assertFalse(stale.exists());
+        assertEquals(sync.getRemoved(), 1);
+    }
+
+    /**
+     * Synchronizes the whole target with all files and directories of the source.
+     */
+    protected ResourceSync sync() throws Exception {
+        ResourceSync sync = new ResourceSync(new SystemStreamLog(), true);
+        sync.addTargetDirectory(target);
+        for (File file : source.listFiles()) {
+            if (file.isDirectory()) {
+                sync.addDirectory(file, new File(target, file.getName()));
+            } else {
+                sync.addFile(file, new File(target, file.getName()));
+            }
+        }
+        sync.sync();
+        return sync;
+    }
+
+    protected File createDirectory(String name) throws Exception {
+        File directory = File.createTempFile("lemma", name);
+        directory.delete();
+        directory.mkdirs();
+        return directory;
+    }
+
+    protected void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}